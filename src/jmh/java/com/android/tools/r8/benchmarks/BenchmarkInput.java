@@ -0,0 +1,423 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.benchmarks;
+
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.GETSTATIC;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.IADD;
+import static org.objectweb.asm.Opcodes.IALOAD;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.ICONST_1;
+import static org.objectweb.asm.Opcodes.ICONST_3;
+import static org.objectweb.asm.Opcodes.ICONST_4;
+import static org.objectweb.asm.Opcodes.ICONST_M1;
+import static org.objectweb.asm.Opcodes.IFNE;
+import static org.objectweb.asm.Opcodes.IF_ICMPGE;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.IMUL;
+import static org.objectweb.asm.Opcodes.INEG;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.IREM;
+import static org.objectweb.asm.Opcodes.IRETURN;
+import static org.objectweb.asm.Opcodes.ISHL;
+import static org.objectweb.asm.Opcodes.ISTORE;
+import static org.objectweb.asm.Opcodes.IXOR;
+import static org.objectweb.asm.Opcodes.NEW;
+import static org.objectweb.asm.Opcodes.NEWARRAY;
+import static org.objectweb.asm.Opcodes.POP;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.PUTSTATIC;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.SWAP;
+import static org.objectweb.asm.Opcodes.T_INT;
+import static org.objectweb.asm.Opcodes.V1_6;
+
+import com.android.tools.r8.CompilationFailedException;
+import com.android.tools.r8.D8;
+import com.android.tools.r8.D8Command;
+import com.android.tools.r8.DexIndexedConsumer;
+import com.android.tools.r8.DiagnosticsHandler;
+import com.android.tools.r8.dex.ApplicationReader;
+import com.android.tools.r8.graph.DexApplication;
+import com.android.tools.r8.graph.DexEncodedMethod;
+import com.android.tools.r8.graph.DexProgramClass;
+import com.android.tools.r8.origin.Origin;
+import com.android.tools.r8.utils.AndroidApp;
+import com.android.tools.r8.utils.InternalOptions;
+import com.android.tools.r8.utils.Timing;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+
+/**
+ * Program generated as input for the JMH benchmarks, so that they do not depend on the examples
+ * being built.
+ *
+ * <p>The program is a chain of classes {@code bench.C0} to {@code bench.Cn}, where the method
+ * {@code run} of each class calls methods with loops, switches, exception handlers and string
+ * building before calling {@code run} of the next class. {@code bench.C0} has a main method, so
+ * that keeping it keeps the whole program.
+ *
+ * <p>{@link #generateLargeMethodApp} generates a single class {@code bench.Large} with one large
+ * method, similar to generated code such as protos and large switch tables.
+ */
+public class BenchmarkInput {
+
+  public static final int DEFAULT_CLASS_COUNT = 200;
+
+  public static final Path ANDROID_JAR = Paths.get("third_party/android_jar/lib-v14/android.jar");
+
+  public static final String KEEP_MAIN_RULE =
+      "-keep class bench.C0 { public static void main(java.lang.String[]); }";
+
+  private static String className(int index) {
+    return "bench/C" + index;
+  }
+
+  public static List<byte[]> generateClasses(int count) {
+    List<byte[]> classes = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      classes.add(generateClass(i, count));
+    }
+    return classes;
+  }
+
+  public static AndroidApp generateApp(int count) throws IOException {
+    return AndroidApp.builder()
+        .addClassProgramData(generateClasses(count))
+        .addLibraryFiles(ANDROID_JAR)
+        .build();
+  }
+
+  /** Compile the generated program with D8 into a single dex file. */
+  public static byte[] generateDex(int count) throws IOException, CompilationFailedException {
+    byte[][] result = new byte[1][];
+    D8Command.Builder builder =
+        D8Command.builder()
+            .addLibraryFiles(ANDROID_JAR)
+            .setProgramConsumer(
+                new DexIndexedConsumer.ForwardingConsumer(null) {
+                  @Override
+                  public void accept(
+                      int fileIndex,
+                      byte[] data,
+                      Set<String> descriptors,
+                      DiagnosticsHandler handler) {
+                    result[0] = data;
+                  }
+                });
+    for (byte[] clazz : generateClasses(count)) {
+      builder.addClassProgramData(clazz, Origin.unknown());
+    }
+    D8.run(builder.build());
+    return result[0];
+  }
+
+  /**
+   * Generate the class {@code bench.Large}, with a method {@code large} defining the given number
+   * of values that are all live until the end of the method, and a switch with a case calling a
+   * method with six of the values for every eighth value.
+   */
+  public static AndroidApp generateLargeMethodApp(int values) throws IOException {
+    return AndroidApp.builder()
+        .addClassProgramData(generateLargeMethodClass(values), Origin.unknown())
+        .addLibraryFiles(ANDROID_JAR)
+        .build();
+  }
+
+  public static DexApplication read(AndroidApp app, InternalOptions options)
+      throws IOException, ExecutionException {
+    return new ApplicationReader(app, options, new Timing("Benchmark")).read();
+  }
+
+  /** All methods with code of the program classes, in a deterministic order. */
+  public static List<DexEncodedMethod> methodsWithCode(DexApplication application) {
+    List<DexEncodedMethod> methods = new ArrayList<>();
+    for (DexProgramClass clazz : application.classes()) {
+      clazz.forEachMethod(
+          method -> {
+            if (method.getCode() != null) {
+              methods.add(method);
+            }
+          });
+    }
+    return methods;
+  }
+
+  private static byte[] generateLargeMethodClass(int values) {
+    String name = "bench/Large";
+    ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    cw.visit(V1_6, ACC_PUBLIC | ACC_SUPER, name, null, "java/lang/Object", null);
+    // static int sink(int a, int b, int c, int d, int e, int f): a + b + c + d + e + f.
+    MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "sink", "(IIIIII)I", null, null);
+    mv.visitCode();
+    mv.visitVarInsn(ILOAD, 0);
+    for (int i = 1; i < 6; i++) {
+      mv.visitVarInsn(ILOAD, i);
+      mv.visitInsn(IADD);
+    }
+    mv.visitInsn(IRETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+    // static int large(int n): local i is local i - 1 times 31 plus i, local 0 being n.
+    mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "large", "(I)I", null, null);
+    mv.visitCode();
+    for (int i = 1; i <= values; i++) {
+      mv.visitVarInsn(ILOAD, i - 1);
+      mv.visitLdcInsn(31);
+      mv.visitInsn(IMUL);
+      mv.visitLdcInsn(i);
+      mv.visitInsn(IADD);
+      mv.visitVarInsn(ISTORE, i);
+    }
+    Label[] cases = new Label[values / 8];
+    for (int i = 0; i < cases.length; i++) {
+      cases[i] = new Label();
+    }
+    Label defaultCase = new Label();
+    mv.visitVarInsn(ILOAD, 0);
+    mv.visitTableSwitchInsn(0, cases.length - 1, defaultCase, cases);
+    for (int i = 0; i < cases.length; i++) {
+      mv.visitLabel(cases[i]);
+      for (int j = 0; j < 6; j++) {
+        mv.visitVarInsn(ILOAD, 8 * i + j + 1);
+      }
+      mv.visitMethodInsn(INVOKESTATIC, name, "sink", "(IIIIII)I", false);
+      mv.visitInsn(IRETURN);
+    }
+    mv.visitLabel(defaultCase);
+    mv.visitVarInsn(ILOAD, values);
+    for (int i = values - 1; i >= 0; i--) {
+      mv.visitVarInsn(ILOAD, i);
+      mv.visitInsn(IXOR);
+    }
+    mv.visitInsn(IRETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+    cw.visitEnd();
+    return cw.toByteArray();
+  }
+
+  private static byte[] generateClass(int index, int count) {
+    String name = className(index);
+    ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    cw.visit(V1_6, ACC_PUBLIC | ACC_SUPER, name, null, "java/lang/Object", null);
+    cw.visitField(ACC_PRIVATE, "value", "I", null, null).visitEnd();
+    cw.visitField(ACC_PRIVATE | ACC_STATIC, "counter", "I", null, null).visitEnd();
+    generateConstructor(cw, name, index);
+    generateLoop(cw, name);
+    generateSwitch(cw, index);
+    generateTryCatch(cw);
+    generateDescribe(cw, index);
+    generateRun(cw, index, count);
+    if (index == 0) {
+      generateMain(cw, name);
+    }
+    cw.visitEnd();
+    return cw.toByteArray();
+  }
+
+  private static void generateConstructor(ClassWriter cw, String name, int index) {
+    MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitLdcInsn(index);
+    mv.visitFieldInsn(PUTFIELD, name, "value", "I");
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  // int loop(int n): sums i * i ^ value over i < n, doubling the sum for every third i.
+  private static void generateLoop(ClassWriter cw, String name) {
+    MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "loop", "(I)I", null, null);
+    mv.visitCode();
+    Label condition = new Label();
+    Label skip = new Label();
+    Label end = new Label();
+    mv.visitInsn(ICONST_0);
+    mv.visitVarInsn(ISTORE, 2);
+    mv.visitInsn(ICONST_0);
+    mv.visitVarInsn(ISTORE, 3);
+    mv.visitLabel(condition);
+    mv.visitVarInsn(ILOAD, 3);
+    mv.visitVarInsn(ILOAD, 1);
+    mv.visitJumpInsn(IF_ICMPGE, end);
+    mv.visitVarInsn(ILOAD, 2);
+    mv.visitVarInsn(ILOAD, 3);
+    mv.visitVarInsn(ILOAD, 3);
+    mv.visitInsn(IMUL);
+    mv.visitInsn(IADD);
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitFieldInsn(GETFIELD, name, "value", "I");
+    mv.visitInsn(IXOR);
+    mv.visitVarInsn(ISTORE, 2);
+    mv.visitVarInsn(ILOAD, 3);
+    mv.visitInsn(ICONST_3);
+    mv.visitInsn(IREM);
+    mv.visitJumpInsn(IFNE, skip);
+    mv.visitVarInsn(ILOAD, 2);
+    mv.visitInsn(ICONST_1);
+    mv.visitInsn(ISHL);
+    mv.visitVarInsn(ISTORE, 2);
+    mv.visitLabel(skip);
+    mv.visitIincInsn(3, 1);
+    mv.visitJumpInsn(GOTO, condition);
+    mv.visitLabel(end);
+    mv.visitVarInsn(ILOAD, 2);
+    mv.visitInsn(IRETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  // int select(int k): a table switch over five cases.
+  private static void generateSwitch(ClassWriter cw, int index) {
+    MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "select", "(I)I", null, null);
+    mv.visitCode();
+    Label[] cases = new Label[5];
+    for (int i = 0; i < cases.length; i++) {
+      cases[i] = new Label();
+    }
+    Label defaultCase = new Label();
+    mv.visitVarInsn(ILOAD, 1);
+    mv.visitTableSwitchInsn(0, cases.length - 1, defaultCase, cases);
+    for (int i = 0; i < cases.length; i++) {
+      mv.visitLabel(cases[i]);
+      mv.visitLdcInsn(i * 31 + index);
+      mv.visitInsn(IRETURN);
+    }
+    mv.visitLabel(defaultCase);
+    mv.visitVarInsn(ILOAD, 1);
+    mv.visitInsn(INEG);
+    mv.visitInsn(IRETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  // int element(int[] array, int i): array[i], or -1 if that throws.
+  private static void generateTryCatch(ClassWriter cw) {
+    MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "element", "([II)I", null, null);
+    mv.visitCode();
+    Label start = new Label();
+    Label end = new Label();
+    Label handler = new Label();
+    mv.visitTryCatchBlock(start, end, handler, "java/lang/RuntimeException");
+    mv.visitLabel(start);
+    mv.visitVarInsn(ALOAD, 1);
+    mv.visitVarInsn(ILOAD, 2);
+    mv.visitInsn(IALOAD);
+    mv.visitLabel(end);
+    mv.visitInsn(IRETURN);
+    mv.visitLabel(handler);
+    mv.visitVarInsn(ASTORE, 3);
+    mv.visitInsn(ICONST_M1);
+    mv.visitInsn(IRETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  // String describe(int i): "Cn:" + i.
+  private static void generateDescribe(ClassWriter cw, int index) {
+    MethodVisitor mv =
+        cw.visitMethod(ACC_PUBLIC, "describe", "(I)Ljava/lang/String;", null, null);
+    mv.visitCode();
+    mv.visitTypeInsn(NEW, "java/lang/StringBuilder");
+    mv.visitInsn(DUP);
+    mv.visitMethodInsn(INVOKESPECIAL, "java/lang/StringBuilder", "<init>", "()V", false);
+    mv.visitLdcInsn("C" + index + ":");
+    mv.visitMethodInsn(
+        INVOKEVIRTUAL,
+        "java/lang/StringBuilder",
+        "append",
+        "(Ljava/lang/String;)Ljava/lang/StringBuilder;",
+        false);
+    mv.visitVarInsn(ILOAD, 1);
+    mv.visitMethodInsn(
+        INVOKEVIRTUAL, "java/lang/StringBuilder", "append", "(I)Ljava/lang/StringBuilder;", false);
+    mv.visitMethodInsn(
+        INVOKEVIRTUAL, "java/lang/StringBuilder", "toString", "()Ljava/lang/String;", false);
+    mv.visitInsn(ARETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  // int run(int n): calls the other methods and then run of the next class.
+  private static void generateRun(ClassWriter cw, int index, int count) {
+    String name = className(index);
+    MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "run", "(I)I", null, null);
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitVarInsn(ILOAD, 1);
+    mv.visitMethodInsn(INVOKEVIRTUAL, name, "loop", "(I)I", false);
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitVarInsn(ILOAD, 1);
+    mv.visitMethodInsn(INVOKEVIRTUAL, name, "select", "(I)I", false);
+    mv.visitInsn(IADD);
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitInsn(ICONST_4);
+    mv.visitIntInsn(NEWARRAY, T_INT);
+    mv.visitVarInsn(ILOAD, 1);
+    mv.visitMethodInsn(INVOKEVIRTUAL, name, "element", "([II)I", false);
+    mv.visitInsn(IADD);
+    mv.visitVarInsn(ISTORE, 2);
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitVarInsn(ILOAD, 2);
+    mv.visitMethodInsn(INVOKEVIRTUAL, name, "describe", "(I)Ljava/lang/String;", false);
+    mv.visitInsn(POP);
+    if (index + 1 < count) {
+      String next = className(index + 1);
+      mv.visitTypeInsn(NEW, next);
+      mv.visitInsn(DUP);
+      mv.visitMethodInsn(INVOKESPECIAL, next, "<init>", "()V", false);
+      mv.visitVarInsn(ILOAD, 2);
+      mv.visitMethodInsn(INVOKEVIRTUAL, next, "run", "(I)I", false);
+      mv.visitVarInsn(ISTORE, 2);
+    }
+    mv.visitFieldInsn(GETSTATIC, name, "counter", "I");
+    mv.visitInsn(ICONST_1);
+    mv.visitInsn(IADD);
+    mv.visitFieldInsn(PUTSTATIC, name, "counter", "I");
+    mv.visitVarInsn(ILOAD, 2);
+    mv.visitInsn(IRETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  private static void generateMain(ClassWriter cw, String name) {
+    MethodVisitor mv =
+        cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "main", "([Ljava/lang/String;)V", null, null);
+    mv.visitCode();
+    mv.visitTypeInsn(NEW, name);
+    mv.visitInsn(DUP);
+    mv.visitMethodInsn(INVOKESPECIAL, name, "<init>", "()V", false);
+    mv.visitLdcInsn(10);
+    mv.visitMethodInsn(INVOKEVIRTUAL, name, "run", "(I)I", false);
+    mv.visitFieldInsn(GETSTATIC, "java/lang/System", "out", "Ljava/io/PrintStream;");
+    mv.visitInsn(SWAP);
+    mv.visitMethodInsn(INVOKEVIRTUAL, "java/io/PrintStream", "println", "(I)V", false);
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+}
@@ -0,0 +1,67 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.dex;
+
+import com.android.tools.r8.ApiLevelException;
+import com.android.tools.r8.benchmarks.BenchmarkInput;
+import com.android.tools.r8.graph.DexApplication;
+import com.android.tools.r8.graph.ObjectToOffsetMapping;
+import com.android.tools.r8.naming.NamingLens;
+import com.android.tools.r8.origin.Origin;
+import com.android.tools.r8.utils.AndroidApp;
+import com.android.tools.r8.utils.InternalOptions;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Time collecting and writing the sections of a dex file, for the generated program read back
+// from dex. The items are sorted and the file is distributed once, before the benchmark.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class FileWriterBenchmark {
+
+  private InternalOptions options;
+  private DexApplication application;
+  private ObjectToOffsetMapping mapping;
+  private final DexOutputBufferPool bufferPool = new DexOutputBufferPool();
+
+  @Setup
+  public void setup() throws Exception {
+    options = new InternalOptions();
+    AndroidApp app =
+        AndroidApp.builder()
+            .addDexProgramData(
+                BenchmarkInput.generateDex(BenchmarkInput.DEFAULT_CLASS_COUNT), Origin.unknown())
+            .build();
+    application = BenchmarkInput.read(app, options);
+    NamingLens namingLens = NamingLens.getIdentityLens();
+    ApplicationWriter writer =
+        new ApplicationWriter(application, options, null, null, namingLens, null, null);
+    application.dexItemFactory.sort(namingLens);
+    VirtualFile file = new VirtualFile.MonoDexDistributor(writer, options).run().iterator().next();
+    mapping = file.computeMapping(application);
+  }
+
+  @Benchmark
+  public int generate() throws ApiLevelException {
+    FileWriter fileWriter =
+        new FileWriter(
+            mapping, application, options, NamingLens.getIdentityLens(), bufferPool, null);
+    int size = fileWriter.collect().generate().remaining();
+    fileWriter.release();
+    return size;
+  }
+}
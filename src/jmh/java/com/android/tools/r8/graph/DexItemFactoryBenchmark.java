@@ -0,0 +1,67 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.graph;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Time creating strings and types from several threads sharing one factory, as the class readers
+// and the IR conversion do. The factory is replaced before each iteration, so that each iteration
+// both adds new items and looks up existing ones.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Threads(4)
+public class DexItemFactoryBenchmark {
+
+  private static final int NAME_COUNT = 1 << 16;
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    private int next;
+
+    int next() {
+      return next++ & (NAME_COUNT - 1);
+    }
+  }
+
+  private final String[] descriptors = new String[NAME_COUNT];
+  private DexItemFactory factory;
+
+  @Setup
+  public void setup() {
+    for (int i = 0; i < NAME_COUNT; i++) {
+      descriptors[i] = "Lbench/p" + (i % 64) + "/C" + i + ";";
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void createFactory() {
+    factory = new DexItemFactory();
+  }
+
+  @Benchmark
+  public DexString createString(Cursor cursor) {
+    return factory.createString(descriptors[cursor.next()]);
+  }
+
+  @Benchmark
+  public DexType createType(Cursor cursor) {
+    return factory.createType(descriptors[cursor.next()]);
+  }
+}
@@ -0,0 +1,117 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.graph;
+
+import com.android.tools.r8.dex.Constants;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Time a fixed amount of type and debug event creation split over a varying number of threads
+// sharing one factory, which shows how the factory scales under contention. Most of the calls
+// look up existing items, like the class readers and the IR building do.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class DexItemFactoryContentionBenchmark {
+
+  private static final int NAME_COUNT = 1 << 14;
+  private static final int CALLS = 1 << 20;
+
+  @Param({"1", "2", "4", "8", "16", "32"})
+  public int threads;
+
+  private final String[] descriptors = new String[NAME_COUNT];
+  private final DexString[] fileNames = new DexString[64];
+  private ExecutorService executor;
+  private DexItemFactory factory;
+
+  @Setup
+  public void setup() {
+    for (int i = 0; i < NAME_COUNT; i++) {
+      descriptors[i] = "Lbench/p" + (i % 64) + "/C" + i + ";";
+    }
+    executor = Executors.newFixedThreadPool(threads);
+  }
+
+  @Setup(Level.Iteration)
+  public void createFactory() {
+    factory = new DexItemFactory();
+    for (int i = 0; i < fileNames.length; i++) {
+      fileNames[i] = factory.createString("File" + i + ".java");
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    executor.shutdown();
+  }
+
+  @Benchmark
+  public int createItems() throws InterruptedException, ExecutionException {
+    List<Future<Integer>> futures = new ArrayList<>(threads);
+    for (int t = 0; t < threads; t++) {
+      int thread = t;
+      futures.add(executor.submit(() -> createItems(thread)));
+    }
+    int result = 0;
+    for (Future<Integer> future : futures) {
+      result += future.get();
+    }
+    return result;
+  }
+
+  private int createItems(int thread) {
+    int result = 0;
+    for (int i = thread; i < CALLS; i += threads) {
+      DexItem item;
+      switch (i & 7) {
+        case 0:
+        case 1:
+        case 2:
+          item = factory.createType(descriptors[i & (NAME_COUNT - 1)]);
+          break;
+        case 3:
+          item = factory.createAdvanceLine((i >> 3) % 16 - 4);
+          break;
+        case 4:
+          item = factory.createAdvancePC((i >> 3) % 32);
+          break;
+        case 5:
+          item = factory.createDefault(
+              Constants.DBG_FIRST_SPECIAL
+                  + (i >> 3) % (Constants.DBG_LAST_SPECIAL - Constants.DBG_FIRST_SPECIAL));
+          break;
+        case 6:
+          item = factory.createEndLocal((i >> 3) % 16);
+          break;
+        default:
+          item = factory.createSetFile(fileNames[(i >> 3) % fileNames.length]);
+          break;
+      }
+      result += System.identityHashCode(item) & 1;
+    }
+    return result;
+  }
+}
@@ -0,0 +1,52 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.conversion;
+
+import com.android.tools.r8.ApiLevelException;
+import com.android.tools.r8.benchmarks.BenchmarkInput;
+import com.android.tools.r8.graph.DexApplication;
+import com.android.tools.r8.graph.DexEncodedMethod;
+import com.android.tools.r8.utils.InternalOptions;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Time building IR from Java bytecode, that is JarSourceCode driven by the IRBuilder.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class IRBuilderBenchmark {
+
+  private InternalOptions options;
+  private List<DexEncodedMethod> methods;
+
+  @Setup
+  public void setup() throws Exception {
+    options = new InternalOptions();
+    DexApplication application =
+        BenchmarkInput.read(
+            BenchmarkInput.generateApp(BenchmarkInput.DEFAULT_CLASS_COUNT), options);
+    methods = BenchmarkInput.methodsWithCode(application);
+  }
+
+  @Benchmark
+  public void buildIR(Blackhole blackhole) throws ApiLevelException {
+    for (DexEncodedMethod method : methods) {
+      blackhole.consume(method.buildIR(options));
+    }
+  }
+}
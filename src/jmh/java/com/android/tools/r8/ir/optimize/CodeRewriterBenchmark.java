@@ -0,0 +1,108 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.optimize;
+
+import com.android.tools.r8.benchmarks.BenchmarkInput;
+import com.android.tools.r8.graph.AppInfo;
+import com.android.tools.r8.graph.DexApplication;
+import com.android.tools.r8.graph.DexEncodedMethod;
+import com.android.tools.r8.ir.analysis.type.TypeAnalysis;
+import com.android.tools.r8.ir.code.IRCode;
+import com.android.tools.r8.utils.InternalOptions;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Time the CodeRewriter passes on all methods of the generated program. The IR of the methods is
+// built before each invocation.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class CodeRewriterBenchmark {
+
+  private InternalOptions options;
+  private AppInfo appInfo;
+  private CodeRewriter codeRewriter;
+  private List<DexEncodedMethod> methods;
+  private IRCode[] codes;
+
+  @Setup
+  public void setup() throws Exception {
+    options = new InternalOptions();
+    DexApplication application =
+        BenchmarkInput.read(
+            BenchmarkInput.generateApp(BenchmarkInput.DEFAULT_CLASS_COUNT), options);
+    appInfo = new AppInfo(application);
+    codeRewriter = new CodeRewriter(appInfo, Collections.emptySet(), options);
+    methods = BenchmarkInput.methodsWithCode(application);
+    codes = new IRCode[methods.size()];
+  }
+
+  @Setup(Level.Invocation)
+  public void buildIR() throws Exception {
+    for (int i = 0; i < codes.length; i++) {
+      codes[i] = methods.get(i).buildIR(options);
+    }
+  }
+
+  @Benchmark
+  public void commonSubexpressionElimination() {
+    for (IRCode code : codes) {
+      codeRewriter.commonSubexpressionElimination(code);
+    }
+  }
+
+  @Benchmark
+  public void simplifyIf() {
+    for (int i = 0; i < codes.length; i++) {
+      codeRewriter.simplifyIf(codes[i], new TypeAnalysis(appInfo, methods.get(i), codes[i]));
+    }
+  }
+
+  @Benchmark
+  public void rewriteSwitch() {
+    for (IRCode code : codes) {
+      codeRewriter.rewriteSwitch(code);
+    }
+  }
+
+  @Benchmark
+  public void shortenLiveRanges() {
+    for (IRCode code : codes) {
+      codeRewriter.shortenLiveRanges(code);
+    }
+  }
+
+  @Benchmark
+  public void allPasses() {
+    for (int i = 0; i < codes.length; i++) {
+      IRCode code = codes[i];
+      TypeAnalysis typeAnalysis = new TypeAnalysis(appInfo, methods.get(i), code);
+      codeRewriter.removeCasts(code, typeAnalysis);
+      codeRewriter.rewriteLongCompareAndRequireNonNull(code, options);
+      codeRewriter.commonSubexpressionElimination(code);
+      codeRewriter.simplifyArrayConstruction(code);
+      codeRewriter.rewriteMoveResult(code);
+      codeRewriter.splitRangeInvokeConstants(code);
+      codeRewriter.rewriteSwitch(code);
+      codeRewriter.simplifyIf(code, typeAnalysis);
+      codeRewriter.useDedicatedConstantForLitInstruction(code);
+      codeRewriter.shortenLiveRanges(code);
+    }
+  }
+}
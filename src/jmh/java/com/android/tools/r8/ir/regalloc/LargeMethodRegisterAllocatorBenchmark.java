@@ -0,0 +1,76 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.regalloc;
+
+import com.android.tools.r8.benchmarks.BenchmarkInput;
+import com.android.tools.r8.graph.AppInfo;
+import com.android.tools.r8.graph.DexApplication;
+import com.android.tools.r8.graph.DexEncodedMethod;
+import com.android.tools.r8.ir.code.IRCode;
+import com.android.tools.r8.ir.optimize.CodeRewriter;
+import com.android.tools.r8.ir.optimize.DeadCodeRemover;
+import com.android.tools.r8.utils.InternalOptions;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Time register allocation of a single method with many values that are live at the same time,
+// so that the allocator has to use high registers and spill. The number of registers used is
+// consumed, so that runs before and after a change of the allocator can be compared.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class LargeMethodRegisterAllocatorBenchmark {
+
+  @Param({"500", "2000"})
+  public int values;
+
+  private InternalOptions options;
+  private CodeRewriter codeRewriter;
+  private DexEncodedMethod method;
+  private IRCode code;
+
+  @Setup
+  public void setup() throws Exception {
+    options = new InternalOptions();
+    DexApplication application =
+        BenchmarkInput.read(BenchmarkInput.generateLargeMethodApp(values), options);
+    codeRewriter = new CodeRewriter(new AppInfo(application), Collections.emptySet(), options);
+    List<DexEncodedMethod> methods = BenchmarkInput.methodsWithCode(application);
+    for (DexEncodedMethod candidate : methods) {
+      if (candidate.method.name.toString().equals("large")) {
+        method = candidate;
+      }
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void buildIR() throws Exception {
+    code = method.buildIR(options);
+    DeadCodeRemover.removeDeadCode(code, codeRewriter, options);
+  }
+
+  @Benchmark
+  public void allocateRegisters(Blackhole blackhole) {
+    LinearScanRegisterAllocator allocator = new LinearScanRegisterAllocator(code, options);
+    allocator.allocateRegisters(false);
+    blackhole.consume(allocator.registersUsed());
+  }
+}
@@ -0,0 +1,77 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.regalloc;
+
+import com.android.tools.r8.benchmarks.BenchmarkInput;
+import com.android.tools.r8.graph.AppInfo;
+import com.android.tools.r8.graph.DexApplication;
+import com.android.tools.r8.graph.DexEncodedMethod;
+import com.android.tools.r8.ir.code.IRCode;
+import com.android.tools.r8.ir.optimize.CodeRewriter;
+import com.android.tools.r8.ir.optimize.DeadCodeRemover;
+import com.android.tools.r8.utils.InternalOptions;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Time register allocation of all methods of the generated program. The IR of the methods is
+// built, and dead code removed from it, before each invocation.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class LinearScanRegisterAllocatorBenchmark {
+
+  @Param({"false", "true"})
+  public boolean debug;
+
+  private InternalOptions options;
+  private CodeRewriter codeRewriter;
+  private List<DexEncodedMethod> methods;
+  private IRCode[] codes;
+
+  @Setup
+  public void setup() throws Exception {
+    options = new InternalOptions();
+    options.debug = debug;
+    DexApplication application =
+        BenchmarkInput.read(
+            BenchmarkInput.generateApp(BenchmarkInput.DEFAULT_CLASS_COUNT), options);
+    codeRewriter = new CodeRewriter(new AppInfo(application), Collections.emptySet(), options);
+    methods = BenchmarkInput.methodsWithCode(application);
+    codes = new IRCode[methods.size()];
+  }
+
+  @Setup(Level.Invocation)
+  public void buildIR() throws Exception {
+    for (int i = 0; i < codes.length; i++) {
+      codes[i] = methods.get(i).buildIR(options);
+      DeadCodeRemover.removeDeadCode(codes[i], codeRewriter, options);
+    }
+  }
+
+  @Benchmark
+  public void allocateRegisters(Blackhole blackhole) {
+    for (IRCode code : codes) {
+      LinearScanRegisterAllocator allocator = new LinearScanRegisterAllocator(code, options);
+      allocator.allocateRegisters(debug);
+      blackhole.consume(allocator.registersUsed());
+    }
+  }
+}
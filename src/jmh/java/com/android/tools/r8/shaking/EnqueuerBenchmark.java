@@ -0,0 +1,75 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.shaking;
+
+import com.android.tools.r8.benchmarks.BenchmarkInput;
+import com.android.tools.r8.graph.AppInfoWithSubtyping;
+import com.android.tools.r8.graph.DexApplication;
+import com.android.tools.r8.origin.Origin;
+import com.android.tools.r8.shaking.Enqueuer.AppInfoWithLiveness;
+import com.android.tools.r8.shaking.RootSetBuilder.RootSet;
+import com.android.tools.r8.utils.InternalOptions;
+import com.android.tools.r8.utils.ThreadUtils;
+import com.android.tools.r8.utils.Timing;
+import com.google.common.collect.ImmutableList;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Time tracing the generated program, kept through its main method, against the Android library.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class EnqueuerBenchmark {
+
+  private InternalOptions options;
+  private AppInfoWithSubtyping appInfo;
+  private RootSet rootSet;
+  private ExecutorService executor;
+
+  @Setup
+  public void setup() throws Exception {
+    options = new InternalOptions();
+    executor = ThreadUtils.getExecutorService(options);
+    DexApplication application =
+        BenchmarkInput.read(
+            BenchmarkInput.generateApp(BenchmarkInput.DEFAULT_CLASS_COUNT), options);
+    appInfo = new AppInfoWithSubtyping(application);
+    ProguardConfigurationParser parser =
+        new ProguardConfigurationParser(options.itemFactory, options.reporter);
+    parser.parse(
+        ImmutableList.of(
+            new ProguardConfigurationSourceStrings(
+                ImmutableList.of(BenchmarkInput.KEEP_MAIN_RULE),
+                Paths.get("."),
+                Origin.unknown())));
+    rootSet =
+        new RootSetBuilder(application, appInfo, parser.getConfig().getRules(), options)
+            .run(executor);
+  }
+
+  @TearDown
+  public void tearDown() {
+    executor.shutdown();
+  }
+
+  @Benchmark
+  public AppInfoWithLiveness traceApplication() {
+    return new Enqueuer(appInfo, options).traceApplication(rootSet, executor, new Timing("Trace"));
+  }
+}
@@ -0,0 +1,69 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.shaking;
+
+import com.android.tools.r8.graph.DexItemFactory;
+import com.android.tools.r8.origin.Origin;
+import com.android.tools.r8.utils.DefaultDiagnosticsHandler;
+import com.android.tools.r8.utils.Reporter;
+import com.google.common.collect.ImmutableList;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Time parsing a generated configuration with the kinds of rules found in app configurations.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class ProguardConfigurationParserBenchmark {
+
+  private static final int RULE_GROUPS = 500;
+
+  private final List<String> lines = new ArrayList<>();
+
+  @Setup
+  public void setup() {
+    for (int i = 0; i < RULE_GROUPS; i++) {
+      lines.add("# Rules for group " + i);
+      lines.add("-keep public class bench.p" + i + ".** {");
+      lines.add("  public <methods>;");
+      lines.add("  int field" + i + ";");
+      lines.add("}");
+      lines.add("-keepclassmembers,allowobfuscation class * extends bench.C" + i + " {");
+      lines.add("  void run*(...);");
+      lines.add("  java.lang.String describe(int);");
+      lines.add("}");
+      lines.add("-keepclasseswithmembernames class bench.q" + i + ".* {");
+      lines.add("  native <methods>;");
+      lines.add("}");
+      lines.add("-assumenosideeffects class bench.C" + i + " { int loop(int); }");
+      lines.add("-dontwarn com.example" + i + ".**");
+    }
+  }
+
+  @Benchmark
+  public ProguardConfiguration parse() {
+    ProguardConfigurationParser parser =
+        new ProguardConfigurationParser(
+            new DexItemFactory(), new Reporter(new DefaultDiagnosticsHandler()));
+    parser.parse(
+        ImmutableList.of(
+            new ProguardConfigurationSourceStrings(lines, Paths.get("."), Origin.unknown())));
+    return parser.getConfig();
+  }
+}
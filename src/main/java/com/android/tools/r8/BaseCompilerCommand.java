@@ -9,6 +9,7 @@ import com.android.tools.r8.utils.AndroidApiLevel;
 import com.android.tools.r8.utils.AndroidApp;
 import com.android.tools.r8.utils.DefaultDiagnosticsHandler;
 import com.android.tools.r8.utils.FileUtils;
+import com.android.tools.r8.utils.InternalOptions;
 import com.android.tools.r8.utils.Reporter;
 import com.android.tools.r8.utils.StringDiagnostic;
 import java.nio.file.Path;
@@ -30,6 +31,8 @@ public abstract class BaseCompilerCommand extends BaseCommand {
   private final int minApiLevel;
   private final Reporter reporter;
   private final boolean enableDesugaring;
+  private final StringConsumer timingReportConsumer;
+  private final StringConsumer timingTraceConsumer;
 
   BaseCompilerCommand(boolean printHelp, boolean printVersion) {
     super(printHelp, printVersion);
@@ -38,6 +41,8 @@ public abstract class BaseCompilerCommand extends BaseCommand {
     minApiLevel = 0;
     reporter = new Reporter(new DefaultDiagnosticsHandler());
     enableDesugaring = true;
+    timingReportConsumer = null;
+    timingTraceConsumer = null;
   }
 
   BaseCompilerCommand(
@@ -46,7 +51,9 @@ public abstract class BaseCompilerCommand extends BaseCommand {
       ProgramConsumer programConsumer,
       int minApiLevel,
       Reporter reporter,
-      boolean enableDesugaring) {
+      boolean enableDesugaring,
+      StringConsumer timingReportConsumer,
+      StringConsumer timingTraceConsumer) {
     super(app);
     assert minApiLevel > 0;
     assert mode != null;
@@ -55,6 +62,8 @@ public abstract class BaseCompilerCommand extends BaseCommand {
     this.minApiLevel = minApiLevel;
     this.reporter = reporter;
     this.enableDesugaring = enableDesugaring;
+    this.timingReportConsumer = timingReportConsumer;
+    this.timingTraceConsumer = timingTraceConsumer;
   }
 
   /**
@@ -84,9 +93,25 @@ public abstract class BaseCompilerCommand extends BaseCommand {
     return enableDesugaring;
   }
 
+  /** Get the consumer of the timings of the compilation phases as JSON, or null if not set. */
+  public StringConsumer getTimingReportConsumer() {
+    return timingReportConsumer;
+  }
+
+  /** Get the consumer of the timings in the Chrome trace event format, or null if not set. */
+  public StringConsumer getTimingTraceConsumer() {
+    return timingTraceConsumer;
+  }
+
   Reporter getReporter() {
     return reporter;
   }
+
+  // Pass the consumers set on the command to the internal options.
+  void setInternalTimingConsumers(InternalOptions internal) {
+    internal.timingReportConsumer = timingReportConsumer;
+    internal.timingTraceConsumer = timingTraceConsumer;
+  }
   /**
    * Base builder for compilation commands.
    *
@@ -105,6 +130,8 @@ public abstract class BaseCompilerCommand extends BaseCommand {
     private CompilationMode mode;
     private int minApiLevel = AndroidApiLevel.getDefault().getLevel();
     private boolean disableDesugaring = false;
+    private StringConsumer timingReportConsumer = null;
+    private StringConsumer timingTraceConsumer = null;
 
     Builder() {}
 
@@ -265,6 +292,47 @@ public abstract class BaseCompilerCommand extends BaseCommand {
       return disableDesugaring;
     }
 
+    /**
+     * Set a consumer for the timings of the compilation phases.
+     *
+     * <p>At the end of the compilation, the consumer receives a JSON object for the whole
+     * compilation. Each object has the title of the phase, the number of times the phase was run
+     * and the threads it ran on, its wall time and CPU time in nanoseconds, the time in
+     * milliseconds spent in garbage collection while it was running, its counters and an array
+     * of the objects for its nested phases. When D8 compiles a file per class file in batches,
+     * the consumer is called once, with each batch as a phase of the compilation.
+     *
+     * @param timingReportConsumer Consumer to receive the timings, or null to not record them.
+     */
+    public B setTimingReportConsumer(StringConsumer timingReportConsumer) {
+      this.timingReportConsumer = timingReportConsumer;
+      return self();
+    }
+
+    /** Get the consumer for the timings of the compilation phases, null if not set. */
+    public StringConsumer getTimingReportConsumer() {
+      return timingReportConsumer;
+    }
+
+    /**
+     * Set a consumer for a trace of the compilation phases.
+     *
+     * <p>At the end of the compilation, the consumer receives the phases run on each thread in the
+     * Chrome trace event format, which can be loaded into chrome://tracing. Like the timing
+     * report, the trace is received once, also when D8 compiles in batches.
+     *
+     * @param timingTraceConsumer Consumer to receive the trace, or null to not record it.
+     */
+    public B setTimingTraceConsumer(StringConsumer timingTraceConsumer) {
+      this.timingTraceConsumer = timingTraceConsumer;
+      return self();
+    }
+
+    /** Get the consumer for the trace of the compilation phases, null if not set. */
+    public StringConsumer getTimingTraceConsumer() {
+      return timingTraceConsumer;
+    }
+
     @Override
     void validate() {
       Reporter reporter = getReporter();
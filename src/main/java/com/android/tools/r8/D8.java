@@ -5,6 +5,7 @@ package com.android.tools.r8;
 
 import static com.android.tools.r8.D8Command.USAGE_MESSAGE;
 
+import com.android.tools.r8.ProgramResource.Kind;
 import com.android.tools.r8.dex.ApplicationReader;
 import com.android.tools.r8.dex.ApplicationWriter;
 import com.android.tools.r8.dex.Marker;
@@ -21,10 +22,20 @@ import com.android.tools.r8.utils.InternalOptions;
 import com.android.tools.r8.utils.ThreadUtils;
 import com.android.tools.r8.utils.Timing;
 import com.android.tools.r8.utils.VersionProperties;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 
@@ -64,13 +75,20 @@ public final class D8 {
     AndroidApp app = command.getInputApp();
     InternalOptions options = command.getInternalOptions();
     ExecutorService executor = ThreadUtils.getExecutorService(options);
+    ExecutorService classConversionExecutor =
+        ThreadUtils.getClassConversionExecutorService(options);
     ExceptionUtils.withD8CompilationHandler(
         command.getReporter(),
         () -> {
           try {
-            run(app, options, executor);
+            if (command.getFilePerClassBatchSize() > 0) {
+              runInBatches(command, executor, classConversionExecutor);
+            } else {
+              run(app, options, executor, classConversionExecutor);
+            }
           } finally {
             executor.shutdown();
+            classConversionExecutor.shutdown();
           }
         });
   }
@@ -88,7 +106,11 @@ public final class D8 {
     ExceptionUtils.withD8CompilationHandler(
         command.getReporter(),
         () -> {
-          run(app, options, executor);
+          if (command.getFilePerClassBatchSize() > 0) {
+            runInBatches(command, executor, executor);
+          } else {
+            run(app, options, executor);
+          }
         });
   }
 
@@ -102,6 +124,10 @@ public final class D8 {
       Version.printToolVersion("D8");
       return;
     }
+    if (command.getFilePerClassBatchSize() > 0) {
+      D8.run(command);
+      return;
+    }
     InternalOptions options = command.getInternalOptions();
     AndroidApp app = command.getInputApp();
     ExceptionUtils.withD8CompilationHandler(options.reporter, () -> runForTesting(app, options));
@@ -123,10 +149,100 @@ public final class D8 {
   static void runForTesting(AndroidApp inputApp, InternalOptions options)
       throws IOException, CompilationException {
     ExecutorService executor = ThreadUtils.getExecutorService(ThreadUtils.NOT_SPECIFIED);
+    ExecutorService classConversionExecutor =
+        ThreadUtils.getClassConversionExecutorService(options);
     try {
-      run(inputApp, options, executor);
+      run(inputApp, options, executor, classConversionExecutor);
     } finally {
       executor.shutdown();
+      classConversionExecutor.shutdown();
+    }
+  }
+
+  /**
+   * Class file program resources of the input that are not part of the current batch, provided as
+   * classpath resources so that the batch is compiled seeing the same class hierarchy.
+   */
+  private static class ProgramClassesOutsideBatch implements ClassFileResourceProvider {
+
+    private final Map<String, ProgramResource> programClasses;
+    private final Set<String> batchDescriptors;
+
+    ProgramClassesOutsideBatch(
+        Map<String, ProgramResource> programClasses, Set<String> batchDescriptors) {
+      this.programClasses = programClasses;
+      this.batchDescriptors = batchDescriptors;
+    }
+
+    @Override
+    public Set<String> getClassDescriptors() {
+      return Sets.difference(programClasses.keySet(), batchDescriptors);
+    }
+
+    @Override
+    public ProgramResource getProgramResource(String descriptor) {
+      return batchDescriptors.contains(descriptor) ? null : programClasses.get(descriptor);
+    }
+  }
+
+  private static Set<String> getClassDescriptors(ProgramResource resource) {
+    Set<String> descriptors = resource.getKind() == Kind.CF ? resource.getClassDescriptors() : null;
+    return descriptors == null ? Collections.emptySet() : descriptors;
+  }
+
+  // Compile the program resources in batches, each with its own item factory, so that nothing but
+  // the resources themselves is kept alive from one batch to the next.
+  private static void runInBatches(
+      D8Command command, ExecutorService executor, ExecutorService classConversionExecutor)
+      throws IOException, CompilationException {
+    AndroidApp inputApp = command.getInputApp();
+    List<ProgramResource> resources = new ArrayList<>(inputApp.computeAllProgramResources());
+    Map<String, ProgramResource> programClasses = new HashMap<>();
+    for (ProgramResource resource : resources) {
+      for (String descriptor : getClassDescriptors(resource)) {
+        programClasses.put(descriptor, resource);
+      }
+    }
+    DexFilePerClassFileConsumer consumer =
+        (DexFilePerClassFileConsumer) command.getProgramConsumer();
+    // The consumer is only told that compilation finished once the last batch is written.
+    DexFilePerClassFileConsumer batchConsumer =
+        new DexFilePerClassFileConsumer.ForwardingConsumer(consumer) {
+          @Override
+          public void finished(DiagnosticsHandler handler) {}
+        };
+    // The batches are timed as phases of a single timing, which is reported once at the end.
+    InternalOptions timingOptions = command.getInternalOptions();
+    Timing timing = new Timing("DX timer", timingOptions.printMemory);
+    try {
+      for (List<ProgramResource> batch :
+          Lists.partition(resources, command.getFilePerClassBatchSize())) {
+        Set<String> batchDescriptors = new HashSet<>();
+        batch.forEach(resource -> batchDescriptors.addAll(getClassDescriptors(resource)));
+        AndroidApp.Builder builder = AndroidApp.builder();
+        builder.addProgramResourceProvider(
+            new ProgramResourceProvider() {
+              @Override
+              public Collection<ProgramResource> getProgramResources() {
+                return batch;
+              }
+            });
+        inputApp.getClasspathResourceProviders().forEach(builder::addClasspathResourceProvider);
+        builder.addClasspathResourceProvider(
+            new ProgramClassesOutsideBatch(programClasses, batchDescriptors));
+        inputApp.getLibraryResourceProviders().forEach(builder::addLibraryResourceProvider);
+        InternalOptions options = command.getInternalOptions();
+        options.programConsumer = batchConsumer;
+        timing.begin("Batch");
+        try {
+          run(builder.build(), options, executor, classConversionExecutor, timing);
+        } finally {
+          timing.end();
+        }
+      }
+      reportTimings(timingOptions, timing);
+    } finally {
+      consumer.finished(command.getReporter());
     }
   }
 
@@ -144,7 +260,28 @@ public final class D8 {
     return marker;
   }
 
-  private static void run(AndroidApp inputApp, InternalOptions options, ExecutorService executor)
+  static void run(AndroidApp inputApp, InternalOptions options, ExecutorService executor)
+      throws IOException, CompilationException {
+    run(inputApp, options, executor, executor);
+  }
+
+  private static void run(
+      AndroidApp inputApp,
+      InternalOptions options,
+      ExecutorService executor,
+      ExecutorService classConversionExecutor)
+      throws IOException, CompilationException {
+    Timing timing = new Timing("DX timer", options.printMemory);
+    run(inputApp, options, executor, classConversionExecutor, timing);
+    reportTimings(options, timing);
+  }
+
+  private static void run(
+      AndroidApp inputApp,
+      InternalOptions options,
+      ExecutorService executor,
+      ExecutorService classConversionExecutor,
+      Timing timing)
       throws IOException, CompilationException {
     try {
       // Disable global optimizations.
@@ -152,10 +289,9 @@ public final class D8 {
       options.inlineAccessors = false;
       options.outline.enabled = false;
 
-      Timing timing = new Timing("DX timer");
       DexApplication app = new ApplicationReader(inputApp, options, timing).read(executor);
       AppInfo appInfo = new AppInfo(app);
-      app = optimize(app, appInfo, options, timing, executor);
+      app = optimize(app, appInfo, options, timing, executor, classConversionExecutor);
 
       // If a method filter is present don't produce output since the application is likely partial.
       if (options.hasMethodsFilter()) {
@@ -174,6 +310,13 @@ public final class D8 {
     }
   }
 
+  private static void reportTimings(InternalOptions options, Timing timing) {
+    if (options.printTimes) {
+      timing.report();
+    }
+    options.reportTimings(timing);
+  }
+
   static DexApplication optimize(
       DexApplication application,
       AppInfo appInfo,
@@ -181,10 +324,21 @@ public final class D8 {
       Timing timing,
       ExecutorService executor)
       throws IOException, ExecutionException, ApiLevelException {
+    return optimize(application, appInfo, options, timing, executor, executor);
+  }
+
+  private static DexApplication optimize(
+      DexApplication application,
+      AppInfo appInfo,
+      InternalOptions options,
+      Timing timing,
+      ExecutorService executor,
+      ExecutorService classConversionExecutor)
+      throws IOException, ExecutionException, ApiLevelException {
     final CfgPrinter printer = options.printCfg ? new CfgPrinter() : null;
 
     IRConverter converter = new IRConverter(appInfo, options, timing, printer);
-    application = converter.convertToDex(application, executor);
+    application = converter.convertToDex(application, classConversionExecutor);
 
     if (options.printCfg) {
       if (options.printCfgFile == null || options.printCfgFile.isEmpty()) {
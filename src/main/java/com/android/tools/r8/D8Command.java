@@ -41,6 +41,9 @@ public class D8Command extends BaseCompilerCommand {
   public static class Builder extends BaseCompilerCommand.Builder<D8Command, Builder> {
 
     private boolean intermediate = false;
+    private Path methodCompilationCacheDirectory = null;
+    private int filePerClassBatchSize = 0;
+    private boolean releaseCodeEagerly = false;
 
     Builder() {
       setMode(CompilationMode.DEBUG);
@@ -100,6 +103,45 @@ public class D8Command extends BaseCompilerCommand {
       return self();
     }
 
+    /**
+     * Set a directory in which the compiled code of methods is cached across compilations.
+     *
+     * <p>The cache is keyed by the content of the input class files, so the same directory can be
+     * reused for repeated compilations of changing inputs. It should only be shared between
+     * compilations using the same library and classpath.
+     */
+    public Builder setMethodCompilationCacheDirectory(Path directory) {
+      this.methodCompilationCacheDirectory = directory;
+      return self();
+    }
+
+    /**
+     * Drop the compiled code of the classes of a dex file as soon as the file is written.
+     *
+     * <p>This lowers the peak memory use when the output has several dex files. The compiled code
+     * is not used once written, unless a class is in more than one dex file, in which case its
+     * code is kept.
+     */
+    public Builder setReleaseCodeEagerly(boolean value) {
+      this.releaseCodeEagerly = value;
+      return self();
+    }
+
+    /**
+     * Compile the program resources in batches of the given size, when producing a dex file per
+     * class file.
+     *
+     * <p>The classes of a batch are read, compiled, written and discarded before the next batch is
+     * read, so the memory used for compiling depends on the batch size rather than the number of
+     * inputs. Class file inputs of known type, such as the entries of archives, outside of a batch
+     * are visible to it as classpath classes. A size of zero, the default, compiles all inputs at
+     * once.
+     */
+    public Builder setFilePerClassBatchSize(int batchSize) {
+      this.filePerClassBatchSize = batchSize;
+      return self();
+    }
+
     @Override
     Builder self() {
       return this;
@@ -119,6 +161,12 @@ public class D8Command extends BaseCompilerCommand {
           reporter.error("Option --main-dex-list cannot be used with --file-per-class");
         }
       }
+      if (filePerClassBatchSize < 0) {
+        reporter.error("Invalid batch size " + filePerClassBatchSize);
+      } else if (filePerClassBatchSize > 0
+          && !(getProgramConsumer() instanceof DexFilePerClassFileConsumer)) {
+        reporter.error("Option --file-per-class-batch requires --file-per-class");
+      }
       super.validate();
     }
 
@@ -137,7 +185,12 @@ public class D8Command extends BaseCompilerCommand {
           getMinApiLevel(),
           getReporter(),
           !getDisableDesugaring(),
-          intermediate);
+          getTimingReportConsumer(),
+          getTimingTraceConsumer(),
+          intermediate,
+          methodCompilationCacheDirectory,
+          filePerClassBatchSize,
+          releaseCodeEagerly);
     }
 
     private static DexIndexedConsumer createIndexedConsumer(Path path) {
@@ -173,12 +226,19 @@ public class D8Command extends BaseCompilerCommand {
       "  --intermediate          # Compile an intermediate result intended for later",
       "                          # merging.",
       "  --file-per-class        # Produce a separate dex file per input class",
+      "  --file-per-class-batch <n>",
+      "                          # With --file-per-class, compile <n> inputs at a time.",
       "  --no-desugaring         # Force disable desugaring.",
+      "  --method-cache <dir>    # Cache compiled methods in <dir> across compilations.",
+      "  --release-code-eagerly  # Drop the code of the classes of a dex file once written.",
       "  --main-dex-list <file>  # List of classes to place in the primary dex file.",
       "  --version               # Print the version of d8.",
       "  --help                  # Print this message."));
 
   private boolean intermediate = false;
+  private Path methodCompilationCacheDirectory = null;
+  private int filePerClassBatchSize = 0;
+  private boolean releaseCodeEagerly = false;
 
   public static Builder builder() {
     return new Builder();
@@ -273,6 +333,18 @@ public class D8Command extends BaseCompilerCommand {
           builder.setIntermediate(true);
         } else if (arg.equals("--no-desugaring")) {
           builder.setDisableDesugaring(true);
+        } else if (arg.equals("--method-cache")) {
+          builder.setMethodCompilationCacheDirectory(Paths.get(args[++i]));
+        } else if (arg.equals("--release-code-eagerly")) {
+          builder.setReleaseCodeEagerly(true);
+        } else if (arg.equals("--file-per-class-batch")) {
+          String batchSize = args[++i];
+          try {
+            builder.setFilePerClassBatchSize(Integer.parseInt(batchSize));
+          } catch (NumberFormatException e) {
+            builder.getReporter().error(new StringDiagnostic(
+                "Invalid argument to --file-per-class-batch: " + batchSize, origin));
+          }
         } else {
           if (arg.startsWith("--")) {
             builder.getReporter().error(new StringDiagnostic("Unknown option: " + arg,
@@ -304,15 +376,29 @@ public class D8Command extends BaseCompilerCommand {
       int minApiLevel,
       Reporter diagnosticsHandler,
       boolean enableDesugaring,
-      boolean intermediate) {
+      StringConsumer timingReportConsumer,
+      StringConsumer timingTraceConsumer,
+      boolean intermediate,
+      Path methodCompilationCacheDirectory,
+      int filePerClassBatchSize,
+      boolean releaseCodeEagerly) {
     super(
         inputApp,
         mode,
         programConsumer,
         minApiLevel,
         diagnosticsHandler,
-        enableDesugaring);
+        enableDesugaring,
+        timingReportConsumer,
+        timingTraceConsumer);
     this.intermediate = intermediate;
+    this.methodCompilationCacheDirectory = methodCompilationCacheDirectory;
+    this.filePerClassBatchSize = filePerClassBatchSize;
+    this.releaseCodeEagerly = releaseCodeEagerly;
+  }
+
+  int getFilePerClassBatchSize() {
+    return filePerClassBatchSize;
   }
 
   private D8Command(boolean printHelp, boolean printVersion) {
@@ -321,7 +407,12 @@ public class D8Command extends BaseCompilerCommand {
 
   @Override
   InternalOptions getInternalOptions() {
-    InternalOptions internal = new InternalOptions(new DexItemFactory(), getReporter());
+    return getInternalOptions(new DexItemFactory());
+  }
+
+  // Internal options for compiling against an item factory kept alive across compilations.
+  InternalOptions getInternalOptions(DexItemFactory factory) {
+    InternalOptions internal = new InternalOptions(factory, getReporter());
     assert !internal.debug;
     internal.debug = getMode() == CompilationMode.DEBUG;
     internal.programConsumer = getProgramConsumer();
@@ -347,6 +438,9 @@ public class D8Command extends BaseCompilerCommand {
     internal.propagateMemberValue = false;
 
     internal.enableDesugaring = getEnableDesugaring();
+    internal.methodCompilationCacheDirectory = methodCompilationCacheDirectory;
+    internal.releaseCodeEagerly = releaseCodeEagerly;
+    setInternalTimingConsumers(internal);
     return internal;
   }
 }
@@ -0,0 +1,341 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8;
+
+import com.android.tools.r8.graph.ClassKind;
+import com.android.tools.r8.graph.DexItemFactory;
+import com.android.tools.r8.graph.DexLibraryClass;
+import com.android.tools.r8.graph.JarApplicationReader;
+import com.android.tools.r8.origin.CommandLineOrigin;
+import com.android.tools.r8.utils.AndroidApp;
+import com.android.tools.r8.utils.ClassProvider;
+import com.android.tools.r8.utils.DefaultDiagnosticsHandler;
+import com.android.tools.r8.utils.ExceptionUtils;
+import com.android.tools.r8.utils.InternalOptions;
+import com.android.tools.r8.utils.LibraryClassCollection;
+import com.android.tools.r8.utils.Reporter;
+import com.android.tools.r8.utils.ThreadUtils;
+import com.google.common.collect.ImmutableList;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Resident D8 compilation server.
+ *
+ * <p>The server keeps compilation sessions alive between requests. A session holds a {@link
+ * DexItemFactory} together with the library classes parsed against it, so a request compiling
+ * against the same library files neither re-interns the library strings and types nor re-parses
+ * the library class files.
+ *
+ * <p>The item factory carries per-compilation state (the sorted indices assigned when writing), so
+ * a session is leased to one compilation at a time. Concurrent requests for the same library each
+ * get their own session. After each compilation, the least recently used idle session is evicted
+ * if the heap in use exceeds the memory ceiling of the server.
+ *
+ * <p>From the command line the server reads requests from stdin, or from local socket connections
+ * when a port is given. Each request is a line holding a D8 command line, and is answered by a
+ * line starting with either {@code OK} or {@code ERROR}.
+ */
+public final class D8Server {
+
+  static final String USAGE_MESSAGE = String.join("\n", ImmutableList.of(
+      "Usage: d8server [options]",
+      " where options are:",
+      "  --port <port>           # Accept requests on the loopback interface at <port>",
+      "                          # instead of reading them from stdin.",
+      "  --max-heap <megabytes>  # Evict idle sessions when more heap than this is in use.",
+      "  --thread-count <n>      # Number of threads used by each compilation.",
+      "  --help                  # Print this message.",
+      " Each request is a line of whitespace separated D8 arguments."));
+
+  private static final long DEFAULT_MEMORY_CEILING = Runtime.getRuntime().maxMemory() / 4 * 3;
+
+  private static class Session implements Closeable {
+    final List<Path> libraryFiles;
+    final DexItemFactory factory = new DexItemFactory();
+    final LibraryClassCollection libraryClasses;
+    final List<ClassFileResourceProvider> providers;
+    long lastUsed;
+
+    Session(List<Path> libraryFiles) throws IOException {
+      this.libraryFiles = libraryFiles;
+      providers = AndroidApp.builder().addLibraryFiles(libraryFiles).build()
+          .getLibraryResourceProviders();
+      // The reader used for loading library classes on demand lives as long as the session.
+      JarApplicationReader reader = new JarApplicationReader(new InternalOptions(factory,
+          new Reporter(new DefaultDiagnosticsHandler())));
+      List<ClassProvider<DexLibraryClass>> classProviders = new ArrayList<>();
+      for (ClassFileResourceProvider provider : providers) {
+        classProviders.add(
+            ClassProvider.forClassFileResources(ClassKind.LIBRARY, provider, reader));
+      }
+      libraryClasses = classProviders.isEmpty()
+          ? null
+          : new LibraryClassCollection(classProviders.size() == 1
+              ? classProviders.get(0)
+              : ClassProvider.combine(ClassKind.LIBRARY, classProviders));
+    }
+
+    @Override
+    public void close() throws IOException {
+      for (ClassFileResourceProvider provider : providers) {
+        if (provider instanceof Closeable) {
+          ((Closeable) provider).close();
+        }
+      }
+    }
+  }
+
+  private final long memoryCeiling;
+  private final Map<List<Path>, Deque<Session>> idleSessions = new HashMap<>();
+  private int sessionsCreated = 0;
+  private int sessionsReused = 0;
+  private int sessionsEvicted = 0;
+
+  /**
+   * Create a compilation server.
+   *
+   * @param memoryCeiling number of bytes of heap in use above which idle sessions are evicted.
+   */
+  public D8Server(long memoryCeiling) {
+    this.memoryCeiling = memoryCeiling;
+  }
+
+  /**
+   * Compile using a warm session for the given library files.
+   *
+   * <p>The library files of the session replace any library resources of the command, so the
+   * command should be built without library resources.
+   *
+   * @param command D8 command without library resources.
+   * @param libraryFiles library files to compile against.
+   * @param executor executor service from which to get threads for multi-threaded processing.
+   */
+  public void run(D8Command command, List<Path> libraryFiles, ExecutorService executor)
+      throws CompilationFailedException {
+    List<Path> key = ImmutableList.copyOf(libraryFiles);
+    ExceptionUtils.withD8CompilationHandler(
+        command.getReporter(),
+        () -> {
+          Session session = lease(key);
+          boolean succeeded = false;
+          try {
+            InternalOptions options = command.getInternalOptions(session.factory);
+            options.sharedLibraryClasses = session.libraryClasses;
+            D8.run(command.getInputApp(), options, executor);
+            succeeded = true;
+          } finally {
+            if (succeeded) {
+              release(session);
+            } else {
+              // A failed compilation may leave the factory in any state, so do not reuse it.
+              session.close();
+            }
+          }
+        });
+  }
+
+  private Session lease(List<Path> libraryFiles) throws IOException {
+    synchronized (this) {
+      Deque<Session> idle = idleSessions.get(libraryFiles);
+      if (idle != null && !idle.isEmpty()) {
+        sessionsReused++;
+        Session session = idle.pop();
+        // Sorted indices are only valid for the compilation that assigned them.
+        session.factory.resetSortedIndices();
+        return session;
+      }
+      sessionsCreated++;
+    }
+    return new Session(libraryFiles);
+  }
+
+  private void release(Session session) throws IOException {
+    synchronized (this) {
+      session.lastUsed = System.nanoTime();
+      idleSessions.computeIfAbsent(session.libraryFiles, key -> new ArrayDeque<>()).push(session);
+    }
+    // Collecting garbage is slow, so it is done without holding the lock, and at most once per
+    // compilation. Each compilation evicts at most one session, which keeps the number of idle
+    // sessions in line with the memory they use over time.
+    if (usedMemory() > memoryCeiling) {
+      // Only the heap still in use after collecting garbage counts against the ceiling.
+      System.gc();
+      if (usedMemory() > memoryCeiling) {
+        synchronized (this) {
+          evictLeastRecentlyUsed();
+        }
+      }
+    }
+  }
+
+  private boolean evictLeastRecentlyUsed() throws IOException {
+    Deque<Session> lruSessions = null;
+    Session lru = null;
+    for (Deque<Session> sessions : idleSessions.values()) {
+      // Sessions are pushed on release, so the last one is the least recently used.
+      Session candidate = sessions.peekLast();
+      if (candidate != null && (lru == null || candidate.lastUsed < lru.lastUsed)) {
+        lru = candidate;
+        lruSessions = sessions;
+      }
+    }
+    if (lru == null) {
+      return false;
+    }
+    lruSessions.removeLast();
+    if (lruSessions.isEmpty()) {
+      idleSessions.remove(lru.libraryFiles);
+    }
+    sessionsEvicted++;
+    lru.close();
+    return true;
+  }
+
+  private static long usedMemory() {
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  /** Evict all idle sessions and release their resources. */
+  public synchronized void close() throws IOException {
+    while (evictLeastRecentlyUsed()) {
+      // Continue until no idle sessions remain.
+    }
+  }
+
+  synchronized int getSessionsCreated() {
+    return sessionsCreated;
+  }
+
+  synchronized int getSessionsReused() {
+    return sessionsReused;
+  }
+
+  synchronized int getSessionsEvicted() {
+    return sessionsEvicted;
+  }
+
+  @Override
+  public synchronized String toString() {
+    int idle = 0;
+    for (Deque<Session> sessions : idleSessions.values()) {
+      idle += sessions.size();
+    }
+    return "sessions created: " + sessionsCreated + ", reused: " + sessionsReused
+        + ", evicted: " + sessionsEvicted + ", idle: " + idle;
+  }
+
+  private String handle(String request, int threads) {
+    List<String> args = new ArrayList<>();
+    List<Path> libraryFiles = new ArrayList<>();
+    String[] parts = request.trim().split("\\s+");
+    for (int i = 0; i < parts.length; i++) {
+      if (parts[i].equals("--lib") && i + 1 < parts.length) {
+        libraryFiles.add(Paths.get(parts[++i]));
+      } else {
+        args.add(parts[i]);
+      }
+    }
+    long start = System.nanoTime();
+    ExecutorService executor = ThreadUtils.getExecutorService(threads);
+    try {
+      D8Command command =
+          D8Command.parse(args.toArray(new String[args.size()]), CommandLineOrigin.INSTANCE)
+              .build();
+      if (command.isPrintHelp() || command.isPrintVersion()) {
+        return "ERROR --help and --version are not supported by the server";
+      }
+      run(command, libraryFiles, executor);
+    } catch (CompilationFailedException e) {
+      return "ERROR compilation failed";
+    } catch (RuntimeException e) {
+      return "ERROR internal error: " + e;
+    } finally {
+      executor.shutdown();
+    }
+    return "OK " + (System.nanoTime() - start) / 1000000 + " ms";
+  }
+
+  private void serve(InputStream in, OutputStream out, int threads) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    PrintWriter writer =
+        new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), true);
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (!line.trim().isEmpty()) {
+        writer.println(handle(line, threads));
+      }
+    }
+  }
+
+  private static void run(String[] args) throws IOException {
+    int port = -1;
+    long memoryCeiling = DEFAULT_MEMORY_CEILING;
+    int threads = ThreadUtils.NOT_SPECIFIED;
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+      if (arg.equals("--port")) {
+        port = Integer.parseInt(args[++i]);
+      } else if (arg.equals("--max-heap")) {
+        memoryCeiling = Long.parseLong(args[++i]) * 1024 * 1024;
+      } else if (arg.equals("--thread-count")) {
+        threads = Integer.parseInt(args[++i]);
+      } else if (arg.equals("--help")) {
+        System.out.println(USAGE_MESSAGE);
+        return;
+      } else {
+        System.err.println("Unknown option: " + arg);
+        System.err.println(USAGE_MESSAGE);
+        System.exit(ExceptionUtils.STATUS_ERROR);
+      }
+    }
+    D8Server server = new D8Server(memoryCeiling);
+    if (port < 0) {
+      server.serve(System.in, System.out, threads);
+      server.close();
+      return;
+    }
+    int compilationThreads = threads;
+    ExecutorService connections = Executors.newCachedThreadPool();
+    try (ServerSocket socket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress())) {
+      while (true) {
+        Socket connection = socket.accept();
+        connections.submit(() -> {
+          try (Socket s = connection) {
+            server.serve(s.getInputStream(), s.getOutputStream(), compilationThreads);
+          }
+          return null;
+        });
+      }
+    } finally {
+      connections.shutdown();
+      server.close();
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    run(args);
+  }
+}
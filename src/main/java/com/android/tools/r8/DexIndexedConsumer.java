@@ -3,6 +3,7 @@
 // BSD-style license that can be found in the LICENSE file.
 package com.android.tools.r8;
 
+import com.android.tools.r8.errors.Unreachable;
 import com.android.tools.r8.origin.Origin;
 import com.android.tools.r8.origin.PathOrigin;
 import com.android.tools.r8.utils.FileUtils;
@@ -11,6 +12,7 @@ import com.android.tools.r8.utils.ZipUtils;
 import com.google.common.io.ByteStreams;
 import com.google.common.io.Closer;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
@@ -48,6 +50,29 @@ public interface DexIndexedConsumer extends ProgramConsumer {
    */
   void accept(int fileIndex, byte[] data, Set<String> descriptors, DiagnosticsHandler handler);
 
+  /**
+   * Callback to receive DEX data for a compilation output as a buffer.
+   *
+   * <p>This is called instead of {@link #accept(int, byte[], Set, DiagnosticsHandler)} by the
+   * compiler. The buffer holds exactly the DEX encoded data between its position and limit, and is
+   * only valid during the call, as the compiler reuses it for subsequent files. Consumers that
+   * write the data right away can override this method to avoid a copy of the data.
+   *
+   * <p>The default implementation copies the data and calls {@link #accept(int, byte[], Set,
+   * DiagnosticsHandler)}. The archive and directory consumers write the buffer directly, unless a
+   * subclass overrides {@link #accept(int, byte[], Set, DiagnosticsHandler)}, in which case the
+   * data is passed to that override.
+   *
+   * @param fileIndex Index of the DEX file for multi-dexing. Files are zero-indexed.
+   * @param data DEX encoded data, only valid during the call.
+   * @param descriptors Class descriptors for all classes defined in the DEX data.
+   * @param handler Diagnostics handler for reporting.
+   */
+  default void acceptBuffer(
+      int fileIndex, ByteBuffer data, Set<String> descriptors, DiagnosticsHandler handler) {
+    accept(fileIndex, ForwardingConsumer.toByteArray(data), descriptors, handler);
+  }
+
   /** Empty consumer to request the production of the resource but ignore its value. */
   static DexIndexedConsumer emptyConsumer() {
     return ForwardingConsumer.EMPTY_CONSUMER;
@@ -72,6 +97,17 @@ public interface DexIndexedConsumer extends ProgramConsumer {
       }
     }
 
+    /**
+     * Passes the buffer on to the consumer delegated to, for subclasses that override {@link
+     * #acceptBuffer} to consume the data without copying it.
+     */
+    protected void forwardBuffer(
+        int fileIndex, ByteBuffer data, Set<String> descriptors, DiagnosticsHandler handler) {
+      if (consumer != null) {
+        consumer.acceptBuffer(fileIndex, data.duplicate(), descriptors, handler);
+      }
+    }
+
     @Override
     public void finished(DiagnosticsHandler handler) {
       if (consumer != null) {
@@ -79,6 +115,25 @@ public interface DexIndexedConsumer extends ProgramConsumer {
       }
     }
 
+    static byte[] toByteArray(ByteBuffer data) {
+      byte[] bytes = new byte[data.remaining()];
+      data.get(bytes);
+      return bytes;
+    }
+
+    // Whether the class of the consumer overrides accept declared by the given class, in which
+    // case buffers must be passed to that override rather than consumed directly.
+    static boolean isAcceptOverridden(DexIndexedConsumer consumer, Class<?> clazz) {
+      try {
+        return consumer
+                .getClass()
+                .getMethod("accept", int.class, byte[].class, Set.class, DiagnosticsHandler.class)
+                .getDeclaringClass()
+            != clazz;
+      } catch (NoSuchMethodException e) {
+        throw new Unreachable(e);
+      }
+    }
   }
 
   /** Archive consumer to write program resources to a zip archive. */
@@ -92,6 +147,8 @@ public interface DexIndexedConsumer extends ProgramConsumer {
 
     private final Path archive;
     private final Origin origin;
+    private final boolean acceptIsOverridden =
+        ForwardingConsumer.isAcceptOverridden(this, ArchiveConsumer.class);
     private ZipOutputStream stream = null;
     private boolean closed = false;
 
@@ -113,6 +170,17 @@ public interface DexIndexedConsumer extends ProgramConsumer {
     public void accept(
         int fileIndex, byte[] data, Set<String> descriptors, DiagnosticsHandler handler) {
       super.accept(fileIndex, data, descriptors, handler);
+      synchronizedWrite(getDexFileName(fileIndex), ByteBuffer.wrap(data), handler);
+    }
+
+    @Override
+    public void acceptBuffer(
+        int fileIndex, ByteBuffer data, Set<String> descriptors, DiagnosticsHandler handler) {
+      if (acceptIsOverridden) {
+        accept(fileIndex, toByteArray(data), descriptors, handler);
+        return;
+      }
+      forwardBuffer(fileIndex, data, descriptors, handler);
       synchronizedWrite(getDexFileName(fileIndex), data, handler);
     }
 
@@ -148,7 +216,7 @@ public interface DexIndexedConsumer extends ProgramConsumer {
     }
 
     private synchronized void synchronizedWrite(
-        String entry, byte[] content, DiagnosticsHandler handler) {
+        String entry, ByteBuffer content, DiagnosticsHandler handler) {
       try {
         ZipUtils.writeToZipStream(getStream(handler), entry, content);
       } catch (IOException e) {
@@ -183,6 +251,8 @@ public interface DexIndexedConsumer extends ProgramConsumer {
   class DirectoryConsumer extends ForwardingConsumer implements InternalProgramOutputPathConsumer {
 
     private final Path directory;
+    private final boolean acceptIsOverridden =
+        ForwardingConsumer.isAcceptOverridden(this, DirectoryConsumer.class);
     private boolean preparedDirectory = false;
 
     public DirectoryConsumer(Path directory) {
@@ -198,6 +268,21 @@ public interface DexIndexedConsumer extends ProgramConsumer {
     public void accept(
         int fileIndex, byte[] data, Set<String> descriptors, DiagnosticsHandler handler) {
       super.accept(fileIndex, data, descriptors, handler);
+      write(fileIndex, ByteBuffer.wrap(data), handler);
+    }
+
+    @Override
+    public void acceptBuffer(
+        int fileIndex, ByteBuffer data, Set<String> descriptors, DiagnosticsHandler handler) {
+      if (acceptIsOverridden) {
+        accept(fileIndex, toByteArray(data), descriptors, handler);
+        return;
+      }
+      forwardBuffer(fileIndex, data, descriptors, handler);
+      write(fileIndex, data, handler);
+    }
+
+    private void write(int fileIndex, ByteBuffer data, DiagnosticsHandler handler) {
       Path target = getTargetDexFile(directory, fileIndex);
       try {
         prepareDirectory();
@@ -237,7 +322,9 @@ public interface DexIndexedConsumer extends ProgramConsumer {
         for (int i = 0; i < resources.size(); i++) {
           ProgramResource resource = resources.get(i);
           Path target = getTargetDexFile(directory, i);
-          writeFile(ByteStreams.toByteArray(closer.register(resource.getByteStream())), target);
+          writeFile(
+              ByteBuffer.wrap(ByteStreams.toByteArray(closer.register(resource.getByteStream()))),
+              target);
         }
       }
     }
@@ -246,9 +333,9 @@ public interface DexIndexedConsumer extends ProgramConsumer {
       return directory.resolve(ArchiveConsumer.getDefaultDexFileName(fileIndex));
     }
 
-    private static void writeFile(byte[] contents, Path target) throws IOException {
+    private static void writeFile(ByteBuffer contents, Path target) throws IOException {
       Files.createDirectories(target.getParent());
-      FileUtils.writeToFile(target, null, contents);
+      FileUtils.writeToFile(target, contents);
     }
 
     @Override
@@ -102,11 +102,12 @@ import java.util.concurrent.ExecutorService;
  */
 public class R8 {
 
-  private final Timing timing = new Timing("R8");
+  private final Timing timing;
   private final InternalOptions options;
 
   private R8(InternalOptions options) {
     this.options = options;
+    timing = new Timing("R8", options.printMemory);
     options.itemFactory.resetSortedIndices();
   }
 
@@ -279,7 +280,8 @@ public class R8 {
         ProtoLiteExtension protoLiteExtension =
             options.forceProguardCompatibility ? null : new ProtoLiteExtension(appInfo);
         appInfo = new Enqueuer(appInfo, options, compatibility, protoLiteExtension)
-            .traceApplication(rootSet, timing);
+            .traceApplication(rootSet, executorService, timing);
+        appInfo.reportLookupCacheCounters(timing);
         if (options.proguardConfiguration.isPrintSeeds()) {
           ByteArrayOutputStream bytes = new ByteArrayOutputStream();
           PrintStream out = new PrintStream(bytes);
@@ -318,6 +320,8 @@ public class R8 {
 
       if (options.proguardConfiguration.isAccessModificationAllowed()) {
         ClassAndMemberPublicizer.run(application, appInfo.dexItemFactory);
+        // Resolution depends on the access flags of the methods.
+        appInfo.invalidateLookupCaches();
         // We can now remove visibility bridges. Note that we do not need to update the
         // invoke-targets here, as the existing invokes will simply dispatch to the now
         // visible super-method. MemberRebinding, if run, will then dispatch it correctly.
@@ -404,7 +408,7 @@ public class R8 {
         timing.begin("Post optimization code stripping");
         try {
           Enqueuer enqueuer = new Enqueuer(appInfo, options);
-          appInfo = enqueuer.traceApplication(rootSet, timing);
+          appInfo = enqueuer.traceApplication(rootSet, executorService, timing);
           if (options.useTreeShaking) {
             TreePruner pruner = new TreePruner(application, appInfo.withLiveness(), options);
             application = pruner.run();
@@ -468,6 +472,7 @@ public class R8 {
           proguardMapSupplier);
 
       options.printWarnings();
+      options.reportTimings(timing);
     } catch (ExecutionException e) {
       unwrapExecutionException(e);
       throw new AssertionError(e); // unwrapping method should have thrown
@@ -328,7 +328,9 @@ public class R8Command extends BaseCompilerCommand {
               configuration.isObfuscating(),
               forceProguardCompatibility,
               proguardMapConsumer,
-              proguardCompatibilityRulesOutput);
+              proguardCompatibilityRulesOutput,
+              getTimingReportConsumer(),
+              getTimingTraceConsumer());
 
       return command;
     }
@@ -586,8 +588,18 @@ public class R8Command extends BaseCompilerCommand {
       boolean enableMinification,
       boolean forceProguardCompatibility,
       StringConsumer proguardMapConsumer,
-      Path proguardCompatibilityRulesOutput) {
-    super(inputApp, mode, programConsumer, minApiLevel, reporter, enableDesugaring);
+      Path proguardCompatibilityRulesOutput,
+      StringConsumer timingReportConsumer,
+      StringConsumer timingTraceConsumer) {
+    super(
+        inputApp,
+        mode,
+        programConsumer,
+        minApiLevel,
+        reporter,
+        enableDesugaring,
+        timingReportConsumer,
+        timingTraceConsumer);
     assert proguardConfiguration != null;
     assert mainDexKeepRules != null;
     this.mainDexKeepRules = mainDexKeepRules;
@@ -655,6 +667,7 @@ public class R8Command extends BaseCompilerCommand {
     internal.mainDexKeepRules = mainDexKeepRules;
     internal.minimalMainDex = internal.debug;
     internal.mainDexListConsumer = mainDexListConsumer;
+    setInternalTimingConsumers(internal);
     internal.lineNumberOptimization =
         internal.debug || (forceProguardCompatibility && !proguardConfiguration.isOptimizing())
             ? LineNumberOptimization.OFF : LineNumberOptimization.ON;
@@ -12,6 +12,7 @@ import com.android.tools.r8.CompilationMode;
 import com.android.tools.r8.D8;
 import com.android.tools.r8.D8Command;
 import com.android.tools.r8.D8Command.Builder;
+import com.android.tools.r8.D8Server;
 import com.android.tools.r8.DexFilePerClassFileConsumer;
 import com.android.tools.r8.DexFilePerClassFileConsumer.ForwardingConsumer;
 import com.android.tools.r8.DexIndexedConsumer;
@@ -197,6 +198,69 @@ public class FrameworkIncrementalDexingBenchmark {
     printRuntimeNanoseconds(title("DexGroupsOf" + count, desugar), System.nanoTime() - start);
   }
 
+  private static void compileGroupsOfWithServer(
+      int count,
+      D8Server server,
+      List<String> descriptors,
+      InMemoryClassPathProvider provider,
+      boolean desugar,
+      Map<String, ProgramResource> outputs,
+      ExecutorService executor)
+      throws IOException, CompilationFailedException {
+    ProgramConsumer consumer =
+        new ForwardingConsumer(null) {
+          @Override
+          public synchronized void accept(
+              String primaryClassDescriptor,
+              byte[] data,
+              Set<String> descriptors,
+              DiagnosticsHandler handler) {
+            ProgramResource resource =
+                ProgramResource.fromBytes(Origin.unknown(), Kind.DEX, data, descriptors);
+            for (String descriptor : descriptors) {
+              if (provider.resources.containsKey(descriptor)) {
+                outputs.put(descriptor, resource);
+              }
+            }
+          }
+        };
+
+    descriptors.sort(String::compareTo);
+    int increment = descriptors.size() / ITERATIONS;
+    long[] latencies = new long[ITERATIONS];
+    long start = System.nanoTime();
+    for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+      int index = iteration * increment;
+      // The library is provided by the server session and not by the command.
+      Builder builder =
+          D8Command.builder()
+              .setMinApiLevel(API)
+              .setIntermediate(true)
+              .setMode(CompilationMode.DEBUG)
+              .addClasspathResourceProvider(provider)
+              .setProgramConsumer(consumer)
+              .setDisableDesugaring(!desugar);
+      for (int j = 0; j < count; j++) {
+        builder.addClassProgramData(provider.resources.get(descriptors.get(index + j)),
+            Origin.unknown());
+      }
+      long requestStart = System.nanoTime();
+      server.run(builder.build(), Collections.singletonList(LIB), executor);
+      latencies[iteration] = System.nanoTime() - requestStart;
+    }
+    printRuntimeNanoseconds(
+        title("DexGroupsOf" + count + "Server", desugar), System.nanoTime() - start);
+    // The first request pays for creating the session, so report it apart from the warm ones.
+    Arrays.sort(latencies, 1, ITERATIONS);
+    printRuntimeNanoseconds(
+        title("DexGroupsOf" + count + "ServerFirstRequest", desugar), latencies[0]);
+    printRuntimeNanoseconds(
+        title("DexGroupsOf" + count + "ServerMedianRequest", desugar),
+        latencies[1 + (ITERATIONS - 1) / 2]);
+    printRuntimeNanoseconds(
+        title("DexGroupsOf" + count + "ServerMaxRequest", desugar), latencies[ITERATIONS - 1]);
+  }
+
   private static void merge(
       boolean desugar, Map<String, ProgramResource> outputs, ExecutorService executor)
       throws IOException, CompilationException, CompilationFailedException, ResourceException {
@@ -234,6 +298,16 @@ public class FrameworkIncrementalDexingBenchmark {
       compileGroupsOf(1, descriptors, provider, desugar, outputs, executor);
       compileGroupsOf(10, descriptors, provider, desugar, outputs, executor);
       compileGroupsOf(100, descriptors, provider, desugar, outputs, executor);
+      // Each server starts cold, so the first request measures the cost of creating a session.
+      for (int count : new int[] {1, 10, 100}) {
+        D8Server server = new D8Server(Runtime.getRuntime().maxMemory() / 2);
+        try {
+          compileGroupsOfWithServer(count, server, descriptors, provider, desugar, outputs,
+              executor);
+        } finally {
+          server.close();
+        }
+      }
       merge(desugar, outputs, executor);
       // TODO: We should run dex2oat to verify the compilation.
     } finally {
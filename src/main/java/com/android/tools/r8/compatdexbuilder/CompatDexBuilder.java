@@ -3,17 +3,18 @@
 // BSD-style license that can be found in the LICENSE file.
 package com.android.tools.r8.compatdexbuilder;
 
-import com.android.tools.r8.CompatDxHelper;
-import com.android.tools.r8.CompilationException;
 import com.android.tools.r8.CompilationFailedException;
 import com.android.tools.r8.CompilationMode;
 import com.android.tools.r8.D8;
 import com.android.tools.r8.D8Command;
+import com.android.tools.r8.DexFilePerClassFileConsumer;
 import com.android.tools.r8.DexIndexedConsumer;
 import com.android.tools.r8.DiagnosticsHandler;
 import com.android.tools.r8.origin.ArchiveEntryOrigin;
+import com.android.tools.r8.origin.Origin;
 import com.android.tools.r8.origin.PathOrigin;
 import com.android.tools.r8.utils.AndroidApiLevel;
+import com.android.tools.r8.utils.IOExceptionDiagnostic;
 import com.android.tools.r8.utils.ThreadUtils;
 import com.google.common.io.ByteStreams;
 import java.io.IOException;
@@ -22,7 +23,10 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -31,6 +35,7 @@ import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
+import org.objectweb.asm.ClassReader;
 
 public class CompatDexBuilder {
 
@@ -55,6 +60,88 @@ public class CompatDexBuilder {
     }
   }
 
+  private static class ClassEntry {
+
+    final String name;
+    final long time;
+    final Origin origin;
+    final byte[] bytes;
+    // Descriptor of the class defined by the entry, or null if it cannot be read.
+    final String descriptor;
+
+    ClassEntry(ZipFile zipFile, ZipEntry entry, byte[] bytes) {
+      this.name = entry.getName();
+      this.time = entry.getTime();
+      this.origin = new ArchiveEntryOrigin(name, new PathOrigin(Paths.get(zipFile.getName())));
+      this.bytes = bytes;
+      this.descriptor = readDescriptor(bytes);
+    }
+
+    private static String readDescriptor(byte[] bytes) {
+      try {
+        return "L" + new ClassReader(bytes).getClassName() + ";";
+      } catch (RuntimeException e) {
+        // Leave reporting the malformed class to the compilation of the entry on its own.
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Consumer writing the dex files of the class entries to the output zip in the order of the
+   * entries. A dex file is written as soon as the files of all preceding entries are written, so
+   * only the files completed out of order are held in memory.
+   */
+  private static class OrderedOutput extends DexFilePerClassFileConsumer.ForwardingConsumer {
+
+    private final List<ClassEntry> entries;
+    private final Map<String, Integer> indexOfDescriptor;
+    private final Origin origin;
+    private final ZipOutputStream out;
+    private final byte[][] pending;
+    private int next = 0;
+
+    OrderedOutput(
+        List<ClassEntry> entries,
+        Map<String, Integer> indexOfDescriptor,
+        String output,
+        ZipOutputStream out) {
+      super(null);
+      this.entries = entries;
+      this.indexOfDescriptor = indexOfDescriptor;
+      this.origin = new PathOrigin(Paths.get(output));
+      this.out = out;
+      this.pending = new byte[entries.size()][];
+    }
+
+    @Override
+    public void accept(
+        String primaryClassDescriptor,
+        byte[] data,
+        Set<String> descriptors,
+        DiagnosticsHandler handler) {
+      try {
+        add(indexOfDescriptor.get(primaryClassDescriptor), data);
+      } catch (IOException e) {
+        handler.error(new IOExceptionDiagnostic(e, origin));
+      }
+    }
+
+    synchronized boolean hasResult(int index) {
+      return index < next || pending[index] != null;
+    }
+
+    synchronized void add(int index, byte[] data) throws IOException {
+      assert !hasResult(index);
+      pending[index] = data;
+      while (next < pending.length && pending[next] != null) {
+        ClassEntry entry = entries.get(next);
+        addEntry(entry.name + ".dex", pending[next], entry.time, out);
+        pending[next++] = null;
+      }
+    }
+  }
+
   private String input = null;
   private String output = null;
   private int numberOfThreads = 8;
@@ -122,54 +209,92 @@ public class CompatDexBuilder {
     ExecutorService executor = ThreadUtils.getExecutorService(numberOfThreads);
     try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(Paths.get(output)))) {
 
-      List<ZipEntry> toDex = new ArrayList<>();
+      List<ClassEntry> toDex = new ArrayList<>();
 
       try (ZipFile zipFile = new ZipFile(input)) {
         final Enumeration<? extends ZipEntry> entries = zipFile.entries();
         while (entries.hasMoreElements()) {
           ZipEntry entry = entries.nextElement();
-          if (!entry.getName().endsWith(".class")) {
-            try (InputStream stream = zipFile.getInputStream(entry)) {
+          try (InputStream stream = zipFile.getInputStream(entry)) {
+            if (!entry.getName().endsWith(".class")) {
               addEntry(entry.getName(), stream, entry.getTime(), out);
+            } else {
+              toDex.add(new ClassEntry(zipFile, entry, ByteStreams.toByteArray(stream)));
             }
-          } else {
-            toDex.add(entry);
           }
         }
+      }
 
-        List<Future<DexConsumer>> futures = new ArrayList<>(toDex.size());
-        for (int i = 0; i < toDex.size(); i++) {
-          ZipEntry classEntry = toDex.get(i);
-          futures.add(executor.submit(() -> dexEntry(zipFile, classEntry, executor)));
+      // All classes with a single definition in the input are dexed by one compilation.
+      Map<String, Integer> indexOfDescriptor = new HashMap<>();
+      Set<String> duplicates = new HashSet<>();
+      for (int i = 0; i < toDex.size(); i++) {
+        String descriptor = toDex.get(i).descriptor;
+        if (descriptor != null && indexOfDescriptor.putIfAbsent(descriptor, i) != null) {
+          duplicates.add(descriptor);
         }
-        for (int i = 0; i < futures.size(); i++) {
-          ZipEntry entry = toDex.get(i);
-          DexConsumer consumer = futures.get(i).get();
-          addEntry(entry.getName() + ".dex", consumer.getBytes(), entry.getTime(), out);
+      }
+      indexOfDescriptor.keySet().removeAll(duplicates);
+      OrderedOutput orderedOutput = new OrderedOutput(toDex, indexOfDescriptor, output, out);
+      if (!indexOfDescriptor.isEmpty()) {
+        dexEntries(toDex, indexOfDescriptor, orderedOutput, executor);
+      }
+
+      // The remaining entries, such as further definitions of a class, are dexed one by one.
+      List<Future<DexConsumer>> futures = new ArrayList<>(toDex.size());
+      for (int i = 0; i < toDex.size(); i++) {
+        ClassEntry classEntry = toDex.get(i);
+        futures.add(
+            orderedOutput.hasResult(i)
+                ? null
+                : executor.submit(() -> dexEntry(classEntry, executor)));
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        if (futures.get(i) != null) {
+          orderedOutput.add(i, futures.get(i).get().getBytes());
         }
       }
+    } catch (CompilationFailedException e) {
+      throw new ExecutionException(e);
     } finally {
       executor.shutdown();
     }
   }
 
-  private DexConsumer dexEntry(ZipFile zipFile, ZipEntry classEntry, ExecutorService executor)
-      throws IOException, CompilationException, CompilationFailedException {
-    DexConsumer consumer = new DexConsumer();
-    D8Command.Builder builder = D8Command.builder();
-    CompatDxHelper.ignoreDexInArchive(builder);
+  private void setOptions(D8Command.Builder builder) {
     builder
-        .setProgramConsumer(consumer)
         .setMode(noLocals ? CompilationMode.RELEASE : CompilationMode.DEBUG)
         .setMinApiLevel(AndroidApiLevel.H_MR2.getLevel())
         .setDisableDesugaring(true);
-    try (InputStream stream = zipFile.getInputStream(classEntry)) {
-      builder.addClassProgramData(
-          ByteStreams.toByteArray(stream),
-          new ArchiveEntryOrigin(
-              classEntry.getName(), new PathOrigin(Paths.get(zipFile.getName()))));
+  }
+
+  private void dexEntries(
+      List<ClassEntry> entries,
+      Map<String, Integer> indexOfDescriptor,
+      OrderedOutput output,
+      ExecutorService executor)
+      throws CompilationFailedException {
+    D8Command.Builder builder = D8Command.builder();
+    builder.setProgramConsumer(output);
+    setOptions(builder);
+    for (int i = 0; i < entries.size(); i++) {
+      ClassEntry entry = entries.get(i);
+      Integer index = entry.descriptor == null ? null : indexOfDescriptor.get(entry.descriptor);
+      if (index != null && index == i) {
+        builder.addClassProgramData(entry.bytes, entry.origin);
+      }
     }
     D8.run(builder.build(), executor);
+  }
+
+  private DexConsumer dexEntry(ClassEntry classEntry, ExecutorService executor)
+      throws CompilationFailedException {
+    DexConsumer consumer = new DexConsumer();
+    D8Command.Builder builder = D8Command.builder();
+    builder.setProgramConsumer(consumer);
+    setOptions(builder);
+    builder.addClassProgramData(classEntry.bytes, classEntry.origin);
+    D8.run(builder.build(), executor);
     return consumer;
   }
 
@@ -26,6 +26,7 @@ import com.android.tools.r8.graph.LazyLoadedDexApplication;
 import com.android.tools.r8.naming.ClassNameMapper;
 import com.android.tools.r8.utils.AndroidApiLevel;
 import com.android.tools.r8.utils.AndroidApp;
+import com.android.tools.r8.utils.ByteBufferResource;
 import com.android.tools.r8.utils.ClassProvider;
 import com.android.tools.r8.utils.ClasspathClassCollection;
 import com.android.tools.r8.utils.DescriptorUtils;
@@ -227,6 +228,11 @@ public class ApplicationReader {
         futures.add(
             executorService.submit(
                 () -> {
+                  if (input instanceof ByteBufferResource) {
+                    reader.read(
+                        input.getOrigin(), classKind, ((ByteBufferResource) input).getBytes());
+                    return null;
+                  }
                   try (InputStream is = input.getByteStream()) {
                     reader.read(input.getOrigin(), classKind, is);
                   }
@@ -290,6 +296,13 @@ public class ApplicationReader {
         builder.setClasspathClassCollection(new ClasspathClassCollection(classpathClassProvider));
       }
 
+      // Reuse the library class collection kept alive by a compilation server.
+      if (options.sharedLibraryClasses != null) {
+        assert inputApp.getLibraryResourceProviders().isEmpty();
+        builder.setLibraryClassCollection(options.sharedLibraryClasses);
+        return;
+      }
+
       // Create library class collection if needed.
       ClassProvider<DexLibraryClass> libraryClassProvider = buildClassProvider(LIBRARY,
           libraryClasses, inputApp.getLibraryResourceProviders(), application);
@@ -13,6 +13,7 @@ import com.android.tools.r8.graph.DexApplication;
 import com.android.tools.r8.graph.DexCode;
 import com.android.tools.r8.graph.DexDebugInfo;
 import com.android.tools.r8.graph.DexEncodedArray;
+import com.android.tools.r8.graph.DexEncodedMethod;
 import com.android.tools.r8.graph.DexProgramClass;
 import com.android.tools.r8.graph.DexString;
 import com.android.tools.r8.graph.DexType;
@@ -28,12 +29,15 @@ import com.android.tools.r8.utils.ExceptionUtils;
 import com.android.tools.r8.utils.InternalOptions;
 import com.android.tools.r8.utils.ThreadUtils;
 import com.google.common.collect.ObjectArrays;
+import com.google.common.collect.Sets;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -47,6 +51,7 @@ public class ApplicationWriter {
   public final InternalOptions options;
   public DexString markerString;
   public final ProguardMapSupplier proguardMapSupplier;
+  private final DexOutputBufferPool bufferPool = new DexOutputBufferPool();
 
   private static class SortAnnotations extends MixedSectionCollection {
 
@@ -126,7 +131,7 @@ public class ApplicationWriter {
     this.proguardMapSupplier = proguardMapSupplier;
   }
 
-  private Iterable<VirtualFile> distribute()
+  private Collection<VirtualFile> distribute()
       throws ExecutionException, IOException, DexOverflowException {
     // Distribute classes into dex files.
     VirtualFile.Distributor distributor;
@@ -156,20 +161,34 @@ public class ApplicationWriter {
       SortAnnotations sortAnnotations = new SortAnnotations();
       application.classes().forEach((clazz) -> clazz.addDependencies(sortAnnotations));
 
-      // Collect the indexed items sets for all files and perform JumboString processing.
-      // This is required to ensure that shared code blocks have a single and consistent code
-      // item that is valid for all dex files.
+      // Files that share no classes with other files can be written as soon as their own mapping
+      // is computed. This is the case for all files when generating a dex file per class file,
+      // except for those holding a synthesized class shared between several input classes.
+      Collection<VirtualFile> files = distribute();
+      Set<DexProgramClass> sharedClasses =
+          options.isGeneratingDexFilePerClassFile() ? collectSharedClasses(files) : null;
+      List<Future<Boolean>> dexDataFutures = new ArrayList<>();
+
+      // Collect the indexed items sets for all remaining files and perform JumboString
+      // processing. This is required to ensure that shared code blocks have a single and
+      // consistent code item that is valid for all dex files.
       // Use a linked hash map as the order matters when addDexProgramData is called below.
       Map<VirtualFile, Future<ObjectToOffsetMapping>> offsetMappingFutures = new LinkedHashMap<>();
-      for (VirtualFile newFile : distribute()) {
+      for (VirtualFile newFile : files) {
         assert !newFile.isEmpty();
-        if (!newFile.isEmpty()) {
-          offsetMappingFutures
-              .put(newFile, executorService.submit(() -> {
-                ObjectToOffsetMapping mapping = newFile.computeMapping(application);
-                rewriteCodeWithJumboStrings(mapping, newFile.classes(), application);
-                return mapping;
-              }));
+        if (newFile.isEmpty()) {
+          continue;
+        }
+        if (sharedClasses != null && !containsAny(newFile, sharedClasses)) {
+          dexDataFutures.add(
+              executorService.submit(
+                  () -> {
+                    writeVirtualFile(newFile, computeMapping(newFile), executorService);
+                    releaseCode(newFile, sharedClasses);
+                    return true;
+                  }));
+        } else {
+          offsetMappingFutures.put(newFile, executorService.submit(() -> computeMapping(newFile)));
         }
       }
 
@@ -177,7 +196,6 @@ public class ApplicationWriter {
       ThreadUtils.awaitFutures(offsetMappingFutures.values());
 
       // Generate the dex file contents.
-      List<Future<Boolean>> dexDataFutures = new ArrayList<>();
       try {
         for (VirtualFile virtualFile : offsetMappingFutures.keySet()) {
           assert !virtualFile.isEmpty();
@@ -185,24 +203,8 @@ public class ApplicationWriter {
           dexDataFutures.add(
               executorService.submit(
                   () -> {
-                    byte[] result = writeDexFile(mapping);
-                    if (virtualFile.getPrimaryClassDescriptor() != null) {
-                      options
-                          .getDexFilePerClassFileConsumer()
-                          .accept(
-                              virtualFile.getPrimaryClassDescriptor(),
-                              result,
-                              virtualFile.getClassDescriptors(),
-                              options.reporter);
-                    } else {
-                      options
-                          .getDexIndexedConsumer()
-                          .accept(
-                              virtualFile.getId(),
-                              result,
-                              virtualFile.getClassDescriptors(),
-                              options.reporter);
-                    }
+                    writeVirtualFile(virtualFile, mapping, executorService);
+                    releaseCode(virtualFile, sharedClasses);
                     return true;
                   }));
         }
@@ -224,6 +226,80 @@ public class ApplicationWriter {
     }
   }
 
+  private static Set<DexProgramClass> collectSharedClasses(Collection<VirtualFile> files) {
+    Set<DexProgramClass> seen = Sets.newIdentityHashSet();
+    Set<DexProgramClass> shared = Sets.newIdentityHashSet();
+    for (VirtualFile file : files) {
+      for (DexProgramClass clazz : file.classes()) {
+        if (!seen.add(clazz)) {
+          shared.add(clazz);
+        }
+      }
+    }
+    return shared;
+  }
+
+  private static boolean containsAny(VirtualFile file, Set<DexProgramClass> classes) {
+    if (classes.isEmpty()) {
+      return false;
+    }
+    for (DexProgramClass clazz : file.classes()) {
+      if (classes.contains(clazz)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private ObjectToOffsetMapping computeMapping(VirtualFile file) {
+    ObjectToOffsetMapping mapping = file.computeMapping(application);
+    rewriteCodeWithJumboStrings(mapping, file.classes(), application);
+    return mapping;
+  }
+
+  private void writeVirtualFile(
+      VirtualFile virtualFile, ObjectToOffsetMapping mapping, ExecutorService executorService)
+      throws ApiLevelException {
+    FileWriter fileWriter =
+        new FileWriter(mapping, application, options, namingLens, bufferPool, executorService);
+    // Collect the non-fixed sections.
+    fileWriter.collect();
+    try {
+      // Generate the bytes and hand them to the consumer, which must not retain the buffer.
+      ByteBuffer result = fileWriter.generate();
+      if (virtualFile.getPrimaryClassDescriptor() != null) {
+        byte[] bytes = new byte[result.remaining()];
+        result.get(bytes);
+        options
+            .getDexFilePerClassFileConsumer()
+            .accept(
+                virtualFile.getPrimaryClassDescriptor(),
+                bytes,
+                virtualFile.getClassDescriptors(),
+                options.reporter);
+      } else {
+        options
+            .getDexIndexedConsumer()
+            .acceptBuffer(
+                virtualFile.getId(), result, virtualFile.getClassDescriptors(), options.reporter);
+      }
+    } finally {
+      fileWriter.release();
+    }
+  }
+
+  private void releaseCode(VirtualFile file, Set<DexProgramClass> sharedClasses) {
+    if (!options.releaseCodeEagerly) {
+      return;
+    }
+    for (DexProgramClass clazz : file.classes()) {
+      // The code of a class in several files is still needed for writing the other files.
+      if (sharedClasses == null || !sharedClasses.contains(clazz)) {
+        clazz.forEachMethod(DexEncodedMethod::removeCode);
+      }
+    }
+  }
+
   public static void supplyAdditionalConsumers(
       DexApplication application,
       NamingLens namingLens,
@@ -347,15 +423,6 @@ public class ApplicationWriter {
     }
   }
 
-  private byte[] writeDexFile(ObjectToOffsetMapping mapping)
-      throws ApiLevelException {
-    FileWriter fileWriter = new FileWriter(mapping, application, options, namingLens);
-    // Collect the non-fixed sections.
-    fileWriter.collect();
-    // Generate and write the bytes.
-    return fileWriter.generate();
-  }
-
   private static String mapMainDexListName(DexType type, NamingLens namingLens) {
     return DescriptorUtils.descriptorToJavaType(namingLens.lookupDescriptor(type).toString())
         .replace('.', '/') + ".class";
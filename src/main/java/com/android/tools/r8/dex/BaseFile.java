@@ -7,6 +7,7 @@ package com.android.tools.r8.dex;
 import com.android.tools.r8.ProgramResource;
 import com.android.tools.r8.ResourceException;
 import com.android.tools.r8.origin.Origin;
+import com.android.tools.r8.utils.ByteBufferResource;
 import com.android.tools.r8.utils.LebUtils;
 import com.google.common.io.ByteStreams;
 import java.io.IOException;
@@ -17,13 +18,26 @@ public abstract class BaseFile {
   protected final ByteBuffer buffer;
 
   protected BaseFile(ProgramResource resource) throws ResourceException, IOException {
-    this(resource.getOrigin(), ByteStreams.toByteArray(resource.getByteStream()));
+    this(resource.getOrigin(), readContent(resource));
   }
 
   protected BaseFile(Origin origin, byte[] bytes) {
+    this(origin, ByteBuffer.wrap(bytes));
+  }
+
+  protected BaseFile(Origin origin, ByteBuffer buffer) {
     assert origin != null;
     this.origin = origin;
-    buffer = ByteBuffer.wrap(bytes);
+    this.buffer = buffer;
+  }
+
+  private static ByteBuffer readContent(ProgramResource resource)
+      throws ResourceException, IOException {
+    if (resource instanceof ByteBufferResource) {
+      // Read mapped content in place instead of copying it to the heap.
+      return ((ByteBufferResource) resource).getByteBuffer();
+    }
+    return ByteBuffer.wrap(ByteStreams.toByteArray(resource.getByteStream()));
   }
 
   public Origin getOrigin() {
@@ -19,13 +19,59 @@ public class DexOutputBuffer {
   private static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
 
   private ByteBuffer byteBuffer;
+  // Slices share the array of the buffer they are created from, so they cannot grow.
+  private final boolean isSlice;
 
   public DexOutputBuffer() {
-    byteBuffer = allocate(DEFAULT_BUFFER_SIZE);
+    this(DEFAULT_BUFFER_SIZE);
+  }
+
+  public DexOutputBuffer(int initialSize) {
+    byteBuffer = allocate(initialSize);
+    isSlice = false;
+  }
+
+  /**
+   * Creates an output buffer writing into the given heap buffer, which must be zero filled as
+   * skipped and padding bytes are not written explicitly.
+   */
+  DexOutputBuffer(ByteBuffer byteBuffer) {
+    assert byteBuffer.hasArray();
+    this.byteBuffer = byteBuffer;
+    byteBuffer.clear();
+    byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
+    isSlice = false;
+  }
+
+  private DexOutputBuffer(DexOutputBuffer buffer, int position) {
+    byteBuffer = buffer.byteBuffer.duplicate();
+    byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
+    byteBuffer.position(position);
+    isSlice = true;
+  }
+
+  /**
+   * Returns a buffer writing into the same array from {@param position} on, with a position
+   * independent of this buffer. Slices cannot grow, so {@link #ensureCapacity} must have been
+   * called for all bytes written through the slice.
+   */
+  public DexOutputBuffer sliceAt(int position) {
+    return new DexOutputBuffer(this, position);
+  }
+
+  public void ensureCapacity(int size) {
+    assert !isSlice;
+    if (byteBuffer.capacity() < size) {
+      ByteBuffer newBuffer = allocate(size);
+      System.arraycopy(byteBuffer.array(), 0, newBuffer.array(), 0, byteBuffer.capacity());
+      newBuffer.position(byteBuffer.position());
+      byteBuffer = newBuffer;
+    }
   }
 
   private void ensureSpaceFor(int bytes) {
     if (byteBuffer.remaining() < bytes) {
+      assert !isSlice;
       int newSize = byteBuffer.capacity() + Math.max(byteBuffer.capacity(), bytes * 2);
       ByteBuffer newBuffer = allocate(newSize);
       System.arraycopy(byteBuffer.array(), 0, newBuffer.array(), 0, byteBuffer.position());
@@ -130,4 +176,16 @@ public class DexOutputBuffer {
   public byte[] asArray() {
     return byteBuffer.array();
   }
+
+  /** Returns a view of the first {@param size} bytes written to this buffer. */
+  public ByteBuffer asByteBuffer(int size) {
+    ByteBuffer view = byteBuffer.duplicate();
+    view.position(0);
+    view.limit(size);
+    return view;
+  }
+
+  ByteBuffer getByteBuffer() {
+    return byteBuffer;
+  }
 }
@@ -0,0 +1,42 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.dex;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Pool of the buffers used for writing dex files.
+ *
+ * <p>The dex files of an application are written by a bounded number of threads, so keeping the
+ * buffers of written files around avoids allocating (and growing) a new buffer for every file.
+ * Buffers are zero filled again when they are released, as the writer relies on skipped and
+ * padding bytes being zero.
+ */
+public class DexOutputBufferPool {
+
+  private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+  /** Returns a buffer with a capacity of at least {@param minimumSize} bytes. */
+  public DexOutputBuffer acquire(int minimumSize) {
+    ByteBuffer buffer = buffers.poll();
+    if (buffer == null || buffer.capacity() < minimumSize) {
+      // Drop buffers that are too small, the larger buffer replaces it once released.
+      return new DexOutputBuffer(minimumSize);
+    }
+    return new DexOutputBuffer(buffer);
+  }
+
+  /**
+   * Returns the buffer to the pool. All bytes written to the buffer must be within the first
+   * {@param usedSize} bytes.
+   */
+  public void release(DexOutputBuffer buffer, int usedSize) {
+    ByteBuffer byteBuffer = buffer.getByteBuffer();
+    Arrays.fill(byteBuffer.array(), 0, usedSize, (byte) 0);
+    buffers.add(byteBuffer);
+  }
+}
@@ -51,13 +51,16 @@ import com.android.tools.r8.utils.AndroidApiLevel;
 import com.android.tools.r8.utils.DexVersion;
 import com.android.tools.r8.utils.InternalOptions;
 import com.android.tools.r8.utils.LebUtils;
+import com.android.tools.r8.utils.ThreadUtils;
 import com.android.tools.r8.utils.ThrowingConsumer;
 import com.google.common.collect.Sets;
 import it.unimi.dsi.fastutil.objects.Object2IntLinkedOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import it.unimi.dsi.fastutil.objects.Reference2IntLinkedOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -67,28 +70,57 @@ import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
 import java.util.function.Consumer;
 import java.util.function.ToIntFunction;
 import java.util.zip.Adler32;
 
 public class FileWriter {
 
+  // Largest prime smaller than 65536, the modulus of Adler-32.
+  private static final int ADLER_BASE = 65521;
+  // Smaller files are checksummed on the writing thread only.
+  private static final int PARALLEL_CHECKSUM_MIN_SIZE = 1 << 20;
+  // Number of tasks per thread when writing sections concurrently, to balance uneven items.
+  private static final int CHUNKS_PER_THREAD = 4;
+
   private final ObjectToOffsetMapping mapping;
   private final DexApplication application;
   private final InternalOptions options;
   private final NamingLens namingLens;
-  private final DexOutputBuffer dest = new DexOutputBuffer();
+  private final DexOutputBufferPool bufferPool;
+  private final ExecutorService executorService;
   private final MixedSectionOffsets mixedSectionOffsets;
+  private DexOutputBuffer dest;
+  private int endOfFile;
 
   public FileWriter(
       ObjectToOffsetMapping mapping,
       DexApplication application,
       InternalOptions options,
       NamingLens namingLens) {
+    this(mapping, application, options, namingLens, new DexOutputBufferPool(), null);
+  }
+
+  /**
+   * Creates a writer that takes its output buffer from {@param bufferPool}, and that uses
+   * {@param executorService} (if not null) to compute the checksum concurrently with the signature.
+   */
+  public FileWriter(
+      ObjectToOffsetMapping mapping,
+      DexApplication application,
+      InternalOptions options,
+      NamingLens namingLens,
+      DexOutputBufferPool bufferPool,
+      ExecutorService executorService) {
     this.mapping = mapping;
     this.application = application;
     this.options = options;
     this.namingLens = namingLens;
+    this.bufferPool = bufferPool;
+    this.executorService = executorService;
     this.mixedSectionOffsets = new MixedSectionOffsets(options);
   }
 
@@ -135,7 +167,14 @@ public class FileWriter {
     return this;
   }
 
-  public byte[] generate() throws ApiLevelException {
+  /**
+   * Writes the dex file and returns a buffer holding exactly its bytes.
+   *
+   * <p>The returned buffer is backed by a pooled array, so it is only valid until {@link
+   * #release()} is called.
+   */
+  public ByteBuffer generate() throws ApiLevelException {
+    assert dest == null;
     // Check restrictions on interface methods.
     checkInterfaceMethods();
 
@@ -144,26 +183,33 @@ public class FileWriter {
 
     // Sort the codes first, as their order might impact size due to alignment constraints.
     List<DexCode> codes = sortDexCodesByClassName(mixedSectionOffsets.getCodes(), application);
+    int sizeOfCodeItems = sizeOfCodeItems(codes);
+    dest = bufferPool.acquire(estimateFileSize(layout, sizeOfCodeItems));
 
-    // Output the debug_info_items first, as they have no dependencies.
-    dest.moveTo(layout.getCodesOffset() + sizeOfCodeItems(codes));
-    writeItems(mixedSectionOffsets.getDebugInfos(), layout::setDebugInfosOffset,
-        this::writeDebugItem);
-
-    // Remember the typelist offset for later.
-    layout.setTypeListsOffset(dest.align(4));  // type_list are aligned.
-
-    // Now output the code.
-    dest.moveTo(layout.getCodesOffset());
-    assert dest.isAligned(4);
-    writeItems(codes, layout::alreadySetOffset, this::writeCodeItem, 4);
-    assert layout.getDebugInfosOffset() == 0 || dest.position() == layout.getDebugInfosOffset();
-
-    // Now the type lists and rest.
-    dest.moveTo(layout.getTypeListsOffset());
-    writeItems(mixedSectionOffsets.getTypeLists(), layout::alreadySetOffset, this::writeTypeList);
-    writeItems(mixedSectionOffsets.getStringData(), layout::setStringDataOffsets,
-        this::writeStringData);
+    if (executorService != null
+        && sizeOfCodeItems >= options.concurrentDexSectionWritingMinSize) {
+      writeLeadingDataSectionsConcurrently(layout, codes);
+    } else {
+      // Output the debug_info_items first, as they have no dependencies.
+      dest.moveTo(layout.getCodesOffset() + sizeOfCodeItems);
+      writeItems(mixedSectionOffsets.getDebugInfos(), layout::setDebugInfosOffset,
+          this::writeDebugItem);
+
+      // Remember the typelist offset for later.
+      layout.setTypeListsOffset(dest.align(4));  // type_list are aligned.
+
+      // Now output the code.
+      dest.moveTo(layout.getCodesOffset());
+      assert dest.isAligned(4);
+      writeItems(codes, layout::alreadySetOffset, this::writeCodeItem, 4);
+      assert layout.getDebugInfosOffset() == 0 || dest.position() == layout.getDebugInfosOffset();
+
+      // Now the type lists and rest.
+      dest.moveTo(layout.getTypeListsOffset());
+      writeItems(mixedSectionOffsets.getTypeLists(), layout::alreadySetOffset, this::writeTypeList);
+      writeItems(mixedSectionOffsets.getStringData(), layout::setStringDataOffsets,
+          this::writeStringData);
+    }
     writeItems(mixedSectionOffsets.getAnnotations(), layout::setAnnotationsOffset,
         this::writeAnnotation);
     writeItems(mixedSectionOffsets.getClassesWithData(), layout::setClassDataOffset,
@@ -196,11 +242,156 @@ public class FileWriter {
 
     // Fill in the header information.
     writeHeader(layout);
-    writeSignature(layout);
-    writeChecksum(layout);
+    writeSignatureAndChecksum(layout);
+
+    endOfFile = layout.getEndOfFile();
+    return dest.asByteBuffer(endOfFile);
+  }
+
+  /** Returns the output buffer to the pool, which invalidates the result of {@link #generate}. */
+  public void release() {
+    // A buffer of a failed generation is dropped, as it is unknown which bytes were written.
+    if (dest != null && endOfFile > 0) {
+      bufferPool.release(dest, endOfFile);
+    }
+    dest = null;
+  }
+
+  // The size of the sections that are not known before writing them, i.e., everything after the
+  // code items except the string data, is estimated as a fraction of the known size. The buffer
+  // still grows if the estimate is too small.
+  private int estimateFileSize(Layout layout, int sizeOfCodeItems) {
+    long size = layout.dataSectionOffset + sizeOfCodeItems;
+    for (DexString string : mapping.getStrings()) {
+      size += sizeAsUleb128(string.size) + string.content.length;
+    }
+    size += size / 4;
+    return (int) Math.min(size, Integer.MAX_VALUE - 8);
+  }
+
+  /**
+   * Writes the debug info, code, type list and string data sections like the sequential writer
+   * does, but with tasks writing disjoint parts of the buffer concurrently.
+   *
+   * <p>The size of the items in these sections does not depend on offsets, so the offsets of all
+   * items are assigned up front. Only the size of the debug info is not known without encoding it,
+   * so the debug info is encoded concurrently first. The remaining data sections refer to offsets
+   * of each other and are still written sequentially.
+   */
+  private void writeLeadingDataSectionsConcurrently(Layout layout, List<DexCode> codes) {
+    int chunkCount = ThreadUtils.getParallelism(executorService) * CHUNKS_PER_THREAD;
+    List<DexDebugInfo> debugInfos = new ArrayList<>(mixedSectionOffsets.getDebugInfos());
+    List<DexTypeList> typeLists = new ArrayList<>(mixedSectionOffsets.getTypeLists());
+    List<DexString> strings = new ArrayList<>(mixedSectionOffsets.getStringData());
+
+    byte[][] encodedDebugInfos = new byte[debugInfos.size()][];
+    List<Runnable> tasks = new ArrayList<>();
+    int debugInfosPerTask = Math.max(1, (debugInfos.size() + chunkCount - 1) / chunkCount);
+    for (int start = 0; start < debugInfos.size(); start += debugInfosPerTask) {
+      int from = start;
+      int to = Math.min(start + debugInfosPerTask, debugInfos.size());
+      tasks.add(
+          () -> {
+            for (int i = from; i < to; i++) {
+              encodedDebugInfos[i] = new DebugBytecodeWriter(debugInfos.get(i), mapping).generate();
+            }
+          });
+    }
+    runConcurrently(tasks);
+
+    // Assign the offsets in the order of the sequential writer.
+    int offset = layout.getCodesOffset();
+    int[] codeOffsets = new int[codes.size()];
+    for (int i = 0; i < codes.size(); i++) {
+      offset = alignSize(4, offset);
+      codeOffsets[i] = offset;
+      mixedSectionOffsets.setOffsetFor(codes.get(i), offset);
+      offset += sizeOfCodeItem(codes.get(i));
+    }
+    int codesEnd = offset;
+    layout.setDebugInfosOffset(debugInfos.isEmpty() ? 0 : offset);
+    int[] debugInfoOffsets = new int[debugInfos.size()];
+    for (int i = 0; i < debugInfos.size(); i++) {
+      debugInfoOffsets[i] = offset;
+      mixedSectionOffsets.setOffsetFor(debugInfos.get(i), offset);
+      offset += encodedDebugInfos[i].length;
+    }
+    int debugInfosEnd = offset;
+    offset = alignSize(4, offset);
+    layout.setTypeListsOffset(offset);
+    int[] typeListOffsets = new int[typeLists.size()];
+    for (int i = 0; i < typeLists.size(); i++) {
+      offset = alignSize(4, offset);
+      typeListOffsets[i] = offset;
+      mixedSectionOffsets.setOffsetFor(typeLists.get(i), offset);
+      offset += Integer.BYTES + typeLists.get(i).values.length * Short.BYTES;
+    }
+    int typeListsEnd = offset;
+    layout.setStringDataOffsets(strings.isEmpty() ? 0 : offset);
+    int[] stringOffsets = new int[strings.size()];
+    for (int i = 0; i < strings.size(); i++) {
+      DexString string = strings.get(i);
+      stringOffsets[i] = offset;
+      mixedSectionOffsets.setOffsetFor(string, offset);
+      offset += sizeAsUleb128(string.size) + string.content.length;
+    }
+    int stringsEnd = offset;
+
+    // Write the items, with the offset map only read from now on.
+    dest.ensureCapacity(stringsEnd);
+    int bytesPerTask = Math.max(1, (stringsEnd - layout.getCodesOffset()) / chunkCount);
+    tasks.clear();
+    addWriteTasks(codeOffsets, codesEnd, 4, bytesPerTask, tasks,
+        (out, i) -> writeCodeItem(codes.get(i), out));
+    addWriteTasks(debugInfoOffsets, debugInfosEnd, 1, bytesPerTask, tasks,
+        (out, i) -> out.putBytes(encodedDebugInfos[i]));
+    addWriteTasks(typeListOffsets, typeListsEnd, 4, bytesPerTask, tasks,
+        (out, i) -> writeTypeList(typeLists.get(i), out));
+    addWriteTasks(stringOffsets, stringsEnd, 1, bytesPerTask, tasks,
+        (out, i) -> writeStringData(strings.get(i), out));
+    runConcurrently(tasks);
+    dest.moveTo(stringsEnd);
+  }
 
-    // Turn into an array
-    return Arrays.copyOf(dest.asArray(), layout.getEndOfFile());
+  private interface ItemWriter {
+    void write(DexOutputBuffer out, int index);
+  }
+
+  // Splits the items of a section into tasks writing about bytesPerTask bytes each.
+  private void addWriteTasks(int[] offsets, int end, int alignment, int bytesPerTask,
+      List<Runnable> tasks, ItemWriter writer) {
+    int start = 0;
+    while (start < offsets.length) {
+      int from = start;
+      int to = from + 1;
+      while (to < offsets.length && offsets[to] - offsets[from] < bytesPerTask) {
+        to++;
+      }
+      int taskEnd = to < offsets.length ? offsets[to] : end;
+      tasks.add(
+          () -> {
+            DexOutputBuffer out = dest.sliceAt(offsets[from]);
+            for (int i = from; i < to; i++) {
+              out.align(alignment);
+              assert out.position() == offsets[i];
+              writer.write(out, i);
+            }
+            assert out.position() <= taskEnd;
+          });
+      start = to;
+    }
+  }
+
+  private void runConcurrently(List<Runnable> tasks) {
+    try {
+      ThreadUtils.runConcurrentlyWithCaller(tasks, executorService);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new RuntimeException(cause);
+    }
   }
 
   private void checkInterfaceMethods() throws ApiLevelException {
@@ -423,6 +614,10 @@ public class FileWriter {
 
   private void writeCodeItem(DexCode code) {
     mixedSectionOffsets.setOffsetFor(code, dest.align(4));
+    writeCodeItem(code, dest);
+  }
+
+  private void writeCodeItem(DexCode code, DexOutputBuffer dest) {
     // Fixed size header information.
     dest.putShort((short) code.registerSize);
     dest.putShort((short) code.incomingRegisterSize);
@@ -476,6 +671,10 @@ public class FileWriter {
   private void writeTypeList(DexTypeList list) {
     assert !list.isEmpty();
     mixedSectionOffsets.setOffsetFor(list, dest.align(4));
+    writeTypeList(list, dest);
+  }
+
+  private void writeTypeList(DexTypeList list, DexOutputBuffer dest) {
     DexType[] values = list.values;
     dest.putInt(values.length);
     for (DexType type : values) {
@@ -485,6 +684,10 @@ public class FileWriter {
 
   private void writeStringData(DexString string) {
     mixedSectionOffsets.setOffsetFor(string, dest.position());
+    writeStringData(string, dest);
+  }
+
+  private void writeStringData(DexString string, DexOutputBuffer dest) {
     dest.putUleb128(string.size);
     dest.putBytes(string.content);
   }
@@ -750,23 +953,75 @@ public class FileWriter {
     assert dest.position() == layout.stringIdsOffset;
   }
 
-  private void writeSignature(Layout layout) {
+  // The checksum covers the signature, so only the checksum of the bytes after the signature can be
+  // computed concurrently with the signature. That part is combined with the checksum of the
+  // signature bytes once these are written.
+  private void writeSignatureAndChecksum(Layout layout) {
+    byte[] bytes = dest.asArray();
+    int endOfFile = layout.getEndOfFile();
+    int dataSize = endOfFile - Constants.FILE_SIZE_OFFSET;
+    FutureTask<Long> dataChecksum =
+        new FutureTask<>(() -> adler32(bytes, Constants.FILE_SIZE_OFFSET, dataSize));
+    if (executorService != null && dataSize >= PARALLEL_CHECKSUM_MIN_SIZE) {
+      executorService.execute(dataChecksum);
+    }
+    writeSignature(bytes, endOfFile);
+    // Compute the checksum on this thread if no other thread has started it yet. This avoids
+    // waiting for a task queued behind other threads that are blocked in the same way.
+    dataChecksum.run();
+    long checksum;
+    try {
+      checksum =
+          combineAdler32(
+              adler32(bytes, Constants.SIGNATURE_OFFSET, 20), dataChecksum.get(), dataSize);
+    } catch (InterruptedException e) {
+      throw new RuntimeException("Interrupted while waiting for checksum.", e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+    dest.moveTo(Constants.CHECKSUM_OFFSET);
+    dest.putInt((int) checksum);
+  }
+
+  private static void writeSignature(byte[] bytes, int endOfFile) {
     try {
       MessageDigest md = MessageDigest.getInstance("SHA-1");
-      md.update(dest.asArray(), Constants.FILE_SIZE_OFFSET,
-          layout.getEndOfFile() - Constants.FIELD_IDS_OFF_OFFSET);
-      md.digest(dest.asArray(), Constants.SIGNATURE_OFFSET, 20);
+      md.update(bytes, Constants.FILE_SIZE_OFFSET, endOfFile - Constants.FIELD_IDS_OFF_OFFSET);
+      md.digest(bytes, Constants.SIGNATURE_OFFSET, 20);
     } catch (Exception e) {
       throw new RuntimeException(e);
     }
   }
 
-  private void writeChecksum(Layout layout) {
+  private static long adler32(byte[] bytes, int offset, int length) {
     Adler32 adler = new Adler32();
-    adler.update(dest.asArray(), Constants.SIGNATURE_OFFSET,
-        layout.getEndOfFile() - Constants.SIGNATURE_OFFSET);
-    dest.moveTo(Constants.CHECKSUM_OFFSET);
-    dest.putInt((int) adler.getValue());
+    adler.update(bytes, offset, length);
+    return adler.getValue();
+  }
+
+  /**
+   * Combines the Adler-32 checksums of two consecutive byte ranges into the checksum of their
+   * concatenation, like adler32_combine of zlib.
+   */
+  static long combineAdler32(long first, long second, int secondLength) {
+    long remainder = secondLength % ADLER_BASE;
+    long sum1 = first & 0xffff;
+    long sum2 = (remainder * sum1) % ADLER_BASE;
+    sum1 += (second & 0xffff) + ADLER_BASE - 1;
+    sum2 += ((first >>> 16) & 0xffff) + ((second >>> 16) & 0xffff) + ADLER_BASE - remainder;
+    if (sum1 >= ADLER_BASE) {
+      sum1 -= ADLER_BASE;
+    }
+    if (sum1 >= ADLER_BASE) {
+      sum1 -= ADLER_BASE;
+    }
+    if (sum2 >= (ADLER_BASE << 1)) {
+      sum2 -= (ADLER_BASE << 1);
+    }
+    if (sum2 >= ADLER_BASE) {
+      sum2 -= ADLER_BASE;
+    }
+    return sum1 | (sum2 << 16);
   }
 
   private int alignSize(int bytes, int value) {
@@ -4,52 +4,50 @@
 package com.android.tools.r8.graph;
 
 import com.android.tools.r8.shaking.Enqueuer.AppInfoWithLiveness;
+import com.android.tools.r8.utils.Timing;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableMap.Builder;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class AppInfo {
 
   public final DexApplication app;
   public final DexItemFactory dexItemFactory;
-  private final ConcurrentHashMap<DexType, Map<Descriptor<?,?>, KeyedDexItem<?>>> definitions =
-      new ConcurrentHashMap<>();
+  // Memoized results of method resolution, for the classes as they are when the app info is
+  // created. Passes that modify classes in place must call invalidateLookupCaches.
+  private final LookupCache<MethodLookupKey, ResolutionResult> classResolutions;
+  private final LookupCache<MethodLookupKey, ResolutionResult> interfaceResolutions;
+  private final LookupCache<MethodLookupKey, DexEncodedMethod> superTargets;
 
   public AppInfo(DexApplication application) {
     this.app = application;
     this.dexItemFactory = app.dexItemFactory;
+    this.classResolutions = new LookupCache<>("Class resolution");
+    this.interfaceResolutions = new LookupCache<>("Interface resolution");
+    this.superTargets = new LookupCache<>("Super target");
   }
 
   protected AppInfo(AppInfo previous) {
     this.app = previous.app;
     this.dexItemFactory = app.dexItemFactory;
-    this.definitions.putAll(previous.definitions);
+    this.classResolutions = new LookupCache<>(previous.classResolutions);
+    this.interfaceResolutions = new LookupCache<>(previous.interfaceResolutions);
+    this.superTargets = new LookupCache<>(previous.superTargets);
   }
 
   protected AppInfo(DirectMappedDexApplication application, GraphLense lense) {
     // Rebuild information from scratch, as the application object has changed. We do not
     // use the lense here, as it is about applied occurrences and not definitions.
-    // In particular, we have to invalidate the definitions cache, as its keys are no longer
+    // In particular, we have to invalidate the lookup caches, as their keys are no longer
     // valid.
     this(application);
   }
 
-  private Map<Descriptor<?,?>, KeyedDexItem<?>> computeDefinitions(DexType type) {
-    Builder<Descriptor<?,?>, KeyedDexItem<?>> builder = ImmutableMap.builder();
-    DexClass clazz = app.definitionFor(type);
-    if (clazz != null) {
-      clazz.forEachMethod(method -> builder.put(method.getKey(), method));
-      clazz.forEachField(field -> builder.put(field.getKey(), field));
-    }
-    return builder.build();
-  }
-
   public Iterable<DexProgramClass> classes() {
     return app.classes();
   }
@@ -63,22 +61,21 @@ public class AppInfo {
   }
 
   public DexEncodedMethod definitionFor(DexMethod method) {
-    return (DexEncodedMethod) getDefinitions(method.getHolder()).get(method);
+    DexClass clazz = app.definitionFor(method.holder);
+    if (clazz == null) {
+      return null;
+    }
+    DexEncodedMethod definition = clazz.lookupMethod(method);
+    return definition != null && definition.method == method ? definition : null;
   }
 
   public DexEncodedField definitionFor(DexField field) {
-    return (DexEncodedField) getDefinitions(field.getHolder()).get(field);
-  }
-
-  private Map<Descriptor<?,?>, KeyedDexItem<?>> getDefinitions(DexType type) {
-    Map<Descriptor<?,?>, KeyedDexItem<?>> typeDefinitions = definitions.get(type);
-    if (typeDefinitions != null) {
-      return typeDefinitions;
+    DexClass clazz = app.definitionFor(field.clazz);
+    if (clazz == null) {
+      return null;
     }
-
-    typeDefinitions = computeDefinitions(type);
-    Map<Descriptor<?,?>, KeyedDexItem<?>> existing = definitions.putIfAbsent(type, typeDefinitions);
-    return existing != null ? existing : typeDefinitions;
+    DexEncodedField definition = clazz.lookupField(field);
+    return definition != null && definition.field == field ? definition : null;
   }
 
   /**
@@ -108,6 +105,12 @@ public class AppInfo {
    */
   public DexEncodedMethod lookupSuperTarget(DexMethod method,
       DexType invocationContext) {
+    return superTargets.lookup(
+        new MethodLookupKey(invocationContext, method),
+        key -> computeSuperTarget(method, invocationContext));
+  }
+
+  private DexEncodedMethod computeSuperTarget(DexMethod method, DexType invocationContext) {
     DexClass contextClass = definitionFor(invocationContext);
     if (contextClass == null || contextClass.superType == null) {
       return null;
@@ -176,6 +179,12 @@ public class AppInfo {
    * resolved method is used as basis for dispatch.
    */
   public ResolutionResult resolveMethodOnClass(DexType holder, DexMethod method) {
+    return classResolutions.lookup(
+        new MethodLookupKey(holder, method), key -> computeResolutionOnClass(holder, method));
+  }
+
+  /** Same as {@link #resolveMethodOnClass} without using or filling the cache. */
+  protected ResolutionResult computeResolutionOnClass(DexType holder, DexMethod method) {
     DexClass clazz = definitionFor(holder);
     // Step 1: If holder is an interface, resolution fails with an ICCE. We return null.
     if (clazz == null || clazz.isInterface()) {
@@ -300,6 +309,11 @@ public class AppInfo {
    * resolved method is used as basis for dispatch.
    */
   public ResolutionResult resolveMethodOnInterface(DexType holder, DexMethod desc) {
+    return interfaceResolutions.lookup(
+        new MethodLookupKey(holder, desc), key -> computeResolutionOnInterface(holder, desc));
+  }
+
+  private ResolutionResult computeResolutionOnInterface(DexType holder, DexMethod desc) {
     // Step 1: Lookup interface.
     DexClass definition = definitionFor(holder);
     // If the definition is not an interface, resolution fails with an ICCE. We just return the
@@ -426,6 +440,23 @@ public class AppInfo {
     return null;
   }
 
+  /**
+   * Drop the memoized lookups. Must be called after modifying the classes, their members or the
+   * type hierarchy in place, if this app info is used afterwards.
+   */
+  public void invalidateLookupCaches() {
+    classResolutions.clear();
+    interfaceResolutions.clear();
+    superTargets.clear();
+  }
+
+  /** Add the hits and misses of the memoized lookups as counters to the current task. */
+  public void reportLookupCacheCounters(Timing timing) {
+    classResolutions.report(timing);
+    interfaceResolutions.report(timing);
+    superTargets.report(timing);
+  }
+
   public boolean hasSubtyping() {
     return false;
   }
@@ -463,6 +494,86 @@ public class AppInfo {
     return result;
   }
 
+  /** Key for lookups of a method on a type, which may differ from the holder of the method. */
+  protected static final class MethodLookupKey {
+    private final DexType type;
+    private final DexMethod method;
+
+    protected MethodLookupKey(DexType type, DexMethod method) {
+      this.type = type;
+      this.method = method;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof MethodLookupKey)) {
+        return false;
+      }
+      MethodLookupKey key = (MethodLookupKey) other;
+      return type == key.type && method == key.method;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(type) + System.identityHashCode(method);
+    }
+  }
+
+  /**
+   * Memoized results of a lookup, with the number of hits and misses. The copies of a cache for
+   * copies of an app info share the counts, so that they are reported for the whole phase.
+   */
+  protected static class LookupCache<K, V> {
+    // Marks a lookup that found nothing, as the map cannot hold null.
+    private static final Object NOT_FOUND = new Object();
+
+    private final String name;
+    private final ConcurrentHashMap<K, Object> results = new ConcurrentHashMap<>();
+    private final LongAdder hits;
+    private final LongAdder misses;
+
+    protected LookupCache(String name) {
+      this.name = name;
+      this.hits = new LongAdder();
+      this.misses = new LongAdder();
+    }
+
+    protected LookupCache(LookupCache<K, V> previous) {
+      this.name = previous.name;
+      this.results.putAll(previous.results);
+      this.hits = previous.hits;
+      this.misses = previous.misses;
+    }
+
+    // The result is computed outside of the map, as the computation may do other lookups.
+    @SuppressWarnings("unchecked")
+    protected V lookup(K key, Function<K, V> compute) {
+      Object result = results.get(key);
+      if (result != null) {
+        hits.increment();
+        return result == NOT_FOUND ? null : (V) result;
+      }
+      misses.increment();
+      V value = compute.apply(key);
+      results.putIfAbsent(key, value == null ? NOT_FOUND : value);
+      return value;
+    }
+
+    protected void clear() {
+      results.clear();
+    }
+
+    protected void report(Timing timing) {
+      long hitCount = hits.sum();
+      long total = hitCount + misses.sum();
+      if (total > 0) {
+        timing.addCounter(name + " cache hits", hitCount);
+        timing.addCounter(name + " cache misses", total - hitCount);
+        timing.addCounter(name + " cache hit rate (%)", hitCount * 100 / total);
+      }
+    }
+  }
+
   public interface ResolutionResult {
 
     DexEncodedMethod asResultOfResolve();
@@ -5,6 +5,7 @@ package com.android.tools.r8.graph;
 
 import com.android.tools.r8.errors.CompilationError;
 import com.android.tools.r8.origin.Origin;
+import com.android.tools.r8.utils.Timing;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
@@ -21,9 +22,15 @@ public class AppInfoWithSubtyping extends AppInfo {
   private final Set<DexType> missingClasses = Sets.newIdentityHashSet();
   // Map from types to their subtypes.
   private final Map<DexType, ImmutableSet<DexType>> subtypeMap = new IdentityHashMap<>();
+  // Memoized possible targets of virtual and interface invokes. They only depend on the subtype
+  // map, which is not updated by registerNewType.
+  private final LookupCache<DexMethod, Set<DexEncodedMethod>> virtualTargets;
+  private final LookupCache<DexMethod, Set<DexEncodedMethod>> interfaceTargets;
 
   public AppInfoWithSubtyping(DexApplication application) {
     super(application);
+    virtualTargets = new LookupCache<>("Virtual targets");
+    interfaceTargets = new LookupCache<>("Interface targets");
     populateSubtypeMap(application.asDirect(), application.dexItemFactory);
   }
 
@@ -31,11 +38,15 @@ public class AppInfoWithSubtyping extends AppInfo {
     super(previous);
     missingClasses.addAll(previous.missingClasses);
     subtypeMap.putAll(previous.subtypeMap);
+    virtualTargets = new LookupCache<>(previous.virtualTargets);
+    interfaceTargets = new LookupCache<>(previous.interfaceTargets);
     assert app instanceof DirectMappedDexApplication;
   }
 
   protected AppInfoWithSubtyping(DirectMappedDexApplication application, GraphLense lense) {
     super(application, lense);
+    virtualTargets = new LookupCache<>("Virtual targets");
+    interfaceTargets = new LookupCache<>("Interface targets");
     // Recompute subtype map if we have modified the graph.
     populateSubtypeMap(application, dexItemFactory);
   }
@@ -115,6 +126,10 @@ public class AppInfoWithSubtyping extends AppInfo {
 
   // For mapping invoke virtual instruction to target methods.
   public Set<DexEncodedMethod> lookupVirtualTargets(DexMethod method) {
+    return virtualTargets.lookup(method, this::computeVirtualTargets);
+  }
+
+  private Set<DexEncodedMethod> computeVirtualTargets(DexMethod method) {
     Set<DexEncodedMethod> result = new HashSet<>();
     // First add the target for receiver type method.type.
     DexClass root = definitionFor(method.holder);
@@ -128,15 +143,16 @@ public class AppInfoWithSubtyping extends AppInfo {
       return null;
     }
     topTargets.forEachTarget(result::add);
-    // Add all matching targets from the subclass hierarchy.
+    // Add all matching targets from the subclass hierarchy. The resolutions on the subtypes are
+    // not cached, as the result is.
     for (DexType type : subtypes(method.holder)) {
       DexClass clazz = definitionFor(type);
       if (!clazz.isInterface()) {
-        ResolutionResult methods = resolveMethodOnClass(type, method);
+        ResolutionResult methods = computeResolutionOnClass(type, method);
         methods.forEachTarget(result::add);
       }
     }
-    return result;
+    return Collections.unmodifiableSet(result);
   }
 
   /**
@@ -166,6 +182,10 @@ public class AppInfoWithSubtyping extends AppInfo {
 
   // For mapping invoke interface instruction to target methods.
   public Set<DexEncodedMethod> lookupInterfaceTargets(DexMethod method) {
+    return interfaceTargets.lookup(method, this::computeInterfaceTargets);
+  }
+
+  private Set<DexEncodedMethod> computeInterfaceTargets(DexMethod method) {
     // First check that there is a target for this invoke-interface to hit. If there is none,
     // this will fail at runtime.
     ResolutionResult topTarget = resolveMethodOnInterface(method.holder, method);
@@ -183,11 +203,11 @@ public class AppInfoWithSubtyping extends AppInfo {
       // override them, so we ignore interfaces here. Otherwise, we would look up default methods
       // that are factually never used.
       if (!clazz.isInterface()) {
-        ResolutionResult targetMethods = resolveMethodOnClass(type, method);
+        ResolutionResult targetMethods = computeResolutionOnClass(type, method);
         targetMethods.forEachTarget(result::add);
       }
     }
-    return result;
+    return Collections.unmodifiableSet(result);
   }
 
   @Override
@@ -196,6 +216,20 @@ public class AppInfoWithSubtyping extends AppInfo {
     superType.addDirectSubtype(newType);
   }
 
+  @Override
+  public void invalidateLookupCaches() {
+    super.invalidateLookupCaches();
+    virtualTargets.clear();
+    interfaceTargets.clear();
+  }
+
+  @Override
+  public void reportLookupCacheCounters(Timing timing) {
+    super.reportLookupCacheCounters(timing);
+    virtualTargets.report(timing);
+    interfaceTargets.report(timing);
+  }
+
   @Override
   public boolean hasSubtyping() {
     return true;
@@ -96,6 +96,11 @@ public class CfCode extends Code {
     return Collections.unmodifiableList(localVariables);
   }
 
+  @Override
+  public int estimatedInstructionCount() {
+    return instructions.size();
+  }
+
   @Override
   public boolean isCfCode() {
     return true;
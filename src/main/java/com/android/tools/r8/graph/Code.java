@@ -56,6 +56,11 @@ public abstract class Code extends CachedHashValueDexItem {
     return Integer.MAX_VALUE;
   }
 
+  /** Estimated number of instructions, used to balance the work of converting the code. */
+  public int estimatedInstructionCount() {
+    return 1;
+  }
+
   public CfCode asCfCode() {
     throw new Unreachable(getClass().getCanonicalName() + ".asCfCode()");
   }
@@ -6,6 +6,8 @@ package com.android.tools.r8.graph;
 import com.android.tools.r8.dex.MixedSectionCollection;
 import com.android.tools.r8.errors.CompilationError;
 import com.android.tools.r8.errors.Unreachable;
+import com.android.tools.r8.graph.MemberIndex.FieldIndex;
+import com.android.tools.r8.graph.MemberIndex.MethodIndex;
 import com.android.tools.r8.origin.Origin;
 import com.android.tools.r8.utils.ThrowingConsumer;
 import com.google.common.base.MoreObjects;
@@ -42,6 +44,13 @@ public abstract class DexClass extends DexItem {
    */
   protected DexEncodedMethod[] virtualMethods;
 
+  // Lazily built indices for the member lookups of classes with many members. An index is only
+  // used for the member array it was built from, and the setters drop it when replacing the array.
+  private FieldIndex staticFieldIndex;
+  private FieldIndex instanceFieldIndex;
+  private MethodIndex directMethodIndex;
+  private MethodIndex virtualMethodIndex;
+
   /** Enclosing context of this class if it is an inner class, null otherwise. */
   private EnclosingMethodAttribute enclosingMethod;
 
@@ -105,6 +114,12 @@ public abstract class DexClass extends DexItem {
 
   public void setDirectMethods(DexEncodedMethod[] values) {
     directMethods = MoreObjects.firstNonNull(values, NO_METHODS);
+    directMethodIndex = null;
+  }
+
+  public void setDirectMethod(int index, DexEncodedMethod method) {
+    directMethods[index] = method;
+    directMethodIndex = null;
   }
 
   public DexEncodedMethod[] virtualMethods() {
@@ -113,6 +128,7 @@ public abstract class DexClass extends DexItem {
 
   public void setVirtualMethods(DexEncodedMethod[] values) {
     virtualMethods = MoreObjects.firstNonNull(values, NO_METHODS);
+    virtualMethodIndex = null;
   }
 
   public void forEachMethod(Consumer<DexEncodedMethod> consumer) {
@@ -160,6 +176,7 @@ public abstract class DexClass extends DexItem {
 
   public void setStaticFields(DexEncodedField[] values) {
     staticFields = MoreObjects.firstNonNull(values, NO_FIELDS);
+    staticFieldIndex = null;
   }
 
   public boolean definesStaticField(DexField field) {
@@ -177,6 +194,7 @@ public abstract class DexClass extends DexItem {
 
   public void setInstanceFields(DexEncodedField[] values) {
     instanceFields = MoreObjects.firstNonNull(values, NO_FIELDS);
+    instanceFieldIndex = null;
   }
 
   public DexEncodedField[] allFieldsSorted() {
@@ -194,14 +212,30 @@ public abstract class DexClass extends DexItem {
    * Find static field in this class matching field
    */
   public DexEncodedField lookupStaticField(DexField field) {
-    return lookupTarget(staticFields(), field);
+    DexEncodedField[] fields = staticFields();
+    if (fields.length <= MemberIndex.MAX_UNINDEXED_MEMBERS) {
+      return lookupTarget(fields, field);
+    }
+    FieldIndex index = staticFieldIndex;
+    if (index == null || !index.isFor(fields)) {
+      staticFieldIndex = index = new FieldIndex(fields);
+    }
+    return index.lookup(field);
   }
 
   /**
    * Find instance field in this class matching field.
    */
   public DexEncodedField lookupInstanceField(DexField field) {
-    return lookupTarget(instanceFields(), field);
+    DexEncodedField[] fields = instanceFields();
+    if (fields.length <= MemberIndex.MAX_UNINDEXED_MEMBERS) {
+      return lookupTarget(fields, field);
+    }
+    FieldIndex index = instanceFieldIndex;
+    if (index == null || !index.isFor(fields)) {
+      instanceFieldIndex = index = new FieldIndex(fields);
+    }
+    return index.lookup(field);
   }
 
   /**
@@ -216,14 +250,30 @@ public abstract class DexClass extends DexItem {
    * Find direct method in this class matching method.
    */
   public DexEncodedMethod lookupDirectMethod(DexMethod method) {
-    return lookupTarget(directMethods(), method);
+    DexEncodedMethod[] methods = directMethods();
+    if (methods.length <= MemberIndex.MAX_UNINDEXED_MEMBERS) {
+      return lookupTarget(methods, method);
+    }
+    MethodIndex index = directMethodIndex;
+    if (index == null || !index.isFor(methods)) {
+      directMethodIndex = index = new MethodIndex(methods);
+    }
+    return index.lookup(method);
   }
 
   /**
    * Find virtual method in this class matching method.
    */
   public DexEncodedMethod lookupVirtualMethod(DexMethod method) {
-    return lookupTarget(virtualMethods(), method);
+    DexEncodedMethod[] methods = virtualMethods();
+    if (methods.length <= MemberIndex.MAX_UNINDEXED_MEMBERS) {
+      return lookupTarget(methods, method);
+    }
+    MethodIndex index = virtualMethodIndex;
+    if (index == null || !index.isFor(methods)) {
+      virtualMethodIndex = index = new MethodIndex(methods);
+    }
+    return index.lookup(method);
   }
 
   /**
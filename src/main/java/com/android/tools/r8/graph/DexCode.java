@@ -71,6 +71,11 @@ public class DexCode extends Code {
     return instructions.length;
   }
 
+  @Override
+  public int estimatedInstructionCount() {
+    return instructions.length;
+  }
+
   @Override
   public DexCode asDexCode() {
     return this;
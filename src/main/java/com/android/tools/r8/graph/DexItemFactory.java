@@ -19,16 +19,14 @@ import com.android.tools.r8.ir.code.Position;
 import com.android.tools.r8.naming.NamingLens;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
-import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
-import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Consumer;
+import java.util.function.IntFunction;
 
 public class DexItemFactory {
 
@@ -42,15 +40,19 @@ public class DexItemFactory {
       new ConcurrentHashMap<>();
 
   // DexDebugEvent Canonicalization.
-  private final Int2ObjectMap<AdvanceLine> advanceLines = new Int2ObjectOpenHashMap<>();
-  private final Int2ObjectMap<AdvancePC> advancePCs = new Int2ObjectOpenHashMap<>();
-  private final Int2ObjectMap<Default> defaults = new Int2ObjectOpenHashMap<>();
-  private final Int2ObjectMap<EndLocal> endLocals = new Int2ObjectOpenHashMap<>();
-  private final Int2ObjectMap<RestartLocal> restartLocals = new Int2ObjectOpenHashMap<>();
+  private final IntKeyedEvents<AdvanceLine> advanceLines =
+      new IntKeyedEvents<>(-128, 127, AdvanceLine::new);
+  private final IntKeyedEvents<AdvancePC> advancePCs = new IntKeyedEvents<>(0, 255, AdvancePC::new);
+  private final IntKeyedEvents<Default> defaults =
+      new IntKeyedEvents<>(Constants.DBG_FIRST_SPECIAL, Constants.DBG_LAST_SPECIAL, Default::new);
+  private final IntKeyedEvents<EndLocal> endLocals = new IntKeyedEvents<>(0, 255, EndLocal::new);
+  private final IntKeyedEvents<RestartLocal> restartLocals =
+      new IntKeyedEvents<>(0, 255, RestartLocal::new);
   private final SetEpilogueBegin setEpilogueBegin = new SetEpilogueBegin();
   private final SetPrologueEnd setPrologueEnd = new SetPrologueEnd();
-  private final Map<DexString, SetFile> setFiles = new HashMap<>();
-  private final Map<SetInlineFrame, SetInlineFrame> setInlineFrames = new HashMap<>();
+  private final ConcurrentHashMap<DexString, SetFile> setFiles = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<SetInlineFrame, SetInlineFrame> setInlineFrames =
+      new ConcurrentHashMap<>();
 
   // -identifiernamestring canonicalization.
   private final ConcurrentHashMap<DexItemBasedString, DexItemBasedString> identifiers =
@@ -381,16 +383,20 @@ public class DexItemFactory {
     return null;
   }
 
-  synchronized public DexType createType(DexString descriptor) {
+  public DexType createType(DexString descriptor) {
     assert !sorted;
     assert descriptor != null;
+    // Most calls find an existing type, which the plain lookup does without locking.
     DexType result = types.get(descriptor);
     if (result == null) {
-      result = new DexType(descriptor);
-      assert result.isArrayType() || result.isClassType() || result.isPrimitiveType() ||
-          result.isVoidType();
-      assert !isInternalSentinel(result);
-      types.put(descriptor, result);
+      DexType type = new DexType(descriptor);
+      assert type.isArrayType() || type.isClassType() || type.isPrimitiveType() ||
+          type.isVoidType();
+      assert !isInternalSentinel(type);
+      result = types.putIfAbsent(descriptor, type);
+      if (result == null) {
+        result = type;
+      }
     }
     return result;
   }
@@ -477,33 +483,23 @@ public class DexItemFactory {
   }
 
   public AdvanceLine createAdvanceLine(int delta) {
-    synchronized (advanceLines) {
-      return advanceLines.computeIfAbsent(delta, AdvanceLine::new);
-    }
+    return advanceLines.get(delta);
   }
 
   public AdvancePC createAdvancePC(int delta) {
-    synchronized (advancePCs) {
-      return advancePCs.computeIfAbsent(delta, AdvancePC::new);
-    }
+    return advancePCs.get(delta);
   }
 
   public Default createDefault(int value) {
-    synchronized (defaults) {
-      return defaults.computeIfAbsent(value, Default::new);
-    }
+    return defaults.get(value);
   }
 
   public EndLocal createEndLocal(int registerNum) {
-    synchronized (endLocals) {
-      return endLocals.computeIfAbsent(registerNum, EndLocal::new);
-    }
+    return endLocals.get(registerNum);
   }
 
   public RestartLocal createRestartLocal(int registerNum) {
-    synchronized (restartLocals) {
-      return restartLocals.computeIfAbsent(registerNum, RestartLocal::new);
-    }
+    return restartLocals.get(registerNum);
   }
 
   public SetEpilogueBegin createSetEpilogueBegin() {
@@ -515,15 +511,47 @@ public class DexItemFactory {
   }
 
   public SetFile createSetFile(DexString fileName) {
-    synchronized (setFiles) {
-      return setFiles.computeIfAbsent(fileName, SetFile::new);
-    }
+    SetFile result = setFiles.get(fileName);
+    return result != null ? result : setFiles.computeIfAbsent(fileName, SetFile::new);
   }
 
   // TODO(tamaskenez) b/69024229 Measure if canonicalization is worth it.
   public SetInlineFrame createSetInlineFrame(DexMethod callee, Position caller) {
-    synchronized (setInlineFrames) {
-      return setInlineFrames.computeIfAbsent(new SetInlineFrame(callee, caller), p -> p);
+    SetInlineFrame frame = new SetInlineFrame(callee, caller);
+    SetInlineFrame previous = setInlineFrames.putIfAbsent(frame, frame);
+    return previous == null ? frame : previous;
+  }
+
+  /**
+   * Canonical debug events keyed by an int. Keys in a small range are kept in an array that is
+   * filled lazily with compare-and-set, and other keys in a concurrent map, so that looking up an
+   * existing event never takes a lock.
+   */
+  private static class IntKeyedEvents<T extends DexDebugEvent> {
+
+    private final int min;
+    private final AtomicReferenceArray<T> small;
+    private final ConcurrentHashMap<Integer, T> large = new ConcurrentHashMap<>();
+    private final IntFunction<T> factory;
+
+    IntKeyedEvents(int min, int max, IntFunction<T> factory) {
+      this.min = min;
+      this.small = new AtomicReferenceArray<>(max - min + 1);
+      this.factory = factory;
+    }
+
+    T get(int key) {
+      int index = key - min;
+      if (index < 0 || index >= small.length()) {
+        T result = large.get(key);
+        return result != null ? result : large.computeIfAbsent(key, factory::apply);
+      }
+      T result = small.get(index);
+      if (result == null) {
+        T event = factory.apply(key);
+        result = small.compareAndSet(index, null, event) ? event : small.get(index);
+      }
+      return result;
     }
   }
 
@@ -5,6 +5,7 @@ package com.android.tools.r8.graph;
 
 import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A GraphLense implements a virtual view on top of the graph, used to delay global rewrites until
@@ -104,10 +105,17 @@ public abstract class GraphLense {
     protected final DexItemFactory dexItemFactory;
 
     private final Map<DexType, DexType> typeMap;
-    private final Map<DexType, DexType> arrayTypeCache = new IdentityHashMap<>();
+    private final ConcurrentHashMap<DexType, DexType> arrayTypeCache = new ConcurrentHashMap<>();
     private final Map<DexMethod, DexMethod> methodMap;
     private final Map<DexField, DexField> fieldMap;
 
+    // The maps of this lense composed with the maps of all previous lenses, if these are all
+    // nested lenses, so that a lookup is a single probe instead of a walk over the chain of
+    // lenses. Null if a previous lense cannot be flattened, e.g., as it depends on the context.
+    private final Map<DexType, DexType> flattenedTypeMap;
+    private final Map<DexMethod, DexMethod> flattenedMethodMap;
+    private final Map<DexField, DexField> flattenedFieldMap;
+
     public NestedGraphLense(Map<DexType, DexType> typeMap, Map<DexMethod, DexMethod> methodMap,
         Map<DexField, DexField> fieldMap, GraphLense previousLense, DexItemFactory dexItemFactory) {
       this.typeMap = typeMap;
@@ -115,26 +123,58 @@ public abstract class GraphLense {
       this.fieldMap = fieldMap;
       this.previousLense = previousLense;
       this.dexItemFactory = dexItemFactory;
+      if (previousLense.isIdentityLense()) {
+        flattenedTypeMap = typeMap;
+        flattenedMethodMap = methodMap;
+        flattenedFieldMap = fieldMap;
+      } else if (previousLense instanceof NestedGraphLense
+          && ((NestedGraphLense) previousLense).isFlattened()) {
+        NestedGraphLense previous = (NestedGraphLense) previousLense;
+        flattenedTypeMap = compose(previous.flattenedTypeMap, typeMap);
+        flattenedMethodMap = compose(previous.flattenedMethodMap, methodMap);
+        flattenedFieldMap = compose(previous.flattenedFieldMap, fieldMap);
+      } else {
+        flattenedTypeMap = null;
+        flattenedMethodMap = null;
+        flattenedFieldMap = null;
+      }
+    }
+
+    // Returns the map that first applies previous and then next. Items that are not mapped by
+    // previous are looked up in next directly, as previous maps them to themselves.
+    private static <T> Map<T, T> compose(Map<T, T> previous, Map<T, T> next) {
+      if (previous.isEmpty()) {
+        return next;
+      }
+      Map<T, T> result = new IdentityHashMap<>(previous.size() + next.size());
+      previous.forEach((from, to) -> result.put(from, next.getOrDefault(to, to)));
+      next.forEach(result::putIfAbsent);
+      return result;
+    }
+
+    private boolean isFlattened() {
+      return flattenedTypeMap != null;
     }
 
     @Override
     public DexType lookupType(DexType type, DexEncodedMethod context) {
       if (type.isArrayType()) {
-        synchronized (this) {
-          // This block need to be synchronized due to arrayTypeCache.
-          DexType result = arrayTypeCache.get(type);
-          if (result == null) {
-            DexType baseType = type.toBaseType(dexItemFactory);
-            DexType newType = lookupType(baseType, context);
-            if (baseType == newType) {
-              result = type;
-            } else {
-              result = type.replaceBaseType(newType, dexItemFactory);
-            }
-            arrayTypeCache.put(type, result);
+        DexType result = arrayTypeCache.get(type);
+        if (result == null) {
+          DexType baseType = type.toBaseType(dexItemFactory);
+          DexType newType = lookupType(baseType, context);
+          if (baseType == newType) {
+            result = type;
+          } else {
+            result = type.replaceBaseType(newType, dexItemFactory);
           }
-          return result;
+          // Racing threads compute the same canonical type, so either result can be kept.
+          arrayTypeCache.putIfAbsent(type, result);
         }
+        return result;
+      }
+      if (isFlattened()) {
+        return flattenedTypeMap.getOrDefault(type, type);
       }
       DexType previous = previousLense.lookupType(type, context);
       return typeMap.getOrDefault(previous, previous);
@@ -142,12 +182,18 @@ public abstract class GraphLense {
 
     @Override
     public DexMethod lookupMethod(DexMethod method, DexEncodedMethod context) {
+      if (isFlattened()) {
+        return flattenedMethodMap.getOrDefault(method, method);
+      }
       DexMethod previous = previousLense.lookupMethod(method, context);
       return methodMap.getOrDefault(previous, previous);
     }
 
     @Override
     public DexField lookupField(DexField field, DexEncodedMethod context) {
+      if (isFlattened()) {
+        return flattenedFieldMap.getOrDefault(field, field);
+      }
       DexField previous = previousLense.lookupField(field, context);
       return fieldMap.getOrDefault(previous, previous);
     }
@@ -63,7 +63,15 @@ public class JarClassFileReader {
   }
 
   public void read(Origin origin, ClassKind classKind, InputStream input) throws IOException {
-    ClassReader reader = new ClassReader(input);
+    read(origin, classKind, new ClassReader(input));
+  }
+
+  /** Read a class from its content, which is kept as the class cache of the class. */
+  public void read(Origin origin, ClassKind classKind, byte[] bytes) {
+    read(origin, classKind, new ClassReader(bytes));
+  }
+
+  private void read(Origin origin, ClassKind classKind, ClassReader reader) {
     reader.accept(new CreateDexClassVisitor(
         origin, classKind, reader.b, application, classConsumer), SKIP_FRAMES);
   }
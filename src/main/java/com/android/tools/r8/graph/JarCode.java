@@ -14,15 +14,19 @@ import com.android.tools.r8.jar.JarRegisterEffectsVisitor;
 import com.android.tools.r8.naming.ClassNameMapper;
 import com.android.tools.r8.origin.Origin;
 import com.android.tools.r8.utils.InternalOptions;
+import it.unimi.dsi.fastutil.ints.Int2ReferenceMap;
+import it.unimi.dsi.fastutil.ints.Int2ReferenceOpenHashMap;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.commons.JSRInlinerAdapter;
+import org.objectweb.asm.tree.FrameNode;
 import org.objectweb.asm.tree.MethodNode;
 import org.objectweb.asm.util.Textifier;
 import org.objectweb.asm.util.TraceMethodVisitor;
@@ -44,10 +48,16 @@ public class JarCode extends Code {
     private final List<JarCode> codeList = new ArrayList<>();
   }
 
+  // Rough number of class file bytes per instruction, including the constant pool entries.
+  private static final int CLASS_FILE_BYTES_PER_INSTRUCTION = 4;
+
   private final DexMethod method;
   private final Origin origin;
   private MethodNode node;
-  private ReparseContext context;
+  // Verifier frames of the code keyed by the index of the instruction they precede, or null if the
+  // class file has no frames or they were not read.
+  private Int2ReferenceMap<FrameNode> frames;
+  private volatile ReparseContext context;
 
   private final JarApplicationReader application;
 
@@ -60,6 +70,26 @@ public class JarCode extends Code {
     context.codeList.add(this);
   }
 
+  /**
+   * Returns the content of the class file defining this code, or null if the class has already
+   * been reparsed and the content released.
+   */
+  public byte[] getClassFileContent() {
+    ReparseContext context = this.context;
+    return context == null ? null : context.classCache;
+  }
+
+  @Override
+  public int estimatedInstructionCount() {
+    ReparseContext context = this.context;
+    if (context != null) {
+      // Until the class is parsed, share the size of the class file between its methods.
+      int bytesPerMethod = context.classCache.length / context.codeList.size();
+      return Math.max(1, bytesPerMethod / CLASS_FILE_BYTES_PER_INSTRUCTION);
+    }
+    return node.instructions.size();
+  }
+
   @Override
   public boolean isJarCode() {
     return true;
@@ -139,7 +169,7 @@ public class JarCode extends Code {
       node.localVariables.clear();
     }
     JarSourceCode source = new JarSourceCode(
-        method.getHolder(), node, application, encodedMethod.method, callerPosition);
+        method.getHolder(), node, frames, application, encodedMethod.method, callerPosition);
     IRBuilder builder =
         (generator == null)
             ? new IRBuilder(encodedMethod, source, options)
@@ -170,17 +200,30 @@ public class JarCode extends Code {
   }
 
   private void triggerDelayedParsingIfNeccessary() {
+    ReparseContext context = this.context;
     if (context != null) {
-      // The SecondVistor is in charge of setting the context to null.
-      DexProgramClass owner = context.owner;
-      new ClassReader(context.classCache).accept(new SecondVisitor(context, application),
-          ClassReader.SKIP_FRAMES);
-      assert verifyNoReparseContext(owner);
+      // Methods of the same class may be parsed from different threads. The class is reparsed
+      // once while holding the lock of the shared context.
+      synchronized (context) {
+        if (this.context == null) {
+          return;
+        }
+        DexProgramClass owner = context.owner;
+        new ClassReader(context.classCache).accept(new SecondVisitor(context, application),
+            application.options.useClassFileFrames
+                ? ClassReader.EXPAND_FRAMES
+                : ClassReader.SKIP_FRAMES);
+        // Only drop the contexts once all nodes are filled, so that no thread sees a partial node.
+        for (JarCode code : context.codeList) {
+          code.context = null;
+        }
+        assert verifyNoReparseContext(owner);
+      }
     }
   }
 
   /**
-   * Fills the MethodNodes of all the methods in the class and removes the ReparseContext.
+   * Fills the MethodNodes of all the methods in the class.
    */
   private static class SecondVisitor extends ClassVisitor {
 
@@ -197,7 +240,8 @@ public class JarCode extends Code {
     @Override
     public MethodVisitor visitMethod(int access, String name, String desc, String signature,
         String[] exceptions) {
-      MethodNode node = new JSRInlinerAdapter(null, access, name, desc, signature, exceptions);
+      FrameRecordingMethodNode node =
+          new FrameRecordingMethodNode(access, name, desc, signature, exceptions);
       JarCode code = null;
       MethodAccessFlags flags = JarClassFileReader.createMethodAccessFlags(name, access);
       if (!flags.isAbstract() && !flags.isNative()) {
@@ -205,14 +249,68 @@ public class JarCode extends Code {
         assert code.method == application.getMethod(context.owner.type, name, desc);
       }
       if (code != null) {
-        code.context = null;
         code.node = node;
+        node.code = code;
         return node;
       }
       return null;
     }
   }
 
+  /**
+   * Method node that records the expanded verifier frames of the code on the side, instead of
+   * adding them to the instructions. Frames are dropped for code with subroutines, as inlining the
+   * subroutines invalidates them.
+   */
+  private static class FrameRecordingMethodNode extends JSRInlinerAdapter {
+
+    private JarCode code = null;
+    private Int2ReferenceMap<FrameNode> frames = null;
+    private boolean hasSubroutines = false;
+
+    FrameRecordingMethodNode(
+        int access, String name, String desc, String signature, String[] exceptions) {
+      super(Opcodes.ASM6, null, access, name, desc, signature, exceptions);
+    }
+
+    @Override
+    public void visitFrame(int type, int nLocal, Object[] local, int nStack, Object[] stack) {
+      assert type == Opcodes.F_NEW;
+      if (frames == null) {
+        frames = new Int2ReferenceOpenHashMap<>();
+      }
+      frames.put(
+          instructions.size(),
+          new FrameNode(type, nLocal, getLabelNodes(nLocal, local), nStack,
+              getLabelNodes(nStack, stack)));
+    }
+
+    private Object[] getLabelNodes(int count, Object[] values) {
+      Object[] result = new Object[count];
+      for (int i = 0; i < count; i++) {
+        Object value = values[i];
+        result[i] = value instanceof Label ? getLabelNode((Label) value) : value;
+      }
+      return result;
+    }
+
+    @Override
+    public void visitJumpInsn(int opcode, Label label) {
+      if (opcode == Opcodes.JSR) {
+        hasSubroutines = true;
+      }
+      super.visitJumpInsn(opcode, label);
+    }
+
+    @Override
+    public void visitEnd() {
+      super.visitEnd();
+      if (code != null && !hasSubroutines) {
+        code.frames = frames;
+      }
+    }
+  }
+
   private static boolean verifyNoReparseContext(DexProgramClass owner) {
     for (DexEncodedMethod method : owner.virtualMethods()) {
       Code code = method.getCode();
@@ -0,0 +1,119 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.graph;
+
+/**
+ * Open-addressed hash table of the methods or fields of a class, used by the member lookups of
+ * {@link DexClass} instead of a linear scan for classes with many members.
+ *
+ * <p>Members are keyed by the identity of their name and proto, or name and type, as that is what
+ * {@link Descriptor#match} compares. If several members have the same key, the first one in the
+ * member array is found, like with a linear scan. An index is only valid for the member array it
+ * was built from, which must not be modified in place.
+ */
+abstract class MemberIndex<T extends DexItem, S extends Descriptor<T, S>> {
+
+  // Member arrays of at most this length are scanned linearly.
+  static final int MAX_UNINDEXED_MEMBERS = 8;
+
+  private final T[] members;
+  private final Object[] slots;
+  private final int mask;
+
+  MemberIndex(T[] members) {
+    assert members.length > 0;
+    this.members = members;
+    // Keep the load factor at or below one half.
+    slots = new Object[Integer.highestOneBit(members.length * 2 - 1) << 1];
+    mask = slots.length - 1;
+    for (T member : members) {
+      insert(member);
+    }
+  }
+
+  private void insert(T member) {
+    int i = hash(member) & mask;
+    while (slots[i] != null) {
+      if (hasSameKey(get(i), member)) {
+        return;
+      }
+      i = (i + 1) & mask;
+    }
+    slots[i] = member;
+  }
+
+  @SuppressWarnings("unchecked")
+  private T get(int i) {
+    return (T) slots[i];
+  }
+
+  boolean isFor(T[] members) {
+    return this.members == members;
+  }
+
+  T lookup(S descriptor) {
+    for (int i = hashDescriptor(descriptor) & mask; slots[i] != null; i = (i + 1) & mask) {
+      T member = get(i);
+      if (descriptor.match(member)) {
+        return member;
+      }
+    }
+    return null;
+  }
+
+  abstract int hash(T member);
+
+  abstract int hashDescriptor(S descriptor);
+
+  abstract boolean hasSameKey(T member, T other);
+
+  static int hash(DexItem name, DexItem signature) {
+    int hash = name.hashCode() * 31 + signature.hashCode();
+    return hash ^ (hash >>> 16);
+  }
+
+  static class MethodIndex extends MemberIndex<DexEncodedMethod, DexMethod> {
+
+    MethodIndex(DexEncodedMethod[] methods) {
+      super(methods);
+    }
+
+    @Override
+    int hash(DexEncodedMethod member) {
+      return hashDescriptor(member.method);
+    }
+
+    @Override
+    int hashDescriptor(DexMethod method) {
+      return hash(method.name, method.proto);
+    }
+
+    @Override
+    boolean hasSameKey(DexEncodedMethod member, DexEncodedMethod other) {
+      return member.method.match(other);
+    }
+  }
+
+  static class FieldIndex extends MemberIndex<DexEncodedField, DexField> {
+
+    FieldIndex(DexEncodedField[] fields) {
+      super(fields);
+    }
+
+    @Override
+    int hash(DexEncodedField member) {
+      return hashDescriptor(member.field);
+    }
+
+    @Override
+    int hashDescriptor(DexField field) {
+      return hash(field.name, field.type);
+    }
+
+    @Override
+    boolean hasSameKey(DexEncodedField member, DexEncodedField other) {
+      return member.field.match(other);
+    }
+  }
+}
@@ -40,8 +40,9 @@ public class ObjectToOffsetMapping {
       Collection<DexString> strings,
       Collection<DexCallSite> callSites,
       Collection<DexMethodHandle> methodHandles) {
-    assert application != null;
     assert classes != null;
+    // The application is only used for sorting classes and may be absent if there are none.
+    assert application != null || classes.isEmpty();
     assert protos != null;
     assert types != null;
     assert methods != null;
@@ -18,17 +18,15 @@ import com.google.common.base.Equivalence;
 import com.google.common.base.Equivalence.Wrapper;
 import com.google.common.collect.ImmutableList;
 import it.unimi.dsi.fastutil.ints.Int2ReferenceMap;
+import it.unimi.dsi.fastutil.ints.Int2ReferenceOpenHashMap;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -97,7 +95,7 @@ public class BasicBlock {
   // Catch handler information about which successors are catch handlers and what their guards are.
   private CatchHandlers<Integer> catchHandlers = CatchHandlers.EMPTY_INDICES;
 
-  private LinkedList<Instruction> instructions = new LinkedList<>();
+  private InstructionList instructions = new InstructionList();
   private int number = -1;
   private List<Phi> phis = new ArrayList<>();
 
@@ -113,7 +111,7 @@ public class BasicBlock {
   // in predecessor blocks.
   private boolean filled = false;
   private boolean sealed = false;
-  private final Map<Integer, Phi> incompletePhis = new HashMap<>();
+  private final Int2ReferenceMap<Phi> incompletePhis = new Int2ReferenceOpenHashMap<>();
   private int estimatedPredecessorsCount = 0;
   private int unfilledPredecessorsCount = 0;
 
@@ -121,7 +119,7 @@ public class BasicBlock {
   private int color = 0;
 
   // Map of registers to current SSA value. Used during SSA numbering and cleared once filled.
-  private Map<Integer, Value> currentDefinitions = new HashMap<>();
+  private Int2ReferenceMap<Value> currentDefinitions = new Int2ReferenceOpenHashMap<>();
 
   public List<BasicBlock> getSuccessors() {
     return successors;
@@ -388,7 +386,7 @@ public class BasicBlock {
     this.number = number;
   }
 
-  public LinkedList<Instruction> getInstructions() {
+  public InstructionList getInstructions() {
     return instructions;
   }
 
@@ -687,8 +685,8 @@ public class BasicBlock {
     assert unfilledPredecessorsCount > 0;
     if (--unfilledPredecessorsCount == 0) {
       assert estimatedPredecessorsCount == predecessors.size();
-      for (Entry<Integer, Phi> entry : incompletePhis.entrySet()) {
-        int register = entry.getKey();
+      for (Int2ReferenceMap.Entry<Phi> entry : incompletePhis.int2ReferenceEntrySet()) {
+        int register = entry.getIntKey();
         if (register < 0) {
           register = onThrowValueRegister(register);
         }
@@ -921,7 +919,7 @@ public class BasicBlock {
     instructions.add(branch);
   }
 
-  public void setInstructions(LinkedList<Instruction> instructions) {
+  public void setInstructions(InstructionList instructions) {
     this.instructions = instructions;
   }
 
@@ -931,7 +929,7 @@ public class BasicBlock {
    */
   public void removeInstructions(List<Integer> toRemove) {
     if (!toRemove.isEmpty()) {
-      LinkedList<Instruction> newInstructions = new LinkedList<>();
+      InstructionList newInstructions = new InstructionList();
       int nextIndex = 0;
       for (Integer index : toRemove) {
         assert index >= nextIndex;  // Indexes in toRemove must be sorted ascending.
@@ -1116,7 +1114,7 @@ public class BasicBlock {
     if (register >= 0) {
       return true;
     }
-    for (Integer other : currentDefinitions.keySet()) {
+    for (int other : currentDefinitions.keySet()) {
       assert other >= 0 || other == register;
     }
     return true;
@@ -0,0 +1,171 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.code;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Array backed list of the instructions of a basic block.
+ *
+ * <p>The array has a gap of unused slots that is moved to where instructions are added or removed.
+ * Passes iterate over the instructions of a block and add or remove instructions at the position
+ * of the iterator, so the gap only moves with the iterator, and additions and removals do not
+ * need to shift the rest of the instructions. Unlike a linked list, no node is allocated per
+ * instruction.
+ */
+public class InstructionList extends AbstractList<Instruction> implements RandomAccess {
+
+  private static final Instruction[] EMPTY = new Instruction[0];
+  private static final int MIN_CAPACITY = 8;
+
+  private Instruction[] elements = EMPTY;
+  // The slots from gapStart to gapEnd (exclusive) are unused.
+  private int gapStart = 0;
+  private int gapEnd = 0;
+
+  public InstructionList() {
+  }
+
+  public InstructionList(Collection<? extends Instruction> instructions) {
+    elements = instructions.toArray(new Instruction[instructions.size()]);
+    gapStart = elements.length;
+    gapEnd = elements.length;
+  }
+
+  private int gapSize() {
+    return gapEnd - gapStart;
+  }
+
+  private int physicalIndex(int index) {
+    return index < gapStart ? index : index + gapSize();
+  }
+
+  private void checkElementIndex(int index) {
+    if (index < 0 || index >= size()) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+    }
+  }
+
+  private void checkPositionIndex(int index) {
+    if (index < 0 || index > size()) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+    }
+  }
+
+  private void moveGapTo(int index) {
+    if (index < gapStart) {
+      int count = gapStart - index;
+      System.arraycopy(elements, index, elements, gapEnd - count, count);
+      Arrays.fill(elements, index, Math.min(gapStart, gapEnd - count), null);
+      gapStart = index;
+      gapEnd -= count;
+    } else if (index > gapStart) {
+      int count = index - gapStart;
+      System.arraycopy(elements, gapEnd, elements, gapStart, count);
+      Arrays.fill(elements, Math.max(gapEnd, index), gapEnd + count, null);
+      gapStart = index;
+      gapEnd += count;
+    }
+  }
+
+  private void ensureGap() {
+    if (gapStart < gapEnd) {
+      return;
+    }
+    int tail = elements.length - gapEnd;
+    Instruction[] newElements =
+        new Instruction[Math.max(MIN_CAPACITY, elements.length + (elements.length >> 1))];
+    System.arraycopy(elements, 0, newElements, 0, gapStart);
+    System.arraycopy(elements, gapEnd, newElements, newElements.length - tail, tail);
+    gapEnd = newElements.length - tail;
+    elements = newElements;
+  }
+
+  @Override
+  public int size() {
+    return elements.length - gapSize();
+  }
+
+  @Override
+  public Instruction get(int index) {
+    checkElementIndex(index);
+    return elements[physicalIndex(index)];
+  }
+
+  @Override
+  public Instruction set(int index, Instruction instruction) {
+    checkElementIndex(index);
+    int physicalIndex = physicalIndex(index);
+    Instruction previous = elements[physicalIndex];
+    elements[physicalIndex] = instruction;
+    return previous;
+  }
+
+  @Override
+  public void add(int index, Instruction instruction) {
+    checkPositionIndex(index);
+    moveGapTo(index);
+    ensureGap();
+    elements[gapStart++] = instruction;
+    modCount++;
+  }
+
+  @Override
+  public Instruction remove(int index) {
+    checkElementIndex(index);
+    moveGapTo(index);
+    Instruction removed = elements[gapEnd];
+    elements[gapEnd++] = null;
+    modCount++;
+    return removed;
+  }
+
+  @Override
+  public void clear() {
+    elements = EMPTY;
+    gapStart = 0;
+    gapEnd = 0;
+    modCount++;
+  }
+
+  public Instruction getFirst() {
+    if (isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    return get(0);
+  }
+
+  public Instruction getLast() {
+    if (isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    return get(size() - 1);
+  }
+
+  public void addFirst(Instruction instruction) {
+    add(0, instruction);
+  }
+
+  public void addLast(Instruction instruction) {
+    add(size(), instruction);
+  }
+
+  public Instruction removeFirst() {
+    if (isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    return remove(0);
+  }
+
+  public Instruction removeLast() {
+    if (isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    return remove(size() - 1);
+  }
+}
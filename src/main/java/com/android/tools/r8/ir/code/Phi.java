@@ -13,11 +13,10 @@ import com.android.tools.r8.utils.CfgPrinter;
 import com.android.tools.r8.utils.ListUtils;
 import com.android.tools.r8.utils.StringUtils;
 import com.google.common.collect.ImmutableSet;
+import it.unimi.dsi.fastutil.ints.Int2ReferenceMap;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 public class Phi extends Value {
@@ -30,7 +29,7 @@ public class Phi extends Value {
   // we need to update all references to it. A phi can be referenced from phis, instructions
   // and current definition mappings. This list contains the current definitions mappings that
   // contain this phi.
-  private List<Map<Integer, Value>> definitionUsers = new ArrayList<>();
+  private List<Int2ReferenceMap<Value>> definitionUsers = new ArrayList<>();
 
   public Phi(int number, BasicBlock block, ValueType type, DebugLocalInfo local) {
     super(number, type, local);
@@ -211,8 +210,8 @@ public class Phi extends Value {
     }
     // If IR construction is taking place, update the definition users.
     if (definitionUsers != null) {
-      for (Map<Integer, Value> user : definitionUsers) {
-        for (Entry<Integer, Value> entry : user.entrySet()) {
+      for (Int2ReferenceMap<Value> user : definitionUsers) {
+        for (Int2ReferenceMap.Entry<Value> entry : user.int2ReferenceEntrySet()) {
           if (entry.getValue() == this) {
             entry.setValue(same);
             if (same.isPhi()) {
@@ -264,11 +263,11 @@ public class Phi extends Value {
     }
   }
 
-  public void addDefinitionsUser(Map<Integer, Value> currentDefinitions) {
+  public void addDefinitionsUser(Int2ReferenceMap<Value> currentDefinitions) {
     definitionUsers.add(currentDefinitions);
   }
 
-  public void removeDefinitionsUser(Map<Integer, Value> currentDefinitions) {
+  public void removeDefinitionsUser(Int2ReferenceMap<Value> currentDefinitions) {
     definitionUsers.remove(currentDefinitions);
   }
 
@@ -9,13 +9,11 @@ import com.android.tools.r8.graph.DebugLocalInfo;
 import com.android.tools.r8.ir.regalloc.LiveIntervals;
 import com.android.tools.r8.utils.InternalOptions;
 import com.android.tools.r8.utils.LongInterval;
-import com.google.common.collect.ImmutableSet;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -76,10 +74,8 @@ public class Value {
   protected final int number;
   protected final ValueType type;
   public Instruction definition = null;
-  private LinkedList<Instruction> users = new LinkedList<>();
-  private Set<Instruction> uniqueUsers = null;
-  private LinkedList<Phi> phiUsers = new LinkedList<>();
-  private Set<Phi> uniquePhiUsers = null;
+  private ValueUsers<Instruction> users = new ValueUsers<>();
+  private ValueUsers<Phi> phiUsers = new ValueUsers<>();
   private Value nextConsecutive = null;
   private Value previousConsecutive = null;
   private LiveIntervals liveIntervals;
@@ -221,17 +217,11 @@ public class Value {
   }
 
   public Set<Instruction> uniqueUsers() {
-    if (uniqueUsers != null) {
-      return uniqueUsers;
-    }
-    return uniqueUsers = ImmutableSet.copyOf(users);
+    return users.asSet();
   }
 
   public Set<Phi> uniquePhiUsers() {
-    if (uniquePhiUsers != null) {
-      return uniquePhiUsers;
-    }
-    return uniquePhiUsers = ImmutableSet.copyOf(phiUsers);
+    return phiUsers.asSet();
   }
 
   public Set<Instruction> debugUsers() {
@@ -243,19 +233,11 @@ public class Value {
   }
 
   public int numberOfUsers() {
-    int size = users.size();
-    if (size <= 1) {
-      return size;
-    }
-    return uniqueUsers().size();
+    return users.size();
   }
 
   public int numberOfPhiUsers() {
-    int size = phiUsers.size();
-    if (size <= 1) {
-      return size;
-    }
-    return uniquePhiUsers().size();
+    return phiUsers.size();
   }
 
   public int numberOfAllNonDebugUsers() {
@@ -293,24 +275,19 @@ public class Value {
 
   public void addUser(Instruction user) {
     users.add(user);
-    uniqueUsers = null;
   }
 
   public void removeUser(Instruction user) {
     users.remove(user);
-    uniqueUsers = null;
   }
 
   private void fullyRemoveUser(Instruction user) {
-    users.removeIf(u -> u == user);
-    uniqueUsers = null;
+    users.removeAll(user);
   }
 
   public void clearUsers() {
     users.clear();
-    uniqueUsers = null;
     phiUsers.clear();
-    uniquePhiUsers = null;
     if (debugData != null) {
       debugData.users.clear();
       debugData.phiUsers.clear();
@@ -319,17 +296,14 @@ public class Value {
 
   public void addPhiUser(Phi user) {
     phiUsers.add(user);
-    uniquePhiUsers = null;
   }
 
   public void removePhiUser(Phi user) {
     phiUsers.remove(user);
-    uniquePhiUsers = null;
   }
 
   private void fullyRemovePhiUser(Phi user) {
-    phiUsers.removeIf(u -> u == user);
-    uniquePhiUsers = null;
+    phiUsers.removeAll(user);
   }
 
   public void addDebugUser(Instruction user) {
@@ -372,9 +346,7 @@ public class Value {
 
   public void clearUsersInfo() {
     users = null;
-    uniqueUsers = null;
     phiUsers = null;
-    uniquePhiUsers = null;
     if (debugData != null) {
       debugData.users = null;
       debugData.phiUsers = null;
@@ -0,0 +1,162 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.code;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Users of a value, kept as an array of distinct users with the number of times each user uses
+ * the value.
+ *
+ * <p>The users are kept in the order in which they were first added. {@link #asSet} returns an
+ * immutable snapshot, so that the users of a value can be updated while iterating the snapshot.
+ */
+class ValueUsers<T> {
+
+  private static final Object[] EMPTY = new Object[0];
+  private static final int[] NO_COUNTS = new int[0];
+
+  private Object[] users = EMPTY;
+  private int[] counts = NO_COUNTS;
+  private int size = 0;
+  private Set<T> snapshot = null;
+
+  private int indexOf(T user) {
+    // Instructions tend to add their uses of a value one after the other, so look from the end.
+    for (int i = size - 1; i >= 0; i--) {
+      if (users[i] == user) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** Number of distinct users. */
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  void add(T user) {
+    int index = indexOf(user);
+    if (index >= 0) {
+      counts[index]++;
+      return;
+    }
+    if (size == users.length) {
+      int capacity = Math.max(4, size * 2);
+      users = Arrays.copyOf(users, capacity);
+      counts = Arrays.copyOf(counts, capacity);
+    }
+    users[size] = user;
+    counts[size] = 1;
+    size++;
+    snapshot = null;
+  }
+
+  /** Remove one use by the user. */
+  void remove(T user) {
+    int index = indexOf(user);
+    if (index >= 0 && --counts[index] == 0) {
+      removeAt(index);
+    }
+  }
+
+  /** Remove all uses by the user. */
+  void removeAll(T user) {
+    int index = indexOf(user);
+    if (index >= 0) {
+      removeAt(index);
+    }
+  }
+
+  private void removeAt(int index) {
+    int moved = size - index - 1;
+    System.arraycopy(users, index + 1, users, index, moved);
+    System.arraycopy(counts, index + 1, counts, index, moved);
+    size--;
+    users[size] = null;
+    snapshot = null;
+  }
+
+  void clear() {
+    if (size > 0) {
+      Arrays.fill(users, 0, size, null);
+      size = 0;
+      snapshot = null;
+    }
+  }
+
+  Set<T> asSet() {
+    if (snapshot == null) {
+      snapshot = size == 0 ? Collections.emptySet() : new Snapshot<>(Arrays.copyOf(users, size));
+    }
+    return snapshot;
+  }
+
+  private static class Snapshot<T> extends AbstractSet<T> {
+
+    // Above this size, contains is answered by a hash set built on first use.
+    private static final int LINEAR_CONTAINS_LIMIT = 8;
+
+    private final Object[] elements;
+    private Set<Object> lookup = null;
+
+    Snapshot(Object[] elements) {
+      this.elements = elements;
+    }
+
+    @Override
+    public int size() {
+      return elements.length;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      if (elements.length <= LINEAR_CONTAINS_LIMIT) {
+        for (Object element : elements) {
+          if (element == o) {
+            return true;
+          }
+        }
+        return false;
+      }
+      if (lookup == null) {
+        lookup = Collections.newSetFromMap(new IdentityHashMap<>(elements.length));
+        Collections.addAll(lookup, elements);
+      }
+      return lookup.contains(o);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+      return new Iterator<T>() {
+        private int next = 0;
+
+        @Override
+        public boolean hasNext() {
+          return next < elements.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+          if (next >= elements.length) {
+            throw new NoSuchElementException();
+          }
+          return (T) elements[next++];
+        }
+      };
+    }
+  }
+}
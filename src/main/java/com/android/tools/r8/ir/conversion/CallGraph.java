@@ -4,6 +4,7 @@
 
 package com.android.tools.r8.ir.conversion;
 
+import com.android.tools.r8.graph.Code;
 import com.android.tools.r8.graph.DexApplication;
 import com.android.tools.r8.graph.DexClass;
 import com.android.tools.r8.graph.DexEncodedMethod;
@@ -18,21 +19,32 @@ import com.android.tools.r8.shaking.Enqueuer.AppInfoWithLiveness;
 import com.android.tools.r8.utils.InternalOptions;
 import com.android.tools.r8.utils.ThreadUtils;
 import com.android.tools.r8.utils.ThrowingBiConsumer;
+import com.android.tools.r8.utils.Timing;
 import com.google.common.collect.Sets;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 /**
  * Call graph representation.
@@ -51,38 +63,45 @@ import java.util.stream.Collectors;
  */
 public class CallGraph extends CallSiteInformation {
 
+  // Number of chunks of methods per thread when extracting the calls, to balance the threads.
+  private static final int CHUNKS_PER_THREAD = 4;
+
   private CallGraph(InternalOptions options) {
     this.shuffle = options.testing.irOrdering;
   }
 
-  private static class Node {
+  private class Node {
 
     public final DexEncodedMethod method;
+    // Position of the node in the order in which nodes were created.
+    private final int index;
     private int invokeCount = 0;
     private boolean isSelfRecursive = false;
 
-    // Outgoing calls from this method.
-    private final Set<Node> callees = new LinkedHashSet<>();
+    // Index of the last caller that added this node as callee, to add each edge once.
+    private int lastCaller = -1;
+
+    // Length of the longest call chain from this method, with leaves at level 0.
+    private int level = 0;
+
+    // Number of callees that are not yet processed in forEachMethod.
+    private final AtomicInteger pendingCallees = new AtomicInteger();
+
+    // Outgoing calls from this method, as indices of nodes.
+    private final IntArrayList callees = new IntArrayList(0);
 
-    // Incoming calls to this method.
-    private final Set<Node> callers = new LinkedHashSet<>();
+    // Incoming calls to this method, as indices of nodes.
+    private final IntArrayList callers = new IntArrayList(0);
 
-    private Node(DexEncodedMethod method) {
+    private Node(DexEncodedMethod method, int index) {
       this.method = method;
+      this.index = index;
     }
 
     public boolean isBridge() {
       return method.accessFlags.isBridge();
     }
 
-    private void addCallee(Node method) {
-      callees.add(method);
-    }
-
-    private void addCaller(Node method) {
-      callers.add(method);
-    }
-
     boolean isSelfRecursive() {
       return isSelfRecursive;
     }
@@ -91,6 +110,27 @@ public class CallGraph extends CallSiteInformation {
       return callees.isEmpty();
     }
 
+    /**
+     * Compute the indices of the direct and transitive callees of this method, which are always
+     * processed before this method in {@link CallGraph#forEachMethod}.
+     */
+    private BitSet computeTransitiveCallees() {
+      BitSet result = new BitSet(nodeList.size());
+      Deque<Node> worklist = new ArrayDeque<>();
+      worklist.add(this);
+      while (!worklist.isEmpty()) {
+        Node node = worklist.pop();
+        for (int i = 0; i < node.callees.size(); i++) {
+          int callee = node.callees.getInt(i);
+          if (!result.get(callee)) {
+            result.set(callee);
+            worklist.add(nodeList.get(callee));
+          }
+        }
+      }
+      return result;
+    }
+
     @Override
     public String toString() {
       StringBuilder builder = new StringBuilder();
@@ -111,17 +151,17 @@ public class CallGraph extends CallSiteInformation {
       builder.append(").\n");
       if (callees.size() > 0) {
         builder.append("Callees:\n");
-        for (Node call : callees) {
+        for (int call : callees) {
           builder.append("  ");
-          builder.append(call.method.qualifiedName());
+          builder.append(nodeList.get(call).method.qualifiedName());
           builder.append("\n");
         }
       }
       if (callers.size() > 0) {
         builder.append("Callers:\n");
-        for (Node caller : callers) {
+        for (int caller : callers) {
           builder.append("  ");
-          builder.append(caller.method.qualifiedName());
+          builder.append(nodeList.get(caller).method.qualifiedName());
           builder.append("\n");
         }
       }
@@ -129,29 +169,124 @@ public class CallGraph extends CallSiteInformation {
     }
   }
 
-  private final Map<DexEncodedMethod, Node> nodes = new LinkedHashMap<>();
+  private final Map<DexEncodedMethod, Node> nodes = new IdentityHashMap<>();
+  // The nodes in the order in which they were created, which is the order of their indices.
+  private final List<Node> nodeList = new ArrayList<>();
   private final Function<Set<DexEncodedMethod>, Set<DexEncodedMethod>> shuffle;
 
+  // The methods of the program classes, sorted, with the code their calls were extracted from and
+  // the targets of those calls in the order of the code.
+  private DexEncodedMethod[] programMethods;
+  private Code[] extractedCode;
+  private DexEncodedMethod[][] extractedTargets;
+
   private final Set<DexEncodedMethod> singleCallSite = Sets.newIdentityHashSet();
   private final Set<DexEncodedMethod> doubleCallSite = Sets.newIdentityHashSet();
 
+  /**
+   * Build the call graph of the program classes of the application.
+   * <p>
+   * The calls of the methods are extracted in parallel, each into its own buffer. The graph is
+   * then built from the buffers in the order of the methods, so it does not depend on the
+   * scheduling of the extraction.
+   */
   public static CallGraph build(DexApplication application, AppInfoWithLiveness appInfo,
-      GraphLense graphLense, InternalOptions options) {
+      GraphLense graphLense, InternalOptions options, ExecutorService executorService)
+      throws ExecutionException {
     CallGraph graph = new CallGraph(options);
+    graph.setProgramMethods(application);
+    graph.extractTargets(appInfo, graphLense, executorService);
+    graph.buildFromTargets(appInfo);
+    assert allMethodsExists(application, graph);
+    return graph;
+  }
+
+  /**
+   * Update the call graph for the methods of which the code has been replaced, or which have been
+   * added, since the graph was built or last updated.
+   * <p>
+   * The calls of the new code are extracted using the given lense, and the calls extracted before
+   * are reused for the other methods.
+   */
+  public void update(DexApplication application, AppInfoWithLiveness appInfo,
+      GraphLense graphLense, ExecutorService executorService) throws ExecutionException {
+    Map<DexEncodedMethod, Integer> previousIndices = new IdentityHashMap<>();
+    for (int i = 0; i < programMethods.length; i++) {
+      previousIndices.put(programMethods[i], i);
+    }
+    Code[] previousCode = extractedCode;
+    DexEncodedMethod[][] previousTargets = extractedTargets;
+    setProgramMethods(application);
+    for (int i = 0; i < programMethods.length; i++) {
+      Integer previous = previousIndices.get(programMethods[i]);
+      if (previous != null && previousCode[previous] == programMethods[i].getCode()) {
+        extractedCode[i] = previousCode[previous];
+        extractedTargets[i] = previousTargets[previous];
+      }
+    }
+    extractTargets(appInfo, graphLense, executorService);
+    buildFromTargets(appInfo);
+    assert allMethodsExists(application, this);
+  }
+
+  private void setProgramMethods(DexApplication application) {
     DexClass[] classes = application.classes().toArray(new DexClass[application.classes().size()]);
     Arrays.sort(classes, (DexClass a, DexClass b) -> a.type.slowCompareTo(b.type));
+    List<DexEncodedMethod> methods = new ArrayList<>();
     for (DexClass clazz : classes) {
-      for (DexEncodedMethod method : clazz.allMethodsSorted()) {
-        Node node = graph.ensureMethodNode(method);
-        InvokeExtractor extractor = new InvokeExtractor(appInfo, graphLense, node, graph);
-        method.registerReachableDefinitions(extractor);
+      Collections.addAll(methods, clazz.allMethodsSorted());
+    }
+    programMethods = methods.toArray(new DexEncodedMethod[methods.size()]);
+    extractedCode = new Code[programMethods.length];
+    extractedTargets = new DexEncodedMethod[programMethods.length][];
+  }
+
+  // Extract the calls of the methods for which they are not extracted yet.
+  private void extractTargets(AppInfoWithLiveness appInfo, GraphLense graphLense,
+      ExecutorService executorService) throws ExecutionException {
+    int methodCount = programMethods.length;
+    int chunks = Math.min(
+        methodCount, ThreadUtils.getParallelism(executorService) * CHUNKS_PER_THREAD);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int chunk = 0; chunk < chunks; chunk++) {
+      int from = (int) ((long) methodCount * chunk / chunks);
+      int to = (int) ((long) methodCount * (chunk + 1) / chunks);
+      futures.add(executorService.submit(() -> {
+        // Edge buffer of the thread, reused for each method of the chunk.
+        List<DexEncodedMethod> targets = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+          if (extractedTargets[i] == null) {
+            DexEncodedMethod method = programMethods[i];
+            Code code = method.getCode();
+            method.registerReachableDefinitions(
+                new InvokeExtractor(appInfo, graphLense, method, targets));
+            extractedCode[i] = code;
+            extractedTargets[i] = targets.toArray(new DexEncodedMethod[targets.size()]);
+            targets.clear();
+          }
+        }
+        return null; // we want a Callable not a Runnable to be able to throw
+      }));
+    }
+    ThreadUtils.awaitFutures(futures);
+  }
+
+  // Build the graph from the extracted calls, creating the nodes in the same order as when
+  // extracting them one method at a time.
+  private void buildFromTargets(AppInfoWithLiveness appInfo) {
+    nodes.clear();
+    nodeList.clear();
+    for (int i = 0; i < programMethods.length; i++) {
+      Node caller = ensureMethodNode(programMethods[i]);
+      for (DexEncodedMethod target : extractedTargets[i]) {
+        addCall(caller, ensureMethodNode(target));
       }
     }
-    assert allMethodsExists(application, graph);
-    graph.breakCycles();
-    assert graph.breakCycles() == 0;  // This time the cycles should be gone.
-    graph.fillCallSiteSets(appInfo);
-    return graph;
+    breakCycles();
+    assert breakCycles() == 0;  // This time the cycles should be gone.
+    singleCallSite.clear();
+    doubleCallSite.clear();
+    fillCallSiteSets(appInfo);
   }
 
   /**
@@ -172,7 +307,7 @@ public class CallGraph extends CallSiteInformation {
 
   private void fillCallSiteSets(AppInfoWithLiveness appInfo) {
     assert singleCallSite.isEmpty();
-    for (Node value : nodes.values()) {
+    for (Node value : nodeList) {
       // For non-pinned methods we know the exact number of call sites.
       if (!appInfo.isPinned(value.method.method)) {
         if (value.invokeCount == 1) {
@@ -193,46 +328,28 @@ public class CallGraph extends CallSiteInformation {
     return true;
   }
 
-  /**
-   * Extract the next set of leaves (nodes with an call (outgoing) degree of 0) if any.
-   * <p>
-   * All nodes in the graph are extracted if called repeatedly until null is returned.
-   * Please note that there are no cycles in this graph (see {@link #breakCycles}).
-   * <p>
-   */
-  private Set<DexEncodedMethod> extractLeaves() {
-    if (isEmpty()) {
-      return Collections.emptySet();
-    }
-    // First identify all leaves before removing them from the graph.
-    List<Node> leaves = nodes.values().stream().filter(Node::isLeaf).collect(Collectors.toList());
-    leaves.forEach(leaf -> {
-      leaf.callers.forEach(caller -> caller.callees.remove(leaf));
-      nodes.remove(leaf.method);
-    });
-    return shuffle.apply(leaves.stream().map(leaf -> leaf.method)
-        .collect(Collectors.toCollection(LinkedHashSet::new)));
-  }
-
   private int traverse(Node node, Set<Node> stack, Set<Node> marked) {
     int numberOfCycles = 0;
     if (!marked.contains(node)) {
       assert !stack.contains(node);
       stack.add(node);
-      ArrayList<Node> toBeRemoved = null;
+      IntArrayList toBeRemoved = null;
       // Sort the callees before calling traverse recursively.
       // This will ensure cycles are broken the same way across
       // multiple invocations of the R8 compiler.
-      Node[] callees = node.callees.toArray(new Node[node.callees.size()]);
+      Node[] callees = new Node[node.callees.size()];
+      for (int i = 0; i < callees.length; i++) {
+        callees[i] = nodeList.get(node.callees.getInt(i));
+      }
       Arrays.sort(callees, (Node a, Node b) -> a.method.method.slowCompareTo(b.method.method));
       for (Node callee : callees) {
         if (stack.contains(callee)) {
           if (toBeRemoved == null) {
-            toBeRemoved = new ArrayList<>();
+            toBeRemoved = new IntArrayList();
           }
           // We have a cycle; break it by removing node->callee.
-          toBeRemoved.add(callee);
-          callee.callers.remove(node);
+          toBeRemoved.add(callee.index);
+          callee.callers.rem(node.index);
         } else {
           numberOfCycles += traverse(callee, stack, marked);
         }
@@ -252,22 +369,29 @@ public class CallGraph extends CallSiteInformation {
     int numberOfCycles = 0;
     Set<Node> stack = Sets.newIdentityHashSet();
     Set<Node> marked = Sets.newIdentityHashSet();
-    for (Node node : nodes.values()) {
+    for (Node node : nodeList) {
       numberOfCycles += traverse(node, stack, marked);
     }
     return numberOfCycles;
   }
 
-  synchronized private Node ensureMethodNode(DexEncodedMethod method) {
-    return nodes.computeIfAbsent(method, k -> new Node(method));
+  private Node ensureMethodNode(DexEncodedMethod method) {
+    return nodes.computeIfAbsent(method, k -> {
+      Node node = new Node(method, nodeList.size());
+      nodeList.add(node);
+      return node;
+    });
   }
 
-  synchronized private void addCall(Node caller, Node callee) {
+  private void addCall(Node caller, Node callee) {
     assert caller != null;
     assert callee != null;
     if (caller != callee) {
-      caller.addCallee(callee);
-      callee.addCaller(caller);
+      if (callee.lastCaller != caller.index) {
+        callee.lastCaller = caller.index;
+        caller.callees.add(callee.index);
+        callee.callers.add(caller.index);
+      }
     } else {
       caller.isSelfRecursive = true;
     }
@@ -279,46 +403,216 @@ public class CallGraph extends CallSiteInformation {
   }
 
   /**
-   * Applies the given method to all leaf nodes of the graph.
+   * Applies the given method to all methods of the graph, callees before their callers.
+   * <p>
+   * A method is processed as soon as all of its callees have been processed. As second parameter,
+   * a predicate that can be used to decide whether another method is processed at the same time
+   * is passed. This can be used to avoid races in concurrent processing. The predicate only
+   * answers <code>false</code> for methods in the graph that are (transitive) callees of the
+   * method, which are guaranteed to be processed, so its answers do not depend on the scheduling.
    * <p>
-   * As second parameter, a predicate that can be used to decide whether another method is
-   * processed at the same time is passed. This can be used to avoid races in concurrent processing.
+   * The average utilization of the threads processing the methods is added as a counter to the
+   * current task of the timing.
    */
   public <E extends Exception> void forEachMethod(
       ThrowingBiConsumer<DexEncodedMethod, Predicate<DexEncodedMethod>, E> consumer,
-      ExecutorService executorService)
+      ExecutorService executorService, Timing timing)
       throws ExecutionException {
-    while (!isEmpty()) {
-      Set<DexEncodedMethod> methods = extractLeaves();
-      assert methods.size() > 0;
-      List<Future<?>> futures = new ArrayList<>();
-      for (DexEncodedMethod method : methods) {
-        futures.add(executorService.submit(() -> {
-          consumer.accept(method, methods::contains);
-          return null; // we want a Callable not a Runnable to be able to throw
-        }));
-      }
-      ThreadUtils.awaitFutures(futures);
+    if (isEmpty()) {
+      return;
+    }
+    computeLevels();
+    Scheduler<E> scheduler = new Scheduler<>(consumer, executorService);
+    Set<DexEncodedMethod> leaves = new LinkedHashSet<>();
+    for (Node node : nodeList) {
+      node.pendingCallees.set(node.callees.size());
+      if (node.isLeaf()) {
+        leaves.add(node.method);
+      }
+    }
+    scheduler.submit(leaves);
+    scheduler.await();
+    scheduler.reportUtilization(timing);
+  }
+
+  // Compute the levels of the nodes, processing each node after all of its callees.
+  private void computeLevels() {
+    int[] pending = new int[nodeList.size()];
+    Deque<Node> worklist = new ArrayDeque<>();
+    for (Node node : nodeList) {
+      node.level = 0;
+      pending[node.index] = node.callees.size();
+      if (node.isLeaf()) {
+        worklist.add(node);
+      }
+    }
+    while (!worklist.isEmpty()) {
+      Node node = worklist.pop();
+      for (int i = 0; i < node.callers.size(); i++) {
+        int index = node.callers.getInt(i);
+        Node caller = nodeList.get(index);
+        caller.level = Math.max(caller.level, node.level + 1);
+        if (--pending[index] == 0) {
+          worklist.add(caller);
+        }
+      }
+    }
+  }
+
+  /**
+   * Predicate answering if a method may be processed at the same time as the method of a node. It
+   * is only used on the thread processing the node, for the duration of the processing.
+   */
+  private class ProcessedConcurrentlyPredicate implements Predicate<DexEncodedMethod> {
+
+    private final Node node;
+    // The transitive callees of the node, computed on the first query needing them. The inliner
+    // asks for many candidates, so this avoids a search of the callees for each of them.
+    private BitSet transitiveCallees = null;
+
+    private ProcessedConcurrentlyPredicate(Node node) {
+      this.node = node;
+    }
+
+    @Override
+    public boolean test(DexEncodedMethod method) {
+      Node other = nodes.get(method);
+      if (other == null) {
+        return false;
+      }
+      // A callee is always at a lower level than its callers.
+      if (other.level >= node.level) {
+        return true;
+      }
+      if (transitiveCallees == null) {
+        transitiveCallees = node.computeTransitiveCallees();
+      }
+      return !transitiveCallees.get(other.index);
+    }
+  }
+
+  /**
+   * Submits each method to the executor once its last callee has been processed, instead of
+   * waiting for all methods at the same level of the graph.
+   */
+  private class Scheduler<E extends Exception> {
+
+    private final ThrowingBiConsumer<DexEncodedMethod, Predicate<DexEncodedMethod>, E> consumer;
+    private final ExecutorService executorService;
+    private final AtomicInteger remaining = new AtomicInteger(nodes.size());
+    // Completed when all methods are processed, or exceptionally when processing one fails.
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    private final AtomicLong busyTime = new AtomicLong();
+    private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    private final Queue<Future<?>> futures = new ConcurrentLinkedQueue<>();
+    private final long startTime = System.nanoTime();
+    private long endTime;
+
+    private Scheduler(
+        ThrowingBiConsumer<DexEncodedMethod, Predicate<DexEncodedMethod>, E> consumer,
+        ExecutorService executorService) {
+      this.consumer = consumer;
+      this.executorService = executorService;
+    }
+
+    private void submit(Set<DexEncodedMethod> methods) {
+      for (DexEncodedMethod method : shuffle.apply(methods)) {
+        Node node = nodes.get(method);
+        try {
+          futures.add(executorService.submit(() -> process(node)));
+        } catch (RejectedExecutionException e) {
+          done.completeExceptionally(e);
+        }
+      }
+    }
+
+    private void process(Node node) {
+      if (done.isDone()) {
+        // Processing of another method failed.
+        return;
+      }
+      long start = System.nanoTime();
+      threads.add(Thread.currentThread());
+      try {
+        consumer.accept(node.method, new ProcessedConcurrentlyPredicate(node));
+      } catch (Throwable e) {
+        done.completeExceptionally(e);
+        return;
+      } finally {
+        busyTime.addAndGet(System.nanoTime() - start);
+      }
+      Set<DexEncodedMethod> ready = null;
+      for (int i = 0; i < node.callers.size(); i++) {
+        Node caller = nodeList.get(node.callers.getInt(i));
+        if (caller.pendingCallees.decrementAndGet() == 0) {
+          if (ready == null) {
+            ready = new LinkedHashSet<>();
+          }
+          ready.add(caller.method);
+        }
+      }
+      if (ready != null) {
+        submit(ready);
+      }
+      if (remaining.decrementAndGet() == 0) {
+        done.complete(null);
+      }
+    }
+
+    private void await() throws ExecutionException {
+      try {
+        done.get();
+      } catch (InterruptedException e) {
+        throw new RuntimeException("Interrupted while waiting for future.", e);
+      } finally {
+        endTime = System.nanoTime();
+        // If processing failed, still wait for the methods being processed, as awaitFutures does.
+        ThreadUtils.awaitFutures(futures);
+      }
+    }
+
+    private void reportUtilization(Timing timing) {
+      long wallTime = endTime - startTime;
+      if (wallTime > 0 && !threads.isEmpty()) {
+        timing.addCounter("Threads", threads.size());
+        timing.addCounter(
+            "Average core utilization (%)", busyTime.get() * 100 / (wallTime * threads.size()));
+      }
     }
   }
 
   public void dump() {
-    nodes.forEach((m, n) -> System.out.println(n + "\n"));
+    nodeList.forEach(n -> System.out.println(n + "\n"));
+  }
+
+  // The methods of the graph in the order of their nodes.
+  List<DexEncodedMethod> getMethodsForTesting() {
+    List<DexEncodedMethod> result = new ArrayList<>(nodeList.size());
+    nodeList.forEach(node -> result.add(node.method));
+    return result;
+  }
+
+  // The callees of the method in the order in which the calls were added.
+  List<DexEncodedMethod> getCalleesForTesting(DexEncodedMethod method) {
+    Node node = nodes.get(method);
+    List<DexEncodedMethod> result = new ArrayList<>(node.callees.size());
+    node.callees.forEach((int callee) -> result.add(nodeList.get(callee).method));
+    return result;
   }
 
   private static class InvokeExtractor extends UseRegistry {
 
     AppInfoWithLiveness appInfo;
     GraphLense graphLense;
-    Node caller;
-    CallGraph graph;
+    DexEncodedMethod caller;
+    List<DexEncodedMethod> targets;
 
-    InvokeExtractor(AppInfoWithLiveness appInfo, GraphLense graphLense, Node caller,
-        CallGraph graph) {
+    InvokeExtractor(AppInfoWithLiveness appInfo, GraphLense graphLense, DexEncodedMethod caller,
+        List<DexEncodedMethod> targets) {
       this.appInfo = appInfo;
       this.graphLense = graphLense;
       this.caller = caller;
-      this.graph = graph;
+      this.targets = targets;
     }
 
     private void addClassInitializerTarget(DexClass clazz) {
@@ -340,8 +634,7 @@ public class CallGraph extends CallSiteInformation {
     }
 
     private void addTarget(DexEncodedMethod target) {
-      Node callee = graph.ensureMethodNode(target);
-      graph.addCall(caller, callee);
+      targets.add(target);
     }
 
     private void addPossibleTarget(DexEncodedMethod possibleTarget) {
@@ -362,11 +655,11 @@ public class CallGraph extends CallSiteInformation {
     }
 
     private void processInvoke(Type type, DexMethod method) {
-      DexEncodedMethod source = caller.method;
+      DexEncodedMethod source = caller;
       method = graphLense.lookupMethod(method, source);
       DexEncodedMethod definition = appInfo.lookup(type, method, source.method.holder);
       if (definition != null) {
-        assert !source.accessFlags.isBridge() || definition != caller.method;
+        assert !source.accessFlags.isBridge() || definition != caller;
         DexClass definitionHolder = appInfo.definitionFor(definition.method.getHolder());
         assert definitionHolder != null;
         if (!definitionHolder.isLibraryClass()) {
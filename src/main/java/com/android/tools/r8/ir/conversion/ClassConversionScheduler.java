@@ -0,0 +1,145 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.conversion;
+
+import com.android.tools.r8.graph.Code;
+import com.android.tools.r8.graph.DexEncodedMethod;
+import com.android.tools.r8.graph.DexProgramClass;
+import com.android.tools.r8.utils.InternalOptions;
+import com.android.tools.r8.utils.ThreadUtils;
+import com.android.tools.r8.utils.ThrowingConsumer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Groups the conversion of program classes into tasks of similar estimated cost.
+ *
+ * <p>The cost of a class is the estimated number of instructions of its methods. Small classes are
+ * batched, so that scheduling is not paid per class, and the methods of large classes are
+ * converted as separate tasks. The tasks are run largest first, so that a huge method is not left
+ * to run on its own at the end, by as many workers as the total cost is worth.
+ */
+class ClassConversionScheduler {
+
+  /** Either a batch of entire classes, or a single method of a class that is split. */
+  static class Task {
+    final List<DexProgramClass> classes;
+    final DexProgramClass holder;
+    final DexEncodedMethod method;
+    private long cost = 0;
+
+    private Task() {
+      this.classes = new ArrayList<>();
+      this.holder = null;
+      this.method = null;
+    }
+
+    private Task(DexProgramClass holder, DexEncodedMethod method) {
+      this.classes = null;
+      this.holder = holder;
+      this.method = method;
+      this.cost = estimateCost(method);
+    }
+
+    boolean isMethod() {
+      return method != null;
+    }
+  }
+
+  private final int batchSize;
+  private final int splitSize;
+  private final int minWorkPerThread;
+  private final List<Task> tasks = new ArrayList<>();
+  private final List<DexProgramClass> splitClasses = new ArrayList<>();
+  private Task batch = null;
+  private long totalCost = 0;
+  private int workers = 0;
+
+  ClassConversionScheduler(InternalOptions options) {
+    this.batchSize = options.classConversionBatchSize;
+    this.splitSize = options.classConversionSplitSize;
+    this.minWorkPerThread = options.classConversionMinWorkPerThread;
+  }
+
+  private static long estimateCost(DexEncodedMethod method) {
+    Code code = method.getCode();
+    return code == null ? 0 : code.estimatedInstructionCount();
+  }
+
+  void addClass(DexProgramClass clazz) {
+    // Count each class, so that classes without code are still spread over the batches.
+    long[] cost = {1};
+    clazz.forEachMethod(method -> cost[0] += estimateCost(method));
+    totalCost += cost[0];
+    if (cost[0] >= splitSize) {
+      splitClasses.add(clazz);
+      clazz.forEachMethod(method -> {
+        if (method.getCode() != null) {
+          tasks.add(new Task(clazz, method));
+        }
+      });
+      return;
+    }
+    Task task;
+    if (cost[0] >= batchSize) {
+      task = new Task();
+      tasks.add(task);
+    } else {
+      if (batch == null) {
+        batch = new Task();
+        tasks.add(batch);
+      }
+      task = batch;
+    }
+    task.classes.add(clazz);
+    task.cost += cost[0];
+    if (task == batch && batch.cost >= batchSize) {
+      batch = null;
+    }
+  }
+
+  /** Classes of which the methods are converted by separate tasks. */
+  List<DexProgramClass> getSplitClasses() {
+    return splitClasses;
+  }
+
+  int getTaskCount() {
+    return tasks.size();
+  }
+
+  int getWorkerCount() {
+    return workers;
+  }
+
+  /** Run all tasks, largest first. Once a task fails, tasks that are not started are skipped. */
+  <E extends Exception> void run(ExecutorService executor, ThrowingConsumer<Task, E> consumer)
+      throws ExecutionException {
+    // The sort is stable, so tasks of the same cost are started in the order of the classes.
+    tasks.sort(Comparator.comparingLong((Task task) -> task.cost).reversed());
+    workers = ThreadUtils.getThreadsForWork(
+        ThreadUtils.getParallelism(executor), totalCost, minWorkPerThread);
+    AtomicInteger next = new AtomicInteger();
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < workers; i++) {
+      futures.add(executor.submit(() -> {
+        int index;
+        while ((index = next.getAndIncrement()) < tasks.size()) {
+          try {
+            consumer.accept(tasks.get(index));
+          } catch (Throwable e) {
+            next.set(tasks.size());
+            throw e;
+          }
+        }
+        return null; // we want a Callable not a Runnable to be able to throw
+      }));
+    }
+    ThreadUtils.awaitFutures(futures);
+  }
+}
@@ -14,6 +14,7 @@ import com.android.tools.r8.graph.Code;
 import com.android.tools.r8.graph.DexAnnotation;
 import com.android.tools.r8.graph.DexApplication;
 import com.android.tools.r8.graph.DexApplication.Builder;
+import com.android.tools.r8.graph.DexCode;
 import com.android.tools.r8.graph.DexEncodedMethod;
 import com.android.tools.r8.graph.DexItemFactory;
 import com.android.tools.r8.graph.DexMethod;
@@ -24,6 +25,7 @@ import com.android.tools.r8.graph.GraphLense;
 import com.android.tools.r8.ir.analysis.constant.SparseConditionalConstantPropagation;
 import com.android.tools.r8.ir.analysis.type.TypeAnalysis;
 import com.android.tools.r8.ir.code.IRCode;
+import com.android.tools.r8.ir.conversion.PassProfiler.MethodProfile;
 import com.android.tools.r8.ir.desugar.InterfaceMethodRewriter;
 import com.android.tools.r8.ir.desugar.LambdaRewriter;
 import com.android.tools.r8.ir.desugar.StringConcatRewriter;
@@ -43,23 +45,23 @@ import com.android.tools.r8.naming.IdentifierNameStringMarker;
 import com.android.tools.r8.shaking.protolite.ProtoLitePruner;
 import com.android.tools.r8.utils.CfgPrinter;
 import com.android.tools.r8.utils.DescriptorUtils;
+import com.android.tools.r8.utils.IOExceptionDiagnostic;
 import com.android.tools.r8.utils.InternalOptions;
 import com.android.tools.r8.utils.InternalOptions.OutlineOptions;
 import com.android.tools.r8.utils.StringDiagnostic;
-import com.android.tools.r8.utils.ThreadUtils;
 import com.android.tools.r8.utils.Timing;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ListMultimap;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.List;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -70,6 +72,9 @@ public class IRConverter {
   private static final int PEEPHOLE_OPTIMIZATION_PASSES = 2;
 
   private final Timing timing;
+  // Whether to time the conversion of each class and method, which is only done if the timings
+  // are reported.
+  private final boolean timeTasks;
   public final AppInfo appInfo;
   private final Outliner outliner;
   private final StringConcatRewriter stringConcatRewriter;
@@ -85,6 +90,8 @@ public class IRConverter {
   private final Inliner inliner;
   private final ProtoLitePruner protoLiteRewriter;
   private final IdentifierNameStringMarker identifierNameStringMarker;
+  private final MethodCompilationCache methodCompilationCache;
+  private final PassProfiler passProfiler;
 
   private final OptimizationFeedback ignoreOptimizationFeedback = new OptimizationFeedbackIgnore();
   private DexString highestSortingString;
@@ -100,6 +107,7 @@ public class IRConverter {
     assert options != null;
     assert options.programConsumer != null;
     this.timing = timing != null ? timing : new Timing("internal");
+    this.timeTasks = options.isReportingTimings();
     this.appInfo = appInfo;
     this.graphLense = graphLense != null ? graphLense : GraphLense.getIdentityLense();
     this.options = options;
@@ -140,6 +148,14 @@ public class IRConverter {
       this.protoLiteRewriter = null;
       this.identifierNameStringMarker = null;
     }
+    this.methodCompilationCache =
+        (!enableWholeProgramOptimizations
+            && options.isGeneratingDex()
+            && options.methodCompilationCacheDirectory != null)
+            ? new MethodCompilationCache(
+                options.methodCompilationCacheDirectory, options, interfaceMethodRewriter != null)
+            : null;
+    this.passProfiler = PassProfiler.create(options);
   }
 
   /**
@@ -205,6 +221,8 @@ public class IRConverter {
   private void removeLambdaDeserializationMethods() {
     if (lambdaRewriter != null) {
       lambdaRewriter.removeLambdaDeserializationMethods(appInfo.classes());
+      // The methods are removed from the classes in place.
+      appInfo.invalidateLookupCaches();
     }
   }
 
@@ -227,7 +245,16 @@ public class IRConverter {
       throws ExecutionException, ApiLevelException {
     removeLambdaDeserializationMethods();
 
+    timing.begin("IR conversion");
     convertClassesToDex(application.classes(), executor);
+    if (methodCompilationCache != null) {
+      methodCompilationCache.reportCounters(timing);
+      if (options.testing.methodCompilationCacheConsumer != null) {
+        options.testing.methodCompilationCacheConsumer.accept(methodCompilationCache);
+      }
+    }
+    appInfo.reportLookupCacheCounters(timing);
+    timing.end();
 
     // Build a new application with jumbo string info,
     Builder<?> builder = application.builder();
@@ -238,6 +265,7 @@ public class IRConverter {
 
     handleSynthesizedClassMapping(builder);
 
+    reportPassProfile();
     return builder.build();
   }
 
@@ -308,33 +336,97 @@ public class IRConverter {
 
   private void convertClassesToDex(Iterable<DexProgramClass> classes,
       ExecutorService executor) throws ExecutionException {
-    List<Future<?>> futures = new ArrayList<>();
-    for (DexProgramClass clazz : classes) {
-      futures.add(
-          executor.submit(
-              () -> {
-                clazz.forEachMethodThrowing(this::convertMethodToDex);
-                return null; // we want a Callable not a Runnable to be able to throw
-              }));
+    ClassConversionScheduler scheduler = new ClassConversionScheduler(options);
+    classes.forEach(scheduler::addClass);
+    // The class digest must be computed before any of the methods are parsed, so for classes that
+    // are split over several tasks it is computed up front.
+    Map<DexProgramClass, byte[]> splitClassDigests = new IdentityHashMap<>();
+    if (methodCompilationCache != null) {
+      for (DexProgramClass clazz : scheduler.getSplitClasses()) {
+        splitClassDigests.put(clazz, methodCompilationCache.computeClassDigest(clazz));
+      }
+    }
+    scheduler.run(executor, task -> {
+      if (task.isMethod()) {
+        beginTask("Convert method");
+        try {
+          convertMethodToDex(task.method, splitClassDigests.get(task.holder));
+        } finally {
+          endTask();
+        }
+      } else {
+        for (DexProgramClass clazz : task.classes) {
+          convertClassToDex(clazz);
+        }
+      }
+    });
+    timing.addCounter("Conversion tasks", scheduler.getTaskCount());
+    timing.addCounter("Conversion threads", scheduler.getWorkerCount());
+  }
+
+  private void convertClassToDex(DexProgramClass clazz) throws ApiLevelException {
+    beginTask("Convert class");
+    try {
+      // The class digest must be computed before any of the methods are parsed.
+      byte[] classDigest =
+          methodCompilationCache != null ? methodCompilationCache.computeClassDigest(clazz) : null;
+      clazz.forEachMethodThrowing(method -> convertMethodToDex(method, classDigest));
+    } finally {
+      endTask();
+    }
+  }
+
+  private void beginTask(String title) {
+    if (timeTasks) {
+      timing.begin(title);
     }
-    ThreadUtils.awaitFutures(futures);
   }
 
-  void convertMethodToDex(DexEncodedMethod method) throws ApiLevelException {
+  private void endTask() {
+    if (timeTasks) {
+      timing.end();
+    }
+  }
+
+  private void convertMethodToDex(DexEncodedMethod method, byte[] classDigest)
+      throws ApiLevelException {
     assert options.isGeneratingDex();
     if (method.getCode() != null) {
       boolean matchesMethodFilter = options.methodMatchesFilter(method);
       if (matchesMethodFilter) {
         if (!(options.passthroughDexCode && method.getCode().isDexCode())) {
-          // We do not process in call graph order, so anything could be a leaf.
-          rewriteCode(method, ignoreOptimizationFeedback, x -> true, CallSiteInformation.empty(),
-              Outliner::noProcessing);
+          if (classDigest != null && methodCompilationCache.isCacheable(method)) {
+            convertMethodToDexWithCache(method, classDigest);
+          } else {
+            convertMethodToDex(method);
+          }
         }
         updateHighestSortingStrings(method);
       }
     }
   }
 
+  private void convertMethodToDexWithCache(DexEncodedMethod method, byte[] classDigest)
+      throws ApiLevelException {
+    String key = methodCompilationCache.computeKey(classDigest, method);
+    DexCode cached = methodCompilationCache.lookup(key);
+    if (cached != null) {
+      method.setCode(cached);
+      return;
+    }
+    Code original = method.getCode();
+    convertMethodToDex(method);
+    if (method.getCode().isDexCode()) {
+      methodCompilationCache.store(key, original, method.getCode().asDexCode());
+    }
+  }
+
+  private void convertMethodToDex(DexEncodedMethod method) throws ApiLevelException {
+    // We do not process in call graph order, so anything could be a leaf.
+    rewriteCode(method, ignoreOptimizationFeedback, x -> true, CallSiteInformation.empty(),
+        Outliner::noProcessing);
+  }
+
   public DexApplication optimize(DexApplication application)
       throws ExecutionException, ApiLevelException {
     ExecutorService executor = Executors.newSingleThreadExecutor();
@@ -358,16 +450,21 @@ public class IRConverter {
 
     // Process the application identifying outlining candidates.
     OptimizationFeedback directFeedback = new OptimizationFeedbackDirect();
+    timing.begin("Build call graph");
+    CallGraph callGraph = CallGraph
+        .build(application, appInfo.withLiveness(), graphLense, options, executorService);
+    timing.end();
     {
-      timing.begin("Build call graph");
-      CallGraph callGraph = CallGraph
-          .build(application, appInfo.withLiveness(), graphLense, options);
-      timing.end();
       timing.begin("IR conversion phase 1");
       callGraph.forEachMethod((method, isProcessedConcurrently) -> {
-        processMethod(method, directFeedback, isProcessedConcurrently, callGraph,
-            outliner == null ? Outliner::noProcessing : outliner::identifyCandidates);
-      }, executorService);
+        beginTask("Process method");
+        try {
+          processMethod(method, directFeedback, isProcessedConcurrently, callGraph,
+              outliner == null ? Outliner::noProcessing : outliner::identifyCandidates);
+        } finally {
+          endTask();
+        }
+      }, executorService, timing);
       timing.end();
     }
 
@@ -382,6 +479,8 @@ public class IRConverter {
 
     synthesizeLambdaClasses(builder);
     desugarInterfaceMethods(builder, IncludeAllResources);
+    // Desugaring adds methods to classes and moves methods out of interfaces.
+    appInfo.invalidateLookupCaches();
 
     handleSynthesizedClassMapping(builder);
 
@@ -391,10 +490,13 @@ public class IRConverter {
       // add the outline support class IF needed.
       DexProgramClass outlineClass = prepareOutlining();
       if (outlineClass != null) {
-        // We need a new call graph to ensure deterministic order and also processing inside out
-        // to get maximal inlining. Use a identity lense, as the code has been rewritten.
-        CallGraph callGraph = CallGraph
-            .build(application, appInfo.withLiveness(), GraphLense.getIdentityLense(), options);
+        // We need an up to date call graph to ensure deterministic order and also processing
+        // inside out to get maximal inlining. Only the calls of the code rewritten since the graph
+        // was built are extracted again, using a identity lense, as the code has been rewritten.
+        timing.begin("Update call graph");
+        callGraph.update(
+            application, appInfo.withLiveness(), GraphLense.getIdentityLense(), executorService);
+        timing.end();
         Set<DexEncodedMethod> outlineMethods = outliner.getMethodsSelectedForOutlining();
         callGraph.forEachMethod((method, isProcessedConcurrently) -> {
           if (!outlineMethods.contains(method)) {
@@ -405,7 +507,7 @@ public class IRConverter {
           processMethod(method, ignoreOptimizationFeedback, isProcessedConcurrently, callGraph,
               outliner::applyOutliningCandidate);
           assert method.isProcessed();
-        }, executorService);
+        }, executorService, timing);
         builder.addSynthesizedClass(outlineClass, true);
         clearDexMethodCompilationState(outlineClass);
       }
@@ -417,9 +519,27 @@ public class IRConverter {
       identifierNameStringMarker.decoupleIdentifierNameStringsInFields();
     }
 
+    appInfo.reportLookupCacheCounters(timing);
+    reportPassProfile();
     return builder.build();
   }
 
+  private void reportPassProfile() {
+    if (passProfiler == null) {
+      return;
+    }
+    if (options.printTimes) {
+      passProfiler.report(System.out);
+    }
+    if (options.passProfileFile != null) {
+      try {
+        passProfiler.writeReport(options.passProfileFile);
+      } catch (IOException e) {
+        options.reporter.warning(new IOExceptionDiagnostic(e));
+      }
+    }
+  }
+
   private void clearDexMethodCompilationState() {
     appInfo.classes().forEach(this::clearDexMethodCompilationState);
   }
@@ -442,7 +562,8 @@ public class IRConverter {
       Log.debug(getClass(), "Initial (SSA) flow graph for %s:\n%s", method.toSourceString(), code);
     }
     assert code.isConsistentSSA();
-    RegisterAllocator registerAllocator = performRegisterAllocation(code, method);
+    RegisterAllocator registerAllocator =
+        performRegisterAllocation(code, method, MethodProfile.NONE);
     method.setCode(code, registerAllocator, options);
     if (Log.ENABLED) {
       Log.debug(getClass(), "Resulting dex code for %s:\n%s",
@@ -519,9 +640,12 @@ public class IRConverter {
       Log.debug(getClass(), "Original code for %s:\n%s",
           method.toSourceString(), logCode(options, method));
     }
+    MethodProfile profile = PassProfiler.startMethod(passProfiler, method);
     IRCode code = method.buildIR(options);
+    profile.record("Build IR");
     if (code == null) {
       feedback.markProcessed(method, Constraint.NEVER);
+      profile.finish();
       return;
     }
     if (Log.ENABLED) {
@@ -530,17 +654,21 @@ public class IRConverter {
     // Compilation header if printing CFGs for this method.
     printC1VisualizerHeader(method);
     printMethod(code, "Initial IR (SSA)");
+    profile.record(PassProfiler.OTHER);
 
     if (options.debug) {
       codeRewriter.simplifyDebugLocals(code);
+      profile.record("Simplify debug locals");
     }
 
     if (!method.isProcessed()) {
       if (protoLiteRewriter != null && protoLiteRewriter.appliesTo(method)) {
         protoLiteRewriter.rewriteProtoLiteSpecialMethod(code, method);
+        profile.record("Proto lite rewriting");
       }
       if (lensCodeRewriter != null) {
         lensCodeRewriter.rewrite(code, method);
+        profile.record("Lens code rewriting");
       } else {
         assert graphLense.isIdentityLense();
       }
@@ -549,123 +677,164 @@ public class IRConverter {
     if (identifierNameStringMarker != null) {
       identifierNameStringMarker.decoupleIdentifierNameStringsInMethod(method, code);
       assert code.isConsistentSSA();
+      profile.record("Identifier name strings");
     }
 
     if (memberValuePropagation != null) {
       memberValuePropagation.rewriteWithConstantValues(code, method.method.holder);
+      profile.record("Member value propagation");
     }
     if (options.removeSwitchMaps && appInfo.hasLiveness()) {
       codeRewriter.removeSwitchMaps(code);
+      profile.record("Remove switch maps");
     }
     if (options.disableAssertions) {
       codeRewriter.disableAssertions(code);
+      profile.record("Disable assertions");
     }
     if (options.addNonNull && nonNullMarker != null) {
       nonNullMarker.addNonNull(code);
       assert code.isConsistentSSA();
+      profile.record("Add non null");
     }
     TypeAnalysis typeAnalysis = new TypeAnalysis(appInfo, method, code);
+    profile.record("Type analysis");
     if (options.inlineAccessors && inliner != null) {
       // TODO(zerny): Should we support inlining in debug mode? b/62937285
       assert !options.debug;
       inliner.performInlining(
           method, code, typeAnalysis, isProcessedConcurrently, callSiteInformation);
+      profile.record("Inlining");
     }
     // TODO(b/69962188): MethodDevirtualizer can perform optimizations using type analysis.
     codeRewriter.removeCasts(code, typeAnalysis);
+    profile.record("Remove casts");
     codeRewriter.rewriteLongCompareAndRequireNonNull(code, options);
+    profile.record("Rewrite long compare and requireNonNull");
     codeRewriter.commonSubexpressionElimination(code);
+    profile.record("Common subexpression elimination");
     codeRewriter.simplifyArrayConstruction(code);
+    profile.record("Simplify array construction");
     codeRewriter.rewriteMoveResult(code);
+    profile.record("Rewrite move result");
     codeRewriter.splitRangeInvokeConstants(code);
+    profile.record("Split range invoke constants");
     new SparseConditionalConstantPropagation(code).run();
+    profile.record("Sparse conditional constant propagation");
     codeRewriter.rewriteSwitch(code);
+    profile.record("Rewrite switch");
     codeRewriter.processMethodsNeverReturningNormally(code);
+    profile.record("Methods never returning normally");
     codeRewriter.simplifyIf(code, typeAnalysis);
+    profile.record("Simplify if");
     if (options.addNonNull && nonNullMarker != null) {
       nonNullMarker.cleanupNonNull(code);
       assert code.isConsistentSSA();
+      profile.record("Cleanup non null");
     }
     if (!options.debug) {
       codeRewriter.collectClassInitializerDefaults(method, code);
+      profile.record("Collect class initializer defaults");
     }
     if (Log.ENABLED) {
       Log.debug(getClass(), "Intermediate (SSA) flow graph for %s:\n%s",
           method.toSourceString(), code);
+      profile.record(PassProfiler.OTHER);
     }
     // Dead code removal. Performed after simplifications to remove code that becomes dead
     // as a result of those simplifications. The following optimizations could reveal more
     // dead code which is removed right before register allocation in performRegisterAllocation.
     DeadCodeRemover.removeDeadCode(code, codeRewriter, options);
     assert code.isConsistentSSA();
+    profile.record("Dead code removal");
 
     if (options.enableDesugaring && enableTryWithResourcesDesugaring()) {
       codeRewriter.rewriteThrowableAddAndGetSuppressed(code);
+      profile.record("Try-with-resources desugaring");
     }
 
     stringConcatRewriter.desugarStringConcats(method.method, code);
+    profile.record("String concat desugaring");
 
     if (lambdaRewriter != null) {
       lambdaRewriter.desugarLambdas(method, code);
       assert code.isConsistentSSA();
+      profile.record("Lambda desugaring");
     }
 
     if (interfaceMethodRewriter != null) {
       interfaceMethodRewriter.rewriteMethodReferences(method, code);
       assert code.isConsistentSSA();
+      profile.record("Interface method desugaring");
     }
 
     if (options.outline.enabled) {
       outlineHandler.accept(code, method);
       assert code.isConsistentSSA();
+      profile.record("Outlining");
     }
 
     ConstantCanonicalizer.canonicalize(code);
+    profile.record("Constant canonicalization");
     codeRewriter.useDedicatedConstantForLitInstruction(code);
+    profile.record("Dedicated constants for literal instructions");
     codeRewriter.shortenLiveRanges(code);
+    profile.record("Shorten live ranges");
     codeRewriter.identifyReturnsArgument(method, code, feedback);
     codeRewriter.identifyReceiverNullabilityChecks(method, code, feedback);
+    profile.record("Identify returns argument and receiver checks");
 
     // Insert code to log arguments if requested.
     if (options.methodMatchesLogArgumentsFilter(method)) {
       codeRewriter.logArgumentTypes(method, code);
       assert code.isConsistentSSA();
+      profile.record("Log argument types");
     }
 
     printMethod(code, "Optimized IR (SSA)");
-    finalizeIR(method, code, feedback);
+    profile.record(PassProfiler.OTHER);
+    finalizeIR(method, code, feedback, profile);
+    profile.finish();
   }
 
-  private void finalizeIR(DexEncodedMethod method, IRCode code, OptimizationFeedback feedback) {
+  private void finalizeIR(DexEncodedMethod method, IRCode code, OptimizationFeedback feedback,
+      MethodProfile profile) {
     if (options.isGeneratingClassFiles()) {
-      finalizeToCf(method, code, feedback);
+      finalizeToCf(method, code, feedback, profile);
     } else {
       assert options.isGeneratingDex();
-      finalizeToDex(method, code, feedback);
+      finalizeToDex(method, code, feedback, profile);
     }
   }
 
-  private void finalizeToCf(DexEncodedMethod method, IRCode code, OptimizationFeedback feedback) {
+  private void finalizeToCf(DexEncodedMethod method, IRCode code, OptimizationFeedback feedback,
+      MethodProfile profile) {
     assert !method.getCode().isDexCode();
     CfBuilder builder = new CfBuilder(method, code, options.itemFactory);
     // TODO(zerny): Change the return type of CfBuilder::build CfCode once complete.
     Code result = builder.build(codeRewriter, options, appInfo.withSubtyping());
     assert result.isCfCode() || result.isJarCode();
     method.setCode(result);
+    profile.record("Build class file code");
     markProcessed(method, code, feedback);
+    profile.record("Compute inlining constraint");
   }
 
-  private void finalizeToDex(DexEncodedMethod method, IRCode code, OptimizationFeedback feedback) {
+  private void finalizeToDex(DexEncodedMethod method, IRCode code, OptimizationFeedback feedback,
+      MethodProfile profile) {
     // Perform register allocation.
-    RegisterAllocator registerAllocator = performRegisterAllocation(code, method);
+    RegisterAllocator registerAllocator = performRegisterAllocation(code, method, profile);
     method.setCode(code, registerAllocator, options);
     updateHighestSortingStrings(method);
+    profile.record("Build dex code");
     if (Log.ENABLED) {
       Log.debug(getClass(), "Resulting dex code for %s:\n%s",
           method.toSourceString(), logCode(options, method));
     }
     printMethod(code, "Final IR (non-SSA)");
+    profile.record(PassProfiler.OTHER);
     markProcessed(method, code, feedback);
+    profile.record("Compute inlining constraint");
   }
 
   private void markProcessed(DexEncodedMethod method, IRCode code, OptimizationFeedback feedback) {
@@ -689,21 +858,27 @@ public class IRConverter {
     }
   }
 
-  private RegisterAllocator performRegisterAllocation(IRCode code, DexEncodedMethod method) {
+  private RegisterAllocator performRegisterAllocation(
+      IRCode code, DexEncodedMethod method, MethodProfile profile) {
     // Always perform dead code elimination before register allocation. The register allocator
     // does not allow dead code (to make sure that we do not waste registers for unneeded values).
     DeadCodeRemover.removeDeadCode(code, codeRewriter, options);
+    profile.record("Dead code removal");
     LinearScanRegisterAllocator registerAllocator = new LinearScanRegisterAllocator(code, options);
     registerAllocator.allocateRegisters(options.debug);
+    profile.record("Register allocation");
     printMethod(code, "After register allocation (non-SSA)");
+    profile.record(PassProfiler.OTHER);
     for (int i = 0; i < PEEPHOLE_OPTIMIZATION_PASSES; i++) {
       CodeRewriter.collapsTrivialGotos(method, code);
       PeepholeOptimizer.optimize(code, registerAllocator);
     }
     CodeRewriter.collapsTrivialGotos(method, code);
+    profile.record("Peephole optimization");
     if (Log.ENABLED) {
       Log.debug(getClass(), "Final (non-SSA) flow graph for %s:\n%s",
           method.toSourceString(), code);
+      profile.record(PassProfiler.OTHER);
     }
     return registerAllocator;
   }
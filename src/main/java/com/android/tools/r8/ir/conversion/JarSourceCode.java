@@ -40,11 +40,11 @@ import it.unimi.dsi.fastutil.ints.Int2ReferenceOpenHashMap;
 import it.unimi.dsi.fastutil.ints.Int2ReferenceSortedMap;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
 import java.util.Set;
@@ -53,6 +53,7 @@ import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.FrameNode;
 import org.objectweb.asm.tree.IincInsnNode;
 import org.objectweb.asm.tree.InsnNode;
 import org.objectweb.asm.tree.IntInsnNode;
@@ -155,6 +156,8 @@ public class JarSourceCode implements SourceCode {
 
   private final JarApplicationReader application;
   private final MethodNode node;
+  // Verifier frames keyed by the index of the instruction they precede, or null if there are none.
+  private final Int2ReferenceMap<FrameNode> frames;
   private final DexType clazz;
   private final List<Type> parameterTypes;
   private final LabelNode initialLabel;
@@ -195,12 +198,14 @@ public class JarSourceCode implements SourceCode {
   public JarSourceCode(
       DexType clazz,
       MethodNode node,
+      Int2ReferenceMap<FrameNode> frames,
       JarApplicationReader application,
       DexMethod method,
       Position callerPosition) {
     assert node != null;
     assert node.desc != null;
     this.node = node;
+    this.frames = frames;
     this.application = application;
     this.method = method;
     this.clazz = clazz;
@@ -363,7 +368,11 @@ public class JarSourceCode implements SourceCode {
       monitorEnter = builder.addMonitor(Monitor.Type.ENTER, monitorRegister);
       generatingMethodSynchronization = false;
     }
-    computeBlockEntryJarStates(builder);
+    if (frames == null || !computeBlockEntryJarStatesFromFrames(builder)) {
+      computeBlockEntryJarStates(builder);
+    } else if (application.options.testing.blockEntryStatesFromFramesConsumer != null) {
+      application.options.testing.blockEntryStatesFromFramesConsumer.accept(method);
+    }
     state.setBuilding();
   }
 
@@ -404,9 +413,128 @@ public class JarSourceCode implements SourceCode {
     return initializedLocals;
   }
 
+  /**
+   * Computes the states at block entries in a single pass over the instructions, taking the state
+   * at a block entry from the verifier frame there, and from the preceding instructions for blocks
+   * that are only entered by falling through from the previous block. Returns false, with only the
+   * initial state recorded, if the frames do not describe all blocks entries.
+   */
+  private boolean computeBlockEntryJarStatesFromFrames(IRBuilder builder) {
+    Int2ReferenceSortedMap<BlockInfo> CFG = builder.getCFG();
+    state.recordStateForTarget(0);
+    state.restoreState(0);
+    // The frame at the first instruction, if any, is the same as the initial state.
+    int currentBlock = CFG.containsKey(0) ? 0 : IRBuilder.INITIAL_BLOCK_OFFSET;
+    boolean fallthrough = true;
+    for (int i = 0; i < instructionCount(); i++) {
+      if (i > 0 && CFG.containsKey(i)) {
+        FrameNode frame = getFrame(i);
+        if (frame != null) {
+          if (!setFrame(i, frame)) {
+            state.clearStatesAfterEntry();
+            return false;
+          }
+        } else {
+          BlockInfo info = CFG.get(i);
+          if (!fallthrough
+              || !info.exceptionalPredecessors.isEmpty()
+              || info.normalPredecessors.size() != 1
+              || !info.normalPredecessors.contains(currentBlock)) {
+            state.clearStatesAfterEntry();
+            return false;
+          }
+        }
+        state.recordStateForTarget(i);
+        state.restoreState(i);
+        currentBlock = i;
+        fallthrough = true;
+      }
+      if (fallthrough) {
+        AbstractInsnNode insn = getInstruction(i);
+        updateState(insn);
+        fallthrough = !isUnconditionalControlFlowInstruction(insn);
+      }
+    }
+    state.restoreState(0);
+    return true;
+  }
+
+  // Returns the frame for the state before the given instruction. Frames are recorded for the
+  // instruction they precede, so they also hold for the labels and line numbers before it.
+  private FrameNode getFrame(int index) {
+    for (int i = index; i < instructionCount(); i++) {
+      FrameNode frame = frames.get(i);
+      if (frame != null || getInstruction(i).getOpcode() >= 0) {
+        return frame;
+      }
+    }
+    return null;
+  }
+
+  private boolean setFrame(int offset, FrameNode frame) {
+    Type[] locals = new Type[node.maxLocals];
+    int index = 0;
+    for (Object value : frame.local) {
+      if (!Opcodes.TOP.equals(value)) {
+        Type type = getFrameType(value);
+        if (type == null || index >= locals.length) {
+          return false;
+        }
+        locals[index] = type;
+      }
+      index += Opcodes.LONG.equals(value) || Opcodes.DOUBLE.equals(value) ? 2 : 1;
+    }
+    List<Type> stack = new ArrayList<>(frame.stack.size());
+    for (Object value : frame.stack) {
+      Type type = getFrameType(value);
+      if (type == null) {
+        return false;
+      }
+      stack.add(type);
+    }
+    state.setFrame(offset, locals, stack);
+    return true;
+  }
+
+  private Type getFrameType(Object value) {
+    if (value instanceof String) {
+      return application.getAsmObjectType((String) value);
+    }
+    if (value instanceof LabelNode) {
+      // Uninitialized object created by the new-instance instruction at the label.
+      for (AbstractInsnNode insn = (LabelNode) value; insn != null; insn = insn.getNext()) {
+        if (insn.getOpcode() >= 0) {
+          return insn.getOpcode() == Opcodes.NEW
+              ? application.getAsmObjectType(((TypeInsnNode) insn).desc)
+              : null;
+        }
+      }
+      return null;
+    }
+    if (Opcodes.INTEGER.equals(value)) {
+      return Type.INT_TYPE;
+    }
+    if (Opcodes.FLOAT.equals(value)) {
+      return Type.FLOAT_TYPE;
+    }
+    if (Opcodes.LONG.equals(value)) {
+      return Type.LONG_TYPE;
+    }
+    if (Opcodes.DOUBLE.equals(value)) {
+      return Type.DOUBLE_TYPE;
+    }
+    if (Opcodes.NULL.equals(value)) {
+      return JarState.NULL_TYPE;
+    }
+    if (Opcodes.UNINITIALIZED_THIS.equals(value)) {
+      return application.getAsmType(clazz.toDescriptorString());
+    }
+    return null;
+  }
+
   private void computeBlockEntryJarStates(IRBuilder builder) {
     Int2ReferenceSortedMap<BlockInfo> CFG = builder.getCFG();
-    Queue<JarStateWorklistItem> worklist = new LinkedList<>();
+    Queue<JarStateWorklistItem> worklist = new ArrayDeque<>();
     BlockInfo entry = CFG.get(IRBuilder.INITIAL_BLOCK_OFFSET);
     if (CFG.get(0) != null) {
       entry = CFG.get(0);
@@ -597,6 +725,11 @@ public class JarSourceCode implements SourceCode {
     return Opcodes.ATHROW == insn.getOpcode();
   }
 
+  private static boolean isUnconditionalControlFlowInstruction(AbstractInsnNode insn) {
+    return isReturn(insn) || isThrow(insn) || isSwitch(insn) || insn.getOpcode() == Opcodes.GOTO
+        || insn.getOpcode() == Opcodes.RET;
+  }
+
   private static boolean isControlFlowInstruction(AbstractInsnNode insn) {
     return isReturn(insn) || isThrow(insn) || isSwitch(insn) || (insn instanceof JumpInsnNode)
         || insn.getOpcode() == Opcodes.RET;
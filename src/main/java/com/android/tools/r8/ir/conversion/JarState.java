@@ -633,6 +633,50 @@ public class JarState {
     topOfStack = startOfStack + 2 * stack.size();
   }
 
+  /**
+   * Sets the types of the locals and the stack to the ones of the verifier frame before the
+   * instruction at the given offset. The frame locals are indexed by local variable index, with
+   * null for the locals the frame does not define. Those are dropped, unless they hold a local
+   * with debug information that is live at the offset, which must remain defined.
+   */
+  public void setFrame(int offset, Type[] frameLocals, List<Type> frameStack) {
+    assert frameLocals.length <= localsSize;
+    boolean[] defined = new boolean[locals.length];
+    for (int index = 0; index < frameLocals.length; index++) {
+      Type type = frameLocals[index];
+      if (type != null) {
+        Local local = getLocal(index, type);
+        if (local == null || !typeEquals(local.slot.type, type)) {
+          local = setLocal(index, type, local == null ? null : local.info);
+        }
+        defined[local.slot.register] = true;
+      }
+    }
+    if (!canonicalLocalInfo.isEmpty()) {
+      for (LocalNodeInfo live : getLocalsAt(offset).live) {
+        defined[getLocalRegister(live.node.index, live.type)] = true;
+      }
+    }
+    for (int register = 0; register < locals.length; register++) {
+      if (!defined[register]) {
+        locals[register] = null;
+      }
+    }
+    stack.clear();
+    topOfStack = startOfStack;
+    for (Type type : frameStack) {
+      push(type);
+    }
+  }
+
+  /** Drops the states recorded for all targets but the method entry, and restores that state. */
+  public void clearStatesAfterEntry() {
+    Snapshot entry = targetStates.get(0);
+    targetStates.clear();
+    targetStates.put(0, entry);
+    restoreState(0);
+  }
+
   public boolean recordStateForTarget(int target) {
     return recordStateForTarget(target, locals.clone(), ImmutableList.copyOf(stack));
   }
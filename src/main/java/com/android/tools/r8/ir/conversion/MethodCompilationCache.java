@@ -0,0 +1,693 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.conversion;
+
+import com.android.tools.r8.Version;
+import com.android.tools.r8.code.Instruction;
+import com.android.tools.r8.code.InstructionFactory;
+import com.android.tools.r8.dex.Constants;
+import com.android.tools.r8.dex.DebugBytecodeWriter;
+import com.android.tools.r8.dex.IndexedItemCollection;
+import com.android.tools.r8.graph.Code;
+import com.android.tools.r8.graph.DexCallSite;
+import com.android.tools.r8.graph.DexCode;
+import com.android.tools.r8.graph.DexCode.Try;
+import com.android.tools.r8.graph.DexCode.TryHandler;
+import com.android.tools.r8.graph.DexCode.TryHandler.TypeAddrPair;
+import com.android.tools.r8.graph.DexDebugEvent;
+import com.android.tools.r8.graph.DexDebugInfo;
+import com.android.tools.r8.graph.DexEncodedMethod;
+import com.android.tools.r8.graph.DexField;
+import com.android.tools.r8.graph.DexItemFactory;
+import com.android.tools.r8.graph.DexMethod;
+import com.android.tools.r8.graph.DexMethodHandle;
+import com.android.tools.r8.graph.DexProgramClass;
+import com.android.tools.r8.graph.DexProto;
+import com.android.tools.r8.graph.DexString;
+import com.android.tools.r8.graph.DexType;
+import com.android.tools.r8.graph.DexTypeList;
+import com.android.tools.r8.graph.IndexedDexItem;
+import com.android.tools.r8.graph.ObjectToOffsetMapping;
+import com.android.tools.r8.graph.OffsetToObjectMapping;
+import com.android.tools.r8.utils.InternalOptions;
+import com.android.tools.r8.utils.Timing;
+import com.android.tools.r8.utils.VersionProperties;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Persistent, content-addressed cache of the dex code produced for a method by D8.
+ *
+ * <p>Entries are keyed by the content of the class file defining the method, the method signature,
+ * the compiler version and the options that influence code generation (min API, compilation mode
+ * and desugaring). The value is a self-contained serialization of the resulting {@link DexCode},
+ * where all referenced items are stored by descriptor and re-created in the item factory of the
+ * current compilation on lookup.
+ *
+ * <p>Only methods whose compilation does not depend on, or have side effects on, other methods and
+ * classes are stored. This excludes methods that are subject to lambda or interface method
+ * desugaring, class initializers (which may contribute static field default values) and code
+ * referencing call sites or method handles. Note that the code generated for a method can still
+ * depend on the class hierarchy of the library and class path, so a cache directory should only
+ * be shared between compilations against the same library and class path.
+ *
+ * <p>Failures to read or write the cache never fail the compilation, they are treated as misses.
+ */
+public class MethodCompilationCache {
+
+  private static final int MAGIC = 0x52384d43; // "R8MC"
+  private static final int FORMAT_VERSION = 1;
+
+  private final Path directory;
+  private final InternalOptions options;
+  private final DexItemFactory factory;
+  private final boolean desugarInterfaceMethods;
+
+  private final AtomicInteger hits = new AtomicInteger();
+  private final AtomicInteger misses = new AtomicInteger();
+  private final AtomicInteger stores = new AtomicInteger();
+  private final AtomicInteger uncacheable = new AtomicInteger();
+
+  MethodCompilationCache(Path directory, InternalOptions options, boolean desugarInterfaceMethods) {
+    this.directory = directory;
+    this.options = options;
+    this.factory = options.itemFactory;
+    this.desugarInterfaceMethods = desugarInterfaceMethods;
+  }
+
+  /**
+   * Compute the digest of the class file defining the methods of {@code clazz}.
+   *
+   * <p>This must be called before any code of the class is built, as the class file content is
+   * released once the methods have been parsed. Returns null if the content is not available, in
+   * which case the methods of the class bypass the cache.
+   */
+  byte[] computeClassDigest(DexProgramClass clazz) {
+    if (desugarInterfaceMethods && clazz.isInterface()) {
+      return null;
+    }
+    for (DexEncodedMethod method : clazz.directMethods()) {
+      byte[] content = getClassFileContent(method);
+      if (content != null) {
+        return Hashing.sha256().hashBytes(content).asBytes();
+      }
+    }
+    for (DexEncodedMethod method : clazz.virtualMethods()) {
+      byte[] content = getClassFileContent(method);
+      if (content != null) {
+        return Hashing.sha256().hashBytes(content).asBytes();
+      }
+    }
+    return null;
+  }
+
+  private static byte[] getClassFileContent(DexEncodedMethod method) {
+    Code code = method.getCode();
+    return code != null && code.isJarCode() ? code.asJarCode().getClassFileContent() : null;
+  }
+
+  String computeKey(byte[] classDigest, DexEncodedMethod method) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putInt(FORMAT_VERSION);
+    hasher.putString(Version.LABEL, StandardCharsets.UTF_8);
+    if (Version.isDev()) {
+      hasher.putString(VersionProperties.INSTANCE.getSha(), StandardCharsets.UTF_8);
+    }
+    hasher.putInt(options.minApiLevel);
+    hasher.putBoolean(options.debug);
+    hasher.putBoolean(options.enableDesugaring);
+    hasher.putInt(options.interfaceMethodDesugaring.ordinal());
+    hasher.putInt(options.tryWithResourcesDesugaring.ordinal());
+    hasher.putInt(options.lineNumberOptimization.ordinal());
+    hasher.putBytes(classDigest);
+    hasher.putString(method.method.name.toString(), StandardCharsets.UTF_8);
+    hasher.putString(method.method.proto.toDescriptorString(), StandardCharsets.UTF_8);
+    return hasher.hash().toString();
+  }
+
+  private Path entryPath(String key) {
+    return directory.resolve(key.substring(0, 2)).resolve(key.substring(2));
+  }
+
+  /** Returns the cached code for {@code key} or null if there is no usable entry. */
+  DexCode lookup(String key) {
+    byte[] content;
+    try {
+      content = Files.readAllBytes(entryPath(key));
+    } catch (IOException e) {
+      misses.incrementAndGet();
+      return null;
+    }
+    try {
+      DexCode code = new Reader(content).read();
+      hits.incrementAndGet();
+      return code;
+    } catch (IOException | RuntimeException e) {
+      // Treat corrupt or incompatible entries as misses. They will be overwritten.
+      misses.incrementAndGet();
+      return null;
+    }
+  }
+
+  /**
+   * Store the code resulting from compiling {@code original} if the compilation of the method is
+   * self-contained.
+   */
+  void store(String key, Code original, DexCode code) {
+    if (!isSelfContained(original)) {
+      uncacheable.incrementAndGet();
+      return;
+    }
+    byte[] content = new Writer(code).write();
+    if (content == null) {
+      uncacheable.incrementAndGet();
+      return;
+    }
+    Path path = entryPath(key);
+    try {
+      Files.createDirectories(path.getParent());
+      Path temp = Files.createTempFile(path.getParent(), "entry", ".tmp");
+      try {
+        Files.write(temp, content);
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+      stores.incrementAndGet();
+    } catch (IOException e) {
+      // Ignore, the entry is simply not cached.
+    }
+  }
+
+  private boolean isSelfContained(Code original) {
+    if (!original.isJarCode()) {
+      return false;
+    }
+    SelfContainedCodeVisitor visitor = new SelfContainedCodeVisitor(desugarInterfaceMethods);
+    original.asJarCode().writeTo(visitor);
+    return visitor.isSelfContained;
+  }
+
+  boolean isCacheable(DexEncodedMethod method) {
+    return !method.isClassInitializer() || options.debug;
+  }
+
+  public int getHits() {
+    return hits.get();
+  }
+
+  public int getMisses() {
+    return misses.get();
+  }
+
+  void reportCounters(Timing timing) {
+    timing.addCounter("Method cache hits", hits.get());
+    timing.addCounter("Method cache misses", misses.get());
+    timing.addCounter("Method cache stores", stores.get());
+    timing.addCounter("Method cache uncacheable", uncacheable.get());
+  }
+
+  // Detects code which is subject to desugaring that depends on, or affects, other classes.
+  private static class SelfContainedCodeVisitor extends MethodVisitor {
+
+    private final boolean desugarInterfaceMethods;
+    private boolean isSelfContained = true;
+
+    SelfContainedCodeVisitor(boolean desugarInterfaceMethods) {
+      super(Opcodes.ASM6);
+      this.desugarInterfaceMethods = desugarInterfaceMethods;
+    }
+
+    @Override
+    public void visitInvokeDynamicInsn(
+        String name, String desc, Handle bsm, Object... bsmArgs) {
+      isSelfContained = false;
+    }
+
+    @Override
+    public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+      if (desugarInterfaceMethods
+          && itf
+          && (opcode == Opcodes.INVOKESTATIC || opcode == Opcodes.INVOKESPECIAL)) {
+        isSelfContained = false;
+      }
+    }
+
+    @Override
+    public void visitLdcInsn(Object cst) {
+      if (cst instanceof Handle) {
+        isSelfContained = false;
+      }
+    }
+  }
+
+  // Collects the items referenced from a code object in a deterministic order.
+  private static class ItemCollector implements IndexedItemCollection {
+
+    final Set<DexString> strings = new LinkedHashSet<>();
+    final Set<DexType> types = new LinkedHashSet<>();
+    final Set<DexProto> protos = new LinkedHashSet<>();
+    final Set<DexField> fields = new LinkedHashSet<>();
+    final Set<DexMethod> methods = new LinkedHashSet<>();
+    boolean hasUnsupportedItems = false;
+
+    @Override
+    public boolean addClass(DexProgramClass dexProgramClass) {
+      hasUnsupportedItems = true;
+      return false;
+    }
+
+    @Override
+    public boolean addField(DexField field) {
+      return fields.add(field);
+    }
+
+    @Override
+    public boolean addMethod(DexMethod method) {
+      return methods.add(method);
+    }
+
+    @Override
+    public boolean addString(DexString string) {
+      return strings.add(string);
+    }
+
+    @Override
+    public boolean addProto(DexProto proto) {
+      return protos.add(proto);
+    }
+
+    @Override
+    public boolean addType(DexType type) {
+      return types.add(type);
+    }
+
+    @Override
+    public boolean addCallSite(DexCallSite callSite) {
+      hasUnsupportedItems = true;
+      return false;
+    }
+
+    @Override
+    public boolean addMethodHandle(DexMethodHandle methodHandle) {
+      hasUnsupportedItems = true;
+      return false;
+    }
+  }
+
+  // Maps the items of a single code object to indices into the local item pools of an entry.
+  private static class LocalObjectToOffsetMapping extends ObjectToOffsetMapping {
+
+    private final Reference2IntMap<IndexedDexItem> indices = new Reference2IntOpenHashMap<>();
+
+    LocalObjectToOffsetMapping(ItemCollector items) {
+      super(null, Collections.emptyList(), Collections.emptyList(), Collections.emptyList(),
+          Collections.emptyList(), Collections.emptyList(), Collections.emptyList(),
+          Collections.emptyList(), Collections.emptyList());
+      indices.defaultReturnValue(-1);
+      addAll(items.strings);
+      addAll(items.types);
+      addAll(items.protos);
+      addAll(items.fields);
+      addAll(items.methods);
+    }
+
+    private void addAll(Set<? extends IndexedDexItem> items) {
+      int index = 0;
+      for (IndexedDexItem item : items) {
+        indices.put(item, index++);
+      }
+    }
+
+    private int indexOf(IndexedDexItem item) {
+      int index = indices.getInt(item);
+      assert index >= 0 : "Missing dependency: " + item;
+      return index;
+    }
+
+    @Override
+    public int getOffsetFor(DexProto proto) {
+      return indexOf(proto);
+    }
+
+    @Override
+    public int getOffsetFor(DexField field) {
+      return indexOf(field);
+    }
+
+    @Override
+    public int getOffsetFor(DexMethod method) {
+      return indexOf(method);
+    }
+
+    @Override
+    public int getOffsetFor(DexString string) {
+      return indexOf(string);
+    }
+
+    @Override
+    public int getOffsetFor(DexType type) {
+      return indexOf(type);
+    }
+  }
+
+  private static class Writer {
+
+    private final DexCode code;
+    private final ItemCollector items = new ItemCollector();
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(bytes);
+
+    Writer(DexCode code) {
+      this.code = code;
+    }
+
+    // Returns null if the code cannot be represented in the cache.
+    byte[] write() {
+      code.collectIndexedItems(items);
+      if (items.hasUnsupportedItems) {
+        return null;
+      }
+      DexDebugInfo debugInfo = code.getDebugInfo();
+      if (debugInfo != null) {
+        for (DexDebugEvent event : debugInfo.events) {
+          if (event instanceof DexDebugEvent.SetInlineFrame) {
+            return null;
+          }
+        }
+      }
+      LocalObjectToOffsetMapping mapping = new LocalObjectToOffsetMapping(items);
+      try {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        writeItems(mapping);
+        writeCode(mapping);
+        out.flush();
+      } catch (IOException e) {
+        throw new AssertionError(e);
+      }
+      return bytes.toByteArray();
+    }
+
+    private void writeItems(ObjectToOffsetMapping mapping) throws IOException {
+      out.writeInt(items.strings.size());
+      for (DexString string : items.strings) {
+        out.writeInt(string.size);
+        out.writeInt(string.content.length);
+        out.write(string.content);
+      }
+      out.writeInt(items.types.size());
+      for (DexType type : items.types) {
+        out.writeInt(mapping.getOffsetFor(type.descriptor));
+      }
+      out.writeInt(items.protos.size());
+      for (DexProto proto : items.protos) {
+        out.writeInt(mapping.getOffsetFor(proto.shorty));
+        out.writeInt(mapping.getOffsetFor(proto.returnType));
+        out.writeInt(proto.parameters.values.length);
+        for (DexType parameter : proto.parameters.values) {
+          out.writeInt(mapping.getOffsetFor(parameter));
+        }
+      }
+      out.writeInt(items.fields.size());
+      for (DexField field : items.fields) {
+        out.writeInt(mapping.getOffsetFor(field.clazz));
+        out.writeInt(mapping.getOffsetFor(field.type));
+        out.writeInt(mapping.getOffsetFor(field.name));
+      }
+      out.writeInt(items.methods.size());
+      for (DexMethod method : items.methods) {
+        out.writeInt(mapping.getOffsetFor(method.holder));
+        out.writeInt(mapping.getOffsetFor(method.proto));
+        out.writeInt(mapping.getOffsetFor(method.name));
+      }
+    }
+
+    private void writeCode(ObjectToOffsetMapping mapping) throws IOException {
+      out.writeInt(code.registerSize);
+      out.writeInt(code.incomingRegisterSize);
+      out.writeInt(code.outgoingRegisterSize);
+      int size = 0;
+      for (Instruction instruction : code.instructions) {
+        size += instruction.getSize();
+      }
+      ShortBuffer buffer = ShortBuffer.allocate(size);
+      for (Instruction instruction : code.instructions) {
+        instruction.write(buffer, mapping);
+      }
+      out.writeInt(size);
+      for (short value : buffer.array()) {
+        out.writeShort(value);
+      }
+      out.writeInt(code.tries.length);
+      for (Try aTry : code.tries) {
+        out.writeInt(aTry.startAddress);
+        out.writeInt(aTry.instructionCount);
+        out.writeInt(aTry.handlerIndex);
+      }
+      TryHandler[] handlers = code.handlers == null ? new TryHandler[0] : code.handlers;
+      out.writeInt(handlers.length);
+      for (TryHandler handler : handlers) {
+        out.writeInt(handler.catchAllAddr);
+        out.writeInt(handler.pairs.length);
+        for (TypeAddrPair pair : handler.pairs) {
+          out.writeInt(mapping.getOffsetFor(pair.type));
+          out.writeInt(pair.addr);
+        }
+      }
+      DexDebugInfo debugInfo = code.getDebugInfo();
+      if (debugInfo == null) {
+        out.writeInt(-1);
+      } else {
+        byte[] debugBytes = new DebugBytecodeWriter(debugInfo, mapping).generate();
+        out.writeInt(debugBytes.length);
+        out.write(debugBytes);
+      }
+    }
+  }
+
+  private class Reader {
+
+    private final DataInputStream in;
+    private final OffsetToObjectMapping mapping = new OffsetToObjectMapping();
+
+    Reader(byte[] content) {
+      this.in = new DataInputStream(new ByteArrayInputStream(content));
+    }
+
+    DexCode read() throws IOException {
+      if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+        throw new IOException("Invalid method cache entry");
+      }
+      readItems();
+      return readCode();
+    }
+
+    private void readItems() throws IOException {
+      int count = in.readInt();
+      mapping.initializeStrings(count);
+      for (int i = 0; i < count; i++) {
+        int size = in.readInt();
+        byte[] content = new byte[in.readInt()];
+        in.readFully(content);
+        mapping.setString(i, factory.createString(size, content));
+      }
+      count = in.readInt();
+      mapping.initializeTypes(count);
+      for (int i = 0; i < count; i++) {
+        mapping.setType(i, factory.createType(mapping.getString(in.readInt())));
+      }
+      count = in.readInt();
+      mapping.initializeProtos(count);
+      for (int i = 0; i < count; i++) {
+        DexString shorty = mapping.getString(in.readInt());
+        DexType returnType = mapping.getType(in.readInt());
+        DexType[] parameters = new DexType[in.readInt()];
+        for (int j = 0; j < parameters.length; j++) {
+          parameters[j] = mapping.getType(in.readInt());
+        }
+        mapping.setProto(
+            i,
+            factory.createProto(
+                returnType,
+                shorty,
+                parameters.length == 0 ? DexTypeList.empty() : new DexTypeList(parameters)));
+      }
+      count = in.readInt();
+      mapping.initializeFields(count);
+      for (int i = 0; i < count; i++) {
+        DexType holder = mapping.getType(in.readInt());
+        DexType type = mapping.getType(in.readInt());
+        mapping.setField(i, factory.createField(holder, type, mapping.getString(in.readInt())));
+      }
+      count = in.readInt();
+      mapping.initializeMethods(count);
+      for (int i = 0; i < count; i++) {
+        DexType holder = mapping.getType(in.readInt());
+        DexProto proto = mapping.getProto(in.readInt());
+        mapping.setMethod(i, factory.createMethod(holder, proto, mapping.getString(in.readInt())));
+      }
+      mapping.initializeCallSites(0);
+      mapping.initializeMethodHandles(0);
+    }
+
+    private DexCode readCode() throws IOException {
+      int registerSize = in.readInt();
+      int incomingRegisterSize = in.readInt();
+      int outgoingRegisterSize = in.readInt();
+      short[] shorts = new short[in.readInt()];
+      for (int i = 0; i < shorts.length; i++) {
+        shorts[i] = in.readShort();
+      }
+      Try[] tries = new Try[in.readInt()];
+      for (int i = 0; i < tries.length; i++) {
+        int startAddress = in.readInt();
+        int instructionCount = in.readInt();
+        tries[i] = new Try(startAddress, instructionCount, Try.NO_INDEX);
+        tries[i].handlerIndex = in.readInt();
+      }
+      TryHandler[] handlers = new TryHandler[in.readInt()];
+      for (int i = 0; i < handlers.length; i++) {
+        int catchAllAddr = in.readInt();
+        TypeAddrPair[] pairs = new TypeAddrPair[in.readInt()];
+        for (int j = 0; j < pairs.length; j++) {
+          DexType type = mapping.getType(in.readInt());
+          pairs[j] = new TypeAddrPair(type, in.readInt());
+        }
+        handlers[i] = new TryHandler(pairs, catchAllAddr);
+      }
+      DexDebugInfo debugInfo = null;
+      int debugInfoSize = in.readInt();
+      if (debugInfoSize >= 0) {
+        byte[] debugBytes = new byte[debugInfoSize];
+        in.readFully(debugBytes);
+        debugInfo = readDebugInfo(ByteBuffer.wrap(debugBytes));
+      }
+      InstructionFactory instructionFactory = new InstructionFactory();
+      Instruction[] instructions =
+          instructionFactory.readSequenceFrom(ShortBuffer.wrap(shorts), 0, shorts.length, mapping);
+      return new DexCode(
+          registerSize,
+          incomingRegisterSize,
+          outgoingRegisterSize,
+          instructions,
+          tries,
+          handlers,
+          debugInfo,
+          instructionFactory.getHighestSortingString());
+    }
+
+    // Decodes the debug info stream written by DebugBytecodeWriter.
+    private DexDebugInfo readDebugInfo(ByteBuffer buffer) {
+      int startLine = readUleb128(buffer);
+      DexString[] parameters = new DexString[readUleb128(buffer)];
+      for (int i = 0; i < parameters.length; i++) {
+        parameters[i] = readStringOrNull(buffer);
+      }
+      List<DexDebugEvent> events = new ArrayList<>();
+      for (int head = buffer.get() & 0xff;
+          head != Constants.DBG_END_SEQUENCE;
+          head = buffer.get() & 0xff) {
+        switch (head) {
+          case Constants.DBG_ADVANCE_PC:
+            events.add(factory.createAdvancePC(readUleb128(buffer)));
+            break;
+          case Constants.DBG_ADVANCE_LINE:
+            events.add(factory.createAdvanceLine(readSleb128(buffer)));
+            break;
+          case Constants.DBG_START_LOCAL:
+          case Constants.DBG_START_LOCAL_EXTENDED: {
+            int registerNum = readUleb128(buffer);
+            DexString name = readStringOrNull(buffer);
+            DexType type = readTypeOrNull(buffer);
+            DexString signature =
+                head == Constants.DBG_START_LOCAL_EXTENDED ? readStringOrNull(buffer) : null;
+            events.add(new DexDebugEvent.StartLocal(registerNum, name, type, signature));
+            break;
+          }
+          case Constants.DBG_END_LOCAL:
+            events.add(factory.createEndLocal(readUleb128(buffer)));
+            break;
+          case Constants.DBG_RESTART_LOCAL:
+            events.add(factory.createRestartLocal(readUleb128(buffer)));
+            break;
+          case Constants.DBG_SET_PROLOGUE_END:
+            events.add(factory.createSetPrologueEnd());
+            break;
+          case Constants.DBG_SET_EPILOGUE_BEGIN:
+            events.add(factory.createSetEpilogueBegin());
+            break;
+          case Constants.DBG_SET_FILE:
+            events.add(factory.createSetFile(readStringOrNull(buffer)));
+            break;
+          default:
+            assert head >= Constants.DBG_FIRST_SPECIAL;
+            events.add(factory.createDefault(head));
+        }
+      }
+      return new DexDebugInfo(
+          startLine, parameters, events.toArray(new DexDebugEvent[events.size()]));
+    }
+
+    private DexString readStringOrNull(ByteBuffer buffer) {
+      int index = readUleb128(buffer) - 1;
+      return index < 0 ? null : mapping.getString(index);
+    }
+
+    private DexType readTypeOrNull(ByteBuffer buffer) {
+      int index = readUleb128(buffer) - 1;
+      return index < 0 ? null : mapping.getType(index);
+    }
+  }
+
+  private static int readUleb128(ByteBuffer buffer) {
+    int result = 0;
+    int shift = 0;
+    int b;
+    do {
+      b = buffer.get() & 0xff;
+      result |= (b & 0x7f) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return result;
+  }
+
+  private static int readSleb128(ByteBuffer buffer) {
+    int result = 0;
+    int shift = 0;
+    int b;
+    do {
+      b = buffer.get() & 0xff;
+      result |= (b & 0x7f) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    if (shift < 32 && (b & 0x40) != 0) {
+      result |= -1 << shift;
+    }
+    return result;
+  }
+}
@@ -0,0 +1,289 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.conversion;
+
+import com.android.tools.r8.graph.DexEncodedMethod;
+import com.android.tools.r8.utils.InternalOptions;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import org.json.simple.JSONValue;
+
+/**
+ * Profile of the CPU time and the bytes allocated by each pass of the IR converter.
+ *
+ * <p>The passes of a method are profiled on the thread processing the method, by calling {@link
+ * MethodProfile#record} with the name of a pass after running it. The CPU time and allocated bytes
+ * since the previous call are attributed to the pass. When the method is done, its profile is
+ * added to the totals per pass, and kept if it is one of the slowest methods.
+ *
+ * <p>Work between passes that is not part of a pass, such as printing and logging the IR, is
+ * recorded as {@link #OTHER}, so that it is not attributed to the next pass.
+ *
+ * <p>If the JVM does not support measuring the CPU time of a thread, wall time is recorded instead.
+ * If it does not support measuring the bytes allocated by a thread, allocations are reported as 0.
+ */
+public class PassProfiler {
+
+  public static final String OTHER = "Other";
+
+  private static final Comparator<MethodProfile> BY_TIME =
+      Comparator.comparingLong(MethodProfile::getTime);
+
+  // Pass totals are kept in the order in which the passes were first recorded.
+  private final Map<String, PassTotals> totals = new LinkedHashMap<>();
+  private final PriorityQueue<MethodProfile> slowestMethods = new PriorityQueue<>(BY_TIME);
+  private final int topMethods;
+  private final ThreadMXBean threadBean;
+  private final com.sun.management.ThreadMXBean allocationBean;
+
+  private PassProfiler(int topMethods) {
+    this.topMethods = topMethods;
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean.isCurrentThreadCpuTimeSupported()) {
+      if (!bean.isThreadCpuTimeEnabled()) {
+        bean.setThreadCpuTimeEnabled(true);
+      }
+      threadBean = bean;
+    } else {
+      threadBean = null;
+    }
+    if (bean instanceof com.sun.management.ThreadMXBean
+        && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+      allocationBean = (com.sun.management.ThreadMXBean) bean;
+      if (!allocationBean.isThreadAllocatedMemoryEnabled()) {
+        allocationBean.setThreadAllocatedMemoryEnabled(true);
+      }
+    } else {
+      allocationBean = null;
+    }
+  }
+
+  /** Create a profiler if profiling of the passes is enabled in the options, or return null. */
+  public static PassProfiler create(InternalOptions options) {
+    return options.profilePasses ? new PassProfiler(options.passProfileTopMethods) : null;
+  }
+
+  /** Start profiling the passes of a method. Returns a no-op profile if profiler is null. */
+  public static MethodProfile startMethod(PassProfiler profiler, DexEncodedMethod method) {
+    return profiler == null ? MethodProfile.NONE : new MethodProfile(profiler, method);
+  }
+
+  private long currentTime() {
+    return threadBean != null ? threadBean.getCurrentThreadCpuTime() : System.nanoTime();
+  }
+
+  private long currentAllocatedBytes() {
+    return allocationBean != null
+        ? allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId())
+        : -1;
+  }
+
+  private synchronized void add(MethodProfile profile) {
+    profile.passes.forEach(
+        (name, pass) -> totals.computeIfAbsent(name, PassTotals::new).add(pass));
+    if (topMethods > 0) {
+      if (slowestMethods.size() < topMethods) {
+        slowestMethods.add(profile);
+      } else if (slowestMethods.peek().getTime() < profile.getTime()) {
+        slowestMethods.poll();
+        slowestMethods.add(profile);
+      }
+    }
+  }
+
+  private synchronized List<MethodProfile> getSlowestMethods() {
+    List<MethodProfile> result = new ArrayList<>(slowestMethods);
+    result.sort(BY_TIME.reversed());
+    return result;
+  }
+
+  private static long millis(long nanos) {
+    return nanos / 1000000;
+  }
+
+  /** Print the totals per pass and the slowest methods, in the style of the timing report. */
+  public synchronized void report(PrintStream out) {
+    out.println();
+    out.println("Recorded pass times" + (threadBean != null ? " (CPU)" : " (wall)"));
+    for (PassTotals pass : totals.values()) {
+      out.println("- " + pass.name + ": " + millis(pass.time) + "ms. Allocated: "
+          + (pass.allocatedBytes / 1024) + "KB. Methods: " + pass.methods);
+    }
+    List<MethodProfile> methods = getSlowestMethods();
+    if (!methods.isEmpty()) {
+      out.println("Slowest methods");
+      for (MethodProfile method : methods) {
+        out.println("- " + method.getName() + ": " + millis(method.getTime()) + "ms.");
+        method.passes.forEach((name, pass) -> {
+          out.println("  # " + name + ": " + millis(pass.time) + "ms.");
+        });
+      }
+    }
+  }
+
+  /** Write the report to the given file, as CSV if the file name ends in .csv or else as JSON. */
+  public void writeReport(Path file) throws IOException {
+    try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      if (file.getFileName().toString().endsWith(".csv")) {
+        writeCsv(writer);
+      } else {
+        writeJson(writer);
+      }
+    }
+  }
+
+  private static String csvString(String value) {
+    return "\"" + value.replace("\"", "\"\"") + "\"";
+  }
+
+  // One row per pass with an empty method column, followed by one row per pass of each of the
+  // slowest methods.
+  synchronized void writeCsv(Writer writer) throws IOException {
+    writer.write("method,pass,methods,time_ns,allocated_bytes\n");
+    for (PassTotals pass : totals.values()) {
+      writer.write(
+          "," + csvString(pass.name) + "," + pass.methods + "," + pass.time + ","
+              + pass.allocatedBytes + "\n");
+    }
+    for (MethodProfile method : getSlowestMethods()) {
+      String name = csvString(method.getName());
+      for (PassTime pass : method.passes.values()) {
+        writer.write(
+            name + "," + csvString(pass.name) + ",1," + pass.time + "," + pass.allocatedBytes
+                + "\n");
+      }
+    }
+  }
+
+  private static String jsonString(String value) {
+    return "\"" + JSONValue.escape(value) + "\"";
+  }
+
+  private static void writeJsonPass(
+      Writer writer, String name, long time, long allocatedBytes) throws IOException {
+    writer.write(
+        "{\"pass\":" + jsonString(name) + ",\"time_ns\":" + time + ",\"allocated_bytes\":"
+            + allocatedBytes);
+  }
+
+  // The members of the objects are written in a fixed order, which the JSONObject of json-simple
+  // does not support.
+  synchronized void writeJson(Writer writer) throws IOException {
+    writer.write("{\"cpu_time\":" + (threadBean != null) + ",\"passes\":[");
+    String separator = "";
+    for (PassTotals pass : totals.values()) {
+      writer.write(separator);
+      writeJsonPass(writer, pass.name, pass.time, pass.allocatedBytes);
+      writer.write(",\"methods\":" + pass.methods + "}");
+      separator = ",";
+    }
+    writer.write("],\"slowest_methods\":[");
+    separator = "";
+    for (MethodProfile method : getSlowestMethods()) {
+      writer.write(separator);
+      writer.write(
+          "{\"method\":" + jsonString(method.getName()) + ",\"time_ns\":" + method.getTime()
+              + ",\"passes\":[");
+      String passSeparator = "";
+      for (PassTime pass : method.passes.values()) {
+        writer.write(passSeparator);
+        writeJsonPass(writer, pass.name, pass.time, pass.allocatedBytes);
+        writer.write("}");
+        passSeparator = ",";
+      }
+      writer.write("]}");
+      separator = ",";
+    }
+    writer.write("]}\n");
+  }
+
+  private static class PassTime {
+    final String name;
+    long time = 0;
+    long allocatedBytes = 0;
+
+    PassTime(String name) {
+      this.name = name;
+    }
+  }
+
+  private static class PassTotals extends PassTime {
+    int methods = 0;
+
+    PassTotals(String name) {
+      super(name);
+    }
+
+    void add(PassTime pass) {
+      methods++;
+      time += pass.time;
+      allocatedBytes += pass.allocatedBytes;
+    }
+  }
+
+  /** Profile of the passes of a single method, only to be used on the thread processing it. */
+  public static class MethodProfile {
+
+    static final MethodProfile NONE = new MethodProfile(null, null);
+
+    private final PassProfiler profiler;
+    private final DexEncodedMethod method;
+    private final Map<String, PassTime> passes = new LinkedHashMap<>();
+    private long time;
+    private long allocatedBytes;
+    private long totalTime = 0;
+
+    private MethodProfile(PassProfiler profiler, DexEncodedMethod method) {
+      this.profiler = profiler;
+      this.method = method;
+      if (profiler != null) {
+        time = profiler.currentTime();
+        allocatedBytes = profiler.currentAllocatedBytes();
+      }
+    }
+
+    /** Attribute the time and allocations since the previous pass to the given pass. */
+    public void record(String pass) {
+      if (profiler == null) {
+        return;
+      }
+      long currentTime = profiler.currentTime();
+      long currentAllocatedBytes = profiler.currentAllocatedBytes();
+      PassTime passTime = passes.computeIfAbsent(pass, PassTime::new);
+      passTime.time += currentTime - time;
+      totalTime += currentTime - time;
+      passTime.allocatedBytes +=
+          currentAllocatedBytes < 0 ? 0 : currentAllocatedBytes - allocatedBytes;
+      time = currentTime;
+      allocatedBytes = currentAllocatedBytes;
+    }
+
+    /** Add the profile of the method to the totals of the profiler. */
+    public void finish() {
+      if (profiler != null) {
+        profiler.add(this);
+      }
+    }
+
+    long getTime() {
+      return totalTime;
+    }
+
+    String getName() {
+      return method.toSourceString();
+    }
+  }
+}
@@ -88,16 +88,18 @@ final class ClassProcessor {
 
     // Add the methods.
     DexEncodedMethod[] existing = clazz.virtualMethods();
-    clazz.setVirtualMethods(new DexEncodedMethod[existing.length + methodsToImplement.size()]);
-    System.arraycopy(existing, 0, clazz.virtualMethods(), 0, existing.length);
+    DexEncodedMethod[] methods =
+        new DexEncodedMethod[existing.length + methodsToImplement.size()];
+    System.arraycopy(existing, 0, methods, 0, existing.length);
 
     for (int i = 0; i < methodsToImplement.size(); i++) {
       DexEncodedMethod method = methodsToImplement.get(i);
       assert method.accessFlags.isPublic() && !method.accessFlags.isAbstract();
       DexEncodedMethod newMethod = addForwardingMethod(method, clazz);
-      clazz.virtualMethods()[existing.length + i] = newMethod;
+      methods[existing.length + i] = newMethod;
       createdMethods.put(newMethod, method);
     }
+    clazz.setVirtualMethods(methods);
   }
 
   private DexEncodedMethod addForwardingMethod(DexEncodedMethod defaultMethod, DexClass clazz) {
@@ -44,6 +44,7 @@ import it.unimi.dsi.fastutil.ints.IntArraySet;
 import it.unimi.dsi.fastutil.ints.IntIterator;
 import it.unimi.dsi.fastutil.ints.IntSet;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -53,7 +54,6 @@ import java.util.ListIterator;
 import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Set;
-import java.util.TreeSet;
 
 /**
  * Linear scan register allocator.
@@ -126,7 +126,7 @@ public class LinearScanRegisterAllocator implements RegisterAllocator {
   private Value preArgumentSentinelValue = null;
 
   // The set of registers that are free for allocation.
-  private TreeSet<Integer> freeRegisters = new TreeSet<>();
+  private BitSet freeRegisters = new BitSet();
   // The max register number used.
   private int maxRegisterNumber = 0;
   // The next available register number not yet included in the set of used registers.
@@ -135,9 +135,9 @@ public class LinearScanRegisterAllocator implements RegisterAllocator {
   // List of all top-level live intervals for all SSA values.
   private List<LiveIntervals> liveIntervals = new ArrayList<>();
   // List of active intervals.
-  private List<LiveIntervals> active = new LinkedList<>();
+  private List<LiveIntervals> active = new ArrayList<>();
   // List of intervals where the current instruction falls into one of their live range holes.
-  protected List<LiveIntervals> inactive = new LinkedList<>();
+  protected List<LiveIntervals> inactive = new ArrayList<>();
   // List of intervals that no register has been allocated to sorted by first live range.
   protected PriorityQueue<LiveIntervals> unhandled = new PriorityQueue<>();
 
@@ -805,34 +805,39 @@ public class LinearScanRegisterAllocator implements RegisterAllocator {
       }
 
       int start = unhandledInterval.getStart();
-      // Check for active intervals that expired or became inactive.
-      Iterator<LiveIntervals> activeIterator = active.iterator();
-      while (activeIterator.hasNext()) {
-        LiveIntervals activeIntervals = activeIterator.next();
+      // Check for active intervals that expired or became inactive. The lists are compacted in
+      // place, keeping the order of the remaining intervals, instead of removing one at a time.
+      int kept = 0;
+      for (int i = 0; i < active.size(); i++) {
+        LiveIntervals activeIntervals = active.get(i);
         if (start >= activeIntervals.getEnd()) {
-          activeIterator.remove();
           freeRegistersForIntervals(activeIntervals);
         } else if (!activeIntervals.overlapsPosition(start)) {
-          activeIterator.remove();
           assert activeIntervals.getRegister() != NO_REGISTER;
           inactive.add(activeIntervals);
           freeRegistersForIntervals(activeIntervals);
+        } else {
+          active.set(kept++, activeIntervals);
         }
       }
+      truncate(active, kept);
 
       // Check for inactive intervals that expired or became reactivated.
-      Iterator<LiveIntervals> inactiveIterator = inactive.iterator();
-      while (inactiveIterator.hasNext()) {
-        LiveIntervals inactiveIntervals = inactiveIterator.next();
+      kept = 0;
+      for (int i = 0; i < inactive.size(); i++) {
+        LiveIntervals inactiveIntervals = inactive.get(i);
         if (start >= inactiveIntervals.getEnd()) {
-          inactiveIterator.remove();
-        } else if (inactiveIntervals.overlapsPosition(start)) {
-          inactiveIterator.remove();
+          continue;
+        }
+        if (inactiveIntervals.overlapsPosition(start)) {
           assert inactiveIntervals.getRegister() != NO_REGISTER;
           active.add(inactiveIntervals);
           takeRegistersForIntervals(inactiveIntervals);
+        } else {
+          inactive.set(kept++, inactiveIntervals);
         }
       }
+      truncate(inactive, kept);
 
       // Perform the actual allocation.
       if (unhandledInterval.isLinked() && !unhandledInterval.isArgumentInterval()) {
@@ -904,11 +909,18 @@ public class LinearScanRegisterAllocator implements RegisterAllocator {
         Value dest = move.dest();
         LiveIntervals destIntervals = dest.getLiveIntervals();
         if (destIntervals.getRegister() == NO_REGISTER) {
-          // Save the current register allocation state so we can restore it at the end.
-          TreeSet<Integer> savedFreeRegisters = new TreeSet<>(freeRegisters);
+          // Save the current register allocation state so we can restore it at the end. Allocating
+          // the linked intervals only appends to the active and inactive lists, so it is enough to
+          // remember their sizes.
+          BitSet savedFreeRegisters = (BitSet) freeRegisters.clone();
           int savedUnusedRegisterNumber = nextUnusedRegisterNumber;
-          List<LiveIntervals> savedActive = new LinkedList<>(active);
-          List<LiveIntervals> savedInactive = new LinkedList<>(inactive);
+          int savedActiveSize = active.size();
+          int savedInactiveSize = inactive.size();
+          // With assertions enabled, the lists are also copied to check that the rollback
+          // restores them as they were.
+          List<LiveIntervals> expectedActive = assertionsEnabled() ? new ArrayList<>(active) : null;
+          List<LiveIntervals> expectedInactive =
+              assertionsEnabled() ? new ArrayList<>(inactive) : null;
 
           // Add all the active intervals to the inactive set. When allocating linked intervals we
           // check all inactive intervals and exclude the registers for overlapping inactive
@@ -934,11 +946,11 @@ public class LinearScanRegisterAllocator implements RegisterAllocator {
           allocateLinkedIntervals(destIntervals);
           // Restore the register allocation state.
           freeRegisters = savedFreeRegisters;
-          for (int i = savedUnusedRegisterNumber; i < nextUnusedRegisterNumber; i++) {
-            freeRegisters.add(i);
-          }
-          active = savedActive;
-          inactive = savedInactive;
+          freeRegisters.set(savedUnusedRegisterNumber, nextUnusedRegisterNumber);
+          truncate(active, savedActiveSize);
+          truncate(inactive, savedInactiveSize);
+          assert active.equals(expectedActive);
+          assert inactive.equals(expectedInactive);
           // Move all the argument intervals to the inactive set.
           LiveIntervals current = destIntervals.getStartOfConsecutive();
           while (current != null) {
@@ -957,7 +969,7 @@ public class LinearScanRegisterAllocator implements RegisterAllocator {
     // Exclude the registers that overlap the start of one of the live ranges we are
     // going to assign registers to now.
     LiveIntervals current = unhandledInterval.getStartOfConsecutive();
-    Set<Integer> excludedRegisters = new HashSet<>();
+    BitSet excludedRegisters = new BitSet();
     while (current != null) {
       for (LiveIntervals inactiveIntervals : inactive) {
         if (inactiveIntervals.overlaps(current)) {
@@ -999,7 +1011,7 @@ public class LinearScanRegisterAllocator implements RegisterAllocator {
     assert unhandledInterval.getRegister() != NO_REGISTER;
     active.add(unhandledInterval);
     // Include the registers for inactive ranges that we had to exclude for this allocation.
-    freeRegisters.addAll(excludedRegisters);
+    freeRegisters.or(excludedRegisters);
   }
 
   // Update the information about used registers when |register| has been selected for use.
@@ -2218,16 +2230,14 @@ public class LinearScanRegisterAllocator implements RegisterAllocator {
   }
 
   private int getFreeConsecutiveRegisters(int numberOfRegister) {
-    List<Integer> unused = new ArrayList<>();
+    BitSet unused = new BitSet();
     int first = getNextFreeRegister();
     int current = first;
     while ((current - first + 1) != numberOfRegister) {
       for (int i = 0; i < numberOfRegister - 1; i++) {
         int next = getNextFreeRegister();
         if (next != current + 1) {
-          for (int j = first; j <= current; j++) {
-            unused.add(j);
-          }
+          unused.set(first, current + 1);
           first = next;
           current = first;
           break;
@@ -2235,43 +2245,56 @@ public class LinearScanRegisterAllocator implements RegisterAllocator {
         current++;
       }
     }
-    freeRegisters.addAll(unused);
+    freeRegisters.or(unused);
     maxRegisterNumber = Math.max(maxRegisterNumber, first + numberOfRegister - 1);
     return first;
   }
 
   private int getNextFreeRegister() {
-    if (freeRegisters.size() > 0) {
-      return freeRegisters.pollFirst();
+    int register = freeRegisters.nextSetBit(0);
+    if (register >= 0) {
+      freeRegisters.clear(register);
+      return register;
     }
     return nextUnusedRegisterNumber++;
   }
 
-  private void excludeRegistersForInterval(LiveIntervals intervals, Set<Integer> excluded) {
+  private void excludeRegistersForInterval(LiveIntervals intervals, BitSet excluded) {
     int register = intervals.getRegister();
     for (int i = 0; i < intervals.requiredRegisters(); i++) {
-      if (freeRegisters.remove(register + i)) {
-        excluded.add(register + i);
+      if (freeRegisters.get(register + i)) {
+        freeRegisters.clear(register + i);
+        excluded.set(register + i);
       }
     }
   }
 
   private void freeRegistersForIntervals(LiveIntervals intervals) {
     int register = intervals.getRegister();
-    freeRegisters.add(register);
+    freeRegisters.set(register);
     if (intervals.getType().isWide()) {
-      freeRegisters.add(register + 1);
+      freeRegisters.set(register + 1);
     }
   }
 
   private void takeRegistersForIntervals(LiveIntervals intervals) {
     int register = intervals.getRegister();
-    freeRegisters.remove(register);
+    freeRegisters.clear(register);
     if (intervals.getType().isWide()) {
-      freeRegisters.remove(register + 1);
+      freeRegisters.clear(register + 1);
     }
   }
 
+  private static void truncate(List<LiveIntervals> intervals, int size) {
+    intervals.subList(size, intervals.size()).clear();
+  }
+
+  private static boolean assertionsEnabled() {
+    boolean enabled = false;
+    assert enabled = true;
+    return enabled;
+  }
+
   private boolean noLinkedValues() {
     for (BasicBlock block : code.blocks) {
       for (Phi phi : block.getPhis()) {
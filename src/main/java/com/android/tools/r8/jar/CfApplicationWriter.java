@@ -18,10 +18,21 @@ import com.android.tools.r8.naming.NamingLens;
 import com.android.tools.r8.naming.ProguardMapSupplier;
 import com.android.tools.r8.utils.ExceptionUtils;
 import com.android.tools.r8.utils.InternalOptions;
+import com.android.tools.r8.utils.Reporter;
+import com.google.common.base.Throwables;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.MethodVisitor;
@@ -55,7 +66,8 @@ public class CfApplicationWriter {
     this.proguardSeedsData = proguardSeedsData;
   }
 
-  public void write(ClassFileConsumer consumer, ExecutorService executor) throws IOException {
+  public void write(ClassFileConsumer consumer, ExecutorService executor)
+      throws IOException, ExecutionException {
     application.timing.begin("CfApplicationWriter.write");
     try {
       writeApplication(consumer, executor);
@@ -65,24 +77,68 @@ public class CfApplicationWriter {
   }
 
   private void writeApplication(ClassFileConsumer consumer, ExecutorService executor)
-      throws IOException {
-    for (DexProgramClass clazz : application.classes()) {
-      if (clazz.getSynthesizedFrom().isEmpty()) {
-        writeClass(clazz, consumer);
-      } else {
+      throws IOException, ExecutionException {
+    List<DexProgramClass> classes = new ArrayList<>();
+    for (DexProgramClass clazz : application.classesWithDeterministicOrder()) {
+      if (!clazz.getSynthesizedFrom().isEmpty()) {
         throw new Unimplemented("No support for synthetics in the Java bytecode backend.");
       }
+      classes.add(clazz);
+    }
+    // Generate the classes concurrently and hand them to the consumer in order. At most
+    // maxPending classes are generated ahead of the one the consumer receives next.
+    int maxPending = Math.max(1, options.classFileWritingMaxPendingClasses);
+    ClassFileWriterThread writerThread = null;
+    if (options.writeClassFilesOnWriterThread) {
+      writerThread = new ClassFileWriterThread(consumer, options.reporter, maxPending);
+      writerThread.start();
+    }
+    Deque<Future<byte[]>> pending = new ArrayDeque<>(maxPending);
+    try {
+      int next = 0;
+      for (DexProgramClass clazz : classes) {
+        while (next < classes.size() && pending.size() < maxPending) {
+          DexProgramClass toWrite = classes.get(next++);
+          pending.add(executor.submit(() -> writeClass(toWrite)));
+        }
+        byte[] data = getResult(pending.remove());
+        String descriptor = clazz.type.toDescriptorString();
+        if (writerThread != null) {
+          writerThread.accept(data, descriptor);
+        } else {
+          ExceptionUtils.withConsumeResourceHandler(
+              options.reporter, handler -> consumer.accept(data, descriptor, handler));
+        }
+      }
+    } finally {
+      // Only non-empty if generating or consuming a class failed.
+      for (Future<byte[]> future : pending) {
+        future.cancel(false);
+      }
+      if (writerThread != null) {
+        writerThread.finish();
+      }
+    }
+    if (writerThread != null) {
+      writerThread.rethrowFailure();
     }
     ApplicationWriter.supplyAdditionalConsumers(
         application, namingLens, options, deadCode, proguardMapSupplier, proguardSeedsData);
   }
 
-  private void writeClass(DexProgramClass clazz, ClassFileConsumer consumer) throws IOException {
+  private static byte[] getResult(Future<byte[]> future) throws ExecutionException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      throw new RuntimeException("Interrupted while waiting for future.", e);
+    }
+  }
+
+  private byte[] writeClass(DexProgramClass clazz) {
     ClassWriter writer = new ClassWriter(0);
     writer.visitSource(clazz.sourceFile != null ? clazz.sourceFile.toString() : null, null);
     int version = clazz.getClassFileVersion();
     int access = clazz.accessFlags.getAsCfAccessFlags();
-    String desc = clazz.type.toDescriptorString();
     String name = clazz.type.getInternalName();
     String signature = null; // TODO(zerny): Support generic signatures.
     String superName =
@@ -117,8 +173,7 @@ public class CfApplicationWriter {
 
     byte[] result = writer.toByteArray();
     assert verifyCf(result);
-    ExceptionUtils.withConsumeResourceHandler(
-        options.reporter, handler -> consumer.accept(result, desc, handler));
+    return result;
   }
 
   private Object getStaticValue(DexEncodedField field) {
@@ -174,6 +229,104 @@ public class CfApplicationWriter {
     return writer.toString();
   }
 
+  /**
+   * Thread handing classes to the consumer in the order it receives them, so that the consumer
+   * writes the output while further classes are generated. At most a bounded number of classes
+   * are waiting to be handed to the consumer.
+   */
+  private static class ClassFileWriterThread extends Thread {
+
+    private static final class ClassFileData {
+
+      final byte[] data;
+      final String descriptor;
+
+      ClassFileData(byte[] data, String descriptor) {
+        this.data = data;
+        this.descriptor = descriptor;
+      }
+    }
+
+    private static final ClassFileData END = new ClassFileData(null, null);
+
+    // Interval at which a producer waiting for room in the queue checks that the thread is alive.
+    private static final long PUT_TIMEOUT_MS = 100;
+
+    private final ClassFileConsumer consumer;
+    private final Reporter reporter;
+    private final BlockingQueue<ClassFileData> queue;
+    private volatile Throwable failure = null;
+
+    ClassFileWriterThread(ClassFileConsumer consumer, Reporter reporter, int capacity) {
+      super("ClassFileWriter");
+      setDaemon(true);
+      this.consumer = consumer;
+      this.reporter = reporter;
+      this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (true) {
+          ClassFileData entry = queue.take();
+          if (entry == END) {
+            return;
+          }
+          // Keep taking classes after a failure, so that the producer does not block.
+          if (failure == null) {
+            try {
+              ExceptionUtils.withConsumeResourceHandler(
+                  reporter, handler -> consumer.accept(entry.data, entry.descriptor, handler));
+            } catch (Throwable e) {
+              failure = e;
+            }
+          }
+        }
+      } catch (Throwable e) {
+        // The thread stops taking classes, so put no longer waits for room in the queue.
+        if (failure == null) {
+          failure = e;
+        }
+      }
+    }
+
+    void accept(byte[] data, String descriptor) {
+      rethrowFailure();
+      put(new ClassFileData(data, descriptor));
+    }
+
+    void finish() {
+      put(END);
+      try {
+        join();
+      } catch (InterruptedException e) {
+        throw new RuntimeException("Interrupted while waiting for the class file writer.", e);
+      }
+    }
+
+    void rethrowFailure() {
+      Throwable e = failure;
+      if (e != null) {
+        Throwables.throwIfUnchecked(e);
+        throw new RuntimeException(e);
+      }
+    }
+
+    // Add the entry to the queue, or drop it if the thread has stopped and will not take it.
+    private void put(ClassFileData entry) {
+      try {
+        while (!queue.offer(entry, PUT_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+          if (!isAlive()) {
+            return;
+          }
+        }
+      } catch (InterruptedException e) {
+        throw new RuntimeException("Interrupted while waiting for the class file writer.", e);
+      }
+    }
+  }
+
   private static boolean verifyCf(byte[] result) {
     ClassReader reader = new ClassReader(result);
     PrintWriter pw = new PrintWriter(System.out);
@@ -78,6 +78,7 @@ public class VisibilityBridgeRemover {
     }
     if (!unneededVisibilityBridges.isEmpty()) {
       removeUnneededVisibilityBridges();
+      appInfo.invalidateLookupCaches();
     }
     return application;
   }
@@ -32,6 +32,7 @@ public class AbstractMethodRemover {
   public void run() {
     assert scope.getParent() == null;
     processClass(appInfo.dexItemFactory.objectType);
+    appInfo.invalidateLookupCaches();
   }
 
   private void processClass(DexType type) {
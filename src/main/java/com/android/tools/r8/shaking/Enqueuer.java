@@ -52,18 +52,23 @@ import com.google.common.collect.Sets.SetView;
 import it.unimi.dsi.fastutil.ints.Int2ReferenceMap;
 import it.unimi.dsi.fastutil.objects.Reference2IntMap;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Queue;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -84,6 +89,19 @@ public class Enqueuer {
   private final InternalOptions options;
   private RootSet rootSet;
 
+  /**
+   * Executor for collecting the uses of newly live methods ahead of processing them, or null if
+   * uses are collected when the method is processed.
+   */
+  private ExecutorService executorService = null;
+
+  /**
+   * Uses of methods that are queued to become live, collected on the executor. Only accessed from
+   * the tracing thread.
+   */
+  private final Map<DexEncodedMethod, Future<RecordedUses>> prefetchedUses =
+      new IdentityHashMap<>();
+
   private final Map<DexType, Set<DexMethod>> virtualInvokes = Maps.newIdentityHashMap();
   private final Map<DexType, Set<DexMethod>> interfaceInvokes = Maps.newIdentityHashMap();
   private final Map<DexType, Set<TargetWithContext<DexMethod>>> superInvokes =
@@ -757,6 +775,7 @@ public class Enqueuer {
         Log.verbose(getClass(), "Method `%s` has become live due to direct invoke",
             encodedMethod.method);
       }
+      prefetchUses(encodedMethod);
       workList.add(Action.markMethodLive(encodedMethod, reason));
     }
   }
@@ -768,6 +787,7 @@ public class Enqueuer {
       if (Log.ENABLED) {
         Log.verbose(getClass(), "Adding virtual method `%s` to live set.", method.method);
       }
+      prefetchUses(method);
       workList.add(Action.markMethodLive(method, reason));
     }
   }
@@ -955,6 +975,18 @@ public class Enqueuer {
   }
 
   public AppInfoWithLiveness traceApplication(RootSet rootSet, Timing timing) {
+    return traceApplication(rootSet, null, timing);
+  }
+
+  /**
+   * Trace the application, collecting the uses of newly live methods on the given executor if
+   * parallel tracing is enabled. The result is the same as when tracing sequentially.
+   */
+  public AppInfoWithLiveness traceApplication(
+      RootSet rootSet, ExecutorService executorService, Timing timing) {
+    if (options.enableParallelTracing) {
+      this.executorService = executorService;
+    }
     this.rootSet = rootSet;
     // Translate the result of root-set computation into enqueuer actions.
     enqueueRootItems(rootSet.noShrinking);
@@ -1033,6 +1065,9 @@ public class Enqueuer {
       assert liveTypes.stream().allMatch(DexType::isClassType);
       assert instantiatedTypes.getItems().stream().allMatch(DexType::isClassType);
     } finally {
+      // Uses prefetched for methods that ended up not being processed are no longer needed.
+      prefetchedUses.values().forEach(future -> future.cancel(false));
+      prefetchedUses.clear();
       timing.end();
     }
     return new AppInfoWithLiveness(appInfo, this);
@@ -1112,13 +1147,57 @@ public class Enqueuer {
       if (protoLiteExtension != null && protoLiteExtension.appliesTo(method)) {
         protoLiteExtension.processMethod(method, new UseRegistry(method), protoLiteFields);
       } else {
-        method.registerReachableDefinitions(new UseRegistry(method));
+        registerReachableDefinitions(method);
       }
       // Add all dependent members to the workqueue.
       enqueueRootItems(rootSet.getDependentItems(method));
     }
   }
 
+  private void prefetchUses(DexEncodedMethod method) {
+    if (executorService == null
+        || method.getCode() == null
+        || prefetchedUses.containsKey(method)
+        || (protoLiteExtension != null && protoLiteExtension.appliesTo(method))) {
+      return;
+    }
+    DexClass holder = appInfo.definitionFor(method.method.holder);
+    if (holder == null || holder.isLibraryClass()) {
+      return;
+    }
+    prefetchedUses.put(method, executorService.submit(() -> {
+      RecordedUses uses = new RecordedUses();
+      method.registerReachableDefinitions(uses);
+      return uses;
+    }));
+  }
+
+  private void registerReachableDefinitions(DexEncodedMethod method) {
+    Future<RecordedUses> future = prefetchedUses.remove(method);
+    if (future == null) {
+      method.registerReachableDefinitions(new UseRegistry(method));
+      return;
+    }
+    RecordedUses uses;
+    try {
+      uses = future.get();
+    } catch (InterruptedException e) {
+      throw new RuntimeException("Interrupted while waiting for future.", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause);
+    }
+    // Replaying the uses in the order they were found gives the same result as registering them
+    // directly, regardless of which thread collected them.
+    uses.replay(new UseRegistry(method));
+  }
+
   private void collectProguardCompatibilityRule(KeepReason reason) {
     if (reason.isDueToProguardCompatibility() && compatibility != null) {
       compatibility.addRule(reason.getProguardKeepRule());
@@ -1230,6 +1309,134 @@ public class Enqueuer {
     }
   }
 
+  /**
+   * Use registry recording the uses of a method so that they can be collected on another thread
+   * and replayed on the tracing thread.
+   */
+  private static class RecordedUses extends com.android.tools.r8.graph.UseRegistry {
+
+    private enum Kind {
+      INVOKE_VIRTUAL,
+      INVOKE_DIRECT,
+      INVOKE_STATIC,
+      INVOKE_INTERFACE,
+      INVOKE_SUPER,
+      INSTANCE_FIELD_WRITE,
+      INSTANCE_FIELD_READ,
+      NEW_INSTANCE,
+      STATIC_FIELD_READ,
+      STATIC_FIELD_WRITE,
+      TYPE_REFERENCE
+    }
+
+    private final List<Kind> kinds = new ArrayList<>();
+    private final List<DexItem> items = new ArrayList<>();
+
+    private boolean record(Kind kind, DexItem item) {
+      kinds.add(kind);
+      items.add(item);
+      return true;
+    }
+
+    @Override
+    public boolean registerInvokeVirtual(DexMethod method) {
+      return record(Kind.INVOKE_VIRTUAL, method);
+    }
+
+    @Override
+    public boolean registerInvokeDirect(DexMethod method) {
+      return record(Kind.INVOKE_DIRECT, method);
+    }
+
+    @Override
+    public boolean registerInvokeStatic(DexMethod method) {
+      return record(Kind.INVOKE_STATIC, method);
+    }
+
+    @Override
+    public boolean registerInvokeInterface(DexMethod method) {
+      return record(Kind.INVOKE_INTERFACE, method);
+    }
+
+    @Override
+    public boolean registerInvokeSuper(DexMethod method) {
+      return record(Kind.INVOKE_SUPER, method);
+    }
+
+    @Override
+    public boolean registerInstanceFieldWrite(DexField field) {
+      return record(Kind.INSTANCE_FIELD_WRITE, field);
+    }
+
+    @Override
+    public boolean registerInstanceFieldRead(DexField field) {
+      return record(Kind.INSTANCE_FIELD_READ, field);
+    }
+
+    @Override
+    public boolean registerNewInstance(DexType type) {
+      return record(Kind.NEW_INSTANCE, type);
+    }
+
+    @Override
+    public boolean registerStaticFieldRead(DexField field) {
+      return record(Kind.STATIC_FIELD_READ, field);
+    }
+
+    @Override
+    public boolean registerStaticFieldWrite(DexField field) {
+      return record(Kind.STATIC_FIELD_WRITE, field);
+    }
+
+    @Override
+    public boolean registerTypeReference(DexType type) {
+      return record(Kind.TYPE_REFERENCE, type);
+    }
+
+    void replay(com.android.tools.r8.graph.UseRegistry registry) {
+      for (int i = 0; i < kinds.size(); i++) {
+        DexItem item = items.get(i);
+        switch (kinds.get(i)) {
+          case INVOKE_VIRTUAL:
+            registry.registerInvokeVirtual((DexMethod) item);
+            break;
+          case INVOKE_DIRECT:
+            registry.registerInvokeDirect((DexMethod) item);
+            break;
+          case INVOKE_STATIC:
+            registry.registerInvokeStatic((DexMethod) item);
+            break;
+          case INVOKE_INTERFACE:
+            registry.registerInvokeInterface((DexMethod) item);
+            break;
+          case INVOKE_SUPER:
+            registry.registerInvokeSuper((DexMethod) item);
+            break;
+          case INSTANCE_FIELD_WRITE:
+            registry.registerInstanceFieldWrite((DexField) item);
+            break;
+          case INSTANCE_FIELD_READ:
+            registry.registerInstanceFieldRead((DexField) item);
+            break;
+          case NEW_INSTANCE:
+            registry.registerNewInstance((DexType) item);
+            break;
+          case STATIC_FIELD_READ:
+            registry.registerStaticFieldRead((DexField) item);
+            break;
+          case STATIC_FIELD_WRITE:
+            registry.registerStaticFieldWrite((DexField) item);
+            break;
+          case TYPE_REFERENCE:
+            registry.registerTypeReference((DexType) item);
+            break;
+          default:
+            throw new Unreachable();
+        }
+      }
+    }
+  }
+
   private static class Action {
 
     final Kind kind;
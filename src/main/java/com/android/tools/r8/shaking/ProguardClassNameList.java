@@ -76,6 +76,12 @@ public abstract class ProguardClassNameList {
 
   public abstract void forEachTypeMatcher(Consumer<ProguardTypeMatcher> consumer);
 
+  /**
+   * Calls the consumer with descriptor prefixes such that every class type matched by this list
+   * starts with one of them.
+   */
+  public abstract void forEachClassDescriptorPrefix(Consumer<String> consumer);
+
   private static class EmptyClassNameList extends ProguardClassNameList {
 
     private EmptyClassNameList() {
@@ -103,6 +109,10 @@ public abstract class ProguardClassNameList {
     @Override
     public void forEachTypeMatcher(Consumer<ProguardTypeMatcher> consumer) {
     }
+
+    @Override
+    public void forEachClassDescriptorPrefix(Consumer<String> consumer) {
+    }
   }
 
   private static class SingleClassNameList extends ProguardClassNameList {
@@ -138,6 +148,11 @@ public abstract class ProguardClassNameList {
     public void forEachTypeMatcher(Consumer<ProguardTypeMatcher> consumer) {
       consumer.accept(className);
     }
+
+    @Override
+    public void forEachClassDescriptorPrefix(Consumer<String> consumer) {
+      consumer.accept(className.getClassDescriptorPrefix());
+    }
   }
 
   private static class PositiveClassNameList extends ProguardClassNameList {
@@ -183,6 +198,11 @@ public abstract class ProguardClassNameList {
     public void forEachTypeMatcher(Consumer<ProguardTypeMatcher> consumer) {
       classNames.forEach(consumer);
     }
+
+    @Override
+    public void forEachClassDescriptorPrefix(Consumer<String> consumer) {
+      classNames.forEach(className -> consumer.accept(className.getClassDescriptorPrefix()));
+    }
   }
 
   private static class MixedClassNameList extends ProguardClassNameList {
@@ -233,5 +253,15 @@ public abstract class ProguardClassNameList {
     public void forEachTypeMatcher(Consumer<ProguardTypeMatcher> consumer) {
       classNames.object2BooleanEntrySet().forEach(entry -> consumer.accept(entry.getKey()));
     }
+
+    @Override
+    public void forEachClassDescriptorPrefix(Consumer<String> consumer) {
+      // Only the positive patterns can make the list match.
+      for (Entry<ProguardTypeMatcher> className : classNames.object2BooleanEntrySet()) {
+        if (!className.getBooleanValue()) {
+          consumer.accept(className.getKey().getClassDescriptorPrefix());
+        }
+      }
+    }
   }
 }
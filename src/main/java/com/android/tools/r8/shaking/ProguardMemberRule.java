@@ -169,8 +169,7 @@ public class ProguardMemberRule {
         return RootSetBuilder.containsAnnotation(annotation, field.annotations);
       case FIELD:
         // Name check.
-        String name = builder.lookupString(field.field.name);
-        if (!getName().matches(name)) {
+        if (!getName().matches(field.field.name)) {
           break;
         }
         // Access flags check.
@@ -220,8 +219,7 @@ public class ProguardMemberRule {
       case CONSTRUCTOR:
       case INIT:
         // Name check.
-        String name = builder.lookupString(method.method.name);
-        if (!getName().matches(name)) {
+        if (!getName().matches(method.method.name)) {
           break;
         }
         // Access flags check.
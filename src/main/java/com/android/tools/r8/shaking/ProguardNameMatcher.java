@@ -3,6 +3,8 @@
 // BSD-style license that can be found in the LICENSE file.
 package com.android.tools.r8.shaking;
 
+import com.android.tools.r8.graph.DexString;
+
 public abstract class ProguardNameMatcher {
 
   private static final ProguardNameMatcher MATCH_ALL_NAMES = new MatchAllNames();
@@ -63,6 +65,8 @@ public abstract class ProguardNameMatcher {
 
   public abstract boolean matches(String name);
 
+  public abstract boolean matches(DexString name);
+
   private static class MatchAllNames extends ProguardNameMatcher {
 
     @Override
@@ -70,6 +74,11 @@ public abstract class ProguardNameMatcher {
       return true;
     }
 
+    @Override
+    public boolean matches(DexString name) {
+      return true;
+    }
+
     @Override
     public String toString() {
       return "*";
@@ -79,9 +88,11 @@ public abstract class ProguardNameMatcher {
   private static class MatchNamePattern extends ProguardNameMatcher {
 
     private final String pattern;
+    private final ProguardPatternAutomaton automaton;
 
     MatchNamePattern(String pattern) {
       this.pattern = pattern;
+      this.automaton = ProguardPatternAutomaton.forMemberName(pattern);
     }
 
     @Override
@@ -89,6 +100,13 @@ public abstract class ProguardNameMatcher {
       return matchFieldOrMethodName(pattern, name);
     }
 
+    @Override
+    public boolean matches(DexString name) {
+      Boolean result = automaton == null ? ProguardPatternAutomaton.UNKNOWN
+          : automaton.matchesName(name);
+      return result == ProguardPatternAutomaton.UNKNOWN ? matches(name.toString()) : result;
+    }
+
     @Override
     public String toString() {
       return pattern;
@@ -111,9 +129,11 @@ public abstract class ProguardNameMatcher {
   private static class MatchSpecificName extends ProguardNameMatcher {
 
     private final String name;
+    private final DexString dexName;
 
     MatchSpecificName(String name) {
       this.name = name;
+      this.dexName = new DexString(name);
     }
 
     @Override
@@ -121,6 +141,11 @@ public abstract class ProguardNameMatcher {
       return this.name.equals(name);
     }
 
+    @Override
+    public boolean matches(DexString name) {
+      return dexName.equals(name);
+    }
+
     @Override
     public String toString() {
       return name;
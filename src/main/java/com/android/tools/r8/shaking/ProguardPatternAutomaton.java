@@ -0,0 +1,146 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.shaking;
+
+import com.android.tools.r8.graph.DexString;
+
+/**
+ * Compiled form of a Proguard wildcard pattern matching directly on the bytes of a {@link
+ * DexString}.
+ *
+ * <p>The pattern is a sequence of literal characters, '?', '*' and '**'. The automaton is simulated
+ * with one bit per pattern position, so matching is linear in the length of the name and never
+ * backtracks. Patterns with non-ASCII characters or too many positions cannot be compiled, and
+ * names with non-ASCII characters are not handled; callers fall back to matching on strings.
+ */
+class ProguardPatternAutomaton {
+
+  private static final int MAX_TOKENS = 62;
+
+  // Result of matching a name that cannot be matched on its bytes.
+  static final Boolean UNKNOWN = null;
+
+  private final int tokenCount;
+  // For each ASCII character the positions with that literal character.
+  private final long[] literals = new long[128];
+  // Positions with '?'.
+  private final long anyChar;
+  // Positions with '*', and the subset of those with '**'.
+  private final long stars;
+  private final long doubleStars;
+  // Character that '?' and '*' do not match, or -1 if they match every character.
+  private final int separator;
+
+  private ProguardPatternAutomaton(String pattern, int separator) {
+    int tokens = 0;
+    long anyChar = 0;
+    long stars = 0;
+    long doubleStars = 0;
+    for (int i = 0; i < pattern.length(); i++, tokens++) {
+      char c = pattern.charAt(i);
+      long bit = 1L << tokens;
+      if (c == '*') {
+        stars |= bit;
+        if (separator >= 0 && i + 1 < pattern.length() && pattern.charAt(i + 1) == '*') {
+          doubleStars |= bit;
+          i++;
+        }
+      } else if (c == '?') {
+        anyChar |= bit;
+      } else {
+        literals[c] |= bit;
+      }
+    }
+    this.tokenCount = tokens;
+    this.anyChar = anyChar;
+    this.stars = stars;
+    this.doubleStars = doubleStars;
+    this.separator = separator;
+  }
+
+  private static boolean canCompile(String pattern) {
+    if (pattern.length() > MAX_TOKENS) {
+      return false;
+    }
+    for (int i = 0; i < pattern.length(); i++) {
+      char c = pattern.charAt(i);
+      if (c == 0 || c >= 128) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Compile a pattern for field and method names, where '*' matches any sequence of characters.
+   * Returns null if the pattern cannot be compiled.
+   */
+  static ProguardPatternAutomaton forMemberName(String pattern) {
+    return canCompile(pattern) ? new ProguardPatternAutomaton(pattern, -1) : null;
+  }
+
+  /**
+   * Compile a pattern for class names, where '?' and '*' do not match the package separator and
+   * '**' matches any sequence of characters. Returns null if the pattern cannot be compiled.
+   */
+  static ProguardPatternAutomaton forClassName(String pattern) {
+    return canCompile(pattern) ? new ProguardPatternAutomaton(pattern, '.') : null;
+  }
+
+  private static boolean isAscii(DexString string) {
+    // Every character is encoded by one byte and the content has a terminating zero.
+    return string.content.length == string.size + 1;
+  }
+
+  private long closeOverStars(long state) {
+    // A star may match the empty sequence, which moves on to the next position.
+    long next = state | ((state & stars) << 1);
+    while (next != state) {
+      state = next;
+      next = state | ((state & stars) << 1);
+    }
+    return state;
+  }
+
+  private long step(long state, int c) {
+    long next = (state & (literals[c] | (c == separator ? 0 : anyChar))) << 1;
+    next |= state & (c == separator ? doubleStars : stars);
+    return closeOverStars(next);
+  }
+
+  private boolean accepts(long state) {
+    return (state & (1L << tokenCount)) != 0;
+  }
+
+  /** Match a field or method name. */
+  Boolean matchesName(DexString name) {
+    if (!isAscii(name)) {
+      return UNKNOWN;
+    }
+    byte[] content = name.content;
+    long state = closeOverStars(1L);
+    for (int i = 0; i < name.size && state != 0; i++) {
+      state = step(state, content[i]);
+    }
+    return accepts(state);
+  }
+
+  /**
+   * Match the source name of the class type with the given descriptor, mapping the '/' of the
+   * descriptor to the '.' of the source name.
+   */
+  Boolean matchesClassDescriptor(DexString descriptor) {
+    if (!isAscii(descriptor)) {
+      return UNKNOWN;
+    }
+    byte[] content = descriptor.content;
+    assert content[0] == 'L' && content[descriptor.size - 1] == ';';
+    long state = closeOverStars(1L);
+    for (int i = 1; i < descriptor.size - 1 && state != 0; i++) {
+      int c = content[i];
+      state = step(state, c == '/' ? '.' : c);
+    }
+    return accepts(state);
+  }
+}
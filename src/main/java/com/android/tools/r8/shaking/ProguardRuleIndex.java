@@ -0,0 +1,91 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.shaking;
+
+import com.android.tools.r8.graph.DexType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Index of rules by the literal prefixes of their class name patterns.
+ *
+ * <p>The prefixes are stored in a trie over the bytes of class descriptors. Looking up a class
+ * walks its descriptor once and yields, in rule order, only the rules with a class name pattern
+ * that can match the class. The rules still have to be checked in full against the class.
+ */
+class ProguardRuleIndex {
+
+  private static class Node {
+    private byte[] keys = new byte[0];
+    private Node[] children = new Node[0];
+    private final BitSet rules = new BitSet();
+
+    Node child(byte key) {
+      for (int i = 0; i < keys.length; i++) {
+        if (keys[i] == key) {
+          return children[i];
+        }
+      }
+      return null;
+    }
+
+    Node getOrCreateChild(byte key) {
+      Node child = child(key);
+      if (child == null) {
+        child = new Node();
+        keys = Arrays.copyOf(keys, keys.length + 1);
+        children = Arrays.copyOf(children, children.length + 1);
+        keys[keys.length - 1] = key;
+        children[children.length - 1] = child;
+      }
+      return child;
+    }
+  }
+
+  private final List<ProguardConfigurationRule> rules;
+  private final Node root = new Node();
+
+  ProguardRuleIndex(List<ProguardConfigurationRule> rules) {
+    this.rules = new ArrayList<>(rules);
+    for (int i = 0; i < this.rules.size(); i++) {
+      int index = i;
+      this.rules.get(i).getClassNames().forEachClassDescriptorPrefix(prefix -> add(prefix, index));
+    }
+  }
+
+  private void add(String prefix, int index) {
+    Node node = root;
+    for (int i = 0; i < prefix.length(); i++) {
+      char c = prefix.charAt(i);
+      if (c == 0 || c >= 128) {
+        // Descriptor bytes only equal the characters for ASCII, so index the shorter prefix.
+        break;
+      }
+      node = node.getOrCreateChild((byte) c);
+    }
+    node.rules.set(index);
+  }
+
+  boolean isEmpty() {
+    return rules.isEmpty();
+  }
+
+  /** Calls the consumer, in rule order, with the rules that may match the given class type. */
+  void forEachCandidate(DexType type, Consumer<ProguardConfigurationRule> consumer) {
+    BitSet candidates = new BitSet(rules.size());
+    byte[] content = type.descriptor.content;
+    Node node = root;
+    // The content of a string ends with a zero byte, which is never a key of the trie.
+    for (int i = 0; node != null; i++) {
+      candidates.or(node.rules);
+      node = node.child(content[i]);
+    }
+    for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+      consumer.accept(rules.get(i));
+    }
+  }
+}
@@ -75,6 +75,14 @@ public abstract class ProguardTypeMatcher {
     return null;
   }
 
+  /**
+   * Returns a prefix of the descriptor of every class type matched by this matcher. The empty
+   * string is returned if nothing is known about the matched descriptors.
+   */
+  public String getClassDescriptorPrefix() {
+    return "";
+  }
+
   private static class MatchAllTypes extends ProguardTypeMatcher {
 
     private static final ProguardTypeMatcher MATCH_ALL_TYPES = new MatchAllTypes();
@@ -225,25 +233,52 @@ public abstract class ProguardTypeMatcher {
     public DexType getSpecificType() {
       return type;
     }
+
+    @Override
+    public String getClassDescriptorPrefix() {
+      return type.toDescriptorString();
+    }
   }
 
   private static class MatchTypePattern extends ProguardTypeMatcher {
 
     private final String pattern;
     private final ClassOrType kind;
+    // Matcher on the descriptors of class types, or null if the pattern could not be compiled.
+    private final ProguardPatternAutomaton classDescriptorAutomaton;
 
     private MatchTypePattern(String pattern, ClassOrType kind) {
       this.pattern = pattern;
       this.kind = kind;
+      this.classDescriptorAutomaton = ProguardPatternAutomaton.forClassName(pattern);
     }
 
     @Override
     public boolean matches(DexType type) {
-      // TODO(herhut): Translate pattern to work on descriptors instead.
+      // The name of a class type has no array brackets, so both kinds match it the same way.
+      if (classDescriptorAutomaton != null && type.isClassType()) {
+        Boolean result = classDescriptorAutomaton.matchesClassDescriptor(type.descriptor);
+        if (result != ProguardPatternAutomaton.UNKNOWN) {
+          return result;
+        }
+      }
       String typeName = type.toSourceString();
       return matchClassOrTypeNameImpl(pattern, 0, typeName, 0, kind);
     }
 
+    @Override
+    public String getClassDescriptorPrefix() {
+      StringBuilder builder = new StringBuilder("L");
+      for (int i = 0; i < pattern.length(); i++) {
+        char c = pattern.charAt(i);
+        if (c == '*' || c == '?') {
+          break;
+        }
+        builder.append(c == '.' ? '/' : c);
+      }
+      return builder.toString();
+    }
+
     private static boolean matchClassOrTypeNameImpl(
         String pattern, int patternIndex, String className, int nameIndex, ClassOrType kind) {
       for (int i = patternIndex; i < pattern.length(); i++) {
@@ -14,10 +14,7 @@ import com.android.tools.r8.graph.DexEncodedField;
 import com.android.tools.r8.graph.DexEncodedMethod;
 import com.android.tools.r8.graph.DexField;
 import com.android.tools.r8.graph.DexItem;
-import com.android.tools.r8.graph.DexLibraryClass;
 import com.android.tools.r8.graph.DexMethod;
-import com.android.tools.r8.graph.DexProgramClass;
-import com.android.tools.r8.graph.DexString;
 import com.android.tools.r8.graph.DexType;
 import com.android.tools.r8.graph.DirectMappedDexApplication;
 import com.android.tools.r8.logging.Log;
@@ -27,6 +24,7 @@ import com.android.tools.r8.utils.MethodSignatureEquivalence;
 import com.android.tools.r8.utils.StringDiagnostic;
 import com.android.tools.r8.utils.ThreadUtils;
 import com.google.common.base.Equivalence.Wrapper;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
 import java.io.PrintStream;
 import java.util.ArrayList;
@@ -48,6 +46,9 @@ import java.util.stream.Collectors;
 
 public class RootSetBuilder {
 
+  // Number of classes matched against the rules by a single task.
+  private static final int CLASSES_PER_TASK = 256;
+
   private final DirectMappedDexApplication application;
   private final AppInfo appInfo;
   private final List<ProguardConfigurationRule> rules;
@@ -57,7 +58,7 @@ public class RootSetBuilder {
   private final Set<DexItem> reasonAsked = Sets.newIdentityHashSet();
   private final Set<DexItem> keepPackageName = Sets.newIdentityHashSet();
   private final Set<ProguardConfigurationRule> rulesThatUseExtendsOrImplementsWrong =
-      Sets.newIdentityHashSet();
+      Collections.newSetFromMap(new ConcurrentHashMap<>());
   private final Set<DexItem> checkDiscarded = Sets.newIdentityHashSet();
   private final Set<DexItem> alwaysInline = Sets.newIdentityHashSet();
   private final Map<DexItem, Map<DexItem, ProguardKeepRule>> dependentNoShrinking =
@@ -223,6 +224,8 @@ public class RootSetBuilder {
       List<Future<?>> futures = new ArrayList<>();
       // Mark all the things explicitly listed in keep rules.
       if (rules != null) {
+        List<ProguardConfigurationRule> programRules = new ArrayList<>();
+        List<ProguardConfigurationRule> libraryRules = new ArrayList<>();
         for (ProguardConfigurationRule rule : rules) {
           List<DexType> specifics = rule.getClassNames().asSpecificDexTypes();
           if (specifics != null) {
@@ -236,18 +239,18 @@ public class RootSetBuilder {
               }
             }
           } else {
-            futures.add(executorService.submit(() -> {
-              for (DexProgramClass clazz : application.classes()) {
-                process(clazz, rule);
-              }
-              if (rule.applyToLibraryClasses()) {
-                for (DexLibraryClass clazz : application.libraryClasses()) {
-                  process(clazz, rule);
-                }
-              }
-            }));
+            programRules.add(rule);
+            if (rule.applyToLibraryClasses()) {
+              libraryRules.add(rule);
+            }
           }
         }
+        // Match each class against all remaining rules in one pass, only considering the rules
+        // whose class name patterns can match the class.
+        processWithIndex(application.classes(), new ProguardRuleIndex(programRules),
+            executorService, futures);
+        processWithIndex(application.libraryClasses(), new ProguardRuleIndex(libraryRules),
+            executorService, futures);
         ThreadUtils.awaitFutures(futures);
       }
     } finally {
@@ -267,6 +270,20 @@ public class RootSetBuilder {
         identifierNameStrings);
   }
 
+  private void processWithIndex(Collection<? extends DexClass> classes, ProguardRuleIndex index,
+      ExecutorService executorService, List<Future<?>> futures) {
+    if (index.isEmpty()) {
+      return;
+    }
+    for (List<? extends DexClass> chunk : Iterables.partition(classes, CLASSES_PER_TASK)) {
+      futures.add(executorService.submit(() -> {
+        for (DexClass clazz : chunk) {
+          index.forEachCandidate(clazz.type, rule -> process(clazz, rule));
+        }
+      }));
+    }
+  }
+
   private void markMatchingVisibleMethods(DexClass clazz,
       Collection<ProguardMemberRule> memberKeepRules, ProguardConfigurationRule rule,
       DexType onlyIfClassKept) {
@@ -397,12 +414,6 @@ public class RootSetBuilder {
     return false;
   }
 
-  private final ConcurrentHashMap<DexString, String> stringCache = new ConcurrentHashMap<>();
-
-  public String lookupString(DexString name) {
-    return stringCache.computeIfAbsent(name, DexString::toString);
-  }
-
   private void markMethod(DexEncodedMethod method, Collection<ProguardMemberRule> rules,
       ProguardConfigurationRule context, Set<Wrapper<DexMethod>> methodsMarked,
       DexType onlyIfClassKept) {
@@ -281,6 +281,8 @@ public class SimpleClassMerger {
       mergedClasses.put(source.type, target.type);
       // Step 5: Make deferred renamings final.
       deferredRenamings.forEach((from, to) -> renamedMembersLense.map(from.method, to.method));
+      // Step 6: Forget lookups that were done on the classes before they were merged.
+      appInfo.invalidateLookupCaches();
       return true;
     }
 
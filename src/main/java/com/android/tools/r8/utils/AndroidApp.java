@@ -531,7 +531,7 @@ public class AndroidApp {
         throw new NoSuchFileException(file.toString());
       }
       if (isDexFile(file)) {
-        addProgramResources(ProgramResource.fromFile(Kind.DEX, file));
+        addProgramResources(ByteBufferResource.fromFile(Kind.DEX, file));
       } else if (isClassFile(file)) {
         addProgramResources(ProgramResource.fromFile(Kind.CF, file));
       } else if (isArchive(file)) {
@@ -0,0 +1,126 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.utils;
+
+import com.android.tools.r8.ProgramResource;
+import com.android.tools.r8.ResourceException;
+import com.android.tools.r8.origin.Origin;
+import com.android.tools.r8.origin.PathOrigin;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+
+/**
+ * Program resource with content that can be read from a buffer, such as a memory mapped file,
+ * without first copying it into an array.
+ */
+public abstract class ByteBufferResource implements ProgramResource {
+
+  private final Origin origin;
+  private final Kind kind;
+  private final Set<String> classDescriptors;
+
+  ByteBufferResource(Origin origin, Kind kind, Set<String> classDescriptors) {
+    this.origin = origin;
+    this.kind = kind;
+    this.classDescriptors = classDescriptors;
+  }
+
+  /** Create a resource for a file that is mapped into memory when its content is read. */
+  public static ByteBufferResource fromFile(Kind kind, Path file) {
+    return new ByteBufferResource(new PathOrigin(file), kind, null) {
+      @Override
+      ByteBuffer readContent() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+          // The mapping stays valid after the channel is closed.
+          return channel.map(MapMode.READ_ONLY, 0, channel.size());
+        }
+      }
+    };
+  }
+
+  // Returns a buffer with the content from position zero to its limit.
+  abstract ByteBuffer readContent() throws IOException;
+
+  /**
+   * Get a read-only buffer with the content of the resource, positioned at the start of the
+   * content and with the end of the content as its limit.
+   */
+  public ByteBuffer getByteBuffer() throws ResourceException {
+    try {
+      return readContent().asReadOnlyBuffer();
+    } catch (IOException e) {
+      throw new ResourceException(origin, e);
+    }
+  }
+
+  /** Get the content of the resource in an array of exactly its size. */
+  public byte[] getBytes() throws ResourceException {
+    ByteBuffer buffer;
+    try {
+      buffer = readContent();
+    } catch (IOException e) {
+      throw new ResourceException(origin, e);
+    }
+    if (buffer.hasArray()
+        && buffer.arrayOffset() == 0
+        && buffer.position() == 0
+        && buffer.limit() == buffer.array().length) {
+      // Content that was inflated into an array of its own is not copied again.
+      return buffer.array();
+    }
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  @Override
+  public Origin getOrigin() {
+    return origin;
+  }
+
+  @Override
+  public Kind getKind() {
+    return kind;
+  }
+
+  @Override
+  public InputStream getByteStream() throws ResourceException {
+    ByteBuffer buffer = getByteBuffer();
+    return new InputStream() {
+      @Override
+      public int read() {
+        return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+      }
+
+      @Override
+      public int read(byte[] bytes, int offset, int length) {
+        if (length == 0) {
+          return 0;
+        }
+        if (!buffer.hasRemaining()) {
+          return -1;
+        }
+        int count = Math.min(length, buffer.remaining());
+        buffer.get(bytes, offset, count);
+        return count;
+      }
+
+      @Override
+      public int available() {
+        return buffer.remaining();
+      }
+    };
+  }
+
+  @Override
+  public Set<String> getClassDescriptors() {
+    return classDescriptors;
+  }
+}
@@ -6,6 +6,8 @@ package com.android.tools.r8.utils;
 import com.google.common.io.Closer;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.OpenOption;
@@ -160,4 +162,19 @@ public class FileUtils {
       outputStream.write(contents);
     }
   }
+
+  /** Writes the bytes between the position and the limit of {@param contents} to the file. */
+  public static void writeToFile(Path output, ByteBuffer contents) throws IOException {
+    ByteBuffer data = contents.duplicate();
+    try (FileChannel channel =
+        FileChannel.open(
+            output,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+      while (data.hasRemaining()) {
+        channel.write(data);
+      }
+    }
+  }
 }
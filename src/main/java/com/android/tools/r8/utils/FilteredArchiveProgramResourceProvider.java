@@ -46,6 +46,31 @@ public class FilteredArchiveProgramResourceProvider implements ProgramResourcePr
     assert isArchive(archive.getPath());
     List<ProgramResource> dexResources = new ArrayList<>();
     List<ProgramResource> classResources = new ArrayList<>();
+    try {
+      MappedZipFile mappedZipFile = MappedZipFile.open(archive.getPath());
+      if (mappedZipFile != null) {
+        for (MappedZipFile.Entry entry : mappedZipFile.getEntries()) {
+          Path name = Paths.get(entry.getName());
+          Origin entryOrigin = new ArchiveEntryOrigin(entry.getName(), origin);
+          if (archive.matchesFile(name)) {
+            if (isDexFile(name)) {
+              if (!ignoreDexInArchive) {
+                dexResources.add(entry.toResource(entryOrigin, Kind.DEX, null));
+              }
+            } else if (isClassFile(name)) {
+              String descriptor = DescriptorUtils.guessTypeDescriptor(name);
+              classResources.add(
+                  entry.toResource(entryOrigin, Kind.CF, Collections.singleton(descriptor)));
+            }
+          }
+        }
+        return selectResources(dexResources, classResources);
+      }
+    } catch (ZipException e) {
+      throw new CompilationError(
+          "Zip error while reading '" + archive + "': " + e.getMessage(), e);
+    }
+    // Archives using zip features not supported by the mapped reader are read as streams.
     try (ZipFile zipFile = new ZipFile(archive.getPath().toFile())) {
       final Enumeration<? extends ZipEntry> entries = zipFile.entries();
       while (entries.hasMoreElements()) {
@@ -78,6 +103,11 @@ public class FilteredArchiveProgramResourceProvider implements ProgramResourcePr
       throw new CompilationError(
           "Zip error while reading '" + archive + "': " + e.getMessage(), e);
     }
+    return selectResources(dexResources, classResources);
+  }
+
+  private List<ProgramResource> selectResources(
+      List<ProgramResource> dexResources, List<ProgramResource> classResources) {
     if (!dexResources.isEmpty() && !classResources.isEmpty()) {
       throw new CompilationError(
           "Cannot create android app from an archive '" + archive
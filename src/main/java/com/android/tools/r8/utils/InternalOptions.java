@@ -14,17 +14,20 @@ import com.android.tools.r8.graph.DexEncodedMethod;
 import com.android.tools.r8.graph.DexItemFactory;
 import com.android.tools.r8.graph.DexMethod;
 import com.android.tools.r8.graph.DexType;
+import com.android.tools.r8.ir.conversion.MethodCompilationCache;
 import com.android.tools.r8.origin.Origin;
 import com.android.tools.r8.shaking.ProguardConfiguration;
 import com.android.tools.r8.shaking.ProguardConfigurationRule;
 import com.google.common.collect.ImmutableList;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 public class InternalOptions {
@@ -67,11 +70,61 @@ public class InternalOptions {
     itemFactory = proguardConfiguration.getDexItemFactory();
   }
 
-  public boolean printTimes = false;
+  // Diagnostics for developers, which are not part of the command API. They can be enabled by
+  // setting the system properties com.android.tools.r8.printtimes and
+  // com.android.tools.r8.printmemory.
+  public boolean printTimes = System.getProperty("com.android.tools.r8.printtimes") != null;
+  // Include the heap in use at the end of each phase when printing or reporting times.
+  public boolean printMemory = System.getProperty("com.android.tools.r8.printmemory") != null;
+  // Record the CPU time and bytes allocated by each pass of the IR converter for every method. The
+  // totals per pass and the slowest methods are printed with the times, and written to
+  // passProfileFile if set, as CSV if its name ends in .csv and otherwise as JSON. Enabled by the
+  // system property com.android.tools.r8.profilepasses, or by com.android.tools.r8.passprofilefile
+  // giving the file.
+  public Path passProfileFile = getPathProperty("com.android.tools.r8.passprofilefile");
+  public boolean profilePasses =
+      passProfileFile != null || System.getProperty("com.android.tools.r8.profilepasses") != null;
+  // Number of slowest methods to include in the pass profile.
+  public int passProfileTopMethods = 20;
+
+  // Estimated number of instructions per task when converting classes to dex. Smaller classes are
+  // converted in batches, and the methods of classes above the split size are converted as
+  // separate tasks. The number of threads used is limited to one per minimum work per thread.
+  public int classConversionBatchSize = 2000;
+  public int classConversionSplitSize = 20000;
+  public int classConversionMinWorkPerThread = 10000;
+
+  // Minimum size in bytes of the code items of a dex file for writing the code, debug info, type
+  // list and string data sections of the file concurrently.
+  public int concurrentDexSectionWritingMinSize = 1 << 20;
+
+  // Maximum number of classes that the class file backend has generated concurrently and not yet
+  // handed to the consumer. The classes are handed to the consumer in a deterministic order,
+  // optionally from a single writer thread that buffers at most as many classes again, so that
+  // generation continues while the consumer writes the output.
+  public int classFileWritingMaxPendingClasses = 256;
+  // Internal only, not exposed on R8Command: with the writer thread the consumer is called from a
+  // thread that is not one of the executor threads, which consumers may not expect.
+  public boolean writeClassFilesOnWriterThread = false;
+
+  // Read the verifier frames of the input class files and use them for the types at block entries
+  // when building IR, instead of inferring the types for all of the code.
+  public boolean useClassFileFrames = true;
+
+  // Drop the code of the classes in a dex file as soon as the file is written. The classes of the
+  // application cannot be compiled or written again afterwards. Set by D8 --release-code-eagerly.
+  public boolean releaseCodeEagerly = false;
 
   // Flag to toggle if DEX code objects should pass-through without IR processing.
   public boolean passthroughDexCode = false;
 
+  // If non-null, D8 reuses and stores the dex code of methods in this directory.
+  public Path methodCompilationCacheDirectory = null;
+
+  // If non-null, library classes are taken from this collection instead of the library resources
+  // of the input app. The collection must have been created against the same item factory.
+  public LibraryClassCollection sharedLibraryClasses = null;
+
   // Optimization-related flags. These should conform to -dontoptimize.
   public boolean skipClassMerging = true;
   public boolean addNonNull = true;
@@ -163,6 +216,9 @@ public class InternalOptions {
   public boolean enableMainDexListCheck = true;
 
   public boolean useTreeShaking = true;
+  // Collect the uses of newly live methods on the executor while tree shaking. The uses are
+  // replayed in tracing order, so the result is the same as when collecting them sequentially.
+  public boolean enableParallelTracing = true;
 
   public boolean printCfg = false;
   public String printCfgFile;
@@ -239,6 +295,27 @@ public class InternalOptions {
 
   public Path proguardCompatibilityRulesOutput = null;
 
+  // If non-null, the timings of the compilation phases are passed to the consumer at the end of
+  // the compilation, as a JSON tree and in the Chrome trace event format respectively.
+  public StringConsumer timingReportConsumer = null;
+  public StringConsumer timingTraceConsumer = null;
+
+  // Tells whether the timings are printed or passed to a consumer. Fine-grained tasks, such as one
+  // per method, are only worth timing if they are.
+  public boolean isReportingTimings() {
+    return printTimes || timingReportConsumer != null || timingTraceConsumer != null;
+  }
+
+  // Pass the timings to the timing consumers, if any.
+  public void reportTimings(Timing timing) {
+    if (timingReportConsumer != null) {
+      timingReportConsumer.accept(timing.toJson(), reporter);
+    }
+    if (timingTraceConsumer != null) {
+      timingTraceConsumer.accept(timing.toTraceEvents(), reporter);
+    }
+  }
+
   public void warningMissingEnclosingMember(DexType clazz, Origin origin, int version) {
     TypeVersionPair pair = new TypeVersionPair(version, clazz);
     synchronized (missingEnclosingMembers) {
@@ -387,6 +464,18 @@ public class InternalOptions {
         Function.identity();
 
     public boolean invertConditionals = false;
+
+    // Receives the method compilation cache, if any, once all methods have been converted.
+    public Consumer<MethodCompilationCache> methodCompilationCacheConsumer = null;
+
+    // Receives the methods for which the states at block entries were taken from the verifier
+    // frames of the input class file. Called concurrently.
+    public Consumer<DexMethod> blockEntryStatesFromFramesConsumer = null;
+  }
+
+  private static Path getPathProperty(String name) {
+    String value = System.getProperty(name);
+    return value == null ? null : Paths.get(value);
   }
 
   public boolean canUseInvokePolymorphicOnVarHandle() {
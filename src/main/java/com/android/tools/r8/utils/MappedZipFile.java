@@ -0,0 +1,217 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.utils;
+
+import com.android.tools.r8.ProgramResource.Kind;
+import com.android.tools.r8.origin.Origin;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Zip archive mapped into memory.
+ *
+ * <p>The content of stored entries is read directly from the mapping and the content of deflated
+ * entries is inflated into an array of its size when read. Only the plain zip format is supported:
+ * archives with zip64 extensions, encrypted entries or other compression methods are rejected by
+ * {@link #open}, and should be read through {@link java.util.zip.ZipFile} instead.
+ */
+class MappedZipFile {
+
+  private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+  private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+  private static final int CENTRAL_DIRECTORY_SIGNATURE = 0x02014b50;
+  private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int LOCAL_HEADER_SIZE = 30;
+  private static final int MAX_COMMENT_SIZE = 0xffff;
+  private static final int FLAG_ENCRYPTED = 1;
+
+  static class Entry {
+    private final MappedZipFile file;
+    private final String name;
+    private final int method;
+    private final int compressedSize;
+    private final int size;
+    private final int localHeaderOffset;
+
+    private Entry(
+        MappedZipFile file,
+        String name,
+        int method,
+        int compressedSize,
+        int size,
+        int localHeaderOffset) {
+      this.file = file;
+      this.name = name;
+      this.method = method;
+      this.compressedSize = compressedSize;
+      this.size = size;
+      this.localHeaderOffset = localHeaderOffset;
+    }
+
+    String getName() {
+      return name;
+    }
+
+    ByteBuffer readContent() throws IOException {
+      return file.readContent(this);
+    }
+
+    /** Create a resource reading its content from this entry when needed. */
+    ByteBufferResource toResource(Origin origin, Kind kind, Set<String> classDescriptors) {
+      return new ByteBufferResource(origin, kind, classDescriptors) {
+        @Override
+        ByteBuffer readContent() throws IOException {
+          return Entry.this.readContent();
+        }
+      };
+    }
+  }
+
+  private final ByteBuffer buffer;
+  private final List<Entry> entries;
+
+  private MappedZipFile(ByteBuffer buffer) throws ZipException {
+    this.buffer = buffer;
+    this.entries = readCentralDirectory();
+  }
+
+  /**
+   * Map the archive into memory, or return null if it uses a format that is not supported.
+   */
+  static MappedZipFile open(Path archive) throws IOException {
+    ByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        return null;
+      }
+      buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+    }
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    try {
+      return new MappedZipFile(buffer);
+    } catch (UnsupportedOperationException e) {
+      return null;
+    }
+  }
+
+  List<Entry> getEntries() {
+    return Collections.unmodifiableList(entries);
+  }
+
+  private int findEndOfCentralDirectory() throws ZipException {
+    int last = buffer.limit() - END_OF_CENTRAL_DIRECTORY_SIZE;
+    int first = Math.max(0, last - MAX_COMMENT_SIZE);
+    for (int offset = last; offset >= first; offset--) {
+      if (buffer.getInt(offset) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+        return offset;
+      }
+    }
+    throw new ZipException("End of central directory not found");
+  }
+
+  private List<Entry> readCentralDirectory() throws ZipException {
+    int end = findEndOfCentralDirectory();
+    int count = buffer.getShort(end + 10) & 0xffff;
+    long directoryOffset = buffer.getInt(end + 16) & 0xffffffffL;
+    if (count == 0xffff || directoryOffset == 0xffffffffL) {
+      throw new UnsupportedOperationException("zip64");
+    }
+    List<Entry> result = new ArrayList<>(count);
+    int offset = (int) directoryOffset;
+    for (int i = 0; i < count; i++) {
+      if (offset + CENTRAL_DIRECTORY_HEADER_SIZE > end
+          || buffer.getInt(offset) != CENTRAL_DIRECTORY_SIGNATURE) {
+        throw new ZipException("Invalid central directory entry");
+      }
+      int flags = buffer.getShort(offset + 8) & 0xffff;
+      int method = buffer.getShort(offset + 10) & 0xffff;
+      long compressedSize = buffer.getInt(offset + 20) & 0xffffffffL;
+      long size = buffer.getInt(offset + 24) & 0xffffffffL;
+      int nameLength = buffer.getShort(offset + 28) & 0xffff;
+      int extraLength = buffer.getShort(offset + 30) & 0xffff;
+      int commentLength = buffer.getShort(offset + 32) & 0xffff;
+      long localHeaderOffset = buffer.getInt(offset + 42) & 0xffffffffL;
+      if ((flags & FLAG_ENCRYPTED) != 0
+          || (method != ZipEntry.STORED && method != ZipEntry.DEFLATED)
+          || compressedSize == 0xffffffffL
+          || size == 0xffffffffL
+          || localHeaderOffset == 0xffffffffL
+          || size > Integer.MAX_VALUE) {
+        throw new UnsupportedOperationException("Unsupported entry");
+      }
+      byte[] name = new byte[nameLength];
+      ByteBuffer nameBuffer = buffer.duplicate();
+      nameBuffer.position(offset + CENTRAL_DIRECTORY_HEADER_SIZE);
+      nameBuffer.get(name);
+      result.add(
+          new Entry(
+              this,
+              new String(name, StandardCharsets.UTF_8),
+              method,
+              (int) compressedSize,
+              (int) size,
+              (int) localHeaderOffset));
+      offset += CENTRAL_DIRECTORY_HEADER_SIZE + nameLength + extraLength + commentLength;
+    }
+    return result;
+  }
+
+  private ByteBuffer readContent(Entry entry) throws IOException {
+    int header = entry.localHeaderOffset;
+    if (header + LOCAL_HEADER_SIZE > buffer.limit()
+        || buffer.getInt(header) != LOCAL_HEADER_SIGNATURE) {
+      throw new ZipException("Invalid local header for " + entry.name);
+    }
+    int nameLength = buffer.getShort(header + 26) & 0xffff;
+    int extraLength = buffer.getShort(header + 28) & 0xffff;
+    int start = header + LOCAL_HEADER_SIZE + nameLength + extraLength;
+    if (start + (long) entry.compressedSize > buffer.limit()) {
+      throw new ZipException("Truncated entry " + entry.name);
+    }
+    ByteBuffer data = buffer.duplicate();
+    data.position(start);
+    data.limit(start + entry.compressedSize);
+    if (entry.method == ZipEntry.STORED) {
+      return data.slice();
+    }
+    byte[] compressed = new byte[entry.compressedSize];
+    data.get(compressed);
+    byte[] content = new byte[entry.size];
+    Inflater inflater = new Inflater(true);
+    try {
+      inflater.setInput(compressed);
+      int inflated = 0;
+      while (inflated < content.length) {
+        int count = inflater.inflate(content, inflated, content.length - inflated);
+        if (count == 0 && (inflater.finished() || inflater.needsInput())) {
+          break;
+        }
+        inflated += count;
+      }
+      if (inflated != content.length) {
+        throw new ZipException("Invalid size of inflated entry " + entry.name);
+      }
+    } catch (DataFormatException e) {
+      throw new ZipException("Invalid compressed data for " + entry.name + ": " + e.getMessage());
+    } finally {
+      inflater.end();
+    }
+    return ByteBuffer.wrap(content);
+  }
+}
@@ -3,11 +3,16 @@
 // BSD-style license that can be found in the LICENSE file.
 package com.android.tools.r8.utils;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
 
 public class ThreadUtils {
 
@@ -36,12 +41,63 @@ public class ThreadUtils {
     }
   }
 
+  /**
+   * Runs the tasks on the executor service and the calling thread, and waits for all of them. The
+   * calling thread runs the tasks that no thread of the executor service has started, so this does
+   * not deadlock when called from a task of an executor service whose threads are all busy.
+   */
+  public static void runConcurrentlyWithCaller(
+      List<? extends Runnable> tasks, ExecutorService executorService) throws ExecutionException {
+    List<FutureTask<Void>> futures = new ArrayList<>(tasks.size());
+    for (Runnable task : tasks) {
+      futures.add(new FutureTask<>(task, null));
+    }
+    // The first task is left to the calling thread, which then takes the remaining tasks from the
+    // end, opposite to the order in which the executor service picks them up.
+    for (int i = 1; i < futures.size(); i++) {
+      executorService.execute(futures.get(i));
+    }
+    if (!futures.isEmpty()) {
+      futures.get(0).run();
+    }
+    for (int i = futures.size() - 1; i > 0; i--) {
+      futures.get(i).run();
+    }
+    awaitFutures(futures);
+  }
+
   static ExecutorService getExecutorServiceForProcessors(int processors) {
     // This heuristic is based on measurements on a 32 core (hyper-threaded) machine.
     int threads = processors <= 2 ? processors : (int) Math.ceil(Integer.min(processors, 16) / 2.0);
     return Executors.newWorkStealingPool(threads);
   }
 
+  static ExecutorService getClassConversionExecutorServiceForProcessors(int processors) {
+    // Converting classes to dex scales to a thread per processor up to 16 threads. Conversions
+    // with little work limit their parallelism with getThreadsForWork.
+    return Executors.newWorkStealingPool(Integer.min(processors, 16));
+  }
+
+  /** Number of tasks that the executor can run at the same time, if known. */
+  public static int getParallelism(ExecutorService executor) {
+    if (executor instanceof ForkJoinPool) {
+      return ((ForkJoinPool) executor).getParallelism();
+    }
+    if (executor instanceof ThreadPoolExecutor) {
+      return ((ThreadPoolExecutor) executor).getMaximumPoolSize();
+    }
+    return Runtime.getRuntime().availableProcessors();
+  }
+
+  /**
+   * Number of threads worth using for the given amount of work, which is at least one and at most
+   * the available threads.
+   */
+  public static int getThreadsForWork(int availableThreads, long work, long minWorkPerThread) {
+    long threads = (work + minWorkPerThread - 1) / minWorkPerThread;
+    return (int) Math.max(1, Math.min(availableThreads, threads));
+  }
+
   public static ExecutorService getExecutorService(int threads) {
     // Don't use Executors.newSingleThreadExecutor() when threads == 1, see b/67338394.
     return threads == NOT_SPECIFIED
@@ -52,4 +108,15 @@ public class ThreadUtils {
   public static ExecutorService getExecutorService(InternalOptions options) {
     return getExecutorService(options.numberOfThreads);
   }
+
+  /**
+   * Executor for converting the classes of D8 to dex. Unless the number of threads is specified,
+   * it has more threads than the executor for the rest of the compilation.
+   */
+  public static ExecutorService getClassConversionExecutorService(InternalOptions options) {
+    return options.numberOfThreads == NOT_SPECIFIED
+        ? getClassConversionExecutorServiceForProcessors(
+            Runtime.getRuntime().availableProcessors())
+        : getExecutorService(options.numberOfThreads);
+  }
 }
@@ -10,35 +10,140 @@ package com.android.tools.r8.utils;
 //     try { ... } finally { t.end(); }
 // or alternatively:
 //     t.scope("My task", () -> { ... });
+// Counters can be attached to the current task by:
+//     t.addCounter("My counter", value);
 // Finally a report is printed by:
 //     t.report();
+// When created with memory tracking, the report also shows the heap in use at the end of each task
+// and the peak heap during the task.
+//
+// Tasks can be begun and ended on any thread. Each thread has its own stack of tasks. A task begun
+// on a thread with no open task is nested in the task that is open on the thread that created the
+// timing, which is usually waiting for the task to finish. The report and the JSON export merge the
+// tasks with the same title and parent, while the trace export (in the Chrome trace event format)
+// has each task of each thread.
 
-import java.util.Stack;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.json.simple.JSONValue;
 
 public class Timing {
 
-  private final Stack<Node> stack;
+  private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+  private static final boolean cpuTimeSupported = threadBean.isCurrentThreadCpuTimeSupported();
+
+  private final Node top;
+  private final boolean trackMemory;
+  private final Thread owner;
+  private final ThreadLocal<Deque<Node>> stacks = ThreadLocal.withInitial(ArrayDeque::new);
+  // The innermost open task of the thread that created the timing.
+  private volatile Node ownerCurrent;
 
   public Timing(String title) {
-    stack = new Stack<>();
-    stack.push(new Node("Recorded timings for " + title));
+    this(title, false);
+  }
+
+  public Timing(String title, boolean trackMemory) {
+    this.trackMemory = trackMemory;
+    this.owner = Thread.currentThread();
+    top = new Node("Recorded timings for " + title, trackMemory);
+    if (trackMemory) {
+      resetPeakHeap();
+    }
+    stacks.get().push(top);
+    ownerCurrent = top;
+  }
+
+  private static long usedMemory() {
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private static long cpuTime() {
+    return cpuTimeSupported ? threadBean.getCurrentThreadCpuTime() : -1;
+  }
+
+  // Accumulated time in milliseconds of all garbage collections so far.
+  private static long gcTime() {
+    long time = 0;
+    for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+      time += Math.max(0, bean.getCollectionTime());
+    }
+    return time;
+  }
+
+  // The sum of the peak usage of the heap pools since they were last reset. The pools do not
+  // peak at the same time, so this is an upper bound of the peak heap in use.
+  private static long peakHeap() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    return peak;
+  }
+
+  private static void resetPeakHeap() {
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+        pool.resetPeakUsage();
+      }
+    }
   }
 
   static class Node {
     final String title;
+    final boolean trackMemory;
+    final long threadId;
+    final String threadName;
 
-    final Stack<Node> sons = new Stack<>();
+    // Guarded by this node. Allocated when needed, as there can be many tasks without any.
+    List<Node> sons = null;
+    Map<String, Long> counters = null;
     final long start_time;
+    final long start_cpu;
+    final long start_gc;
+    final long start_memory;
     long stop_time;
+    long stop_cpu;
+    long stop_gc;
+    long stop_memory;
+    // Only tracked for the tasks of the thread that created the timing.
+    long peak_memory = -1;
 
-    Node(String title) {
+    Node(String title, boolean trackMemory) {
       this.title = title;
+      this.trackMemory = trackMemory;
+      this.threadId = Thread.currentThread().getId();
+      this.threadName = Thread.currentThread().getName();
       this.start_time = System.nanoTime();
+      this.start_cpu = cpuTime();
+      this.start_gc = gcTime();
+      this.start_memory = trackMemory ? usedMemory() : -1;
       this.stop_time = -1;
+      this.stop_cpu = -1;
+      this.stop_gc = -1;
+      this.stop_memory = -1;
     }
 
     void end() {
       stop_time = System.nanoTime();
+      stop_cpu = cpuTime();
+      stop_gc = gcTime();
+      if (trackMemory) {
+        stop_memory = usedMemory();
+      }
       assert duration() >= 0;
     }
 
@@ -46,47 +151,321 @@ public class Timing {
       return stop_time - start_time;
     }
 
+    long cpuDuration() {
+      return start_cpu < 0 ? -1 : stop_cpu - start_cpu;
+    }
+
+    long gcDuration() {
+      return stop_gc - start_gc;
+    }
+
+    synchronized void addSon(Node son) {
+      if (sons == null) {
+        sons = new ArrayList<>();
+      }
+      sons.add(son);
+    }
+
+    synchronized void addCounter(String name, long value) {
+      if (counters == null) {
+        counters = new LinkedHashMap<>();
+      }
+      counters.merge(name, value, Long::sum);
+    }
+
+    synchronized List<Node> getSons() {
+      return sons == null ? Collections.emptyList() : new ArrayList<>(sons);
+    }
+
+    synchronized Map<String, Long> getCounters() {
+      return counters == null ? Collections.emptyMap() : new LinkedHashMap<>(counters);
+    }
+
     @Override
     public String toString() {
-      return title + ": " + (duration() / 1000000) + "ms.";
+      String result = title + ": " + (duration() / 1000000) + "ms.";
+      if (trackMemory) {
+        long megabyte = 1024 * 1024;
+        result += " Heap in use: " + (stop_memory / megabyte) + "MB ("
+            + (stop_memory >= start_memory ? "+" : "")
+            + ((stop_memory - start_memory) / megabyte) + "MB).";
+      }
+      return result;
     }
+  }
 
-    public String toString(Node top) {
-      if (this == top) return toString();
-      long percentage = duration() * 100 / top.duration();
-      return toString() + " (" + percentage + "%)";
+  // The tasks with the same title and parent, merged for reporting.
+  private static class Summary {
+    final String title;
+    final List<Node> nodes = new ArrayList<>();
+
+    Summary(String title) {
+      this.title = title;
     }
 
-    public void report(int depth, Node top) {
-      assert duration() >= 0;
-      if (depth > 0) {
-        for (int i = 0; i < depth; i++) {
-          System.out.print("  ");
+    static List<Summary> of(List<Node> nodes) {
+      Map<String, Summary> summaries = new LinkedHashMap<>();
+      for (Node node : nodes) {
+        summaries.computeIfAbsent(node.title, Summary::new).nodes.add(node);
+      }
+      return new ArrayList<>(summaries.values());
+    }
+
+    Node first() {
+      return nodes.get(0);
+    }
+
+    long duration() {
+      long duration = 0;
+      for (Node node : nodes) {
+        duration += node.duration();
+      }
+      return duration;
+    }
+
+    long cpuDuration() {
+      long duration = 0;
+      for (Node node : nodes) {
+        if (node.cpuDuration() < 0) {
+          return -1;
+        }
+        duration += node.cpuDuration();
+      }
+      return duration;
+    }
+
+    // Garbage collections are global, so the time of overlapping tasks is only counted once.
+    long gcDuration() {
+      long duration = 0;
+      long end = Long.MIN_VALUE;
+      List<Node> sorted = new ArrayList<>(nodes);
+      sorted.sort((a, b) -> Long.compare(a.start_gc, b.start_gc));
+      for (Node node : sorted) {
+        long start = Math.max(node.start_gc, end);
+        if (node.stop_gc > start) {
+          duration += node.stop_gc - start;
+          end = node.stop_gc;
         }
-        System.out.print("- ");
       }
-      System.out.println(toString(top));
-      sons.forEach(p -> { p.report(depth + 1, top); });
+      return duration;
+    }
+
+    long peakMemory() {
+      long peak = -1;
+      for (Node node : nodes) {
+        peak = Math.max(peak, node.peak_memory);
+      }
+      return peak;
+    }
+
+    int threads() {
+      return (int) nodes.stream().mapToLong(node -> node.threadId).distinct().count();
+    }
+
+    Map<String, Long> counters() {
+      Map<String, Long> counters = new LinkedHashMap<>();
+      for (Node node : nodes) {
+        node.getCounters().forEach((name, value) -> counters.merge(name, value, Long::sum));
+      }
+      return counters;
+    }
+
+    List<Summary> sons() {
+      List<Node> sons = new ArrayList<>();
+      for (Node node : nodes) {
+        sons.addAll(node.getSons());
+      }
+      return of(sons);
+    }
+
+    String toString(long topDuration, boolean isTop) {
+      StringBuilder builder = new StringBuilder();
+      if (nodes.size() == 1) {
+        builder.append(first());
+      } else {
+        builder.append(title).append(": ").append(duration() / 1000000).append("ms in ")
+            .append(nodes.size()).append(" tasks on ").append(threads()).append(" threads.");
+      }
+      // The time of merged tasks can add up to more than the time of the top task.
+      if (!isTop && topDuration > 0 && nodes.size() == 1) {
+        builder.append(" (").append(duration() * 100 / topDuration).append("%)");
+      }
+      if (cpuDuration() >= 0) {
+        builder.append(" CPU: ").append(cpuDuration() / 1000000).append("ms.");
+      }
+      long gc = gcDuration();
+      if (gc > 0) {
+        builder.append(" GC: ").append(gc).append("ms.");
+      }
+      if (peakMemory() >= 0) {
+        builder.append(" Peak heap: ").append(peakMemory() / (1024 * 1024)).append("MB.");
+      }
+      return builder.toString();
+    }
+
+    void report(int depth, long topDuration) {
+      StringBuilder indent = new StringBuilder();
+      for (int i = 0; i < depth; i++) {
+        indent.append("  ");
+      }
+      System.out.println((depth > 0 ? indent + "- " : "") + toString(topDuration, depth == 0));
+      counters().forEach((name, value) -> {
+        System.out.println(indent + "  # " + name + ": " + value);
+      });
+      sons().forEach(p -> { p.report(depth + 1, topDuration); });
+    }
+
+    void toJson(StringBuilder builder) {
+      builder.append("{\"title\":").append(jsonString(title))
+          .append(",\"count\":").append(nodes.size())
+          .append(",\"threads\":").append(threads())
+          .append(",\"wall_ns\":").append(duration())
+          .append(",\"cpu_ns\":").append(cpuDuration())
+          .append(",\"gc_ms\":").append(gcDuration());
+      if (first().trackMemory) {
+        Node last = nodes.get(nodes.size() - 1);
+        builder.append(",\"heap_used_bytes\":").append(last.stop_memory)
+            .append(",\"heap_peak_bytes\":").append(peakMemory());
+      }
+      builder.append(",\"counters\":{");
+      String separator = "";
+      for (Map.Entry<String, Long> counter : counters().entrySet()) {
+        builder.append(separator).append(jsonString(counter.getKey())).append(':')
+            .append(counter.getValue());
+        separator = ",";
+      }
+      builder.append("},\"children\":[");
+      separator = "";
+      for (Summary son : sons()) {
+        builder.append(separator);
+        son.toJson(builder);
+        separator = ",";
+      }
+      builder.append("]}");
     }
   }
 
+  private static String jsonString(String value) {
+    return "\"" + JSONValue.escape(value) + "\"";
+  }
+
+  private Node current() {
+    Deque<Node> stack = stacks.get();
+    return stack.isEmpty() ? ownerCurrent : stack.peek();
+  }
 
   public void begin(String title) {
-    Node n = new Node(title);
-    stack.peek().sons.add(n);
+    Deque<Node> stack = stacks.get();
+    boolean isOwner = Thread.currentThread() == owner;
+    Node parent = stack.isEmpty() ? ownerCurrent : stack.peek();
+    if (isOwner && trackMemory) {
+      // Record the peak of the open tasks before resetting it for the new task.
+      long peak = peakHeap();
+      for (Node open : stack) {
+        open.peak_memory = Math.max(open.peak_memory, peak);
+      }
+      resetPeakHeap();
+    }
+    Node n = new Node(title, trackMemory && isOwner);
+    parent.addSon(n);
     stack.push(n);
+    if (isOwner) {
+      ownerCurrent = n;
+    }
   }
 
   public void end() {
-    stack.peek().end();  // record time.
-    stack.pop();
+    Deque<Node> stack = stacks.get();
+    Node n = stack.pop();
+    n.end();  // record time.
+    if (Thread.currentThread() == owner) {
+      Node parent = stack.peek();
+      if (trackMemory) {
+        n.peak_memory = Math.max(n.peak_memory, peakHeap());
+        parent.peak_memory = Math.max(parent.peak_memory, n.peak_memory);
+      }
+      ownerCurrent = parent;
+    }
   }
 
-  public void report() {
-    Node top = stack.peek();
+  public void addCounter(String name, long value) {
+    current().addCounter(name, value);
+  }
+
+  private Summary finish() {
     top.end();
+    if (trackMemory) {
+      top.peak_memory = Math.max(top.peak_memory, peakHeap());
+    }
+    Summary summary = new Summary(top.title);
+    summary.nodes.add(top);
+    return summary;
+  }
+
+  public void report() {
+    Summary top = finish();
     System.out.println();
-    top.report(0, top);
+    top.report(0, top.duration());
+  }
+
+  /**
+   * The tasks recorded so far as a JSON tree, with the tasks with the same title and parent merged.
+   *
+   * <p>Each task has its title, the number of tasks merged into it and the threads they ran on,
+   * the wall time and CPU time of the tasks in nanoseconds (CPU time is -1 if not supported), the
+   * time in milliseconds spent in garbage collection while the tasks were running, its counters
+   * and its children. With memory tracking, the heap in use at the end of the task and the peak
+   * heap during the task are included.
+   */
+  public String toJson() {
+    StringBuilder builder = new StringBuilder();
+    finish().toJson(builder);
+    return builder.append('\n').toString();
+  }
+
+  /**
+   * The tasks recorded so far in the Chrome trace event format, which can be loaded into
+   * chrome://tracing and other trace viewers. Each task is a complete event on its thread.
+   */
+  public String toTraceEvents() {
+    finish();
+    StringBuilder builder = new StringBuilder("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+    // Thread ids are numbered from 1 in the order in which the threads are first seen.
+    Map<Long, Integer> tids = new LinkedHashMap<>();
+    Map<Integer, String> threadNames = new LinkedHashMap<>();
+    List<Node> pending = new ArrayList<>();
+    pending.add(top);
+    String separator = "";
+    while (!pending.isEmpty()) {
+      Node node = pending.remove(pending.size() - 1);
+      Integer tid = tids.computeIfAbsent(node.threadId, id -> tids.size() + 1);
+      threadNames.putIfAbsent(tid, node.threadName);
+      builder.append(separator)
+          .append("{\"name\":").append(jsonString(node.title))
+          .append(",\"ph\":\"X\",\"pid\":1,\"tid\":").append(tid)
+          .append(",\"ts\":").append((node.start_time - top.start_time) / 1000)
+          .append(",\"dur\":").append(node.duration() / 1000)
+          .append(",\"args\":{\"cpu_us\":")
+          .append(node.cpuDuration() < 0 ? -1 : node.cpuDuration() / 1000)
+          .append(",\"gc_ms\":").append(node.gcDuration());
+      for (Map.Entry<String, Long> counter : node.getCounters().entrySet()) {
+        builder.append(',').append(jsonString(counter.getKey())).append(':')
+            .append(counter.getValue());
+      }
+      builder.append("}}");
+      separator = ",";
+      List<Node> sons = node.getSons();
+      for (int i = sons.size() - 1; i >= 0; i--) {
+        pending.add(sons.get(i));
+      }
+    }
+    for (Map.Entry<Integer, String> thread : threadNames.entrySet()) {
+      builder.append(",{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":")
+          .append(thread.getKey())
+          .append(",\"args\":{\"name\":").append(jsonString(thread.getValue()))
+          .append("}}");
+    }
+    return builder.append("]}\n").toString();
   }
 
   public void scope(String title, TimingScope fn) {
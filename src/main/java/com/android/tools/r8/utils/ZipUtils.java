@@ -10,6 +10,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Enumeration;
@@ -67,15 +68,35 @@ public class ZipUtils {
 
   public static void writeToZipStream(ZipOutputStream stream, String entry, byte[] content)
       throws IOException {
+    writeToZipStream(stream, entry, ByteBuffer.wrap(content));
+  }
+
+  /**
+   * Writes the bytes between the position and the limit of {@param content} as a stored entry.
+   * Heap buffers are written without copying their content.
+   */
+  public static void writeToZipStream(ZipOutputStream stream, String entry, ByteBuffer content)
+      throws IOException {
+    byte[] bytes;
+    int offset;
+    int length = content.remaining();
+    if (content.hasArray()) {
+      bytes = content.array();
+      offset = content.arrayOffset() + content.position();
+    } else {
+      bytes = new byte[length];
+      content.duplicate().get(bytes);
+      offset = 0;
+    }
     CRC32 crc = new CRC32();
-    crc.update(content);
+    crc.update(bytes, offset, length);
     ZipEntry zipEntry = new ZipEntry(entry);
     zipEntry.setMethod(ZipEntry.STORED);
-    zipEntry.setSize(content.length);
-    zipEntry.setCompressedSize(content.length);
+    zipEntry.setSize(length);
+    zipEntry.setCompressedSize(length);
     zipEntry.setCrc(crc.getValue());
     stream.putNextEntry(zipEntry);
-    stream.write(content);
+    stream.write(bytes, offset, length);
     stream.closeEntry();
   }
 }
@@ -207,6 +207,22 @@ public class D8CommandTest {
     assertTrue(ToolHelper.getApp(command).hasMainDexListResources());
   }
 
+  @Test
+  public void filePerClassBatch() throws Throwable {
+    D8Command command = parse("--file-per-class", "--file-per-class-batch", "100");
+    assertEquals(100, command.getFilePerClassBatchSize());
+  }
+
+  @Test(expected = CompilationFailedException.class)
+  public void filePerClassBatchWithoutFilePerClass() throws Throwable {
+    parse("--file-per-class-batch", "100");
+  }
+
+  @Test(expected = CompilationFailedException.class)
+  public void invalidFilePerClassBatch() throws Throwable {
+    parse("--file-per-class", "--file-per-class-batch", "many");
+  }
+
   @Test(expected = CompilationFailedException.class)
   public void invalidOutputFileTypeParse() throws Throwable {
     Path invalidType = temp.getRoot().toPath().resolve("an-invalid-output-file-type.foobar");
@@ -0,0 +1,70 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import org.junit.Test;
+
+// Test that compiling to a dex file per class file in batches gives the same files.
+public class D8FilePerClassBatchTest {
+
+  private static final String[] EXAMPLES = {"inlining", "classmerging", "shaking1"};
+
+  private static class PerClassConsumer extends DexFilePerClassFileConsumer.ForwardingConsumer {
+
+    final Map<String, byte[]> files = new TreeMap<>();
+    int finishedCount = 0;
+
+    PerClassConsumer() {
+      super(null);
+    }
+
+    @Override
+    public synchronized void accept(
+        String primaryClassDescriptor,
+        byte[] data,
+        Set<String> descriptors,
+        DiagnosticsHandler handler) {
+      files.put(primaryClassDescriptor, data);
+    }
+
+    @Override
+    public synchronized void finished(DiagnosticsHandler handler) {
+      finishedCount++;
+    }
+  }
+
+  private static PerClassConsumer compile(String example, int batchSize) throws Exception {
+    PerClassConsumer consumer = new PerClassConsumer();
+    D8.run(
+        D8Command.builder()
+            .addProgramFiles(Paths.get(ToolHelper.EXAMPLES_BUILD_DIR, example + ".jar"))
+            .addLibraryFiles(ToolHelper.getDefaultAndroidJar())
+            .setProgramConsumer(consumer)
+            .setFilePerClassBatchSize(batchSize)
+            .build());
+    assertEquals(1, consumer.finishedCount);
+    return consumer;
+  }
+
+  @Test
+  public void sameFiles() throws Exception {
+    for (String example : EXAMPLES) {
+      Map<String, byte[]> expected = compile(example, 0).files;
+      for (int batchSize : new int[] {1, 3}) {
+        Map<String, byte[]> files = compile(example, batchSize).files;
+        assertEquals(example, expected.keySet(), files.keySet());
+        for (String descriptor : expected.keySet()) {
+          assertArrayEquals(descriptor, expected.get(descriptor), files.get(descriptor));
+        }
+      }
+    }
+  }
+}
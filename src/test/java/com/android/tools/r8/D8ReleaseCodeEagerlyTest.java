@@ -0,0 +1,115 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.r8.dex.ApplicationReader;
+import com.android.tools.r8.dex.ApplicationWriter;
+import com.android.tools.r8.graph.DexApplication;
+import com.android.tools.r8.graph.DexEncodedMethod;
+import com.android.tools.r8.graph.DexProgramClass;
+import com.android.tools.r8.naming.NamingLens;
+import com.android.tools.r8.utils.AndroidApp;
+import com.android.tools.r8.utils.InternalOptions;
+import com.android.tools.r8.utils.ThreadUtils;
+import com.android.tools.r8.utils.Timing;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import org.junit.Test;
+
+// Test that dropping the code of classes once written does not change the output.
+public class D8ReleaseCodeEagerlyTest {
+
+  private static final String[] EXAMPLES = {"arithmetic", "trycatch", "switches"};
+
+  private static class DexConsumer extends DexIndexedConsumer.ForwardingConsumer {
+
+    byte[] bytes;
+
+    DexConsumer() {
+      super(null);
+    }
+
+    @Override
+    public synchronized void accept(
+        int fileIndex, byte[] data, Set<String> descriptors, DiagnosticsHandler handler) {
+      bytes = data;
+    }
+  }
+
+  private static Path input(String example) {
+    return Paths.get(ToolHelper.EXAMPLES_BUILD_DIR, example + ".jar");
+  }
+
+  private static byte[] compile(String example, boolean releaseCodeEagerly) throws Exception {
+    DexConsumer consumer = new DexConsumer();
+    D8Command.Builder builder =
+        D8Command.builder()
+            .addProgramFiles(input(example))
+            .addLibraryFiles(ToolHelper.getDefaultAndroidJar())
+            .setReleaseCodeEagerly(releaseCodeEagerly)
+            .setProgramConsumer(consumer);
+    ToolHelper.runD8(builder, options -> options.printMemory = releaseCodeEagerly);
+    assertNotNull(consumer.bytes);
+    return consumer.bytes;
+  }
+
+  private static DexApplication write(AndroidApp dexApp, boolean releaseCodeEagerly)
+      throws Exception {
+    InternalOptions options =
+        D8Command.builder()
+            .setReleaseCodeEagerly(releaseCodeEagerly)
+            .setProgramConsumer(DexIndexedConsumer.emptyConsumer())
+            .build()
+            .getInternalOptions();
+    assertEquals(releaseCodeEagerly, options.releaseCodeEagerly);
+    ExecutorService executor = ThreadUtils.getExecutorService(options);
+    try {
+      Timing timing = new Timing("D8ReleaseCodeEagerlyTest");
+      DexApplication application = new ApplicationReader(dexApp, options, timing).read(executor);
+      new ApplicationWriter(
+              application, options, null, null, NamingLens.getIdentityLens(), null, null)
+          .write(executor);
+      return application;
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void sameOutput() throws Exception {
+    for (String example : EXAMPLES) {
+      assertArrayEquals(example, compile(example, false), compile(example, true));
+    }
+  }
+
+  @Test
+  public void codeIsReleasedOnceWritten() throws Exception {
+    AndroidApp dexApp =
+        ToolHelper.runD8(AndroidApp.builder().addProgramFiles(input("arithmetic")).build());
+    for (boolean releaseCodeEagerly : new boolean[] {false, true}) {
+      List<DexEncodedMethod> methods = new ArrayList<>();
+      for (DexProgramClass clazz : write(dexApp, releaseCodeEagerly).classes()) {
+        clazz.forEachMethod(methods::add);
+      }
+      assertTrue(!methods.isEmpty());
+      for (DexEncodedMethod method : methods) {
+        if (releaseCodeEagerly) {
+          assertNull(method.getCode());
+        } else if (!method.accessFlags.isAbstract() && !method.accessFlags.isNative()) {
+          assertNotNull(method.getCode());
+        }
+      }
+    }
+  }
+}
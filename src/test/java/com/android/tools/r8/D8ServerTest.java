@@ -0,0 +1,96 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import com.android.tools.r8.utils.ThreadUtils;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import org.junit.Test;
+
+public class D8ServerTest {
+
+  private static final String[] EXAMPLES = {"arithmetic", "trycatch", "switches", "arithmetic"};
+
+  private static class DexConsumer extends DexIndexedConsumer.ForwardingConsumer {
+
+    byte[] bytes;
+
+    DexConsumer() {
+      super(null);
+    }
+
+    @Override
+    public synchronized void accept(
+        int fileIndex, byte[] data, Set<String> descriptors, DiagnosticsHandler handler) {
+      bytes = data;
+    }
+  }
+
+  private static D8Command.Builder builder(String example, DexConsumer consumer) {
+    return D8Command.builder()
+        .addProgramFiles(Paths.get(ToolHelper.EXAMPLES_BUILD_DIR, example + ".jar"))
+        .setMode(CompilationMode.DEBUG)
+        .setProgramConsumer(consumer);
+  }
+
+  private static byte[] compile(String example) throws Exception {
+    DexConsumer consumer = new DexConsumer();
+    D8.run(builder(example, consumer).addLibraryFiles(ToolHelper.getDefaultAndroidJar()).build());
+    assertNotNull(consumer.bytes);
+    return consumer.bytes;
+  }
+
+  private static byte[] compile(D8Server server, String example, ExecutorService executor)
+      throws Exception {
+    DexConsumer consumer = new DexConsumer();
+    Path library = ToolHelper.getDefaultAndroidJar();
+    server.run(builder(example, consumer).build(), Collections.singletonList(library), executor);
+    assertNotNull(consumer.bytes);
+    return consumer.bytes;
+  }
+
+  @Test
+  public void reuseSession() throws Exception {
+    D8Server server = new D8Server(Long.MAX_VALUE);
+    ExecutorService executor = ThreadUtils.getExecutorService(ThreadUtils.NOT_SPECIFIED);
+    try {
+      // Compilations after the first share the item factory and library classes of the first.
+      for (String example : EXAMPLES) {
+        assertArrayEquals(example, compile(example), compile(server, example, executor));
+      }
+      assertEquals(1, server.getSessionsCreated());
+      assertEquals(EXAMPLES.length - 1, server.getSessionsReused());
+      assertEquals(0, server.getSessionsEvicted());
+    } finally {
+      executor.shutdown();
+      server.close();
+    }
+  }
+
+  @Test
+  public void evictSessions() throws Exception {
+    // With no memory to spare every session is evicted once idle.
+    D8Server server = new D8Server(0);
+    ExecutorService executor = ThreadUtils.getExecutorService(ThreadUtils.NOT_SPECIFIED);
+    try {
+      for (int i = 0; i < EXAMPLES.length; i++) {
+        String example = EXAMPLES[i];
+        assertArrayEquals(example, compile(example), compile(server, example, executor));
+        assertEquals(i + 1, server.getSessionsCreated());
+        assertEquals(i + 1, server.getSessionsEvicted());
+      }
+      assertEquals(0, server.getSessionsReused());
+    } finally {
+      executor.shutdown();
+      server.close();
+    }
+  }
+}
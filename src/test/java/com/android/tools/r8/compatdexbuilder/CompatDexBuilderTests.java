@@ -16,6 +16,7 @@ import com.android.tools.r8.ToolHelper.ArtCommandBuilder;
 import com.google.common.collect.ImmutableList;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
@@ -74,6 +75,35 @@ public class CompatDexBuilderTests {
     assertTrue(expectedNames.isEmpty());
   }
 
+  @Test
+  public void outputInInputOrder() throws IOException, InterruptedException, ExecutionException {
+    final String INPUT_JAR = ToolHelper.TESTS_BUILD_DIR + "examples/naming001.jar";
+    Path outputZip = temp.getRoot().toPath().resolve("out.zip");
+    CompatDexBuilder.main(
+        new String[] {"--input_jar", INPUT_JAR, "--output_zip", outputZip.toString()});
+
+    // The dex files are written in the order of the class files in the input.
+    List<String> expectedNames = new ArrayList<>();
+    try (ZipFile zipFile = new ZipFile(INPUT_JAR)) {
+      for (Enumeration<? extends ZipEntry> e = zipFile.entries(); e.hasMoreElements(); ) {
+        ZipEntry ze = e.nextElement();
+        if (ze.getName().endsWith(".class")) {
+          expectedNames.add(ze.getName() + ".dex");
+        }
+      }
+    }
+    List<String> names = new ArrayList<>();
+    try (ZipFile zipFile = new ZipFile(outputZip.toFile())) {
+      for (Enumeration<? extends ZipEntry> e = zipFile.entries(); e.hasMoreElements(); ) {
+        ZipEntry ze = e.nextElement();
+        if (ze.getName().endsWith(".dex")) {
+          names.add(ze.getName());
+        }
+      }
+    }
+    assertEquals(expectedNames, names);
+  }
+
   @Test
   public void compileTwoClassesAndRun()
       throws IOException, InterruptedException, ExecutionException, CompilationFailedException {
@@ -0,0 +1,110 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.d8;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.r8.CompilationMode;
+import com.android.tools.r8.D8Command;
+import com.android.tools.r8.ProgramResource;
+import com.android.tools.r8.ToolHelper;
+import com.android.tools.r8.ir.conversion.MethodCompilationCache;
+import com.android.tools.r8.utils.AndroidApp;
+import com.google.common.io.ByteStreams;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+// Test that code reused from the method compilation cache gives the same output as compiling it.
+@RunWith(Parameterized.class)
+public class MethodCompilationCacheTest {
+
+  @Parameters(name = "{0} {1}")
+  public static Collection<Object[]> data() {
+    return Arrays.asList(new Object[][] {
+        {"arithmetic", CompilationMode.DEBUG},
+        {"arithmetic", CompilationMode.RELEASE},
+        {"trycatch", CompilationMode.DEBUG},
+        {"trycatch", CompilationMode.RELEASE},
+        {"switches", CompilationMode.RELEASE},
+    });
+  }
+
+  @Rule public TemporaryFolder temp = ToolHelper.getTemporaryFolderForTest();
+
+  private final Path input;
+  private final CompilationMode mode;
+
+  public MethodCompilationCacheTest(String example, CompilationMode mode) {
+    this.input = Paths.get(ToolHelper.EXAMPLES_BUILD_DIR, example + ".jar");
+    this.mode = mode;
+  }
+
+  // The method compilation cache of the last compilation using one.
+  private MethodCompilationCache cache;
+
+  private byte[] compile(Path cacheDirectory) throws Exception {
+    D8Command.Builder builder = D8Command.builder().addProgramFiles(input).setMode(mode);
+    if (cacheDirectory != null) {
+      builder.setMethodCompilationCacheDirectory(cacheDirectory);
+    }
+    cache = null;
+    AndroidApp app =
+        ToolHelper.runD8(
+            builder, options -> options.testing.methodCompilationCacheConsumer = c -> cache = c);
+    List<ProgramResource> resources = app.getDexProgramResourcesForTesting();
+    assertEquals(1, resources.size());
+    try (InputStream stream = resources.get(0).getByteStream()) {
+      return ByteStreams.toByteArray(stream);
+    }
+  }
+
+  private Set<Path> cacheEntries(Path cacheDirectory) throws Exception {
+    try (Stream<Path> files = Files.walk(cacheDirectory)) {
+      return files.filter(Files::isRegularFile).collect(Collectors.toSet());
+    }
+  }
+
+  @Test
+  public void reuseCachedCode() throws Exception {
+    Path cacheDirectory = temp.newFolder("cache").toPath();
+    byte[] expected = compile(null);
+    assertArrayEquals(expected, compile(cacheDirectory));
+    assertEquals(0, cache.getHits());
+    int lookups = cache.getMisses();
+    Set<Path> entries = cacheEntries(cacheDirectory);
+    assertTrue(!entries.isEmpty());
+    // The second compilation is served from the cache and must produce identical output. Only the
+    // methods which could not be stored miss again.
+    assertArrayEquals(expected, compile(cacheDirectory));
+    assertEquals(entries.size(), cache.getHits());
+    assertEquals(lookups - entries.size(), cache.getMisses());
+    assertEquals(entries, cacheEntries(cacheDirectory));
+  }
+
+  @Test
+  public void ignoreCorruptEntries() throws Exception {
+    Path cacheDirectory = temp.newFolder("cache").toPath();
+    byte[] expected = compile(cacheDirectory);
+    for (Path entry : cacheEntries(cacheDirectory)) {
+      Files.write(entry, new byte[] {1, 2, 3});
+    }
+    assertArrayEquals(expected, compile(cacheDirectory));
+  }
+}
@@ -11,6 +11,11 @@ import com.android.tools.r8.graph.DexItem;
 import com.android.tools.r8.graph.DexItemFactory;
 import com.android.tools.r8.graph.DexString;
 import com.android.tools.r8.graph.DexType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.Test;
 
 public class DexItemFactoryTest {
@@ -48,6 +53,45 @@ public class DexItemFactoryTest {
     }
   }
 
+  @Test
+  public void concurrentlyCreatedItemsAreCanonical() throws Exception {
+    DexItemFactory factory = new DexItemFactory();
+    int threads = 8;
+    int count = 1000;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Object[]>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  // Cover both the small and the large key ranges of the debug events.
+                  Object[] items = new Object[count * 4];
+                  for (int i = 0; i < count; i++) {
+                    items[i * 4] = factory.createType("Lfoo/C" + i + ";");
+                    items[i * 4 + 1] = factory.createAdvanceLine(i - count / 2);
+                    items[i * 4 + 2] = factory.createAdvancePC(i);
+                    items[i * 4 + 3] = factory.createEndLocal(i);
+                  }
+                  return items;
+                }));
+      }
+      Object[] expected = futures.get(0).get();
+      for (Future<Object[]> future : futures) {
+        Object[] items = future.get();
+        for (int i = 0; i < items.length; i++) {
+          assertSame(expected[i], items[i]);
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertSame(factory.createType("Lfoo/C0;"), factory.createType("Lfoo/C0;"));
+    assertSame(factory.createAdvanceLine(-1000), factory.createAdvanceLine(-1000));
+    assertSame(factory.createDefault(Constants.DBG_LAST_SPECIAL),
+        factory.createDefault(Constants.DBG_LAST_SPECIAL));
+  }
+
   @Test
   public void getPrimitiveTypeName() {
     DexItemFactory factory = new DexItemFactory();
@@ -0,0 +1,167 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.dex;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.r8.D8;
+import com.android.tools.r8.D8Command;
+import com.android.tools.r8.DexIndexedConsumer;
+import com.android.tools.r8.DiagnosticsHandler;
+import com.android.tools.r8.ProgramResource;
+import com.android.tools.r8.TestBase;
+import com.android.tools.r8.ToolHelper;
+import com.android.tools.r8.utils.AndroidApp;
+import com.google.common.io.ByteStreams;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.Adler32;
+import org.junit.Test;
+
+public class DexOutputTest extends TestBase {
+
+  private static final Path TRIVIAL =
+      Paths.get(ToolHelper.EXAMPLES_BUILD_DIR, "classes", "trivial", "Trivial.class");
+
+  private static long adler32(byte[] bytes, int offset, int length) {
+    Adler32 adler = new Adler32();
+    adler.update(bytes, offset, length);
+    return adler.getValue();
+  }
+
+  @Test
+  public void combinedChecksumMatchesChecksum() {
+    Random random = new Random(42);
+    byte[] bytes = new byte[100000];
+    random.nextBytes(bytes);
+    for (int split : new int[] {0, 1, 20, 65521, 65522, 99999, 100000}) {
+      long combined =
+          FileWriter.combineAdler32(
+              adler32(bytes, 0, split),
+              adler32(bytes, split, bytes.length - split),
+              bytes.length - split);
+      assertEquals(adler32(bytes, 0, bytes.length), combined);
+    }
+  }
+
+  @Test
+  public void releasedBuffersAreZeroFilled() {
+    DexOutputBufferPool pool = new DexOutputBufferPool();
+    DexOutputBuffer buffer = pool.acquire(64);
+    byte[] array = buffer.asArray();
+    buffer.moveTo(8);
+    buffer.putInt(-1);
+    pool.release(buffer, buffer.position());
+    DexOutputBuffer reused = pool.acquire(32);
+    assertEquals(array, reused.asArray());
+    assertEquals(0, reused.position());
+    assertArrayEquals(new byte[array.length], reused.asArray());
+  }
+
+  @Test
+  public void concurrentSectionWritingWritesSameBytes() throws Exception {
+    AndroidApp input = readClasses(DexOutputTest.class, FileWriter.class, DexOutputBuffer.class);
+    byte[] sequential = getDexBytes(ToolHelper.runD8(input, options -> {}));
+    byte[] concurrent =
+        getDexBytes(
+            ToolHelper.runD8(input, options -> options.concurrentDexSectionWritingMinSize = 0));
+    assertArrayEquals(sequential, concurrent);
+  }
+
+  private static byte[] getDexBytes(AndroidApp app) throws Exception {
+    List<ProgramResource> resources = app.getDexProgramResourcesForTesting();
+    assertEquals(1, resources.size());
+    try (InputStream stream = resources.get(0).getByteStream()) {
+      return ByteStreams.toByteArray(stream);
+    }
+  }
+
+  @Test
+  public void directoryConsumerWritesSameBytes() throws Exception {
+    byte[][] result = new byte[1][];
+    D8.run(
+        D8Command.builder()
+            .addProgramFiles(TRIVIAL)
+            .setProgramConsumer(
+                new DexIndexedConsumer.ForwardingConsumer(null) {
+                  @Override
+                  public void accept(
+                      int fileIndex,
+                      byte[] data,
+                      Set<String> descriptors,
+                      DiagnosticsHandler handler) {
+                    result[0] = data;
+                  }
+                })
+            .build());
+    assertNotNull(result[0]);
+    byte[] bytes = result[0];
+    int checksum =
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getInt(Constants.CHECKSUM_OFFSET);
+    assertEquals(
+        (int) adler32(bytes, Constants.SIGNATURE_OFFSET, bytes.length - Constants.SIGNATURE_OFFSET),
+        checksum);
+
+    Path directory = temp.newFolder().toPath();
+    D8.run(
+        D8Command.builder()
+            .addProgramFiles(TRIVIAL)
+            .setProgramConsumer(new DexIndexedConsumer.DirectoryConsumer(directory))
+            .build());
+    assertArrayEquals(bytes, Files.readAllBytes(directory.resolve("classes.dex")));
+  }
+
+  @Test
+  public void overriddenAcceptIsCalled() throws Exception {
+    Path directory = temp.newFolder().toPath();
+    Path archive = temp.newFolder().toPath().resolve("classes.zip");
+    byte[][] result = new byte[2][];
+    D8.run(
+        D8Command.builder()
+            .addProgramFiles(TRIVIAL)
+            .setProgramConsumer(
+                new DexIndexedConsumer.DirectoryConsumer(directory) {
+                  @Override
+                  public void accept(
+                      int fileIndex,
+                      byte[] data,
+                      Set<String> descriptors,
+                      DiagnosticsHandler handler) {
+                    result[0] = data;
+                    super.accept(fileIndex, data, descriptors, handler);
+                  }
+                })
+            .build());
+    D8.run(
+        D8Command.builder()
+            .addProgramFiles(TRIVIAL)
+            .setProgramConsumer(
+                new DexIndexedConsumer.ArchiveConsumer(archive) {
+                  @Override
+                  public void accept(
+                      int fileIndex,
+                      byte[] data,
+                      Set<String> descriptors,
+                      DiagnosticsHandler handler) {
+                    result[1] = data;
+                    super.accept(fileIndex, data, descriptors, handler);
+                  }
+                })
+            .build());
+    assertNotNull(result[0]);
+    assertArrayEquals(result[0], Files.readAllBytes(directory.resolve("classes.dex")));
+    assertArrayEquals(result[0], result[1]);
+    assertTrue(Files.exists(archive));
+  }
+}
@@ -150,6 +150,52 @@ public class SharedClassWritingTest {
     }
   }
 
+  @Test
+  public void independentFilesNextToSharedSynthesizedClass()
+      throws ExecutionException, IOException, DexOverflowException {
+    // Files of classes without synthesized classes are written as soon as they are mapped, while
+    // the files sharing the synthesized class wait for all jumbo string rewriting.
+    List<DexProgramClass> classes = new ArrayList<>();
+    List<DexProgramClass> independentClasses = new ArrayList<>();
+    for (int i = 0; i < NUMBER_OF_FILES; i++) {
+      DexProgramClass clazz = makeClass("Class" + i, Constants.MAX_NON_JUMBO_INDEX - 1, i % 100,
+          Collections.emptyList());
+      (i % 2 == 0 ? classes : independentClasses).add(clazz);
+    }
+    DexProgramClass sharedSynthesizedClass = makeClass("SharedSynthesized", 100,
+        Constants.MAX_NON_JUMBO_INDEX - 1,
+        classes);
+
+    DexApplication.Builder builder = DirectMappedDexApplication
+        .builder(dexItemFactory, new Timing("SharedClassWritingTest"));
+    builder.addSynthesizedClass(sharedSynthesizedClass, false);
+    classes.forEach(builder::addProgramClass);
+    independentClasses.forEach(builder::addProgramClass);
+    DexApplication application = builder.build();
+
+    CollectInfoConsumer consumer = new CollectInfoConsumer();
+    InternalOptions options = new InternalOptions(dexItemFactory,
+        new Reporter(new DefaultDiagnosticsHandler()));
+    options.programConsumer = consumer;
+    ApplicationWriter writer =
+        new ApplicationWriter(
+            application, options, null, null, NamingLens.getIdentityLens(), null, null);
+    ExecutorService executorService = ThreadUtils.getExecutorService(options);
+    writer.write(executorService);
+    List<Set<String>> generatedDescriptors = consumer.getDescriptors();
+    Assert.assertEquals(NUMBER_OF_FILES, generatedDescriptors.size());
+    int filesWithSharedClass = 0;
+    for (Set<String> classDescriptors : generatedDescriptors) {
+      if (classDescriptors.contains(sharedSynthesizedClass.type.toDescriptorString())) {
+        Assert.assertEquals(2, classDescriptors.size());
+        filesWithSharedClass++;
+      } else {
+        Assert.assertEquals(1, classDescriptors.size());
+      }
+    }
+    Assert.assertEquals(classes.size(), filesWithSharedClass);
+  }
+
   private static class CollectInfoConsumer implements DexFilePerClassFileConsumer {
 
     private final List<Set<String>> descriptors = new ArrayList<>();
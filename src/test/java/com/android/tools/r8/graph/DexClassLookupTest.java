@@ -0,0 +1,125 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.graph;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.android.tools.r8.dex.Constants;
+import com.android.tools.r8.origin.SynthesizedOrigin;
+import java.util.Collections;
+import org.junit.Test;
+
+public class DexClassLookupTest {
+
+  private static final int MEMBER_COUNT = 100;
+
+  private final DexItemFactory factory = new DexItemFactory();
+  private final DexType type = factory.createType("LTest;");
+
+  private DexMethod method(String name) {
+    return factory.createMethod(type, factory.createProto(factory.voidType), name);
+  }
+
+  private DexField field(String name) {
+    return factory.createField(type, factory.intType, name);
+  }
+
+  private DexEncodedMethod[] methods(String prefix, int count) {
+    DexEncodedMethod[] methods = new DexEncodedMethod[count];
+    for (int i = 0; i < count; i++) {
+      methods[i] =
+          new DexEncodedMethod(
+              method(prefix + i),
+              MethodAccessFlags.fromSharedAccessFlags(Constants.ACC_PUBLIC, false),
+              DexAnnotationSet.empty(),
+              DexAnnotationSetRefList.empty(),
+              null);
+    }
+    return methods;
+  }
+
+  private DexEncodedField[] fields(String prefix, int count) {
+    DexEncodedField[] fields = new DexEncodedField[count];
+    for (int i = 0; i < count; i++) {
+      fields[i] =
+          new DexEncodedField(
+              field(prefix + i),
+              FieldAccessFlags.fromSharedAccessFlags(Constants.ACC_PUBLIC),
+              DexAnnotationSet.empty(),
+              null);
+    }
+    return fields;
+  }
+
+  private DexProgramClass makeClass(DexEncodedField[] fields, DexEncodedMethod[] methods) {
+    return new DexProgramClass(
+        type,
+        null,
+        new SynthesizedOrigin("test", getClass()),
+        ClassAccessFlags.fromSharedAccessFlags(Constants.ACC_PUBLIC),
+        factory.objectType,
+        DexTypeList.empty(),
+        null,
+        null,
+        Collections.emptyList(),
+        DexAnnotationSet.empty(),
+        DexEncodedField.EMPTY_ARRAY,
+        fields,
+        DexEncodedMethod.EMPTY_ARRAY,
+        methods);
+  }
+
+  @Test
+  public void lookupFindsAllMembers() {
+    for (int count = 0; count <= MEMBER_COUNT; count++) {
+      DexEncodedField[] fields = fields("f", count);
+      DexEncodedMethod[] methods = methods("m", count);
+      DexProgramClass clazz = makeClass(fields, methods);
+      for (int i = 0; i < count; i++) {
+        assertSame(fields[i], clazz.lookupInstanceField(field("f" + i)));
+        assertSame(methods[i], clazz.lookupVirtualMethod(method("m" + i)));
+        assertSame(fields[i], clazz.lookupField(fields[i].field));
+        assertSame(methods[i], clazz.lookupMethod(methods[i].method));
+      }
+      assertNull(clazz.lookupInstanceField(field("m0")));
+      assertNull(clazz.lookupVirtualMethod(method("f0")));
+      assertNull(clazz.lookupStaticField(field("f0")));
+      assertNull(clazz.lookupDirectMethod(method("m0")));
+    }
+  }
+
+  @Test
+  public void lookupIgnoresHolder() {
+    DexEncodedMethod[] methods = methods("m", MEMBER_COUNT);
+    DexProgramClass clazz = makeClass(DexEncodedField.EMPTY_ARRAY, methods);
+    DexMethod other =
+        factory.createMethod(factory.objectType, factory.createProto(factory.voidType), "m7");
+    assertSame(methods[7], clazz.lookupVirtualMethod(other));
+  }
+
+  @Test
+  public void settersInvalidateLookup() {
+    DexProgramClass clazz = makeClass(fields("f", MEMBER_COUNT), methods("m", MEMBER_COUNT));
+    assertSame(clazz.virtualMethods()[0], clazz.lookupVirtualMethod(method("m0")));
+    assertSame(clazz.instanceFields()[0], clazz.lookupInstanceField(field("f0")));
+
+    DexEncodedMethod[] methods = methods("n", MEMBER_COUNT);
+    DexEncodedField[] fields = fields("g", MEMBER_COUNT);
+    clazz.setVirtualMethods(methods);
+    clazz.setInstanceFields(fields);
+    assertNull(clazz.lookupVirtualMethod(method("m0")));
+    assertNull(clazz.lookupInstanceField(field("f0")));
+    assertSame(methods[0], clazz.lookupVirtualMethod(method("n0")));
+    assertSame(fields[0], clazz.lookupInstanceField(field("g0")));
+
+    DexEncodedMethod[] directMethods = methods("d", MEMBER_COUNT);
+    clazz.setDirectMethods(directMethods);
+    assertSame(directMethods[1], clazz.lookupDirectMethod(method("d1")));
+    DexEncodedMethod replacement = methods("e", 1)[0];
+    clazz.setDirectMethod(1, replacement);
+    assertNull(clazz.lookupDirectMethod(method("d1")));
+    assertSame(replacement, clazz.lookupDirectMethod(method("e0")));
+  }
+}
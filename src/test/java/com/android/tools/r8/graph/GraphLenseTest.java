@@ -0,0 +1,54 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.graph;
+
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class GraphLenseTest {
+
+  private final DexItemFactory factory = new DexItemFactory();
+
+  private DexType type(String name) {
+    return factory.createType("L" + name + ";");
+  }
+
+  private DexField field(DexType holder, String name) {
+    return factory.createField(holder, factory.intType, name);
+  }
+
+  @Test
+  public void stackedLensesComposeMappings() {
+    DexType a = type("A");
+    DexType b = type("B");
+    DexType c = type("C");
+    DexType d = type("D");
+    DexType e = type("E");
+
+    GraphLense.Builder first = GraphLense.builder();
+    first.map(a, b);
+    first.map(field(a, "f"), field(b, "f"));
+    GraphLense.Builder second = GraphLense.builder();
+    second.map(b, c);
+    second.map(d, e);
+    second.map(a, e);
+    second.map(field(b, "f"), field(c, "g"));
+    GraphLense lense = second.build(factory, first.build(factory));
+
+    // The mapping of A by the second lense is not used, as A was already mapped to B.
+    assertSame(c, lense.lookupType(a, null));
+    assertSame(c, lense.lookupType(b, null));
+    assertSame(c, lense.lookupType(c, null));
+    assertSame(e, lense.lookupType(d, null));
+    assertSame(e, lense.lookupType(e, null));
+    assertSame(field(c, "g"), lense.lookupField(field(a, "f"), null));
+    assertSame(field(c, "g"), lense.lookupField(field(b, "f"), null));
+    assertSame(field(d, "f"), lense.lookupField(field(d, "f"), null));
+
+    DexType arrayOfA = factory.createType("[[LA;");
+    assertSame(factory.createType("[[LC;"), lense.lookupType(arrayOfA, null));
+    assertSame(factory.createType("[[LC;"), lense.lookupType(arrayOfA, null));
+  }
+}
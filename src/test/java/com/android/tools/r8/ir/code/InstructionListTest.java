@@ -0,0 +1,100 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.code;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+
+public class InstructionListTest {
+
+  @Test
+  public void sameAsArrayList() {
+    Random random = new Random(0);
+    for (int round = 0; round < 200; round++) {
+      InstructionList list = new InstructionList();
+      List<Instruction> expected = new ArrayList<>();
+      for (int step = 0; step < 200; step++) {
+        switch (random.nextInt(6)) {
+          case 0: {
+            int index = random.nextInt(expected.size() + 1);
+            Instruction instruction = new Goto();
+            list.add(index, instruction);
+            expected.add(index, instruction);
+            break;
+          }
+          case 1:
+            if (!expected.isEmpty()) {
+              int index = random.nextInt(expected.size());
+              assertSame(expected.remove(index), list.remove(index));
+            }
+            break;
+          case 2: {
+            // Edit while iterating, as the passes do.
+            ListIterator<Instruction> iterator = list.listIterator();
+            ListIterator<Instruction> expectedIterator = expected.listIterator();
+            while (iterator.hasNext()) {
+              assertSame(expectedIterator.next(), iterator.next());
+              int edit = random.nextInt(4);
+              if (edit == 0) {
+                iterator.remove();
+                expectedIterator.remove();
+              } else if (edit == 1) {
+                Instruction instruction = new Goto();
+                iterator.add(instruction);
+                expectedIterator.add(instruction);
+              }
+            }
+            break;
+          }
+          case 3: {
+            Instruction instruction = new Goto();
+            list.addFirst(instruction);
+            expected.add(0, instruction);
+            break;
+          }
+          case 4:
+            if (!expected.isEmpty()) {
+              assertSame(expected.remove(expected.size() - 1), list.removeLast());
+            }
+            break;
+          default:
+            if (random.nextInt(10) == 0) {
+              list.clear();
+              expected.clear();
+            }
+            break;
+        }
+        assertEquals(expected, list);
+      }
+    }
+  }
+
+  @Test
+  public void usersAreDistinct() {
+    Value value = new Value(0, ValueType.INT, null);
+    new ConstNumber(value, 1);
+    Add add = new Add(NumericType.INT, new Value(1, ValueType.INT, null), value, value);
+    Add other = new Add(NumericType.INT, new Value(2, ValueType.INT, null), value, value);
+    assertEquals(2, value.numberOfUsers());
+    Set<Instruction> users = value.uniqueUsers();
+    value.removeUser(add);
+    assertEquals(2, value.numberOfUsers());
+    value.removeUser(add);
+    assertEquals(1, value.numberOfUsers());
+    assertFalse(value.uniqueUsers().contains(add));
+    assertTrue(value.uniqueUsers().contains(other));
+    // Sets of users returned before are not affected by later changes.
+    assertEquals(2, users.size());
+    assertTrue(users.contains(add));
+  }
+}
@@ -0,0 +1,279 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.conversion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.android.tools.r8.TestBase;
+import com.android.tools.r8.ToolHelper;
+import com.android.tools.r8.dex.ApplicationReader;
+import com.android.tools.r8.graph.AppInfoWithSubtyping;
+import com.android.tools.r8.graph.Code;
+import com.android.tools.r8.graph.DexApplication;
+import com.android.tools.r8.graph.DexEncodedMethod;
+import com.android.tools.r8.graph.DexItemFactory;
+import com.android.tools.r8.graph.GraphLense;
+import com.android.tools.r8.shaking.Enqueuer;
+import com.android.tools.r8.shaking.Enqueuer.AppInfoWithLiveness;
+import com.android.tools.r8.shaking.ProguardConfiguration;
+import com.android.tools.r8.shaking.RootSetBuilder;
+import com.android.tools.r8.shaking.RootSetBuilder.RootSet;
+import com.android.tools.r8.utils.DefaultDiagnosticsHandler;
+import com.android.tools.r8.utils.InternalOptions;
+import com.android.tools.r8.utils.Reporter;
+import com.android.tools.r8.utils.ThreadUtils;
+import com.android.tools.r8.utils.Timing;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CallGraphTest extends TestBase {
+
+  private static final int THREADS = 4;
+
+  interface I {
+    int f();
+  }
+
+  static class X implements I {
+    @Override
+    public int f() {
+      return A.leaf1();
+    }
+  }
+
+  static class Y implements I {
+    @Override
+    public int f() {
+      return A.mid();
+    }
+  }
+
+  static class A {
+    static int leaf1() {
+      return 1;
+    }
+
+    static int leaf2() {
+      return 2;
+    }
+
+    static int mid() {
+      return leaf1() + leaf2();
+    }
+
+    static int top(I i) {
+      return mid() + leaf2() + i.f() + B.other();
+    }
+  }
+
+  static class B {
+    static int other() {
+      return A.leaf1() + A.mid();
+    }
+  }
+
+  public static class Main {
+    static int result;
+
+    public static void main(String[] args) {
+      result = A.top(new X()) + A.top(new Y());
+    }
+  }
+
+  private static final List<Class> CLASSES =
+      ImmutableList.of(I.class, X.class, Y.class, A.class, B.class, Main.class);
+
+  private final Timing timing = new Timing("CallGraphTest");
+  private InternalOptions options;
+  private DexApplication application;
+  private AppInfoWithLiveness appInfo;
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() throws Exception {
+    executor = ThreadUtils.getExecutorService(THREADS);
+    Path keepRules =
+        writeTextToTempFile(
+            "-keep public class " + Main.class.getTypeName() + " {",
+            "  public static void main(java.lang.String[]);",
+            "}");
+    DexItemFactory factory = new DexItemFactory();
+    ProguardConfiguration configuration =
+        ToolHelper.loadProguardConfiguration(factory, ImmutableList.of(keepRules));
+    options = new InternalOptions(configuration, new Reporter(new DefaultDiagnosticsHandler()));
+    application =
+        new ApplicationReader(readClasses(CLASSES), options, timing).read().toDirect();
+    AppInfoWithSubtyping appInfoWithSubtyping = new AppInfoWithSubtyping(application);
+    RootSet rootSet =
+        new RootSetBuilder(application, appInfoWithSubtyping, configuration.getRules(), options)
+            .run(executor);
+    appInfo = new Enqueuer(appInfoWithSubtyping, options).traceApplication(rootSet, timing);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdown();
+  }
+
+  private CallGraph build() throws ExecutionException {
+    return build(executor);
+  }
+
+  private CallGraph build(ExecutorService executorService) throws ExecutionException {
+    return CallGraph.build(
+        application, appInfo, GraphLense.getIdentityLense(), options, executorService);
+  }
+
+  private static void assertSameGraph(CallGraph expected, CallGraph actual) {
+    assertEquals(expected.getMethodsForTesting(), actual.getMethodsForTesting());
+    for (DexEncodedMethod method : expected.getMethodsForTesting()) {
+      assertEquals(expected.getCalleesForTesting(method), actual.getCalleesForTesting(method));
+      assertEquals(expected.hasSingleCallSite(method), actual.hasSingleCallSite(method));
+      assertEquals(expected.hasDoubleCallSite(method), actual.hasDoubleCallSite(method));
+    }
+  }
+
+  private static DexEncodedMethod method(CallGraph graph, Class<?> holder, String name) {
+    for (DexEncodedMethod method : graph.getMethodsForTesting()) {
+      if (method.method.holder.toSourceString().equals(holder.getTypeName())
+          && method.method.name.toString().equals(name)) {
+        return method;
+      }
+    }
+    throw new AssertionError(holder.getTypeName() + "." + name + " is not in the graph");
+  }
+
+  private static Set<DexEncodedMethod> transitiveCallees(CallGraph graph, DexEncodedMethod method) {
+    Set<DexEncodedMethod> result = Sets.newIdentityHashSet();
+    Deque<DexEncodedMethod> worklist = new ArrayDeque<>();
+    worklist.add(method);
+    while (!worklist.isEmpty()) {
+      for (DexEncodedMethod callee : graph.getCalleesForTesting(worklist.pop())) {
+        if (result.add(callee)) {
+          worklist.add(callee);
+        }
+      }
+    }
+    return result;
+  }
+
+  @Test
+  public void calleesAreProcessedFirst() throws Exception {
+    for (long seed = 0; seed < 10; seed++) {
+      Random random = new Random(seed);
+      options.testing.irOrdering =
+          methods -> {
+            List<DexEncodedMethod> shuffled = new ArrayList<>(methods);
+            Collections.shuffle(shuffled, random);
+            return new LinkedHashSet<>(shuffled);
+          };
+      CallGraph graph = build();
+      Set<DexEncodedMethod> processed = ConcurrentHashMap.newKeySet();
+      graph.forEachMethod(
+          (method, isProcessedConcurrently) -> {
+            for (DexEncodedMethod callee : graph.getCalleesForTesting(method)) {
+              assertTrue(processed.contains(callee));
+            }
+            assertTrue(processed.add(method));
+          },
+          executor,
+          timing);
+      assertEquals(graph.getMethodsForTesting().size(), processed.size());
+    }
+  }
+
+  @Test
+  public void onlyTransitiveCalleesAreNotProcessedConcurrently() throws Exception {
+    CallGraph graph = build();
+    assertTrue(
+        transitiveCallees(graph, method(graph, A.class, "top"))
+            .contains(method(graph, A.class, "leaf1")));
+    Set<DexEncodedMethod> processed = ConcurrentHashMap.newKeySet();
+    graph.forEachMethod(
+        (method, isProcessedConcurrently) -> {
+          Set<DexEncodedMethod> callees = transitiveCallees(graph, method);
+          for (DexEncodedMethod other : graph.getMethodsForTesting()) {
+            assertEquals(!callees.contains(other), isProcessedConcurrently.test(other));
+          }
+          processed.add(method);
+        },
+        executor,
+        timing);
+    assertEquals(graph.getMethodsForTesting().size(), processed.size());
+  }
+
+  @Test
+  public void failureStopsProcessing() throws Exception {
+    CallGraph graph = build();
+    DexEncodedMethod failing = method(graph, A.class, "leaf1");
+    RuntimeException failure = new RuntimeException("failure");
+    Set<DexEncodedMethod> processed = ConcurrentHashMap.newKeySet();
+    try {
+      graph.forEachMethod(
+          (method, isProcessedConcurrently) -> {
+            if (method == failing) {
+              throw failure;
+            }
+            processed.add(method);
+          },
+          executor,
+          timing);
+      fail("Expected the failure to be propagated");
+    } catch (ExecutionException e) {
+      assertEquals(failure, e.getCause());
+    }
+    // No method calling the failing method, directly or transitively, was processed.
+    for (DexEncodedMethod method : processed) {
+      assertFalse(transitiveCallees(graph, method).contains(failing));
+    }
+    assertFalse(processed.contains(method(graph, A.class, "top")));
+  }
+
+  @Test
+  public void buildDoesNotDependOnThreads() throws Exception {
+    ExecutorService singleThreadExecutor = ThreadUtils.getExecutorService(1);
+    try {
+      assertSameGraph(build(singleThreadExecutor), build());
+    } finally {
+      singleThreadExecutor.shutdown();
+    }
+  }
+
+  @Test
+  public void updateIsSameAsBuild() throws Exception {
+    CallGraph graph = build();
+    graph.update(application, appInfo, GraphLense.getIdentityLense(), executor);
+    assertSameGraph(build(), graph);
+
+    // Replace the code of two methods, so that update extracts their calls again.
+    DexEncodedMethod mid = method(graph, A.class, "mid");
+    DexEncodedMethod other = method(graph, B.class, "other");
+    DexEncodedMethod leaf2 = method(graph, A.class, "leaf2");
+    assertFalse(graph.getCalleesForTesting(other).contains(leaf2));
+    Code midCode = mid.getCode();
+    mid.setCode(other.getCode());
+    other.setCode(midCode);
+    graph.update(application, appInfo, GraphLense.getIdentityLense(), executor);
+    assertTrue(graph.getCalleesForTesting(other).contains(leaf2));
+    assertSameGraph(build(), graph);
+  }
+}
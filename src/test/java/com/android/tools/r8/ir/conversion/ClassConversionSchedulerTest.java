@@ -0,0 +1,86 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.conversion;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import com.android.tools.r8.CompilationMode;
+import com.android.tools.r8.D8Command;
+import com.android.tools.r8.ProgramResource;
+import com.android.tools.r8.ToolHelper;
+import com.android.tools.r8.utils.AndroidApp;
+import com.android.tools.r8.utils.InternalOptions;
+import com.android.tools.r8.utils.ThreadUtils;
+import com.google.common.io.ByteStreams;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+// Test that the size of the class conversion tasks does not change the output.
+@RunWith(Parameterized.class)
+public class ClassConversionSchedulerTest {
+
+  @Parameters(name = "{0} {1}")
+  public static Collection<Object[]> data() {
+    return Arrays.asList(new Object[][] {
+        {"arithmetic", CompilationMode.DEBUG},
+        {"arithmetic", CompilationMode.RELEASE},
+        {"trycatch", CompilationMode.RELEASE},
+        {"switches", CompilationMode.RELEASE},
+    });
+  }
+
+  private final Path input;
+  private final CompilationMode mode;
+
+  public ClassConversionSchedulerTest(String example, CompilationMode mode) {
+    this.input = Paths.get(ToolHelper.EXAMPLES_BUILD_DIR, example + ".jar");
+    this.mode = mode;
+  }
+
+  private byte[] compile(Consumer<InternalOptions> optionsConsumer) throws Exception {
+    AndroidApp app =
+        ToolHelper.runD8(
+            D8Command.builder().addProgramFiles(input).setMode(mode), optionsConsumer);
+    List<ProgramResource> resources = app.getDexProgramResourcesForTesting();
+    assertEquals(1, resources.size());
+    try (InputStream stream = resources.get(0).getByteStream()) {
+      return ByteStreams.toByteArray(stream);
+    }
+  }
+
+  @Test
+  public void sameOutputForAllTaskSizes() throws Exception {
+    byte[] expected = compile(options -> {});
+    assertArrayEquals(
+        expected,
+        compile(options -> {
+          options.classConversionSplitSize = 1;
+          options.classConversionMinWorkPerThread = 1;
+        }));
+    assertArrayEquals(
+        expected,
+        compile(options -> {
+          options.classConversionBatchSize = Integer.MAX_VALUE;
+          options.classConversionSplitSize = Integer.MAX_VALUE;
+        }));
+  }
+
+  @Test
+  public void threadsForWork() {
+    assertEquals(1, ThreadUtils.getThreadsForWork(8, 0, 100));
+    assertEquals(1, ThreadUtils.getThreadsForWork(8, 100, 100));
+    assertEquals(2, ThreadUtils.getThreadsForWork(8, 101, 100));
+    assertEquals(8, ThreadUtils.getThreadsForWork(8, 100000, 100));
+  }
+}
@@ -0,0 +1,120 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.conversion;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.r8.CompilationMode;
+import com.android.tools.r8.ProgramResource;
+import com.android.tools.r8.TestBase;
+import com.android.tools.r8.ToolHelper;
+import com.android.tools.r8.utils.AndroidApp;
+import com.google.common.io.ByteStreams;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.Test;
+
+public class JarSourceCodeFramesTest extends TestBase {
+
+  static class Input {
+
+    private final Object lock = new Object();
+
+    Object select(boolean flag, String a, Integer b) {
+      Object result = flag ? a : b;
+      for (int i = 0; i < 3; i++) {
+        if (result == null) {
+          result = new StringBuilder(flag ? "a" : "b");
+        }
+      }
+      return result;
+    }
+
+    int loadBooleans(boolean[] values, byte[] bytes) {
+      boolean[] array = values.length > 0 ? values : null;
+      int count = 0;
+      for (int i = 0; array != null && i < array.length; i++) {
+        count += array[i] ? 1 : bytes[i];
+      }
+      return count;
+    }
+
+    long handle(long value, double[] doubles) {
+      long result = value;
+      try {
+        result += (long) doubles[(int) value];
+      } catch (ArrayIndexOutOfBoundsException e) {
+        result = -1;
+      } finally {
+        result++;
+      }
+      synchronized (lock) {
+        switch ((int) result) {
+          case 0:
+            return doubles.length;
+          case 1:
+            result <<= 2;
+            break;
+          default:
+            result--;
+        }
+      }
+      return result;
+    }
+
+    // The local declared in each branch uses the same local slot, for a String on one branch and
+    // for a long on the other, and the slot is no longer defined after the branches join.
+    int reuseLocal(boolean flag, int value) {
+      if (flag) {
+        String string = "s" + value;
+        value += string.length();
+      } else {
+        long wide = value * 2L;
+        value += (int) wide;
+      }
+      for (int i = 0; i < value; i++) {
+        double half = i * 0.5;
+        if (half > 10) {
+          break;
+        }
+        value += (int) half;
+      }
+      return value;
+    }
+  }
+
+  private static byte[] compile(
+      CompilationMode mode, boolean useFrames, Set<String> methodsWithStatesFromFrames)
+      throws Exception {
+    AndroidApp app =
+        ToolHelper.runD8(
+            ToolHelper.prepareD8CommandBuilder(readClasses(Input.class)).setMode(mode),
+            options -> {
+              options.useClassFileFrames = useFrames;
+              options.testing.blockEntryStatesFromFramesConsumer =
+                  method -> methodsWithStatesFromFrames.add(method.name.toString());
+            });
+    List<ProgramResource> resources = app.getDexProgramResourcesForTesting();
+    assertEquals(1, resources.size());
+    try (InputStream stream = resources.get(0).getByteStream()) {
+      return ByteStreams.toByteArray(stream);
+    }
+  }
+
+  @Test
+  public void framesGiveSameCodeAsInference() throws Exception {
+    for (CompilationMode mode : CompilationMode.values()) {
+      Set<String> methodsWithStatesFromFrames = ConcurrentHashMap.newKeySet();
+      byte[] withFrames = compile(mode, true, methodsWithStatesFromFrames);
+      assertTrue(methodsWithStatesFromFrames.contains("reuseLocal"));
+      Set<String> methodsWithoutFrames = ConcurrentHashMap.newKeySet();
+      assertArrayEquals(compile(mode, false, methodsWithoutFrames), withFrames);
+      assertTrue(methodsWithoutFrames.isEmpty());
+    }
+  }
+}
@@ -0,0 +1,88 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.conversion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.r8.D8Command;
+import com.android.tools.r8.ToolHelper;
+import com.android.tools.r8.utils.AndroidApp;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PassProfilerTest {
+
+  private static final int TOP_METHODS = 3;
+
+  @Rule
+  public TemporaryFolder temp = ToolHelper.getTemporaryFolderForTest();
+
+  private Path profile(String fileName) throws Exception {
+    Path report = temp.getRoot().toPath().resolve(fileName);
+    AndroidApp app =
+        ToolHelper.runD8(
+            D8Command.builder()
+                .addProgramFiles(Paths.get(ToolHelper.EXAMPLES_BUILD_DIR, "arithmetic.jar"))
+                .addLibraryFiles(ToolHelper.getDefaultAndroidJar()),
+            options -> {
+              options.profilePasses = true;
+              options.passProfileFile = report;
+              options.passProfileTopMethods = TOP_METHODS;
+            });
+    assertEquals(1, app.getDexProgramResources().size());
+    assertTrue(Files.exists(report));
+    return report;
+  }
+
+  @Test
+  public void jsonReport() throws Exception {
+    JSONObject report;
+    try (Reader reader = Files.newBufferedReader(profile("passes.json"))) {
+      report = (JSONObject) new JSONParser().parse(reader);
+    }
+    Map<String, JSONObject> passes = new HashMap<>();
+    for (Object pass : (JSONArray) report.get("passes")) {
+      passes.put((String) ((JSONObject) pass).get("pass"), (JSONObject) pass);
+    }
+    String[] expectedPasses =
+        {"Build IR", "Dead code removal", "Register allocation", PassProfiler.OTHER};
+    for (String pass : expectedPasses) {
+      assertTrue(pass, passes.containsKey(pass));
+      assertTrue(pass, (Long) passes.get(pass).get("methods") > 0);
+      assertTrue(pass, (Long) passes.get(pass).get("time_ns") >= 0);
+    }
+    JSONArray methods = (JSONArray) report.get("slowest_methods");
+    assertEquals(TOP_METHODS, methods.size());
+    long previous = Long.MAX_VALUE;
+    for (Object method : methods) {
+      long time = (Long) ((JSONObject) method).get("time_ns");
+      assertTrue(time <= previous);
+      assertTrue(!((JSONArray) ((JSONObject) method).get("passes")).isEmpty());
+      previous = time;
+    }
+  }
+
+  @Test
+  public void csvReport() throws Exception {
+    List<String> lines = Files.readAllLines(profile("passes.csv"), StandardCharsets.UTF_8);
+    assertEquals("method,pass,methods,time_ns,allocated_bytes", lines.get(0));
+    assertTrue(lines.stream().anyMatch(line -> line.startsWith(",\"Register allocation\",")));
+    for (String line : lines.subList(1, lines.size())) {
+      assertTrue(line, line.startsWith(",\"") || line.startsWith("\""));
+    }
+  }
+}
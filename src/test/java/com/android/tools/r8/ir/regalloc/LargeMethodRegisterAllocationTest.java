@@ -0,0 +1,89 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.ir.regalloc;
+
+import static org.junit.Assert.assertEquals;
+
+import com.android.tools.r8.CompilationMode;
+import com.android.tools.r8.TestBase;
+import com.android.tools.r8.ToolHelper;
+import com.android.tools.r8.VmTestRunner;
+import com.android.tools.r8.utils.AndroidApp;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+// Allocate registers for a method with more live values than fit in the low registers and with
+// ranged invokes taking their arguments from live values. Allocating the argument registers of
+// these invokes speculatively allocates the linked intervals and rolls back the allocator state,
+// which is checked against a copy of the state when assertions are enabled.
+@RunWith(VmTestRunner.class)
+public class LargeMethodRegisterAllocationTest extends TestBase {
+
+  public static class TestClass {
+
+    static long sum(long a, int b, long c, int d, long e, int f) {
+      return a * 31 + b * 17 + c * 13 + d * 7 + e * 3 + f;
+    }
+
+    static long large(int seed, int selector) {
+      long l0 = seed;
+      long l1 = l0 * 3 + 1;
+      long l2 = l1 * 3 + 2;
+      long l3 = l2 * 3 + 3;
+      long l4 = l3 * 3 + 4;
+      long l5 = l4 * 3 + 5;
+      long l6 = l5 * 3 + 6;
+      long l7 = l6 * 3 + 7;
+      long l8 = l7 * 3 + 8;
+      long l9 = l8 * 3 + 9;
+      int i0 = seed + 10;
+      int i1 = i0 * 5 + 11;
+      int i2 = i1 * 5 + 12;
+      int i3 = i2 * 5 + 13;
+      int i4 = i3 * 5 + 14;
+      int i5 = i4 * 5 + 15;
+      int i6 = i5 * 5 + 16;
+      int i7 = i6 * 5 + 17;
+      int i8 = i7 * 5 + 18;
+      int i9 = i8 * 5 + 19;
+      long result;
+      switch (selector) {
+        case 0:
+          result = sum(l0, i9, l1, i8, l2, i7);
+          break;
+        case 1:
+          result = sum(l3, i6, l4, i5, l5, i4);
+          break;
+        case 2:
+          result = sum(l6, i3, l7, i2, l8, i1);
+          break;
+        case 3:
+          result = sum(l9, i0, l0, i9, l1, i8) + sum(l2, i7, l3, i6, l4, i5);
+          break;
+        default:
+          result = sum(l5, i4, l6, i3, l7, i2) - sum(l8, i1, l9, i0, l0, i0);
+      }
+      // Keep all the values live until the end.
+      return result + l0 + l1 + l2 + l3 + l4 + l5 + l6 + l7 + l8 + l9
+          + i0 + i1 + i2 + i3 + i4 + i5 + i6 + i7 + i8 + i9;
+    }
+
+    public static void main(String[] args) {
+      for (int selector = 0; selector < 6; selector++) {
+        System.out.println(large(selector + 1, selector));
+      }
+    }
+  }
+
+  @Test
+  public void largeMethod() throws Exception {
+    String expected = runOnJava(TestClass.class);
+    for (CompilationMode mode : CompilationMode.values()) {
+      AndroidApp app =
+          ToolHelper.runD8(
+              ToolHelper.prepareD8CommandBuilder(readClasses(TestClass.class)).setMode(mode));
+      assertEquals(expected, runOnArt(app, TestClass.class));
+    }
+  }
+}
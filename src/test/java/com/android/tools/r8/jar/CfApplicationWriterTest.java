@@ -0,0 +1,102 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.jar;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.r8.ClassFileConsumer;
+import com.android.tools.r8.CompilationMode;
+import com.android.tools.r8.DiagnosticsHandler;
+import com.android.tools.r8.R8Command;
+import com.android.tools.r8.ToolHelper;
+import com.android.tools.r8.debug.DebugTestBase;
+import com.android.tools.r8.utils.InternalOptions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import org.junit.Test;
+
+public class CfApplicationWriterTest {
+
+  private static class RecordingConsumer implements ClassFileConsumer {
+
+    final List<String> descriptors = new ArrayList<>();
+    final List<byte[]> data = new ArrayList<>();
+
+    @Override
+    public synchronized void accept(byte[] data, String descriptor, DiagnosticsHandler handler) {
+      this.descriptors.add(descriptor);
+      this.data.add(data);
+    }
+
+    @Override
+    public void finished(DiagnosticsHandler handler) {}
+  }
+
+  private RecordingConsumer compile(Consumer<InternalOptions> optionsConsumer) throws Exception {
+    return compile(new RecordingConsumer(), optionsConsumer);
+  }
+
+  private RecordingConsumer compile(
+      RecordingConsumer consumer, Consumer<InternalOptions> optionsConsumer) throws Exception {
+    ToolHelper.runR8(
+        R8Command.builder()
+            .addProgramFiles(DebugTestBase.DEBUGGEE_JAR)
+            .addLibraryFiles(ToolHelper.getDefaultAndroidJar())
+            .setMode(CompilationMode.DEBUG)
+            .setProgramConsumer(consumer)
+            .build(),
+        optionsConsumer);
+    return consumer;
+  }
+
+  @Test
+  public void classesAreConsumedInTheSameOrder() throws Exception {
+    RecordingConsumer expected = compile(options -> options.classFileWritingMaxPendingClasses = 1);
+    assertTrue(expected.descriptors.size() > 1);
+    for (int maxPending : new int[] {2, 16, 1024}) {
+      for (boolean writerThread : new boolean[] {false, true}) {
+        RecordingConsumer actual =
+            compile(
+                options -> {
+                  options.classFileWritingMaxPendingClasses = maxPending;
+                  options.writeClassFilesOnWriterThread = writerThread;
+                });
+        assertEquals(expected.descriptors, actual.descriptors);
+        for (int i = 0; i < expected.data.size(); i++) {
+          assertArrayEquals(expected.data.get(i), actual.data.get(i));
+        }
+      }
+    }
+  }
+
+  @Test(timeout = 120000)
+  public void stoppedWriterThreadDoesNotBlock() throws Exception {
+    RecordingConsumer consumer =
+        new RecordingConsumer() {
+          @Override
+          public synchronized void accept(
+              byte[] data, String descriptor, DiagnosticsHandler handler) {
+            super.accept(data, descriptor, handler);
+            // Interrupting the writer thread makes it stop taking classes.
+            Thread.currentThread().interrupt();
+          }
+        };
+    boolean failed = false;
+    try {
+      compile(
+          consumer,
+          options -> {
+            options.classFileWritingMaxPendingClasses = 1;
+            options.writeClassFilesOnWriterThread = true;
+          });
+    } catch (Throwable e) {
+      failed = true;
+    }
+    assertTrue(failed);
+    assertEquals(1, consumer.descriptors.size());
+  }
+}
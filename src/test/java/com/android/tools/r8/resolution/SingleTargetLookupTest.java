@@ -232,4 +232,15 @@ public class SingleTargetLookupTest extends AsmTestBase {
     Assert.assertTrue(allTargetHolders.stream().map(SingleTargetLookupTest::toType)
         .allMatch(targetHolders::contains));
   }
+
+  @Test
+  public void lookupVirtualTargetsIsMemoized() {
+    DexMethod method = buildMethod(invokeReceiver, methodName);
+    Set<DexEncodedMethod> targets = appInfo.lookupVirtualTargets(method);
+    Assert.assertSame(targets, appInfo.lookupVirtualTargets(method));
+    appInfo.invalidateLookupCaches();
+    Set<DexEncodedMethod> recomputed = appInfo.lookupVirtualTargets(method);
+    Assert.assertNotSame(targets, recomputed);
+    Assert.assertEquals(targets, recomputed);
+  }
 }
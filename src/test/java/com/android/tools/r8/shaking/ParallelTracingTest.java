@@ -0,0 +1,77 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.shaking;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+
+import com.android.tools.r8.DexIndexedConsumer;
+import com.android.tools.r8.DiagnosticsHandler;
+import com.android.tools.r8.R8Command;
+import com.android.tools.r8.ToolHelper;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+// Test that collecting the uses of live methods in parallel gives the same tree shaking result.
+@RunWith(Parameterized.class)
+public class ParallelTracingTest {
+
+  @Parameters(name = "{0}")
+  public static Collection<String> data() {
+    return Arrays.asList(
+        "shaking1", "shaking2", "shaking4", "shaking5", "shaking8", "shaking9", "shaking10",
+        "shaking11", "shaking12", "shaking13", "shaking14", "shaking15", "shaking17");
+  }
+
+  private final String test;
+
+  public ParallelTracingTest(String test) {
+    this.test = test;
+  }
+
+  private static class DexConsumer extends DexIndexedConsumer.ForwardingConsumer {
+
+    byte[] bytes;
+
+    DexConsumer() {
+      super(null);
+    }
+
+    @Override
+    public synchronized void accept(
+        int fileIndex, byte[] data, Set<String> descriptors, DiagnosticsHandler handler) {
+      bytes = data;
+    }
+  }
+
+  private byte[] compile(boolean parallel) throws Exception {
+    DexConsumer consumer = new DexConsumer();
+    R8Command command =
+        R8Command.builder()
+            .addProgramFiles(Paths.get(ToolHelper.EXAMPLES_BUILD_DIR, test + ".jar"))
+            .addProguardConfigurationFiles(
+                Paths.get(ToolHelper.EXAMPLES_DIR, test, "keep-rules.txt"))
+            .addLibraryFiles(ToolHelper.getDefaultAndroidJar())
+            .setProgramConsumer(consumer)
+            .build();
+    ToolHelper.runR8(command, options -> options.enableParallelTracing = parallel);
+    assertNotNull(consumer.bytes);
+    return consumer.bytes;
+  }
+
+  @Test
+  public void sameResult() throws Exception {
+    byte[] expected = compile(false);
+    // Run a few times to give different thread interleavings a chance.
+    for (int i = 0; i < 3; i++) {
+      assertArrayEquals(expected, compile(true));
+    }
+  }
+}
@@ -3,6 +3,7 @@
 // BSD-style license that can be found in the LICENSE file.
 package com.android.tools.r8.shaking;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -143,4 +144,39 @@ public class ProguardNameMatchingTest {
     assertTrue(ProguardNameMatcher.matchFieldOrMethodName("getObject?", "getObject1"));
     assertTrue(ProguardNameMatcher.matchFieldOrMethodName("getObject?", "getObject5"));
  }
+
+  @Test
+  public void matchFieldOrMethodDexStrings() {
+    // Matching on the bytes of a DexString must agree with matching on the string.
+    String[] patterns = {"*", "get*", "*t", "g*t*", "g*t***", "get*y", "getObject?", "?*?", "<*>"};
+    String[] names = {"", "get", "getObject", "getObject1", "gety", "<init>", "g\u00e9t"};
+    for (String pattern : patterns) {
+      ProguardNameMatcher matcher = ProguardNameMatcher.create(pattern);
+      for (String name : names) {
+        assertEquals(pattern + " " + name,
+            ProguardNameMatcher.matchFieldOrMethodName(pattern, name),
+            matcher.matches(dexItemFactory.createString(name)));
+      }
+    }
+  }
+
+  @Test
+  public void matchClassNamesOnDescriptors() {
+    assertTrue(matchClassName("com.a.Foo", "com.*.Foo"));
+    assertFalse(matchClassName("com.a.b.Foo", "com.*.Foo"));
+    assertTrue(matchClassName("com.a.b.Foo", "com.**.Foo"));
+    assertTrue(matchClassName("com.Foo", "com.**Foo"));
+    assertFalse(matchClassName("com.Foo", "com.**.Foo"));
+    assertTrue(matchClassName("com.abc.Foo", "com.a?c.*"));
+    assertFalse(matchClassName("com.a.c.Foo", "com.a?c.*"));
+    assertTrue(matchClassName("com.a.FooTest", "**Test"));
+    assertFalse(matchClassName("com.a.FooTest", "*Test"));
+    assertTrue(matchClassName("com.a.Foo$Bar", "com.a.**$*"));
+    assertFalse(matchClassName("com.a.Foo", "com.a.**$*"));
+    assertTrue(matchClassName("com.a.Foo", "com.a.Foo*"));
+    assertTrue(matchClassName("com.a.Foo", "com.a.*o*o*"));
+    assertTrue(matchClassName("com.\u00e9.Foo", "com.?.*"));
+    assertTrue(matchClassName("com.\u00e9.Foo", "com.\u00e9.*"));
+    assertFalse(matchClassName("com.a.Foo", "com.\u00e9.*"));
+  }
 }
@@ -0,0 +1,113 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.r8.ProgramResource;
+import com.android.tools.r8.ProgramResource.Kind;
+import com.android.tools.r8.ToolHelper;
+import com.android.tools.r8.shaking.FilteredClassPath;
+import com.google.common.io.ByteStreams;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedZipFileTest {
+
+  @Rule
+  public TemporaryFolder temp = ToolHelper.getTemporaryFolderForTest();
+
+  private static byte[] content(int seed, int size) {
+    byte[] bytes = new byte[size];
+    for (int i = 0; i < size; i++) {
+      bytes[i] = (byte) ((i * seed) % 7 == 0 ? i : seed);
+    }
+    return bytes;
+  }
+
+  private Path writeArchive() throws Exception {
+    Path archive = temp.getRoot().toPath().resolve("archive.jar");
+    try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(archive))) {
+      for (int i = 0; i < 10; i++) {
+        byte[] bytes = content(i + 1, 100 * i);
+        ZipEntry entry = new ZipEntry("a/b/C" + i + ".class");
+        if (i % 2 == 0) {
+          CRC32 crc = new CRC32();
+          crc.update(bytes);
+          entry.setMethod(ZipEntry.STORED);
+          entry.setSize(bytes.length);
+          entry.setCrc(crc.getValue());
+        }
+        entry.setExtra(new byte[i]);
+        out.putNextEntry(entry);
+        out.write(bytes);
+        out.closeEntry();
+      }
+      out.setComment("comment");
+    }
+    return archive;
+  }
+
+  @Test
+  public void sameContentAsZipFile() throws Exception {
+    Path archive = writeArchive();
+    List<String> names = new ArrayList<>();
+    List<byte[]> contents = new ArrayList<>();
+    try (ZipFile zipFile = new ZipFile(archive.toFile())) {
+      Enumeration<? extends ZipEntry> entries = zipFile.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        names.add(entry.getName());
+        try (InputStream stream = zipFile.getInputStream(entry)) {
+          contents.add(ByteStreams.toByteArray(stream));
+        }
+      }
+    }
+    MappedZipFile mappedZipFile = MappedZipFile.open(archive);
+    assertNotNull(mappedZipFile);
+    List<MappedZipFile.Entry> entries = mappedZipFile.getEntries();
+    assertEquals(names.size(), entries.size());
+    for (int i = 0; i < entries.size(); i++) {
+      MappedZipFile.Entry entry = entries.get(i);
+      assertEquals(names.get(i), entry.getName());
+      ByteBuffer buffer = entry.readContent();
+      byte[] bytes = new byte[buffer.remaining()];
+      buffer.get(bytes);
+      assertArrayEquals(entry.getName(), contents.get(i), bytes);
+    }
+  }
+
+  @Test
+  public void archiveProviderUsesMappedResources() throws Exception {
+    Path archive = writeArchive();
+    Collection<ProgramResource> resources =
+        new FilteredArchiveProgramResourceProvider(FilteredClassPath.unfiltered(archive), false)
+            .getProgramResources();
+    assertEquals(10, resources.size());
+    for (ProgramResource resource : resources) {
+      assertTrue(resource instanceof ByteBufferResource);
+      assertEquals(Kind.CF, resource.getKind());
+      byte[] bytes = ((ByteBufferResource) resource).getBytes();
+      try (InputStream stream = resource.getByteStream()) {
+        assertArrayEquals(bytes, ByteStreams.toByteArray(stream));
+      }
+    }
+  }
+}
@@ -3,6 +3,9 @@
 // BSD-style license that can be found in the LICENSE file.
 package com.android.tools.r8.utils;
 
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.ExecutorService;
 import org.junit.Test;
 
 public class NumberOfThreadsTest {
@@ -22,4 +25,21 @@ public class NumberOfThreadsTest {
     ThreadUtils.getExecutorServiceForProcessors(2).shutdown();
   }
 
+  @Test(expected = IllegalArgumentException.class)
+  public void zeroProcessorClassConversionTest() {
+    ThreadUtils.getClassConversionExecutorServiceForProcessors(0).shutdown();
+  }
+
+  @Test
+  public void singleProcessorClassConversionTest() {
+    ThreadUtils.getClassConversionExecutorServiceForProcessors(1).shutdown();
+  }
+
+  @Test
+  public void manyProcessorsClassConversionTest() {
+    ExecutorService executor = ThreadUtils.getClassConversionExecutorServiceForProcessors(64);
+    assertEquals(16, ThreadUtils.getParallelism(executor));
+    executor.shutdown();
+  }
+
 }
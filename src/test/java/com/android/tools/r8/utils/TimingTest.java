@@ -0,0 +1,144 @@
+// Copyright (c) 2018, the R8 project authors. Please see the AUTHORS file
+// for details. All rights reserved. Use of this source code is governed by a
+// BSD-style license that can be found in the LICENSE file.
+package com.android.tools.r8.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.r8.D8;
+import com.android.tools.r8.D8Command;
+import com.android.tools.r8.DexFilePerClassFileConsumer;
+import com.android.tools.r8.DexIndexedConsumer;
+import com.android.tools.r8.ToolHelper;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.junit.Test;
+
+public class TimingTest {
+
+  private static final int TASKS = 20;
+  private static final int THREADS = 4;
+
+  private static JSONObject child(JSONObject object, String title) {
+    for (Object child : (JSONArray) object.get("children")) {
+      if (title.equals(((JSONObject) child).get("title"))) {
+        return (JSONObject) child;
+      }
+    }
+    return null;
+  }
+
+  private static Timing runTasks() throws Exception {
+    Timing timing = new Timing("Test", true);
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      timing.begin("Phase");
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < TASKS; i++) {
+        futures.add(executor.submit(() -> {
+          timing.begin("Task");
+          timing.scope("Subtask", () -> timing.addCounter("Count", 1));
+          timing.end();
+        }));
+      }
+      ThreadUtils.awaitFutures(futures);
+      timing.addCounter("Count", 2);
+      timing.end();
+    } finally {
+      executor.shutdown();
+    }
+    return timing;
+  }
+
+  @Test
+  public void tasksOnOtherThreadsAreNestedInOpenTask() throws Exception {
+    JSONObject top = (JSONObject) new JSONParser().parse(runTasks().toJson());
+    assertEquals(1L, top.get("count"));
+    JSONObject phase = child(top, "Phase");
+    assertNotNull(phase);
+    assertEquals(2L, ((JSONObject) phase.get("counters")).get("Count"));
+    assertTrue((Long) phase.get("heap_peak_bytes") > 0);
+    JSONObject task = child(phase, "Task");
+    assertNotNull(task);
+    assertEquals((long) TASKS, task.get("count"));
+    assertTrue((Long) task.get("threads") <= THREADS);
+    assertTrue((Long) task.get("wall_ns") >= 0);
+    JSONObject subtask = child(task, "Subtask");
+    assertNotNull(subtask);
+    assertEquals((long) TASKS, subtask.get("count"));
+    assertEquals((long) TASKS, ((JSONObject) subtask.get("counters")).get("Count"));
+  }
+
+  @Test
+  public void traceHasEveryTask() throws Exception {
+    JSONObject trace = (JSONObject) new JSONParser().parse(runTasks().toTraceEvents());
+    int tasks = 0;
+    Set<Object> tids = new HashSet<>();
+    Set<Object> namedTids = new HashSet<>();
+    for (Object event : (JSONArray) trace.get("traceEvents")) {
+      JSONObject object = (JSONObject) event;
+      if ("X".equals(object.get("ph"))) {
+        tids.add(object.get("tid"));
+        if ("Task".equals(object.get("name"))) {
+          tasks++;
+        }
+      } else {
+        assertEquals("M", object.get("ph"));
+        namedTids.add(object.get("tid"));
+      }
+    }
+    assertEquals(TASKS, tasks);
+    assertEquals(tids, namedTids);
+    assertTrue(tids.size() > 1);
+  }
+
+  @Test
+  public void d8TimingConsumers() throws Exception {
+    String[] report = new String[1];
+    String[] trace = new String[1];
+    ToolHelper.runD8(
+        D8Command.builder()
+            .addProgramFiles(Paths.get(ToolHelper.EXAMPLES_BUILD_DIR, "arithmetic.jar"))
+            .addLibraryFiles(ToolHelper.getDefaultAndroidJar())
+            .setProgramConsumer(DexIndexedConsumer.emptyConsumer())
+            .setTimingReportConsumer((string, handler) -> report[0] = string)
+            .setTimingTraceConsumer((string, handler) -> trace[0] = string));
+    JSONObject top = (JSONObject) new JSONParser().parse(report[0]);
+    assertNotNull(child(top, "IR conversion"));
+    assertNotNull(child(child(top, "IR conversion"), "Convert class"));
+    assertTrue(new JSONParser().parse(trace[0]) instanceof JSONObject);
+  }
+
+  @Test
+  public void d8TimingConsumersInBatches() throws Exception {
+    List<String> reports = new ArrayList<>();
+    List<String> traces = new ArrayList<>();
+    D8.run(
+        D8Command.builder()
+            .addProgramFiles(Paths.get(ToolHelper.EXAMPLES_BUILD_DIR, "inlining.jar"))
+            .addLibraryFiles(ToolHelper.getDefaultAndroidJar())
+            .setProgramConsumer(new DexFilePerClassFileConsumer.ForwardingConsumer(null))
+            .setFilePerClassBatchSize(1)
+            .setTimingReportConsumer((string, handler) -> reports.add(string))
+            .setTimingTraceConsumer((string, handler) -> traces.add(string))
+            .build());
+    // A single report for all batches, with each batch as a phase.
+    assertEquals(1, reports.size());
+    assertEquals(1, traces.size());
+    JSONObject batch = child((JSONObject) new JSONParser().parse(reports.get(0)), "Batch");
+    assertNotNull(batch);
+    assertTrue((Long) batch.get("count") > 1);
+    assertNotNull(child(batch, "IR conversion"));
+  }
+}